@@ -77,4 +77,7 @@ public class EditorAuthorizationServiceStub implements EditorAuthorizationServic
   public boolean allowedToModifyInstallation(String name, Installation installation) {
     return false;
   }
+
+  @Override
+  public void evictEditorRights(String name) {}
 }
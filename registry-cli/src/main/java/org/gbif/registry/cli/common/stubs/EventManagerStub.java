@@ -25,6 +25,12 @@ public class EventManagerStub implements EventManager {
   @Override
   public void register(Object object) {}
 
+  @Override
+  public void registerSynchronous(Object object) {}
+
   @Override
   public void unregister(Object object) {}
+
+  @Override
+  public void coalesceUntilTransactionEnd() {}
 }
@@ -23,35 +23,52 @@ import org.gbif.registry.search.dataset.indexing.es.EsClient;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.CompletableFuture;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 
 import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BackoffPolicy;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.index.IndexRequest;
+import org.elasticsearch.common.unit.ByteSizeValue;
+import org.elasticsearch.common.unit.TimeValue;
 import org.elasticsearch.common.xcontent.XContentType;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 
 import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Stopwatch;
 
 import lombok.extern.slf4j.Slf4j;
 
-/** A builder that will clear and build a new dataset index by paging over the given service. */
+/**
+ * A builder that will clear and build a new dataset index by paging over the given service.
+ *
+ * <p>Pages are fetched and converted by two bounded thread pools: when a pool queue is full the
+ * submitting thread runs the task itself, so fetching slows down to the pace of conversion and
+ * conversion to the pace of Elasticsearch. Each page is converted as a batch, sharing the
+ * occurrence queries and fetching the metadata documents on a third pool. Converted documents go
+ * through a {@link BulkProcessor} which flushes by size, limits the number of concurrent bulk
+ * requests and retries rejected items with an exponential backoff.
+ */
 @Slf4j
 public class DatasetBatchIndexer {
 
-  // controls how many results we request while paging over the WS
-  private static final int DEFAULT_PAGE_SIZE = 100;
+  // how often the indexing progress is logged
+  private static final long PROGRESS_INTERVAL_SECONDS = 30;
 
   private final GbifWsClient gbifWsClient;
 
@@ -63,16 +80,45 @@ public class DatasetBatchIndexer {
   // This variable has the only intention to be used in IT and local tests
   private final Integer stopAfter;
 
+  // pipeline sizing, see DatasetBatchIndexerConfiguration
+  private final int pageSize;
+  private final int fetchThreads;
+  private final int convertThreads;
+  private final int metadataThreads;
+  private final int queuedTasksPerThread;
+  private final int bulkConcurrency;
+  private final long bulkMaxBytes;
+  private final int bulkMaxRetries;
+  private final long bulkBackoffMillis;
+
   @Autowired
   public DatasetBatchIndexer(
       GbifWsClient gbifWsClient,
       EsClient esClient,
       DatasetJsonConverter datasetJsonConverter,
-      @Value("${indexing.stopAfter:-1}") Integer stopAfter) {
+      @Value("${indexing.stopAfter:-1}") Integer stopAfter,
+      @Value("${indexing.pageSize:100}") int pageSize,
+      @Value("${indexing.fetchThreads:2}") int fetchThreads,
+      @Value("${indexing.convertThreads:4}") int convertThreads,
+      @Value("${indexing.metadataThreads:4}") int metadataThreads,
+      @Value("${indexing.queuedTasksPerThread:2}") int queuedTasksPerThread,
+      @Value("${indexing.bulkConcurrency:2}") int bulkConcurrency,
+      @Value("${indexing.bulkMaxBytes:5242880}") long bulkMaxBytes,
+      @Value("${indexing.bulkMaxRetries:5}") int bulkMaxRetries,
+      @Value("${indexing.bulkBackoffMillis:100}") long bulkBackoffMillis) {
     this.gbifWsClient = gbifWsClient;
     this.esClient = esClient;
     this.datasetJsonConverter = datasetJsonConverter;
     this.stopAfter = stopAfter;
+    this.pageSize = pageSize;
+    this.fetchThreads = fetchThreads;
+    this.convertThreads = convertThreads;
+    this.metadataThreads = metadataThreads;
+    this.queuedTasksPerThread = queuedTasksPerThread;
+    this.bulkConcurrency = bulkConcurrency;
+    this.bulkMaxBytes = bulkMaxBytes;
+    this.bulkMaxRetries = bulkMaxRetries;
+    this.bulkBackoffMillis = bulkBackoffMillis;
   }
 
   /** Pages over all datasets and adds them to ElasticSearch. */
@@ -86,91 +132,178 @@ public class DatasetBatchIndexer {
         indexingSettings,
         IndexingConstants.MAPPING_FILE);
 
-    ExecutorService executor = Executors.newWorkStealingPool();
-
-    List<CompletableFuture<BulkResponse>> jobs = new ArrayList<>();
-
-    onAllDatasets(
-        gbifWsClient,
-        pagingResponse ->
-            jobs.add(
-                CompletableFuture.supplyAsync(
-                    () -> index(pagingResponse, datasetJsonConverter, indexName, esClient),
-                    executor)),
-        stopAfter);
+    Progress progress = new Progress();
+    BulkProcessor bulkProcessor =
+        esClient
+            .bulkProcessorBuilder(new BulkListener(progress))
+            .setBulkActions(-1)
+            .setBulkSize(new ByteSizeValue(bulkMaxBytes))
+            .setConcurrentRequests(bulkConcurrency)
+            .setBackoffPolicy(
+                BackoffPolicy.exponentialBackoff(
+                    TimeValue.timeValueMillis(bulkBackoffMillis), bulkMaxRetries))
+            .build();
+    ThreadPoolExecutor fetchers = boundedExecutor(fetchThreads, queuedTasksPerThread);
+    ThreadPoolExecutor converters = boundedExecutor(convertThreads, queuedTasksPerThread);
+    ThreadPoolExecutor metadataFetchers = boundedExecutor(metadataThreads, queuedTasksPerThread);
+    ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+    reporter.scheduleAtFixedRate(
+        () -> logProgress(progress, stopwatch, converters.getQueue().size()),
+        PROGRESS_INTERVAL_SECONDS,
+        PROGRESS_INTERVAL_SECONDS,
+        TimeUnit.SECONDS);
 
-    CompletableFuture.allOf(jobs.toArray(new CompletableFuture[] {}));
+    try {
+      onAllPages(
+          page ->
+              fetchers.execute(
+                  () -> {
+                    try {
+                      List<Dataset> datasets = gbifWsClient.listDatasets(page).getResults();
+                      converters.execute(
+                          () -> index(datasets, indexName, bulkProcessor, metadataFetchers));
+                    } catch (Exception ex) {
+                      log.error("Error indexing page at offset {}", page.getOffset(), ex);
+                    }
+                  }));
+      awaitTermination(fetchers);
+      awaitTermination(converters);
+      awaitTermination(metadataFetchers);
+      bulkProcessor.awaitClose(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while building the dataset index", ex);
+    } finally {
+      fetchers.shutdownNow();
+      converters.shutdownNow();
+      metadataFetchers.shutdownNow();
+      reporter.shutdownNow();
+    }
+    logProgress(progress, stopwatch, 0);
 
-    logIndexingErrors(jobs);
-    executor.shutdown();
     esClient.updateSettings(indexName, searchSettings);
     esClient.swapAlias(IndexingConstants.ALIAS, indexName);
     esClient.close();
     log.info("Finished building Dataset index in {} secs", stopwatch.elapsed(TimeUnit.SECONDS));
   }
 
-  private BulkResponse index(
-      PagingResponse<Dataset> pagingResponse,
-      DatasetJsonConverter datasetJsonConverter,
+  /** Converts a page of datasets and queues them for indexing, runs on the converter threads. */
+  private void index(
+      List<Dataset> datasets,
       String indexName,
-      EsClient esClient) {
+      BulkProcessor bulkProcessor,
+      Executor metadataExecutor) {
     try {
-      BulkRequest bulkRequest = new BulkRequest();
-      pagingResponse
-          .getResults()
-          .forEach(
-              dataset -> {
-                ObjectNode jsonNode = datasetJsonConverter.convert(dataset);
-                bulkRequest.add(
-                    new IndexRequest()
-                        .index(indexName)
-                        .source(jsonNode.toString(), XContentType.JSON)
-                        .opType(DocWriteRequest.OpType.INDEX)
-                        .id(dataset.getKey().toString())
-                        .type(IndexingConstants.DATASET_RECORD_TYPE));
-              });
-      // Batching updates to Es proves quicker with batches of 100 - 1000 showing similar
-      // performance
-      log.info(
-          "Indexing {} datasets until at offset {}",
-          pagingResponse.getLimit(),
-          pagingResponse.getOffset());
-      return esClient.bulk(bulkRequest);
+      List<ObjectNode> documents = datasetJsonConverter.convert(datasets, metadataExecutor);
+      for (int i = 0; i < datasets.size(); i++) {
+        bulkProcessor.add(
+            new IndexRequest()
+                .index(indexName)
+                .source(documents.get(i).toString(), XContentType.JSON)
+                .opType(DocWriteRequest.OpType.INDEX)
+                .id(datasets.get(i).getKey().toString())
+                .type(IndexingConstants.DATASET_RECORD_TYPE));
+      }
     } catch (Exception ex) {
-      log.error("Error indexing page", ex);
-      throw new RuntimeException(ex);
+      log.error("Error converting {} datasets", datasets.size(), ex);
     }
   }
 
-  private void onAllDatasets(
-      GbifWsClient gbifWsClient,
-      Consumer<PagingResponse<Dataset>> responseConsumer,
-      int stopAfter) {
-    int pageSize = stopAfter < 1 ? DEFAULT_PAGE_SIZE : Math.min(DEFAULT_PAGE_SIZE, stopAfter);
-    PagingRequest page = new PagingRequest(0, pageSize);
+  /**
+   * Calls the consumer with the requests of all the pages to be indexed, bounded by the number of
+   * datasets at the start of the run and stopAfter.
+   */
+  private void onAllPages(Consumer<PagingRequest> pageConsumer) {
     PagingResponse<Dataset> response = gbifWsClient.listDatasets(new PagingRequest(0, 0));
-    int datasetCount = 0;
-    do {
-      log.debug("Requesting {} datasets starting at offset {}", page.getLimit(), page.getOffset());
-      PagingResponse<Dataset> pagingResponse = gbifWsClient.listDatasets(page);
-      response.setEndOfRecords(pagingResponse.isEndOfRecords());
-      datasetCount += pagingResponse.getResults().size();
-      responseConsumer.accept(pagingResponse);
-      page.nextPage();
-    } while (!response.isEndOfRecords() && (stopAfter < 0 || stopAfter < datasetCount));
+    long datasetCount = response.getCount() == null ? 0 : response.getCount();
+    if (stopAfter > 0) {
+      datasetCount = Math.min(datasetCount, stopAfter);
+    }
+    for (long offset = 0; offset < datasetCount; offset += pageSize) {
+      int limit = (int) Math.min(pageSize, datasetCount - offset);
+      log.debug("Requesting {} datasets starting at offset {}", limit, offset);
+      pageConsumer.accept(new PagingRequest(offset, limit));
+    }
   }
 
-  private static void logIndexingErrors(List<CompletableFuture<BulkResponse>> jobs) {
-    jobs.forEach(
-        job -> {
-          try {
-            BulkResponse bulkResponse = job.get();
-            if (bulkResponse.hasFailures()) {
-              log.error("Error in indexing job {}", bulkResponse.buildFailureMessage());
-            }
-          } catch (InterruptedException | ExecutionException ex) {
-            log.error("Error executing job", ex);
-          }
-        });
+  /**
+   * A fixed size executor with a queue of a few tasks per thread, which runs tasks on the
+   * submitting thread when the queue is full.
+   */
+  @VisibleForTesting
+  static ThreadPoolExecutor boundedExecutor(int threads, int queuedTasksPerThread) {
+    return new ThreadPoolExecutor(
+        threads,
+        threads,
+        0L,
+        TimeUnit.MILLISECONDS,
+        new ArrayBlockingQueue<>(Math.max(1, threads * queuedTasksPerThread)),
+        new ThreadPoolExecutor.CallerRunsPolicy());
+  }
+
+  private static void awaitTermination(ThreadPoolExecutor executor) throws InterruptedException {
+    executor.shutdown();
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+  }
+
+  private void logProgress(Progress progress, Stopwatch stopwatch, int queueDepth) {
+    progress.log(stopwatch, queueDepth);
+    long converted = Math.max(datasetJsonConverter.getConvertedDatasets(), 1);
+    log.info(
+        "Remote calls per dataset: {} occurrence queries, {} metadata requests",
+        String.format("%.3f", (double) datasetJsonConverter.getOccurrenceQueries() / converted),
+        String.format("%.3f", (double) datasetJsonConverter.getMetadataRequests() / converted));
+  }
+
+  /** Indexing throughput counters. */
+  private static class Progress {
+    private final AtomicLong documents = new AtomicLong();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    private void log(Stopwatch stopwatch, int queueDepth) {
+      double seconds = Math.max(stopwatch.elapsed(TimeUnit.MILLISECONDS), 1) / 1000d;
+      log.info(
+          "Indexed {} datasets ({} failed), {} docs/sec, {} bytes/sec, {} pages queued",
+          documents.get(),
+          failures.get(),
+          Math.round(documents.get() / seconds),
+          Math.round(bytes.get() / seconds),
+          queueDepth);
+    }
+  }
+
+  /** Counts the indexed documents and logs the failed bulk requests. */
+  private static class BulkListener implements BulkProcessor.Listener {
+    private final Progress progress;
+
+    private BulkListener(Progress progress) {
+      this.progress = progress;
+    }
+
+    @Override
+    public void beforeBulk(long executionId, BulkRequest request) {
+      log.debug(
+          "Indexing {} datasets, {} bytes",
+          request.numberOfActions(),
+          request.estimatedSizeInBytes());
+    }
+
+    @Override
+    public void afterBulk(long executionId, BulkRequest request, BulkResponse response) {
+      progress.documents.addAndGet(request.numberOfActions());
+      progress.bytes.addAndGet(request.estimatedSizeInBytes());
+      if (response.hasFailures()) {
+        progress.failures.addAndGet(
+            Arrays.stream(response.getItems()).filter(BulkItemResponse::isFailed).count());
+        log.error("Error in indexing job {}", response.buildFailureMessage());
+      }
+    }
+
+    @Override
+    public void afterBulk(long executionId, BulkRequest request, Throwable failure) {
+      progress.failures.addAndGet(request.numberOfActions());
+      log.error("Error indexing {} datasets", request.numberOfActions(), failure);
+    }
   }
 }
@@ -37,6 +37,33 @@ public class DatasetBatchIndexerConfiguration {
 
   private Integer stopAfter = -1;
 
+  // number of datasets requested per page while paging over the WS
+  private int pageSize = 100;
+
+  // concurrent page requests to the WS
+  private int fetchThreads = 2;
+
+  // threads converting pages of datasets into index documents
+  private int convertThreads = 4;
+
+  // concurrent metadata document requests to the WS
+  private int metadataThreads = 4;
+
+  // tasks waiting in each pool per thread before the producers slow down, with a page of datasets
+  // per task this bounds the datasets held in memory to a few pages per thread
+  private int queuedTasksPerThread = 2;
+
+  // concurrent bulk requests to Elasticsearch
+  private int bulkConcurrency = 2;
+
+  // a bulk request is sent once the queued documents reach this size
+  private long bulkMaxBytes = 5 * 1024 * 1024;
+
+  // retries of the bulk items rejected by Elasticsearch, with an exponential backoff
+  private int bulkMaxRetries = 5;
+
+  private long bulkBackoffMillis = 100;
+
   private Map<String, String> indexingSettings =
       new HashMap<>(IndexingConstants.DEFAULT_INDEXING_SETTINGS);
 
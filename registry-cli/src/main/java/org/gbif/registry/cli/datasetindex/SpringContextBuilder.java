@@ -122,6 +122,15 @@ public class SpringContextBuilder {
                         "indexing.datasource.checklistbank.hikari.connectionTimeout",
                         configuration.getClbDb().getConnectionTimeout())
                     .put("indexing.stopAfter", configuration.getStopAfter())
+                    .put("indexing.pageSize", configuration.getPageSize())
+                    .put("indexing.fetchThreads", configuration.getFetchThreads())
+                    .put("indexing.convertThreads", configuration.getConvertThreads())
+                    .put("indexing.metadataThreads", configuration.getMetadataThreads())
+                    .put("indexing.queuedTasksPerThread", configuration.getQueuedTasksPerThread())
+                    .put("indexing.bulkConcurrency", configuration.getBulkConcurrency())
+                    .put("indexing.bulkMaxBytes", configuration.getBulkMaxBytes())
+                    .put("indexing.bulkMaxRetries", configuration.getBulkMaxRetries())
+                    .put("indexing.bulkBackoffMillis", configuration.getBulkBackoffMillis())
                     .build()));
     ctx.refresh();
     ctx.start();
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.cli.datasetindex;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DatasetBatchIndexerTest {
+
+  @Test
+  public void testDefaultQueueIsSmall() {
+    DatasetBatchIndexerConfiguration configuration = new DatasetBatchIndexerConfiguration();
+    ThreadPoolExecutor executor =
+        DatasetBatchIndexer.boundedExecutor(
+            configuration.getConvertThreads(), configuration.getQueuedTasksPerThread());
+    try {
+      assertEquals(
+          configuration.getConvertThreads() * configuration.getQueuedTasksPerThread(),
+          executor.getQueue().remainingCapacity());
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void testProducerRunsTasksWhenQueueIsFull() throws InterruptedException {
+    ThreadPoolExecutor executor = DatasetBatchIndexer.boundedExecutor(2, 2);
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger ranByProducer = new AtomicInteger();
+    AtomicInteger completed = new AtomicInteger();
+    Thread producer = Thread.currentThread();
+
+    // 2 running and 4 queued tasks fill the executor, the next ones run on the producer
+    for (int i = 0; i < 8; i++) {
+      executor.execute(
+          () -> {
+            if (Thread.currentThread() == producer) {
+              ranByProducer.incrementAndGet();
+            } else {
+              awaitQuietly(release);
+            }
+            completed.incrementAndGet();
+          });
+      assertTrue(executor.getQueue().size() <= 4);
+    }
+    assertEquals(2, ranByProducer.get());
+
+    release.countDown();
+    executor.shutdown();
+    assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    assertEquals(8, completed.get());
+  }
+
+  private static void awaitQuietly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+}
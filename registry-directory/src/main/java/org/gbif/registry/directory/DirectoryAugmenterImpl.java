@@ -21,9 +21,6 @@ import org.gbif.api.model.directory.ParticipantPerson;
 import org.gbif.api.model.directory.Person;
 import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Node;
-import org.gbif.api.service.directory.NodeService;
-import org.gbif.api.service.directory.ParticipantService;
-import org.gbif.api.service.directory.PersonService;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
 
@@ -43,20 +40,16 @@ import com.google.common.primitives.Ints;
 
 import static org.gbif.registry.directory.DirectoryRegistryMapping.findParticipantID;
 
+/** Augments the registry nodes with the data of the {@link DirectoryCache}. */
 @Service
 public class DirectoryAugmenterImpl implements Augmenter {
 
   private static final Logger LOG = LoggerFactory.getLogger(DirectoryAugmenterImpl.class);
 
-  private ParticipantService participantService;
-  private NodeService nodeService;
-  private PersonService personService;
+  private final DirectoryCache directoryCache;
 
-  public DirectoryAugmenterImpl(
-      ParticipantService participantService, NodeService nodeService, PersonService personService) {
-    this.participantService = participantService;
-    this.nodeService = nodeService;
-    this.personService = personService;
+  public DirectoryAugmenterImpl(DirectoryCache directoryCache) {
+    this.directoryCache = directoryCache;
   }
 
   @Override
@@ -65,14 +58,15 @@ public class DirectoryAugmenterImpl implements Augmenter {
       try {
         Integer participantID = findParticipantID(registryNode);
         if (participantID != null) {
-          Participant participant = participantService.get(participantID);
+          DirectorySnapshot directory = directoryCache.get();
+          Participant participant = directory.getParticipant(participantID);
           if (participant != null) {
             List<Contact> contacts = Lists.newArrayList();
             // update node with Directory info if it exists
             List<org.gbif.api.model.directory.Node> participantNodes =
-                getParticipantNodes(participant);
+                getParticipantNodes(directory, participant);
             registryNode.setParticipantTitle(participant.getName());
-            contacts.addAll(getContactsForParticipant(participant));
+            contacts.addAll(getContactsForParticipant(directory, participant));
 
             registryNode.setAbbreviation(participant.getAbbreviatedName());
             registryNode.setDescription(participant.getComments());
@@ -81,7 +75,7 @@ public class DirectoryAugmenterImpl implements Augmenter {
                   getParticipantSinceYear(participant.getMembershipStart()));
             }
             if (!participantNodes.isEmpty()) {
-              contacts.addAll(getContactsForNode(participantNodes));
+              contacts.addAll(getContactsForNode(directory, participantNodes));
               registryNode.setAddress(getNodesAddresses(participantNodes));
               registryNode.setHomepage(
                   Lists.newArrayList(getWebUrls(participant, participantNodes)));
@@ -111,11 +105,17 @@ public class DirectoryAugmenterImpl implements Augmenter {
   }
 
   /** Gets all the nodes associated to a participant. */
-  private List<org.gbif.api.model.directory.Node> getParticipantNodes(Participant participant) {
+  private List<org.gbif.api.model.directory.Node> getParticipantNodes(
+      DirectorySnapshot directory, Participant participant) {
     List<org.gbif.api.model.directory.Node> nodes = Lists.newArrayList();
     if (participant.getNodes() != null) {
       for (org.gbif.api.model.directory.Node node : participant.getNodes()) {
-        nodes.add(nodeService.get(node.getId()));
+        org.gbif.api.model.directory.Node directoryNode = directory.getNode(node.getId());
+        if (directoryNode != null) {
+          nodes.add(directoryNode);
+        } else {
+          LOG.debug("NodeId {} of participantId {} not found", node.getId(), participant.getId());
+        }
       }
     }
     return nodes;
@@ -180,14 +180,19 @@ public class DirectoryAugmenterImpl implements Augmenter {
   }
 
   /** Transforms the persons associated to a participant into a list of contacts. */
-  private List<Contact> getContactsForParticipant(Participant participant) {
+  private List<Contact> getContactsForParticipant(
+      DirectorySnapshot directory, Participant participant) {
     List<Contact> contacts = Lists.newArrayList();
     if (participant.getPeople() != null) {
       Person person;
       Contact contact;
       ContactType contactType;
       for (ParticipantPerson participantPerson : participant.getPeople()) {
-        person = personService.get(participantPerson.getPersonId());
+        person = directory.getPerson(participantPerson.getPersonId());
+        if (person == null) {
+          LOG.debug("PersonId {} not found", participantPerson.getPersonId());
+          continue;
+        }
         contactType = null;
         if (participantPerson.getRole() != null) {
           contactType =
@@ -206,7 +211,8 @@ public class DirectoryAugmenterImpl implements Augmenter {
    *
    * @param directoryNodes it theory it should never be more than one
    */
-  private List<Contact> getContactsForNode(List<org.gbif.api.model.directory.Node> directoryNodes) {
+  private List<Contact> getContactsForNode(
+      DirectorySnapshot directory, List<org.gbif.api.model.directory.Node> directoryNodes) {
     List<Contact> contacts = Lists.newArrayList();
     if (directoryNodes != null) {
       Person person;
@@ -215,7 +221,11 @@ public class DirectoryAugmenterImpl implements Augmenter {
       for (org.gbif.api.model.directory.Node currentNode : directoryNodes) {
         if (currentNode.getPeople() != null && !currentNode.getPeople().isEmpty()) {
           for (NodePerson nodePerson : currentNode.getPeople()) {
-            person = personService.get(nodePerson.getPersonId());
+            person = directory.getPerson(nodePerson.getPersonId());
+            if (person == null) {
+              LOG.debug("PersonId {} not found", nodePerson.getPersonId());
+              continue;
+            }
             contactType = null;
             if (nodePerson.getRole() != null) {
               contactType =
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.directory;
+
+import org.gbif.api.model.common.paging.PagingRequest;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.directory.Node;
+import org.gbif.api.model.directory.Participant;
+import org.gbif.api.model.directory.Person;
+import org.gbif.api.service.directory.NodeService;
+import org.gbif.api.service.directory.ParticipantService;
+import org.gbif.api.service.directory.PersonService;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keeps a {@link DirectorySnapshot} of all the participants, nodes and people of the Directory, so
+ * that augmenting a node doesn't call the Directory once per participant, node and person.
+ *
+ * <p>The snapshot is loaded in bulk on first use and reloaded every {@code
+ * directory.cache.refreshSeconds} afterwards, or on demand through {@link #refresh()}. When the
+ * Directory can't be reached the previous snapshot keeps being served. Until a first load
+ * succeeds, an empty snapshot is served and the load is retried on the next use.
+ */
+@Component
+public class DirectoryCache implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(DirectoryCache.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private final ParticipantService participantService;
+  private final NodeService nodeService;
+  private final PersonService personService;
+  private final long refreshSeconds;
+
+  private final ScheduledExecutorService scheduler;
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+
+  // null until the first load was attempted, empty until one succeeded
+  private volatile DirectorySnapshot snapshot;
+  private volatile long lastSuccess;
+  private volatile long attempts;
+
+  private volatile Timer refreshSuccess;
+  private volatile Timer refreshFailure;
+
+  public DirectoryCache(
+      ParticipantService participantService,
+      NodeService nodeService,
+      PersonService personService,
+      @Value("${directory.cache.refreshSeconds:600}") long refreshSeconds) {
+    this.participantService = participantService;
+    this.nodeService = nodeService;
+    this.personService = personService;
+    this.refreshSeconds = refreshSeconds;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder().setNameFormat("directory-cache-%d").setDaemon(true).build());
+  }
+
+  /** @return the current snapshot, empty if the Directory couldn't be loaded yet */
+  DirectorySnapshot get() {
+    DirectorySnapshot current = snapshot;
+    if (current == null || current == DirectorySnapshot.EMPTY) {
+      long attempt = attempts;
+      synchronized (this) {
+        // the callers that waited for a load share its result instead of trying again
+        if (attempts == attempt) {
+          refresh();
+        }
+        current = snapshot;
+      }
+      // refreshes start with the first use, so that instances that don't augment never call
+      if (refreshSeconds > 0 && scheduled.compareAndSet(false, true)) {
+        scheduler.scheduleWithFixedDelay(
+            this::refresh, refreshSeconds, refreshSeconds, TimeUnit.SECONDS);
+      }
+    }
+    return current;
+  }
+
+  /**
+   * Reloads the snapshot from the Directory, keeping the previous one if that fails.
+   *
+   * @return true if the snapshot was reloaded
+   */
+  public synchronized boolean refresh() {
+    attempts++;
+    long start = System.nanoTime();
+    try {
+      DirectorySnapshot loaded =
+          new DirectorySnapshot(
+              loadAll(participantService::list, Participant::getId),
+              loadAll(nodeService::list, Node::getId),
+              loadAll(personService::list, Person::getId));
+      snapshot = loaded;
+      lastSuccess = loaded.getLoaded();
+      record(refreshSuccess, start);
+      return true;
+    } catch (Exception e) {
+      LOG.warn("Failed to load the Directory, serving the data loaded before", e);
+      if (snapshot == null) {
+        snapshot = DirectorySnapshot.EMPTY;
+      }
+      record(refreshFailure, start);
+      return false;
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    refreshSuccess =
+        Timer.builder("registry.directory.refresh")
+            .tag("result", "success")
+            .description("Time taken to load the Directory snapshot")
+            .register(registry);
+    refreshFailure =
+        Timer.builder("registry.directory.refresh")
+            .tag("result", "failure")
+            .description("Time taken to load the Directory snapshot")
+            .register(registry);
+    Gauge.builder("registry.directory.staleness", this, DirectoryCache::staleness)
+        .description("Seconds since the Directory snapshot was last loaded")
+        .baseUnit("seconds")
+        .register(registry);
+  }
+
+  @VisibleForTesting
+  double staleness() {
+    long success = lastSuccess;
+    return success > 0
+        ? TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis() - success)
+        : Double.NaN;
+  }
+
+  private static <T> Map<Integer, T> loadAll(
+      BiFunction<String, PagingRequest, PagingResponse<T>> list, Function<T, Integer> id) {
+    Map<Integer, T> all = new HashMap<>();
+    PagingRequest page = new PagingRequest(0, PAGE_SIZE);
+    while (true) {
+      PagingResponse<T> response = list.apply(null, page);
+      List<T> results =
+          response.getResults() != null ? response.getResults() : Collections.<T>emptyList();
+      results.forEach(r -> all.put(id.apply(r), r));
+      if (results.size() < PAGE_SIZE || Boolean.TRUE.equals(response.isEndOfRecords())) {
+        return all;
+      }
+      page.nextPage();
+    }
+  }
+
+  private static void record(Timer timer, long start) {
+    if (timer != null) {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+}
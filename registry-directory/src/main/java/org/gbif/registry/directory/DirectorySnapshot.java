@@ -0,0 +1,61 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.directory;
+
+import org.gbif.api.model.directory.Node;
+import org.gbif.api.model.directory.Participant;
+import org.gbif.api.model.directory.Person;
+
+import java.util.Collections;
+import java.util.Map;
+
+/** The participants, nodes and people of the Directory by id, as loaded at a point in time. */
+class DirectorySnapshot {
+
+  static final DirectorySnapshot EMPTY =
+      new DirectorySnapshot(Collections.emptyMap(), Collections.emptyMap(), Collections.emptyMap());
+
+  private final Map<Integer, Participant> participants;
+  private final Map<Integer, Node> nodes;
+  private final Map<Integer, Person> people;
+  private final long loaded = System.currentTimeMillis();
+
+  DirectorySnapshot(
+      Map<Integer, Participant> participants,
+      Map<Integer, Node> nodes,
+      Map<Integer, Person> people) {
+    this.participants = participants;
+    this.nodes = nodes;
+    this.people = people;
+  }
+
+  Participant getParticipant(Integer id) {
+    return participants.get(id);
+  }
+
+  Node getNode(Integer id) {
+    return nodes.get(id);
+  }
+
+  Person getPerson(Integer id) {
+    return people.get(id);
+  }
+
+  /** @return when the snapshot was loaded, in milliseconds since the epoch */
+  long getLoaded() {
+    return loaded;
+  }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.directory;
+
+import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.common.paging.PagingResponse;
+import org.gbif.api.model.directory.NodePerson;
+import org.gbif.api.model.directory.Participant;
+import org.gbif.api.model.directory.ParticipantPerson;
+import org.gbif.api.model.directory.Person;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.Node;
+import org.gbif.api.service.directory.NodeService;
+import org.gbif.api.service.directory.ParticipantService;
+import org.gbif.api.service.directory.PersonService;
+import org.gbif.api.vocabulary.IdentifierType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests the {@link DirectoryAugmenterImpl} and its {@link DirectoryCache} on a stub Directory. */
+public class DirectoryAugmenterImplTest {
+
+  private ParticipantService participantService;
+  private NodeService nodeService;
+  private PersonService personService;
+  private DirectoryCache directoryCache;
+  private DirectoryAugmenterImpl augmenter;
+  private PagingResponse<Participant> participants;
+
+  @BeforeEach
+  public void setup() {
+    participantService = mock(ParticipantService.class);
+    nodeService = mock(NodeService.class);
+    personService = mock(PersonService.class);
+
+    Person person1 = new Person();
+    person1.setId(10);
+    person1.setFirstName("Jane");
+    person1.setSurname("Doe");
+    Person person2 = new Person();
+    person2.setId(11);
+    person2.setFirstName("John");
+    person2.setSurname("Roe");
+    person2.setEmail("john@example.org");
+
+    ParticipantPerson participantPerson = new ParticipantPerson();
+    participantPerson.setPersonId(10);
+    NodePerson nodePerson = new NodePerson();
+    nodePerson.setPersonId(11);
+
+    org.gbif.api.model.directory.Node node = new org.gbif.api.model.directory.Node();
+    node.setId(100);
+    node.setName("Node");
+    node.setEmail("node@example.org");
+    node.setPeople(Collections.singletonList(nodePerson));
+
+    org.gbif.api.model.directory.Node nodeRef = new org.gbif.api.model.directory.Node();
+    nodeRef.setId(100);
+    Participant participant = new Participant();
+    participant.setId(1);
+    participant.setName("Participant");
+    participant.setNodes(Collections.singletonList(nodeRef));
+    participant.setPeople(Collections.singletonList(participantPerson));
+
+    participants = response(Collections.singletonList(participant));
+    when(participantService.list(isNull(), any(Pageable.class))).thenReturn(participants);
+    when(nodeService.list(isNull(), any(Pageable.class)))
+        .thenReturn(response(Collections.singletonList(node)));
+    when(personService.list(isNull(), any(Pageable.class)))
+        .thenReturn(response(Arrays.asList(person1, person2)));
+
+    directoryCache = new DirectoryCache(participantService, nodeService, personService, 0);
+    augmenter = new DirectoryAugmenterImpl(directoryCache);
+  }
+
+  @Test
+  public void augmentFromSnapshotTest() {
+    Node first = augmenter.augment(newNode(1));
+    Node second = augmenter.augment(newNode(1));
+
+    assertEquals("Participant", first.getParticipantTitle());
+    assertEquals(2, first.getContacts().size());
+    assertEquals(Collections.singletonList("node@example.org"), first.getEmail());
+    assertEquals("Participant", second.getParticipantTitle());
+
+    // the Directory is loaded once in bulk, never entity by entity
+    verify(participantService, times(1)).list(isNull(), any(Pageable.class));
+    verify(personService, times(1)).list(isNull(), any(Pageable.class));
+    verify(participantService, never()).get(anyInt());
+    verify(nodeService, never()).get(anyInt());
+    verify(personService, never()).get(anyInt());
+  }
+
+  @Test
+  public void unknownParticipantTest() {
+    Node node = augmenter.augment(newNode(2));
+    assertNull(node.getParticipantTitle());
+  }
+
+  @Test
+  public void staleSnapshotServedWhenDirectoryIsDownTest() {
+    augmenter.augment(newNode(1));
+
+    when(participantService.list(isNull(), any(Pageable.class)))
+        .thenThrow(new IllegalStateException("Directory is down"));
+    assertFalse(directoryCache.refresh());
+
+    Node node = augmenter.augment(newNode(1));
+    assertEquals("Participant", node.getParticipantTitle());
+    assertTrue(directoryCache.staleness() >= 0);
+  }
+
+  @Test
+  public void failedFirstLoadRetriedTest() {
+    when(participantService.list(isNull(), any(Pageable.class)))
+        .thenThrow(new IllegalStateException("Directory is down"))
+        .thenReturn(participants);
+
+    // nothing to serve yet
+    Node node = augmenter.augment(newNode(1));
+    assertNull(node.getParticipantTitle());
+    assertTrue(Double.isNaN(directoryCache.staleness()));
+
+    // loaded on the next use, without waiting for a scheduled reload
+    node = augmenter.augment(newNode(1));
+    assertEquals("Participant", node.getParticipantTitle());
+    verify(participantService, times(2)).list(isNull(), any(Pageable.class));
+
+    // and not reloaded once it succeeded
+    augmenter.augment(newNode(1));
+    verify(participantService, times(2)).list(isNull(), any(Pageable.class));
+  }
+
+  private static Node newNode(int participantId) {
+    Node node = new Node();
+    node.setIdentifiers(
+        Collections.singletonList(
+            new Identifier(IdentifierType.GBIF_PARTICIPANT, String.valueOf(participantId))));
+    return node;
+  }
+
+  private static <T> PagingResponse<T> response(List<T> results) {
+    PagingResponse<T> response = new PagingResponse<>(0L, results.size(), (long) results.size());
+    response.setResults(results);
+    response.setEndOfRecords(true);
+    return response;
+  }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.doi.converter;
+
+import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
+import org.gbif.doi.metadata.datacite.DataCiteMetadata.RelatedIdentifiers;
+import org.gbif.doi.metadata.datacite.DataCiteMetadata.RelatedIdentifiers.RelatedIdentifier;
+import org.gbif.doi.metadata.datacite.RelatedIdentifierType;
+import org.gbif.doi.metadata.datacite.RelationType;
+import org.gbif.registry.doi.util.DataCiteConstants;
+
+import java.util.function.Consumer;
+
+import com.google.common.base.Strings;
+
+import static org.gbif.registry.doi.util.DataCiteConstants.DOWNLOAD_MAX_CONSTITUENTS;
+import static org.gbif.registry.doi.util.DataCiteConstants.LICENSE_INFO;
+
+/**
+ * Collects the dataset usages of a download into the parts of its DataCite metadata that list
+ * them.
+ *
+ * <p>Each of the first {@link DataCiteConstants#DOWNLOAD_MAX_CONSTITUENTS} usages adds a line to
+ * the description and a related identifier. The others are only counted. Usages are accepted one
+ * by one and not kept, so they can be read from a cursor whatever the number of datasets.
+ *
+ * <p>An instance collects the usages of one download and isn't thread-safe.
+ */
+public class DownloadConstituents implements Consumer<DatasetOccurrenceDownloadUsage> {
+
+  private final int maxConstituents;
+  private final StringBuilder description = new StringBuilder();
+  private final RelatedIdentifiers.Builder<Void> relatedIdentifiers = RelatedIdentifiers.builder();
+  private int usages;
+  private int described;
+  private int related;
+
+  public DownloadConstituents() {
+    this(DOWNLOAD_MAX_CONSTITUENTS);
+  }
+
+  DownloadConstituents(int maxConstituents) {
+    this.maxConstituents = maxConstituents;
+  }
+
+  @Override
+  public void accept(DatasetOccurrenceDownloadUsage du) {
+    usages++;
+    if (!Strings.isNullOrEmpty(du.getDatasetTitle()) && described < maxConstituents) {
+      description
+          .append(" ")
+          .append(du.getNumberRecords())
+          .append(" records from ")
+          .append(du.getDatasetTitle())
+          .append(".\n");
+      described++;
+    }
+    if (du.getDatasetDOI() != null && related < maxConstituents) {
+      relatedIdentifiers.addRelatedIdentifier(
+          RelatedIdentifier.builder()
+              .withRelationType(RelationType.REFERENCES)
+              .withValue(du.getDatasetDOI().getDoiName())
+              .withRelatedIdentifierType(RelatedIdentifierType.DOI)
+              .build());
+      related++;
+    }
+  }
+
+  /** Number of usages accepted, including those left out of the metadata. */
+  public int getUsages() {
+    return usages;
+  }
+
+  /**
+   * The part of the description listing the datasets, pointing to the landing page for the full
+   * list if some were left out.
+   */
+  String getDescription(String landingPage) {
+    if (usages == 0) {
+      return "";
+    }
+    StringBuilder result = new StringBuilder(description);
+    if (usages > maxConstituents) {
+      result.append(
+          String.format(
+              " Please see %s for full list of all %d constituents.\n", landingPage, usages));
+    }
+    return result.append("\n").append(LICENSE_INFO).toString();
+  }
+
+  RelatedIdentifiers getRelatedIdentifiers() {
+    return relatedIdentifiers.build();
+  }
+}
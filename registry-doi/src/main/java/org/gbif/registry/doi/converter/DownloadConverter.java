@@ -33,8 +33,6 @@ import org.gbif.doi.metadata.datacite.DataCiteMetadata.Descriptions.Description;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.Formats;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.Identifier;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.Publisher;
-import org.gbif.doi.metadata.datacite.DataCiteMetadata.RelatedIdentifiers;
-import org.gbif.doi.metadata.datacite.DataCiteMetadata.RelatedIdentifiers.RelatedIdentifier;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.RightsList;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.RightsList.Rights;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata.Sizes;
@@ -43,8 +41,6 @@ import org.gbif.doi.metadata.datacite.DataCiteMetadata.Titles.Title;
 import org.gbif.doi.metadata.datacite.DateType;
 import org.gbif.doi.metadata.datacite.DescriptionType;
 import org.gbif.doi.metadata.datacite.NameType;
-import org.gbif.doi.metadata.datacite.RelatedIdentifierType;
-import org.gbif.doi.metadata.datacite.RelationType;
 import org.gbif.doi.metadata.datacite.ResourceType;
 import org.gbif.doi.service.InvalidMetadataException;
 import org.gbif.doi.service.datacite.DataCiteValidator;
@@ -60,14 +56,12 @@ import org.apache.commons.lang3.StringUtils;
 
 import com.google.common.base.Joiner;
 import com.google.common.base.Preconditions;
-import com.google.common.base.Strings;
 
 import static org.gbif.registry.doi.util.DataCiteConstants.DEFAULT_DOWNLOAD_LICENSE;
 import static org.gbif.registry.doi.util.DataCiteConstants.DOWNLOAD_TITLE;
 import static org.gbif.registry.doi.util.DataCiteConstants.DWCA_FORMAT;
 import static org.gbif.registry.doi.util.DataCiteConstants.ENGLISH;
 import static org.gbif.registry.doi.util.DataCiteConstants.GBIF_PUBLISHER;
-import static org.gbif.registry.doi.util.DataCiteConstants.LICENSE_INFO;
 import static org.gbif.registry.doi.util.RegistryDoiUtils.fdate;
 import static org.gbif.registry.doi.util.RegistryDoiUtils.getYear;
 
@@ -81,6 +75,20 @@ public final class DownloadConverter {
       GbifUser creator,
       List<DatasetOccurrenceDownloadUsage> usedDatasets,
       TitleLookupService titleLookup) {
+    DownloadConstituents constituents = new DownloadConstituents();
+    usedDatasets.forEach(constituents);
+    return convert(download, creator, constituents, titleLookup);
+  }
+
+  /**
+   * Convert a download and the constituents collected from its dataset usages into a datacite
+   * metadata instance.
+   */
+  public static DataCiteMetadata convert(
+      Download download,
+      GbifUser creator,
+      DownloadConstituents constituents,
+      TitleLookupService titleLookup) {
     Preconditions.checkNotNull(
         download.getDoi(), "Download DOI required to build valid DOI metadata");
     Preconditions.checkNotNull(
@@ -101,9 +109,9 @@ public final class DownloadConverter {
 
     // Optional and recommended fields
     convertDates(builder, download);
-    convertDescriptions(builder, download, usedDatasets, titleLookup);
+    convertDescriptions(builder, download, constituents, titleLookup);
     convertAlternateIdentifiers(builder, download);
-    convertRelatedIdentifiers(builder, usedDatasets);
+    convertRelatedIdentifiers(builder, constituents);
     convertRightsList(builder, download);
     convertSubjects(builder);
     convertFormats(builder);
@@ -137,9 +145,8 @@ public final class DownloadConverter {
   }
 
   private static void convertRelatedIdentifiers(
-      DataCiteMetadata.Builder<Void> builder, List<DatasetOccurrenceDownloadUsage> usedDatasets) {
-    builder.withRelatedIdentifiers(
-        getRelatedIdentifiersDatasetOccurrenceDownloadUsage(usedDatasets));
+      DataCiteMetadata.Builder<Void> builder, DownloadConstituents constituents) {
+    builder.withRelatedIdentifiers(constituents.getRelatedIdentifiers());
   }
 
   private static void convertAlternateIdentifiers(
@@ -178,7 +185,7 @@ public final class DownloadConverter {
   private static void convertDescriptions(
       DataCiteMetadata.Builder<Void> builder,
       Download download,
-      List<DatasetOccurrenceDownloadUsage> usedDatasets,
+      DownloadConstituents constituents,
       TitleLookupService titleLookup) {
     builder.withDescriptions(
         Descriptions.builder()
@@ -194,7 +201,7 @@ public final class DownloadConverter {
                         String.format(
                             "The dataset includes %s records from %s constituent datasets:\n",
                             download.getTotalRecords(), download.getNumberDatasets()))
-                    .addContent(getDescriptionDatasetOccurrenceDownloadUsage(usedDatasets))
+                    .addContent(constituents.getDescription(download.getDoi().getUrl().toString()))
                     .build())
             .build());
   }
@@ -303,47 +310,6 @@ public final class DownloadConverter {
     return DataCiteValidator.toXml(doi, dm);
   }
 
-  private static String getDescriptionDatasetOccurrenceDownloadUsage(
-      List<DatasetOccurrenceDownloadUsage> usedDatasets) {
-    final StringBuilder result = new StringBuilder();
-
-    if (!usedDatasets.isEmpty()) {
-      for (DatasetOccurrenceDownloadUsage du : usedDatasets) {
-        if (!Strings.isNullOrEmpty(du.getDatasetTitle())) {
-          result
-              .append(" ")
-              .append(du.getNumberRecords())
-              .append(" records from ")
-              .append(du.getDatasetTitle())
-              .append(".\n");
-        }
-      }
-      result.append("\n");
-      result.append(LICENSE_INFO);
-    }
-
-    return result.toString();
-  }
-
-  private static RelatedIdentifiers getRelatedIdentifiersDatasetOccurrenceDownloadUsage(
-      List<DatasetOccurrenceDownloadUsage> usedDatasets) {
-    final RelatedIdentifiers.Builder relatedIdentifiersBuilder = RelatedIdentifiers.builder();
-    if (!usedDatasets.isEmpty()) {
-      for (DatasetOccurrenceDownloadUsage du : usedDatasets) {
-        if (du.getDatasetDOI() != null) {
-          relatedIdentifiersBuilder.addRelatedIdentifier(
-              RelatedIdentifier.builder()
-                  .withRelationType(RelationType.REFERENCES)
-                  .withValue(du.getDatasetDOI().getDoiName())
-                  .withRelatedIdentifierType(RelatedIdentifierType.DOI)
-                  .build());
-        }
-      }
-    }
-
-    return relatedIdentifiersBuilder.build();
-  }
-
   /**
    * Tries to get the human readable version of the download query, if fails returns the raw query.
    */
@@ -17,12 +17,9 @@ package org.gbif.registry.doi.handler;
 
 import org.gbif.api.model.common.DOI;
 import org.gbif.api.model.common.GbifUser;
-import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.registry.Dataset;
-import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
 import org.gbif.api.model.registry.Organization;
-import org.gbif.api.service.registry.OccurrenceDownloadService;
 import org.gbif.doi.metadata.datacite.DataCiteMetadata;
 import org.gbif.doi.metadata.datacite.RelatedIdentifierType;
 import org.gbif.doi.metadata.datacite.RelationType;
@@ -30,8 +27,10 @@ import org.gbif.doi.service.InvalidMetadataException;
 import org.gbif.occurrence.query.TitleLookupService;
 import org.gbif.registry.doi.config.DoiConfigurationProperties;
 import org.gbif.registry.doi.converter.DatasetConverter;
+import org.gbif.registry.doi.converter.DownloadConstituents;
 import org.gbif.registry.doi.converter.DownloadConverter;
 import org.gbif.registry.doi.generator.DoiGenerator;
+import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 
 import java.util.EnumSet;
@@ -44,11 +43,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.Marker;
 import org.slf4j.MarkerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
 
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Lists;
 
 /** GBIF Business logic for DOI handling with DataCite in the Registry. */
 @Service
@@ -58,15 +55,12 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
   private static final Logger LOG = LoggerFactory.getLogger(GbifDataCiteDoiHandlerStrategy.class);
   private static final Marker DOI_SMTP = MarkerFactory.getMarker("DOI_SMTP");
 
-  // Page size to iterate over dataset usages
-  private static final int USAGES_PAGE_SIZE = 400;
-
   private static final EnumSet<Download.Status> FAILED_STATES =
       EnumSet.of(Download.Status.KILLED, Download.Status.CANCELLED, Download.Status.FAILED);
 
   private final DoiGenerator doiGenerator;
   private final OrganizationMapper organizationMapper;
-  private final OccurrenceDownloadService occurrenceDownloadService;
+  private final DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper;
   private final TitleLookupService titleLookupService;
 
   // Used to exclude constituents of selected datasets (e.g. GBIF Backbone Taxonomy)
@@ -75,12 +69,12 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
   public GbifDataCiteDoiHandlerStrategy(
       DoiGenerator doiGenerator,
       OrganizationMapper organizationMapper,
-      @Qualifier("occurrenceDownloadResource") OccurrenceDownloadService occurrenceDownloadService,
+      DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper,
       TitleLookupService titleLookupService,
       DoiConfigurationProperties doiConfigProperties) {
     this.doiGenerator = doiGenerator;
     this.organizationMapper = organizationMapper;
-    this.occurrenceDownloadService = occurrenceDownloadService;
+    this.datasetOccurrenceDownloadMapper = datasetOccurrenceDownloadMapper;
     this.titleLookupService = titleLookupService;
     this.parentDatasetExcludeList = doiConfigProperties.getDatasetParentExcludeList();
   }
@@ -92,20 +86,13 @@ public class GbifDataCiteDoiHandlerStrategy implements DataCiteDoiHandlerStrateg
 
   @Override
   public DataCiteMetadata buildMetadata(Download download, GbifUser user) {
-    List<DatasetOccurrenceDownloadUsage> response = null;
-    List<DatasetOccurrenceDownloadUsage> usages = Lists.newArrayList();
-    PagingRequest pagingRequest = new PagingRequest(0, USAGES_PAGE_SIZE);
-
-    while (response == null || !response.isEmpty()) {
-      response =
-          occurrenceDownloadService
-              .listDatasetUsages(download.getKey(), pagingRequest)
-              .getResults();
-      usages.addAll(response);
-      pagingRequest.nextPage();
-    }
+    // the usages are read one by one, keeping only what goes into the metadata
+    DownloadConstituents constituents = new DownloadConstituents();
+    datasetOccurrenceDownloadMapper.listConstituentsByDownload(
+        download.getKey(), context -> constituents.accept(context.getResultObject()));
+    LOG.debug("Read {} dataset usages of download {}", constituents.getUsages(), download.getKey());
 
-    return DownloadConverter.convert(download, user, usages, titleLookupService);
+    return DownloadConverter.convert(download, user, constituents, titleLookupService);
   }
 
   @Override
@@ -32,4 +32,7 @@ public final class DataCiteConstants {
       "Data from some individual datasets included in this download may be licensed under less restrictive terms.";
   public static final String ENGLISH = Language.ENGLISH.getIso3LetterCode();
   public static final String DWCA_FORMAT = "Darwin Core Archive";
+  // Maximum number of datasets of a download listed in its metadata.
+  // DataCite rejects the documents of the largest downloads, whose landing pages list them all.
+  public static final int DOWNLOAD_MAX_CONSTITUENTS = 10000;
 }
@@ -73,6 +73,29 @@ public class DownloadConverterTest {
     verify(tl, atLeastOnce()).getSpeciesName(anyString());
   }
 
+  @Test
+  public void testConvertDownloadCapsConstituents() throws Exception {
+    // given
+    Download download = prepareDownload();
+    DownloadConstituents constituents = new DownloadConstituents(1);
+    constituents.accept(prepareDatasetOccurrenceDownloadUsage1());
+    constituents.accept(prepareDatasetOccurrenceDownloadUsage2());
+
+    // when
+    DataCiteMetadata metadata =
+        DownloadConverter.convert(
+            download, prepareUser(), constituents, mock(TitleLookupService.class));
+    String actualXmlMetadata = DataCiteValidator.toXml(download.getDoi(), metadata);
+
+    // then
+    assertEquals(2, constituents.getUsages());
+    assertEquals(1, metadata.getRelatedIdentifiers().getRelatedIdentifier().size());
+    assertTrue(actualXmlMetadata.contains("10.1234/5679"));
+    assertFalse(actualXmlMetadata.contains("10.1234/klimbim"));
+    assertFalse(actualXmlMetadata.contains("my title #2"));
+    assertTrue(actualXmlMetadata.contains("for full list of all 2 constituents"));
+  }
+
   @Test
   public void testTruncateDescription() throws Exception {
     // given
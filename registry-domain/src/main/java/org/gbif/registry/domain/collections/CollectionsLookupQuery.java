@@ -0,0 +1,70 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.collections;
+
+/**
+ * The institution and collection codes and identifiers of a record, as sent to resolve many of them
+ * to GrSciColl entities at once.
+ */
+public class CollectionsLookupQuery {
+
+  private String institutionCode;
+  private String institutionId;
+  private String collectionCode;
+  private String collectionId;
+
+  public CollectionsLookupQuery() {}
+
+  public CollectionsLookupQuery(
+      String institutionCode, String institutionId, String collectionCode, String collectionId) {
+    this.institutionCode = institutionCode;
+    this.institutionId = institutionId;
+    this.collectionCode = collectionCode;
+    this.collectionId = collectionId;
+  }
+
+  public String getInstitutionCode() {
+    return institutionCode;
+  }
+
+  public void setInstitutionCode(String institutionCode) {
+    this.institutionCode = institutionCode;
+  }
+
+  public String getInstitutionId() {
+    return institutionId;
+  }
+
+  public void setInstitutionId(String institutionId) {
+    this.institutionId = institutionId;
+  }
+
+  public String getCollectionCode() {
+    return collectionCode;
+  }
+
+  public void setCollectionCode(String collectionCode) {
+    this.collectionCode = collectionCode;
+  }
+
+  public String getCollectionId() {
+    return collectionId;
+  }
+
+  public void setCollectionId(String collectionId) {
+    this.collectionId = collectionId;
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.collections;
+
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The institutions and collections that match a {@link CollectionsLookupQuery}. Both lists are
+ * empty when nothing matches, and hold more than one entity when the query is ambiguous.
+ */
+public class CollectionsLookupResult {
+
+  private List<KeyCodeNameResult> institutions = new ArrayList<>();
+  private List<KeyCodeNameResult> collections = new ArrayList<>();
+
+  public CollectionsLookupResult() {}
+
+  public CollectionsLookupResult(
+      List<KeyCodeNameResult> institutions, List<KeyCodeNameResult> collections) {
+    this.institutions = institutions;
+    this.collections = collections;
+  }
+
+  public List<KeyCodeNameResult> getInstitutions() {
+    return institutions;
+  }
+
+  public void setInstitutions(List<KeyCodeNameResult> institutions) {
+    this.institutions = institutions;
+  }
+
+  public List<KeyCodeNameResult> getCollections() {
+    return collections;
+  }
+
+  public void setCollections(List<KeyCodeNameResult> collections) {
+    this.collections = collections;
+  }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.domain.pipelines;
+
+import org.gbif.api.model.pipelines.PipelineStep;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/** Status and metrics of a {@link PipelineStep}, as sent to update many steps at once. */
+public class PipelineStepStatusUpdate {
+
+  private long processKey;
+  private long executionKey;
+  private long stepKey;
+  private PipelineStep.Status status;
+  private List<PipelineStep.MetricInfo> metrics = new ArrayList<>();
+
+  public PipelineStepStatusUpdate() {}
+
+  public PipelineStepStatusUpdate(
+      long processKey,
+      long executionKey,
+      long stepKey,
+      PipelineStep.Status status,
+      List<PipelineStep.MetricInfo> metrics) {
+    this.processKey = processKey;
+    this.executionKey = executionKey;
+    this.stepKey = stepKey;
+    this.status = status;
+    this.metrics = metrics;
+  }
+
+  public long getProcessKey() {
+    return processKey;
+  }
+
+  public void setProcessKey(long processKey) {
+    this.processKey = processKey;
+  }
+
+  public long getExecutionKey() {
+    return executionKey;
+  }
+
+  public void setExecutionKey(long executionKey) {
+    this.executionKey = executionKey;
+  }
+
+  public long getStepKey() {
+    return stepKey;
+  }
+
+  public void setStepKey(long stepKey) {
+    this.stepKey = stepKey;
+  }
+
+  public PipelineStep.Status getStatus() {
+    return status;
+  }
+
+  public void setStatus(PipelineStep.Status status) {
+    this.status = status;
+  }
+
+  public List<PipelineStep.MetricInfo> getMetrics() {
+    return metrics;
+  }
+
+  public void setMetrics(List<PipelineStep.MetricInfo> metrics) {
+    this.metrics = metrics;
+  }
+}
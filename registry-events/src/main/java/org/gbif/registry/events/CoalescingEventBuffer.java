@@ -0,0 +1,80 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.NetworkEntity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the events posted during a unit of work and reduces them to one net change per entity:
+ * the updates of an entity are merged into its creation or into a single update from the first old
+ * object to the last new one, a deletion replaces the previous changes of the entity, and the same
+ * component change of an entity is only kept once. Other events are kept as they are. The events
+ * are returned in the order each change was first seen.
+ */
+class CoalescingEventBuffer {
+
+  private final Map<Object, Object> events = new LinkedHashMap<>();
+
+  @SuppressWarnings({"unchecked", "rawtypes"})
+  void add(Object event) {
+    if (event instanceof CreateEvent) {
+      CreateEvent<?> create = (CreateEvent<?>) event;
+      events.put(entityKey(create.getObjectClass(), create.getNewObject()), event);
+    } else if (event instanceof UpdateEvent) {
+      UpdateEvent update = (UpdateEvent) event;
+      Object key = entityKey(update.getObjectClass(), update.getOldObject());
+      Object previous = events.get(key);
+      if (previous instanceof CreateEvent) {
+        events.put(key, CreateEvent.newInstance(update.getNewObject(), update.getObjectClass()));
+      } else if (previous instanceof UpdateEvent) {
+        events.put(
+            key,
+            UpdateEvent.newInstance(
+                update.getNewObject(),
+                ((UpdateEvent) previous).getOldObject(),
+                update.getObjectClass()));
+      } else {
+        events.put(key, event);
+      }
+    } else if (event instanceof DeleteEvent) {
+      DeleteEvent<?> delete = (DeleteEvent<?>) event;
+      events.put(entityKey(delete.getObjectClass(), delete.getOldObject()), event);
+    } else if (event instanceof ChangedComponentEvent) {
+      ChangedComponentEvent change = (ChangedComponentEvent) event;
+      events.putIfAbsent(
+          Arrays.asList(
+              change.getTargetClass(), change.getTargetEntityKey(), change.getComponentClass()),
+          event);
+    } else {
+      events.put(new Object(), event);
+    }
+  }
+
+  /** The coalesced events. */
+  List<Object> events() {
+    return new ArrayList<>(events.values());
+  }
+
+  private static Object entityKey(Class<?> objectClass, NetworkEntity entity) {
+    return Arrays.asList(objectClass, entity.getKey());
+  }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import org.springframework.stereotype.Service;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Drops the cached, parsed metadata documents of datasets that are updated or deleted, so they are
+ * read again from the database on the next request. Rendered EML documents are also dropped when
+ * any of the dataset components change.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Service
+public class DatasetMetadataCacheListener {
+
+  private final RegistryDatasetService registryDatasetService;
+
+  public DatasetMetadataCacheListener(
+      RegistryDatasetService registryDatasetService, EventManager eventManager) {
+    this.registryDatasetService = registryDatasetService;
+    eventManager.registerSynchronous(this);
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      registryDatasetService.evictMetadataOfDataset(event.getNewObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      registryDatasetService.evictMetadataOfDataset(event.getOldObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final void updatedComponent(ChangedComponentEvent event) {
+    if (event.getTargetClass().equals(Dataset.class)) {
+      registryDatasetService.evictDocument(event.getTargetEntityKey());
+    }
+  }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.registry.pipelines.RegistryPipelinesHistoryTrackingService;
+
+import org.springframework.stereotype.Service;
+
+import com.google.common.eventbus.Subscribe;
+
+/** Drops the cached titles shown in the pipelines history of datasets that are updated. */
+@SuppressWarnings("UnstableApiUsage")
+@Service
+public class DatasetTitleCacheListener {
+
+  private final RegistryPipelinesHistoryTrackingService historyTrackingService;
+
+  public DatasetTitleCacheListener(
+      RegistryPipelinesHistoryTrackingService historyTrackingService, EventManager eventManager) {
+    this.historyTrackingService = historyTrackingService;
+    eventManager.registerSynchronous(this);
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      historyTrackingService.evictDatasetTitle(event.getNewObject().getKey());
+    }
+  }
+}
@@ -21,5 +21,18 @@ public interface EventManager {
 
   void register(Object object);
 
+  /**
+   * Registers a listener that always handles the events on the posting thread, even in async mode.
+   * Meant for listeners evicting caches, so a read right after a write never sees stale data.
+   */
+  void registerSynchronous(Object object);
+
   void unregister(Object object);
+
+  /**
+   * Holds back the events posted by the current thread until the current transaction completes.
+   * Once it commits they are posted coalesced into one net change per entity, if it rolls back they
+   * are discarded. Does nothing when there is no transaction or the events are already held back.
+   */
+  void coalesceUntilTransactionEnd();
 }
@@ -15,31 +15,334 @@
  */
 package org.gbif.registry.events;
 
+import org.gbif.registry.events.collections.ChangedCollectionEntityComponentEvent;
+import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
+import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
+import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronizationAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import com.google.common.eventbus.EventBus;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Posts events to the registered listeners, either synchronously on the posting thread or, in async
+ * mode, on executors dedicated to each listener.
+ *
+ * <p>In async mode every listener has a few single threaded lanes, and the events of an entity
+ * always go through the same lane so a listener sees them in order. When a lane queue is full the
+ * overflow policy decides: the posting thread runs the listener itself (CALLER_RUNS, which gives up
+ * the ordering guarantee for that event), waits for room (BLOCK) or the event is dropped for that
+ * listener (DISCARD). Waiting for room is bounded, and once the manager is closed the events are
+ * no longer accepted by the lanes.
+ *
+ * <p>Listeners registered with {@link #registerSynchronous(Object)}, such as the cache evictions,
+ * always handle the events on the posting thread.
+ *
+ * <p>The events of a transaction can be held back until it commits and coalesced with {@link
+ * #coalesceUntilTransactionEnd()}, so composite operations produce one change per entity.
+ */
 @Service
-public class EventManagerImpl implements EventManager {
+public class EventManagerImpl implements EventManager, MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(EventManagerImpl.class);
+
+  // how long the BLOCK policy waits for room in a lane before dropping the event
+  private static final long BLOCK_TIMEOUT_MILLIS = 30_000;
+
+  // how long closing waits for the lanes to deliver the queued events
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
 
+  public enum OverflowPolicy {
+    CALLER_RUNS,
+    BLOCK,
+    DISCARD
+  }
+
+  // the synchronous listeners, which are all of them unless in async mode
   private EventBus eventBus;
 
-  public EventManagerImpl(EventBus eventBus) {
+  private final boolean async;
+  private final int lanesPerListener;
+  private final int queueSize;
+  private final OverflowPolicy overflowPolicy;
+
+  private final Map<Object, ListenerDispatcher> dispatchers = new ConcurrentHashMap<>();
+  private volatile MeterRegistry meterRegistry;
+
+  // events held back by the current thread until its transaction completes
+  private final ThreadLocal<CoalescingEventBuffer> heldBack = new ThreadLocal<>();
+
+  public EventManagerImpl(
+      EventBus eventBus,
+      @Value("${registry.events.async:false}") boolean async,
+      @Value("${registry.events.lanesPerListener:2}") int lanesPerListener,
+      @Value("${registry.events.queueSize:1000}") int queueSize,
+      @Value("${registry.events.overflowPolicy:CALLER_RUNS}") OverflowPolicy overflowPolicy) {
     this.eventBus = eventBus;
+    this.async = async;
+    this.lanesPerListener = lanesPerListener;
+    this.queueSize = queueSize;
+    this.overflowPolicy = overflowPolicy;
   }
 
   @Override
   public void post(Object object) {
+    CoalescingEventBuffer buffer = heldBack.get();
+    if (buffer != null) {
+      buffer.add(object);
+    } else {
+      dispatch(object);
+    }
+  }
+
+  @Override
+  public void coalesceUntilTransactionEnd() {
+    if (heldBack.get() != null || !TransactionSynchronizationManager.isSynchronizationActive()) {
+      return;
+    }
+    CoalescingEventBuffer buffer = new CoalescingEventBuffer();
+    heldBack.set(buffer);
+    TransactionSynchronizationManager.registerSynchronization(
+        new TransactionSynchronizationAdapter() {
+          // a transaction started while this one is suspended posts its own events
+          @Override
+          public void suspend() {
+            heldBack.remove();
+          }
+
+          @Override
+          public void resume() {
+            heldBack.set(buffer);
+          }
+
+          @Override
+          public void afterCompletion(int status) {
+            heldBack.remove();
+            if (status == STATUS_COMMITTED) {
+              buffer.events().forEach(EventManagerImpl.this::dispatch);
+            } else {
+              LOG.debug("Transaction not committed, its events are discarded");
+            }
+          }
+        });
+  }
+
+  private void dispatch(Object object) {
     eventBus.post(object);
+    if (async) {
+      Object key = entityKey(object);
+      dispatchers.values().forEach(dispatcher -> dispatcher.dispatch(key, object));
+    }
+  }
+
+  @Override
+  public synchronized void register(Object object) {
+    if (!async) {
+      eventBus.register(object);
+      return;
+    }
+    ListenerDispatcher dispatcher = new ListenerDispatcher(object);
+    dispatchers.put(object, dispatcher);
+    MeterRegistry registry = meterRegistry;
+    if (registry != null) {
+      dispatcher.bindTo(registry);
+    }
   }
 
   @Override
-  public void register(Object object) {
+  public void registerSynchronous(Object object) {
     eventBus.register(object);
   }
 
   @Override
-  public void unregister(Object object) {
-    eventBus.unregister(object);
+  public synchronized void unregister(Object object) {
+    ListenerDispatcher dispatcher = dispatchers.remove(object);
+    if (dispatcher != null) {
+      dispatcher.shutdown();
+    } else {
+      eventBus.unregister(object);
+    }
+  }
+
+  /** Stops the lanes of all listeners, waiting a bounded time for the queued events. */
+  @PreDestroy
+  public synchronized void close() {
+    dispatchers.values().forEach(ListenerDispatcher::shutdown);
+    long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+    try {
+      for (ListenerDispatcher dispatcher : dispatchers.values()) {
+        if (!dispatcher.awaitTermination(deadline - System.currentTimeMillis())) {
+          LOG.warn("Events still queued for {} on shutdown", dispatcher.name);
+        }
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  @Override
+  public synchronized void bindTo(MeterRegistry registry) {
+    meterRegistry = registry;
+    dispatchers.values().forEach(dispatcher -> dispatcher.bindTo(registry));
+  }
+
+  /** The key of the entity the event is about, used to keep the events of an entity in order. */
+  private static Object entityKey(Object event) {
+    if (event instanceof CreateEvent) {
+      return ((CreateEvent<?>) event).getNewObject().getKey();
+    } else if (event instanceof UpdateEvent) {
+      return ((UpdateEvent<?>) event).getOldObject().getKey();
+    } else if (event instanceof DeleteEvent) {
+      return ((DeleteEvent<?>) event).getOldObject().getKey();
+    } else if (event instanceof ChangedComponentEvent) {
+      return ((ChangedComponentEvent) event).getTargetEntityKey();
+    } else if (event instanceof CreateCollectionEntityEvent) {
+      return ((CreateCollectionEntityEvent<?>) event).getNewObject().getKey();
+    } else if (event instanceof UpdateCollectionEntityEvent) {
+      return ((UpdateCollectionEntityEvent<?>) event).getOldObject().getKey();
+    } else if (event instanceof DeleteCollectionEntityEvent) {
+      return ((DeleteCollectionEntityEvent<?>) event).getOldObject().getKey();
+    } else if (event instanceof ChangedCollectionEntityComponentEvent) {
+      return ((ChangedCollectionEntityComponentEvent) event).getTargetEntityKey();
+    }
+    return event.getClass();
+  }
+
+  /** Delivers events to a single listener, through its own event bus and lanes. */
+  private class ListenerDispatcher {
+
+    private final String name;
+    // resolves the subscriber methods of the listener for each event
+    private final EventBus listenerBus;
+    private final ThreadPoolExecutor[] lanes;
+    private final AtomicLong discarded = new AtomicLong();
+    private volatile Timer latency;
+
+    private ListenerDispatcher(Object listener) {
+      this.name = listener.getClass().getSimpleName();
+      this.listenerBus = new EventBus(name);
+      listenerBus.register(listener);
+      this.lanes = new ThreadPoolExecutor[lanesPerListener];
+      for (int i = 0; i < lanesPerListener; i++) {
+        lanes[i] =
+            new ThreadPoolExecutor(
+                1,
+                1,
+                0L,
+                TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                new ThreadFactoryBuilder()
+                    .setNameFormat("event-" + name + "-" + i)
+                    .setDaemon(true)
+                    .build(),
+                rejectionHandler());
+      }
+    }
+
+    private RejectedExecutionHandler rejectionHandler() {
+      switch (overflowPolicy) {
+        case BLOCK:
+          return (task, executor) -> {
+            try {
+              if (executor.isShutdown()) {
+                discard("the listener is shut down");
+              } else if (!executor
+                  .getQueue()
+                  .offer(task, BLOCK_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                discard("the queue stayed full");
+              } else if (executor.isShutdown() && executor.getQueue().remove(task)) {
+                // shut down while waiting, the task would never run
+                discard("the listener is shut down");
+              }
+            } catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+              discard("the posting thread was interrupted");
+            }
+          };
+        case DISCARD:
+          return (task, executor) -> discard("the queue is full");
+        default:
+          return new ThreadPoolExecutor.CallerRunsPolicy();
+      }
+    }
+
+    private void discard(String reason) {
+      discarded.incrementAndGet();
+      LOG.warn("Event for {} discarded, {}", name, reason);
+    }
+
+    private void dispatch(Object key, Object event) {
+      long posted = System.nanoTime();
+      lanes[Math.floorMod(Objects.hashCode(key), lanes.length)].execute(
+          () -> {
+            listenerBus.post(event);
+            Timer timer = latency;
+            if (timer != null) {
+              timer.record(System.nanoTime() - posted, TimeUnit.NANOSECONDS);
+            }
+          });
+    }
+
+    private int queued() {
+      int queued = 0;
+      for (ThreadPoolExecutor lane : lanes) {
+        queued += lane.getQueue().size();
+      }
+      return queued;
+    }
+
+    private void bindTo(MeterRegistry registry) {
+      Gauge.builder("registry.events.queue", this, ListenerDispatcher::queued)
+          .tag("listener", name)
+          .description("Events waiting to be delivered to the listener")
+          .register(registry);
+      FunctionCounter.builder("registry.events.discarded", discarded, AtomicLong::get)
+          .tag("listener", name)
+          .description("Events dropped because the listener queue was full")
+          .register(registry);
+      latency =
+          Timer.builder("registry.events.latency")
+              .tag("listener", name)
+              .description("Time from posting an event to the end of its handling by the listener")
+              .register(registry);
+    }
+
+    private void shutdown() {
+      for (ThreadPoolExecutor lane : lanes) {
+        lane.shutdown();
+      }
+    }
+
+    private boolean awaitTermination(long timeoutMillis) throws InterruptedException {
+      for (ThreadPoolExecutor lane : lanes) {
+        if (!lane.awaitTermination(Math.max(0, timeoutMillis), TimeUnit.MILLISECONDS)) {
+          return false;
+        }
+      }
+      return true;
+    }
   }
 }
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.registry.oaipmh.OaipmhItemRepository;
+
+import org.springframework.stereotype.Service;
+
+import com.google.common.eventbus.Subscribe;
+
+/**
+ * Drops the rendered OAI-PMH records of datasets that are updated, deleted or have their components
+ * changed. The update of an organization drops all records, as they include the publisher.
+ */
+@SuppressWarnings("UnstableApiUsage")
+@Service
+public class OaipmhRecordCacheListener {
+
+  private final OaipmhItemRepository itemRepository;
+
+  public OaipmhRecordCacheListener(OaipmhItemRepository itemRepository, EventManager eventManager) {
+    this.itemRepository = itemRepository;
+    eventManager.registerSynchronous(this);
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void updated(UpdateEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      itemRepository.evictRecord(event.getNewObject().getKey());
+    } else if (event.getObjectClass().equals(Organization.class)) {
+      itemRepository.evictRecords();
+    }
+  }
+
+  @Subscribe
+  public final <T extends NetworkEntity> void deleted(DeleteEvent<T> event) {
+    if (event.getObjectClass().equals(Dataset.class)) {
+      itemRepository.evictRecord(event.getOldObject().getKey());
+    }
+  }
+
+  @Subscribe
+  public final void updatedComponent(ChangedComponentEvent event) {
+    if (event.getTargetClass().equals(Dataset.class)) {
+      itemRepository.evictRecord(event.getTargetEntityKey());
+    }
+  }
+}
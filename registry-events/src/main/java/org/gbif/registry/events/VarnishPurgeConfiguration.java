@@ -36,16 +36,41 @@ public class VarnishPurgeConfiguration {
 
   private final URI purgeUrl;
   private final Integer purgingThreads;
+  private final long windowMillis;
+  private final int maxQueued;
+  private final int retries;
+  private final long retryDelayMillis;
 
   public VarnishPurgeConfiguration(
       @Value("${api.cache.purge.url}") String purgeUrl,
-      @Value("${api.cache.purge.threads}") Integer purgingThreads) {
+      @Value("${api.cache.purge.threads}") Integer purgingThreads,
+      @Value("${api.cache.purge.windowMillis:200}") long windowMillis,
+      @Value("${api.cache.purge.maxQueued:10000}") int maxQueued,
+      @Value("${api.cache.purge.retries:2}") int retries,
+      @Value("${api.cache.purge.retryDelayMillis:500}") long retryDelayMillis) {
     this.purgeUrl = URI.create(purgeUrl);
     this.purgingThreads = purgingThreads;
+    this.windowMillis = windowMillis;
+    this.maxQueued = maxQueued;
+    this.retries = retries;
+    this.retryDelayMillis = retryDelayMillis;
+  }
+
+  @Bean
+  public VarnishPurgeDispatcher varnishPurgeDispatcher() {
+    return new VarnishPurgeDispatcher(
+        HttpUtil.newMultithreadedClient(DEFAULT_HTTP_TIMEOUT_MSECS, purgingThreads, purgingThreads),
+        purgeUrl,
+        windowMillis,
+        purgingThreads,
+        maxQueued,
+        retries,
+        retryDelayMillis);
   }
 
   @Bean
   public VarnishPurgeListener varnishPurgeListener(
+      VarnishPurgeDispatcher varnishPurgeDispatcher,
       EventManager eventManager,
       OrganizationService organizationService,
       InstallationService installationService,
@@ -54,9 +79,8 @@ public class VarnishPurgeConfiguration {
       CollectionService collectionService,
       PersonService personService) {
     return new VarnishPurgeListener(
-        HttpUtil.newMultithreadedClient(DEFAULT_HTTP_TIMEOUT_MSECS, purgingThreads, purgingThreads),
+        varnishPurgeDispatcher,
         eventManager,
-        purgeUrl,
         organizationService,
         installationService,
         datasetService,
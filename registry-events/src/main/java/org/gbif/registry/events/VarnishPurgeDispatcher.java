@@ -0,0 +1,312 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PreDestroy;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.util.EntityUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.base.Joiner;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Sends PURGE and BAN requests to Varnish off the calling thread, so entity changes never wait on
+ * Varnish. Requests are collected over a short window: identical purge paths are sent once and ban
+ * regexes are merged into alternations, sent with as few BAN requests as possible.
+ *
+ * <p>At most maxQueued requests are held. Beyond that the caller sends the request itself, the
+ * same as without the dispatcher, rather than losing an invalidation. Requests failing, or answered
+ * with an error status, are retried.
+ */
+public class VarnishPurgeDispatcher implements MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(VarnishPurgeDispatcher.class);
+
+  // keep merged ban regexes well below the usual HTTP header size limits
+  private static final int MAX_BAN_LENGTH = 4000;
+
+  // the header carrying the regex of a BAN request
+  private static final String BAN_HEADER = "x-ban-url";
+
+  // how long the shutdown waits for the queued requests to be sent
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
+
+  private final HttpClient client;
+  private final URI purgeUrl;
+  private final int maxQueued;
+  private final int retries;
+  private final long retryDelayMillis;
+
+  // pending requests, guarded by this
+  private final Set<String> purges = new LinkedHashSet<>();
+  private final Set<String> bans = new LinkedHashSet<>();
+
+  private final AtomicLong requested = new AtomicLong();
+  private final AtomicLong sent = new AtomicLong();
+  private final AtomicLong failed = new AtomicLong();
+
+  private final ScheduledExecutorService scheduler;
+  private final ExecutorService senders;
+
+  public VarnishPurgeDispatcher(
+      HttpClient client,
+      URI purgeUrl,
+      long windowMillis,
+      int threads,
+      int maxQueued,
+      int retries,
+      long retryDelayMillis) {
+    this.client = client;
+    this.purgeUrl = purgeUrl;
+    this.maxQueued = maxQueued;
+    this.retries = retries;
+    this.retryDelayMillis = retryDelayMillis;
+    this.scheduler =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("varnish-purge-dispatcher-%d")
+                .setDaemon(true)
+                .build());
+    this.senders =
+        Executors.newFixedThreadPool(
+            threads,
+            new ThreadFactoryBuilder().setNameFormat("varnish-purge-%d").setDaemon(true).build());
+    scheduler.scheduleWithFixedDelay(
+        this::flush, windowMillis, windowMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops collecting requests, sends the queued ones and waits for them to be sent. Requests made
+   * afterwards are sent by the caller.
+   */
+  @PreDestroy
+  public void close() {
+    scheduler.shutdown();
+    try {
+      if (scheduler.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        flush();
+      }
+      senders.shutdown();
+      if (!senders.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+        LOG.warn("Varnish purges and bans still running on shutdown");
+        senders.shutdownNow();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      senders.shutdownNow();
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("registry.varnish.queue", this, VarnishPurgeDispatcher::queued)
+        .description("Varnish purges and bans waiting to be sent")
+        .register(registry);
+    FunctionCounter.builder("registry.varnish.requested", requested, AtomicLong::get)
+        .description("Varnish purges and bans requested, before deduplication")
+        .register(registry);
+    FunctionCounter.builder("registry.varnish.sent", sent, AtomicLong::get)
+        .description("Varnish PURGE and BAN requests sent")
+        .register(registry);
+    FunctionCounter.builder("registry.varnish.failed", failed, AtomicLong::get)
+        .description("Varnish PURGE and BAN requests failed after all retries")
+        .register(registry);
+  }
+
+  /** Queues a purge of the given path. */
+  public void purge(String path) {
+    requested.incrementAndGet();
+    if (!enqueue(purges, path)) {
+      send("purge " + path, purgeRequest(path));
+    }
+  }
+
+  /** Queues a ban of the given regex. */
+  public void ban(String regex) {
+    requested.incrementAndGet();
+    if (!enqueue(bans, regex)) {
+      send("ban " + regex, banRequest(regex));
+    }
+  }
+
+  /** A regex matching any of the keys. */
+  public String anyKey(Set<UUID> keys) {
+    return keys.size() == 1
+        ? keys.iterator().next().toString()
+        : "(" + Joiner.on('|').skipNulls().join(keys) + ")";
+  }
+
+  private synchronized boolean enqueue(Set<String> pending, String value) {
+    if (scheduler.isShutdown()) {
+      return false;
+    }
+    if (pending.contains(value)) {
+      return true;
+    }
+    if (purges.size() + bans.size() >= maxQueued) {
+      return false;
+    }
+    return pending.add(value);
+  }
+
+  private synchronized int queued() {
+    return purges.size() + bans.size();
+  }
+
+  /** Sends all queued requests and waits for them, the next window keeps collecting meanwhile. */
+  private void flush() {
+    List<String> purgePaths;
+    List<String> banRegexes;
+    synchronized (this) {
+      purgePaths = new ArrayList<>(purges);
+      banRegexes = new ArrayList<>(bans);
+      purges.clear();
+      bans.clear();
+    }
+
+    List<Callable<Void>> requests = new ArrayList<>();
+    for (String path : purgePaths) {
+      requests.add(() -> send("purge " + path, purgeRequest(path)));
+    }
+    for (String regex : mergeBans(banRegexes)) {
+      requests.add(() -> send("ban " + regex, banRequest(regex)));
+    }
+    if (requests.isEmpty()) {
+      return;
+    }
+
+    try {
+      senders.invokeAll(requests);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /** Merges the regexes into alternations, each no longer than {@link #MAX_BAN_LENGTH}. */
+  private static List<String> mergeBans(List<String> regexes) {
+    List<String> merged = new ArrayList<>();
+    List<String> group = new ArrayList<>();
+    int length = 0;
+    for (String regex : regexes) {
+      if (!group.isEmpty() && length + regex.length() + 1 > MAX_BAN_LENGTH) {
+        merged.add(alternation(group));
+        group.clear();
+        length = 0;
+      }
+      group.add(regex);
+      length += regex.length() + 1;
+    }
+    if (!group.isEmpty()) {
+      merged.add(alternation(group));
+    }
+    return merged;
+  }
+
+  private static String alternation(List<String> regexes) {
+    return regexes.size() == 1 ? regexes.get(0) : "(" + String.join("|", regexes) + ")";
+  }
+
+  private HttpUriRequest purgeRequest(String path) {
+    return new VarnishRequest("PURGE", purgeUrl.resolve(path));
+  }
+
+  private HttpUriRequest banRequest(String regex) {
+    VarnishRequest request = new VarnishRequest("BAN", purgeUrl);
+    request.setHeader(BAN_HEADER, regex);
+    return request;
+  }
+
+  /**
+   * Executes the request, throwing an exception if it fails or Varnish answers with an error
+   * status.
+   */
+  private void execute(HttpUriRequest request) throws IOException {
+    HttpResponse response = client.execute(request);
+    try {
+      int status = response.getStatusLine().getStatusCode();
+      if (status >= 300) {
+        throw new IOException("Varnish answered " + response.getStatusLine());
+      }
+    } finally {
+      EntityUtils.consumeQuietly(response.getEntity());
+    }
+  }
+
+  /** Sends the request, retrying with a linear backoff if it fails. */
+  private Void send(String description, HttpUriRequest request) {
+    for (int attempt = 1; ; attempt++) {
+      try {
+        execute(request);
+        sent.incrementAndGet();
+        return null;
+      } catch (IOException | RuntimeException e) {
+        if (attempt > retries) {
+          failed.incrementAndGet();
+          LOG.error("Failed to {} after {} attempts", description, attempt, e);
+          return null;
+        }
+        LOG.warn("Failed to {}, attempt {}", description, attempt, e);
+        try {
+          Thread.sleep(retryDelayMillis * attempt);
+        } catch (InterruptedException ie) {
+          Thread.currentThread().interrupt();
+          failed.incrementAndGet();
+          return null;
+        }
+      }
+    }
+  }
+
+  /** A request with one of the Varnish specific methods. */
+  private static class VarnishRequest extends HttpRequestBase {
+    private final String method;
+
+    private VarnishRequest(String method, URI uri) {
+      this.method = method;
+      setURI(uri);
+    }
+
+    @Override
+    public String getMethod() {
+      return method;
+    }
+  }
+}
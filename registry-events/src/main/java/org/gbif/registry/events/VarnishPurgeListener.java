@@ -33,15 +33,12 @@ import org.gbif.registry.events.collections.ChangedCollectionEntityComponentEven
 import org.gbif.registry.events.collections.CreateCollectionEntityEvent;
 import org.gbif.registry.events.collections.DeleteCollectionEntityEvent;
 import org.gbif.registry.events.collections.UpdateCollectionEntityEvent;
-import org.gbif.varnish.VarnishPurger;
 
-import java.net.URI;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -57,6 +54,8 @@ import com.google.common.eventbus.Subscribe;
  * can banRegex entire subresources from being served. BANs do not remove the object from the
  * varnish memory though.
  *
+ * <p>Purges and bans are sent asynchronously by a {@link VarnishPurgeDispatcher}.
+ *
  * @see <h ref="https://www.varnish-software.com/static/book/Cache_invalidation.html">Varnish
  *     Book</h>
  *     <h3>Purging cascade logic</h3>
@@ -111,13 +110,12 @@ public class VarnishPurgeListener {
   private final InstitutionService institutionService;
   private final CollectionService collectionService;
   private final PersonService personService;
-  private final VarnishPurger purger;
+  private final VarnishPurgeDispatcher purger;
   private static final Joiner PATH_JOINER = Joiner.on("/").skipNulls();
 
   public VarnishPurgeListener(
-      CloseableHttpClient client,
+      VarnishPurgeDispatcher purger,
       EventManager eventManager,
-      URI apiBaseUrl,
       OrganizationService organizationService,
       InstallationService installationService,
       DatasetService datasetService,
@@ -130,9 +128,8 @@ public class VarnishPurgeListener {
     this.institutionService = institutionService;
     this.collectionService = collectionService;
     this.personService = personService;
+    this.purger = purger;
     eventManager.register(this);
-
-    purger = new VarnishPurger(client, apiBaseUrl);
   }
 
   @Subscribe
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events.collections;
+
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.CollectionEntity;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.registry.events.EventManager;
+import org.gbif.registry.service.collections.CollectionsLookupService;
+
+import java.util.UUID;
+
+import org.springframework.stereotype.Service;
+
+import com.google.common.eventbus.Subscribe;
+
+/** Refreshes the institutions and collections that change in the GrSciColl lookup index. */
+@SuppressWarnings("UnstableApiUsage")
+@Service
+public class CollectionsLookupIndexListener {
+
+  private final CollectionsLookupService lookupService;
+
+  public CollectionsLookupIndexListener(
+      CollectionsLookupService lookupService, EventManager eventManager) {
+    this.lookupService = lookupService;
+    eventManager.registerSynchronous(this);
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void created(CreateCollectionEntityEvent<T> event) {
+    refresh(event.getObjectClass(), event.getNewObject().getKey());
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void updated(UpdateCollectionEntityEvent<T> event) {
+    refresh(event.getObjectClass(), event.getNewObject().getKey());
+  }
+
+  @Subscribe
+  public final <T extends CollectionEntity> void deleted(DeleteCollectionEntityEvent<T> event) {
+    refresh(event.getObjectClass(), event.getOldObject().getKey());
+  }
+
+  @Subscribe
+  public final void componentChanged(ChangedCollectionEntityComponentEvent event) {
+    // identifiers are the only components in the index
+    if (event.getComponentClass().equals(Identifier.class)) {
+      refresh(event.getTargetClass(), event.getTargetEntityKey());
+    }
+  }
+
+  private void refresh(Class<?> objectClass, UUID key) {
+    if (Institution.class.equals(objectClass)) {
+      lookupService.refreshInstitution(key);
+    } else if (Collection.class.equals(objectClass)) {
+      lookupService.refreshCollection(key);
+    }
+  }
+}
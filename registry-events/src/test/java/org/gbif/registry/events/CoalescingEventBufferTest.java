@@ -0,0 +1,124 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Endpoint;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingEventBufferTest {
+
+  private final CoalescingEventBuffer buffer = new CoalescingEventBuffer();
+
+  @Test
+  public void testCreateAndUpdatesFoldIntoCreate() {
+    UUID key = UUID.randomUUID();
+    Dataset created = dataset(key, "created");
+    Dataset updated = dataset(key, "updated");
+    Dataset updatedAgain = dataset(key, "updated again");
+
+    buffer.add(CreateEvent.newInstance(created, Dataset.class));
+    buffer.add(UpdateEvent.newInstance(updated, created, Dataset.class));
+    buffer.add(UpdateEvent.newInstance(updatedAgain, updated, Dataset.class));
+
+    List<Object> events = buffer.events();
+    assertEquals(1, events.size());
+    assertTrue(events.get(0) instanceof CreateEvent);
+    assertSame(updatedAgain, ((CreateEvent<?>) events.get(0)).getNewObject());
+  }
+
+  @Test
+  public void testUpdatesFoldIntoOneUpdate() {
+    UUID key = UUID.randomUUID();
+    Dataset original = dataset(key, "original");
+    Dataset updated = dataset(key, "updated");
+    Dataset updatedAgain = dataset(key, "updated again");
+
+    buffer.add(UpdateEvent.newInstance(updated, original, Dataset.class));
+    buffer.add(UpdateEvent.newInstance(updatedAgain, updated, Dataset.class));
+
+    List<Object> events = buffer.events();
+    assertEquals(1, events.size());
+    UpdateEvent<?> update = (UpdateEvent<?>) events.get(0);
+    assertSame(original, update.getOldObject());
+    assertSame(updatedAgain, update.getNewObject());
+  }
+
+  @Test
+  public void testCreateAndDeleteLeavesDelete() {
+    UUID key = UUID.randomUUID();
+    Dataset created = dataset(key, "created");
+    Dataset updated = dataset(key, "updated");
+
+    buffer.add(CreateEvent.newInstance(created, Dataset.class));
+    buffer.add(UpdateEvent.newInstance(updated, created, Dataset.class));
+    buffer.add(DeleteEvent.newInstance(updated, Dataset.class));
+
+    List<Object> events = buffer.events();
+    assertEquals(1, events.size());
+    assertTrue(events.get(0) instanceof DeleteEvent);
+    assertSame(updated, ((DeleteEvent<?>) events.get(0)).getOldObject());
+  }
+
+  @Test
+  public void testComponentChangeKeptOnce() {
+    UUID key = UUID.randomUUID();
+
+    buffer.add(ChangedComponentEvent.newInstance(key, Dataset.class, Contact.class));
+    buffer.add(ChangedComponentEvent.newInstance(key, Dataset.class, Contact.class));
+    buffer.add(ChangedComponentEvent.newInstance(key, Dataset.class, Endpoint.class));
+    buffer.add(ChangedComponentEvent.newInstance(UUID.randomUUID(), Dataset.class, Contact.class));
+
+    assertEquals(3, buffer.events().size());
+  }
+
+  @Test
+  public void testEventsInFirstSeenOrder() {
+    Dataset first = dataset(UUID.randomUUID(), "first");
+    Dataset second = dataset(UUID.randomUUID(), "second");
+    Dataset firstUpdated = dataset(first.getKey(), "first updated");
+
+    buffer.add(CreateEvent.newInstance(first, Dataset.class));
+    buffer.add("other");
+    buffer.add(CreateEvent.newInstance(second, Dataset.class));
+    buffer.add(UpdateEvent.newInstance(firstUpdated, first, Dataset.class));
+    buffer.add("other");
+
+    List<Object> events = buffer.events();
+    assertEquals(4, events.size());
+    assertSame(firstUpdated, ((CreateEvent<?>) events.get(0)).getNewObject());
+    // other events are all kept
+    assertEquals("other", events.get(1));
+    assertSame(second, ((CreateEvent<?>) events.get(2)).getNewObject());
+    assertEquals("other", events.get(3));
+  }
+
+  static Dataset dataset(UUID key, String title) {
+    Dataset dataset = new Dataset();
+    dataset.setKey(key);
+    dataset.setTitle(title);
+    return dataset;
+  }
+}
@@ -0,0 +1,453 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.registry.events.EventManagerImpl.OverflowPolicy;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import com.google.common.eventbus.AllowConcurrentEvents;
+import com.google.common.eventbus.EventBus;
+import com.google.common.eventbus.Subscribe;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.gbif.registry.events.CoalescingEventBufferTest.dataset;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SuppressWarnings("UnstableApiUsage")
+public class EventManagerImplTest {
+
+  private static final Duration TIMEOUT = Duration.ofSeconds(5);
+
+  private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+  private EventManagerImpl eventManager;
+
+  @AfterEach
+  public void tearDown() {
+    if (eventManager != null) {
+      eventManager.close();
+    }
+  }
+
+  @Test
+  public void testEventsOfAnEntityDeliveredInOrderOffThePostingThread() {
+    eventManager = asyncManager(2, 100, OverflowPolicy.CALLER_RUNS);
+    RecordingListener listener = new RecordingListener(null);
+    eventManager.register(listener);
+
+    List<String> posted =
+        IntStream.range(0, 50).mapToObj(i -> "event-" + i).collect(Collectors.toList());
+    posted.forEach(eventManager::post);
+    eventManager.close();
+
+    assertEquals(posted, listener.events);
+    listener.threads.forEach(t -> assertNotEquals(Thread.currentThread(), t));
+  }
+
+  @Test
+  public void testSynchronousListenerOnPostingThread() {
+    eventManager = asyncManager(2, 100, OverflowPolicy.CALLER_RUNS);
+    RecordingListener listener = new RecordingListener(null);
+    eventManager.registerSynchronous(listener);
+
+    eventManager.post("event");
+
+    // handled before post returns
+    assertEquals(1, listener.events.size());
+    assertEquals(Thread.currentThread(), listener.threads.get(0));
+  }
+
+  @Test
+  public void testSynchronousMode() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    RecordingListener listener = new RecordingListener(null);
+    eventManager.register(listener);
+
+    eventManager.post("event");
+    assertEquals(Thread.currentThread(), listener.threads.get(0));
+
+    eventManager.unregister(listener);
+    eventManager.post("another");
+    assertEquals(1, listener.events.size());
+  }
+
+  @Test
+  public void testCallerRunsWhenLaneIsFull() throws InterruptedException {
+    eventManager = asyncManager(1, 1, OverflowPolicy.CALLER_RUNS);
+    CountDownLatch gate = new CountDownLatch(1);
+    RecordingListener listener = new RecordingListener(gate);
+    eventManager.register(listener);
+
+    fillLane(listener);
+    eventManager.post("overflow");
+
+    // handled by the posting thread, while the lane is still busy
+    assertEquals("overflow", listener.events.get(1));
+    assertEquals(Thread.currentThread(), listener.threads.get(1));
+
+    gate.countDown();
+    eventManager.close();
+    assertEquals(3, listener.events.size());
+  }
+
+  @Test
+  public void testDiscardWhenLaneIsFull() throws InterruptedException {
+    eventManager = asyncManager(1, 1, OverflowPolicy.DISCARD);
+    CountDownLatch gate = new CountDownLatch(1);
+    RecordingListener listener = new RecordingListener(gate);
+    eventManager.register(listener);
+
+    fillLane(listener);
+    eventManager.post("overflow");
+
+    gate.countDown();
+    eventManager.close();
+    assertEquals(2, listener.events.size());
+    assertFalse(listener.events.contains("overflow"));
+    assertEquals(1, discarded());
+  }
+
+  @Test
+  public void testBlockWaitsForRoom() throws InterruptedException {
+    eventManager = asyncManager(1, 1, OverflowPolicy.BLOCK);
+    CountDownLatch gate = new CountDownLatch(1);
+    RecordingListener listener = new RecordingListener(gate);
+    eventManager.register(listener);
+
+    fillLane(listener);
+    Thread poster = new Thread(() -> eventManager.post("overflow"));
+    poster.start();
+    poster.join(200);
+    assertTrue(poster.isAlive(), "Posting did not wait for room in the lane");
+
+    gate.countDown();
+    poster.join(TIMEOUT.toMillis());
+    assertFalse(poster.isAlive());
+    eventManager.close();
+    assertEquals(3, listener.events.size());
+    assertEquals("overflow", listener.events.get(2));
+    assertEquals(0, discarded());
+  }
+
+  @Test
+  public void testBlockDoesNotWaitOnceClosed() {
+    eventManager = asyncManager(1, 1, OverflowPolicy.BLOCK);
+    RecordingListener listener = new RecordingListener(null);
+    eventManager.register(listener);
+    eventManager.close();
+
+    assertTimeoutPreemptively(
+        TIMEOUT,
+        () -> {
+          eventManager.post("first");
+          eventManager.post("second");
+        });
+    assertTrue(listener.events.isEmpty());
+    assertEquals(2, discarded());
+  }
+
+  @Test
+  public void testCloseDeliversQueuedEvents() throws InterruptedException {
+    eventManager = asyncManager(2, 100, OverflowPolicy.CALLER_RUNS);
+    CountDownLatch gate = new CountDownLatch(1);
+    RecordingListener listener = new RecordingListener(gate);
+    eventManager.register(listener);
+
+    fillLane(listener);
+    for (int i = 0; i < 10; i++) {
+      eventManager.post("queued-" + i);
+    }
+    gate.countDown();
+    eventManager.close();
+
+    assertEquals(12, listener.events.size());
+  }
+
+  @Test
+  public void testCoalescedUntilCommit() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+    UUID key = UUID.randomUUID();
+    Dataset created = dataset(key, "created");
+    Dataset updated = dataset(key, "updated");
+
+    transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+        .executeWithoutResult(
+            status -> {
+              eventManager.coalesceUntilTransactionEnd();
+              eventManager.post(CreateEvent.newInstance(created, Dataset.class));
+              eventManager.post(UpdateEvent.newInstance(updated, created, Dataset.class));
+              // held back until the commit
+              assertTrue(recorder.events.isEmpty());
+            });
+
+    assertEquals(1, recorder.events.size());
+    assertSame(updated, ((CreateEvent<?>) recorder.events.get(0)).getNewObject());
+    assertHeldBackCleared(recorder);
+  }
+
+  @Test
+  public void testCreateAndDeleteDeliverOnlyDelete() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+    Dataset created = dataset(UUID.randomUUID(), "created");
+
+    transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+        .executeWithoutResult(
+            status -> {
+              eventManager.coalesceUntilTransactionEnd();
+              eventManager.post(CreateEvent.newInstance(created, Dataset.class));
+              eventManager.post(DeleteEvent.newInstance(created, Dataset.class));
+            });
+
+    assertEquals(1, recorder.events.size());
+    assertTrue(recorder.events.get(0) instanceof DeleteEvent);
+  }
+
+  @Test
+  public void testRollbackDiscardsEvents() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+
+    transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+        .executeWithoutResult(
+            status -> {
+              eventManager.coalesceUntilTransactionEnd();
+              eventManager.post(
+                  CreateEvent.newInstance(dataset(UUID.randomUUID(), "created"), Dataset.class));
+              status.setRollbackOnly();
+            });
+
+    assertTrue(recorder.events.isEmpty());
+    assertHeldBackCleared(recorder);
+  }
+
+  @Test
+  public void testParticipatingTransactionSharesBuffer() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+    UUID key = UUID.randomUUID();
+    Dataset original = dataset(key, "original");
+    Dataset updated = dataset(key, "updated");
+    Dataset updatedAgain = dataset(key, "updated again");
+
+    transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+        .executeWithoutResult(
+            status -> {
+              eventManager.coalesceUntilTransactionEnd();
+              eventManager.post(UpdateEvent.newInstance(updated, original, Dataset.class));
+              transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+                  .executeWithoutResult(
+                      inner -> {
+                        eventManager.coalesceUntilTransactionEnd();
+                        eventManager.post(
+                            UpdateEvent.newInstance(updatedAgain, updated, Dataset.class));
+                      });
+              // the inner transaction is part of the outer one
+              assertTrue(recorder.events.isEmpty());
+            });
+
+    assertEquals(1, recorder.events.size());
+    UpdateEvent<?> update = (UpdateEvent<?>) recorder.events.get(0);
+    assertSame(original, update.getOldObject());
+    assertSame(updatedAgain, update.getNewObject());
+    assertHeldBackCleared(recorder);
+  }
+
+  @Test
+  public void testNewTransactionHoldsBackItsOwnEvents() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+    Dataset outer = dataset(UUID.randomUUID(), "outer");
+    Dataset committed = dataset(UUID.randomUUID(), "committed");
+    Dataset rolledBack = dataset(UUID.randomUUID(), "rolled back");
+
+    transaction(TransactionDefinition.PROPAGATION_REQUIRED)
+        .executeWithoutResult(
+            status -> {
+              eventManager.coalesceUntilTransactionEnd();
+              eventManager.post(CreateEvent.newInstance(outer, Dataset.class));
+
+              transaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW)
+                  .executeWithoutResult(
+                      inner -> {
+                        eventManager.coalesceUntilTransactionEnd();
+                        eventManager.post(CreateEvent.newInstance(committed, Dataset.class));
+                      });
+              // delivered when the new transaction commits
+              assertEquals(1, recorder.events.size());
+
+              transaction(TransactionDefinition.PROPAGATION_REQUIRES_NEW)
+                  .executeWithoutResult(
+                      inner -> {
+                        eventManager.coalesceUntilTransactionEnd();
+                        eventManager.post(CreateEvent.newInstance(rolledBack, Dataset.class));
+                        inner.setRollbackOnly();
+                      });
+              assertEquals(1, recorder.events.size());
+            });
+
+    assertEquals(2, recorder.events.size());
+    assertSame(committed, ((CreateEvent<?>) recorder.events.get(0)).getNewObject());
+    assertSame(outer, ((CreateEvent<?>) recorder.events.get(1)).getNewObject());
+    assertHeldBackCleared(recorder);
+  }
+
+  @Test
+  public void testNotHeldBackWithoutTransaction() {
+    eventManager = new EventManagerImpl(new EventBus(), false, 2, 100, OverflowPolicy.CALLER_RUNS);
+    EventRecorder recorder = new EventRecorder();
+    eventManager.register(recorder);
+
+    eventManager.coalesceUntilTransactionEnd();
+    eventManager.post("event");
+
+    assertEquals(1, recorder.events.size());
+  }
+
+  /** Checks the events posted after the transaction are no longer held back. */
+  private void assertHeldBackCleared(EventRecorder recorder) {
+    assertFalse(TransactionSynchronizationManager.isSynchronizationActive());
+    int delivered = recorder.events.size();
+    eventManager.post("after the transaction");
+    assertEquals(delivered + 1, recorder.events.size());
+  }
+
+  private static TransactionTemplate transaction(int propagation) {
+    TransactionTemplate template = new TransactionTemplate(new TestTransactionManager());
+    template.setPropagationBehavior(propagation);
+    return template;
+  }
+
+  private EventManagerImpl asyncManager(
+      int lanesPerListener, int queueSize, OverflowPolicy overflowPolicy) {
+    EventManagerImpl manager =
+        new EventManagerImpl(new EventBus(), true, lanesPerListener, queueSize, overflowPolicy);
+    manager.bindTo(registry);
+    return manager;
+  }
+
+  /** Posts an event the lane gets stuck on, and another one waiting in the lane queue. */
+  private void fillLane(RecordingListener listener) throws InterruptedException {
+    eventManager.post("running");
+    assertTrue(listener.started.await(TIMEOUT.toMillis(), TimeUnit.MILLISECONDS));
+    eventManager.post("queued");
+  }
+
+  private double discarded() {
+    return registry.get("registry.events.discarded").functionCounter().count();
+  }
+
+  /** Records all events. */
+  public static class EventRecorder {
+
+    private final List<Object> events = new CopyOnWriteArrayList<>();
+
+    @Subscribe
+    public void handle(Object event) {
+      events.add(event);
+    }
+  }
+
+  /**
+   * Transactions without a resource, which join the transaction in progress and can be suspended,
+   * to drive the transaction synchronizations.
+   */
+  private static class TestTransactionManager extends AbstractPlatformTransactionManager {
+
+    @Override
+    protected Object doGetTransaction() {
+      return new Object();
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+      return TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {}
+
+    @Override
+    protected Object doSuspend(Object transaction) {
+      return null;
+    }
+
+    @Override
+    protected void doResume(Object transaction, Object suspendedResources) {}
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {}
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {}
+  }
+
+  /**
+   * Records the events and threads, the lane threads waiting at the gate if there is one. Handles
+   * events concurrently, so the posting thread is not held up by a lane waiting at the gate.
+   */
+  public static class RecordingListener {
+
+    private final List<String> events = new CopyOnWriteArrayList<>();
+    private final List<Thread> threads = new CopyOnWriteArrayList<>();
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final CountDownLatch gate;
+    private final Thread owner = Thread.currentThread();
+
+    private RecordingListener(CountDownLatch gate) {
+      this.gate = gate;
+    }
+
+    @Subscribe
+    @AllowConcurrentEvents
+    public void handle(String event) throws InterruptedException {
+      events.add(event);
+      threads.add(Thread.currentThread());
+      started.countDown();
+      if (gate != null && Thread.currentThread() != owner) {
+        gate.await();
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.events;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class VarnishPurgeDispatcherTest {
+
+  private static final URI PURGE_URL = URI.create("http://api.gbif.org/v1/");
+
+  private final List<HttpUriRequest> executed = new CopyOnWriteArrayList<>();
+  private HttpClient client;
+  private VarnishPurgeDispatcher dispatcher;
+  private SimpleMeterRegistry registry;
+
+  @BeforeEach
+  public void setup() {
+    client = mock(HttpClient.class);
+    registry = new SimpleMeterRegistry();
+    // nothing is flushed before the dispatcher is closed
+    dispatcher =
+        new VarnishPurgeDispatcher(client, PURGE_URL, TimeUnit.HOURS.toMillis(1), 2, 100, 2, 1);
+    dispatcher.bindTo(registry);
+  }
+
+  @AfterEach
+  public void tearDown() {
+    dispatcher.close();
+  }
+
+  @Test
+  public void testRetriedOnErrorStatus() throws IOException {
+    when(client.execute(any(HttpUriRequest.class)))
+        .thenAnswer(record(response(503)))
+        .thenAnswer(record(response(200)));
+
+    dispatcher.purge("dataset/1");
+    dispatcher.close();
+
+    assertEquals(2, executed.size());
+    assertEquals("PURGE", executed.get(0).getMethod());
+    assertEquals(URI.create("http://api.gbif.org/v1/dataset/1"), executed.get(0).getURI());
+    assertEquals(1, counter("registry.varnish.sent"));
+    assertEquals(0, counter("registry.varnish.failed"));
+  }
+
+  @Test
+  public void testFailedAfterRetries() throws IOException {
+    when(client.execute(any(HttpUriRequest.class)))
+        .thenAnswer(
+            invocation -> {
+              executed.add(invocation.getArgument(0));
+              throw new IOException("Connection refused");
+            });
+
+    dispatcher.ban("dataset/1");
+    dispatcher.close();
+
+    // the first attempt and 2 retries
+    assertEquals(3, executed.size());
+    assertEquals(0, counter("registry.varnish.sent"));
+    assertEquals(1, counter("registry.varnish.failed"));
+  }
+
+  @Test
+  public void testRequestsDeduplicatedAndMerged() throws IOException {
+    when(client.execute(any(HttpUriRequest.class))).thenAnswer(record(response(200)));
+
+    dispatcher.purge("dataset/1");
+    dispatcher.purge("dataset/1");
+    dispatcher.ban("installation/1/dataset");
+    dispatcher.ban("organization/1/hostedDataset");
+    dispatcher.ban("installation/1/dataset");
+    dispatcher.close();
+
+    assertEquals(2, executed.size());
+    HttpUriRequest purge =
+        executed.stream().filter(r -> r.getMethod().equals("PURGE")).findFirst().get();
+    assertEquals(URI.create("http://api.gbif.org/v1/dataset/1"), purge.getURI());
+    HttpUriRequest ban =
+        executed.stream().filter(r -> r.getMethod().equals("BAN")).findFirst().get();
+    assertEquals(PURGE_URL, ban.getURI());
+    assertEquals(
+        "(installation/1/dataset|organization/1/hostedDataset)",
+        ban.getFirstHeader("x-ban-url").getValue());
+    assertEquals(5, counter("registry.varnish.requested"));
+    assertEquals(2, counter("registry.varnish.sent"));
+  }
+
+  @Test
+  public void testSentByCallerAfterClose() throws IOException {
+    when(client.execute(any(HttpUriRequest.class))).thenAnswer(record(response(200)));
+    dispatcher.close();
+
+    dispatcher.purge("dataset/1");
+    assertEquals(1, executed.size());
+  }
+
+  private Answer<HttpResponse> record(HttpResponse response) {
+    return invocation -> {
+      executed.add(invocation.getArgument(0));
+      return response;
+    };
+  }
+
+  private double counter(String name) {
+    return registry.get(name).functionCounter().count();
+  }
+
+  private static HttpResponse response(int status) {
+    return new BasicHttpResponse(HttpVersion.HTTP_1_1, status, "");
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.identity.service;
+
+import org.gbif.api.model.common.GbifUser;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import javax.annotation.Nullable;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+import static org.gbif.registry.identity.util.IdentityUtils.NORMALIZE_USERNAME_FCT;
+
+/**
+ * Short lived cache of the users resolved by username, used to authenticate the requests of the
+ * same user without reading it from the database every time. {@link IdentityServiceImpl} evicts a
+ * user whenever it is modified, so changes of roles and passwords are effective immediately on
+ * the instance that made them. Other registry instances aren't notified, so they keep using the
+ * old roles and passwords, and deleted users, for up to {@code
+ * registry.security.userCacheSeconds}.
+ *
+ * <p>The cache keeps its own copies of the users, and hands out copies, so callers can modify the
+ * users they get.
+ */
+@Component
+public class GbifUserCache {
+
+  private final Cache<String, GbifUser> cache;
+
+  public GbifUserCache(
+      @Value("${registry.security.userCacheSeconds:60}") long userCacheSeconds,
+      @Value("${registry.security.userCacheSize:10000}") long userCacheSize) {
+    this.cache =
+        CacheBuilder.newBuilder()
+            .maximumSize(userCacheSize)
+            .expireAfterWrite(userCacheSeconds, TimeUnit.SECONDS)
+            .recordStats()
+            .build();
+  }
+
+  /**
+   * Gets the user from the cache, or from the loader if not cached. Unknown users are not cached.
+   *
+   * @param userName user's username
+   * @param loader loads the user by its username
+   * @return {@link GbifUser} or null
+   */
+  @Nullable
+  public GbifUser get(String userName, Function<String, GbifUser> loader) {
+    String key = NORMALIZE_USERNAME_FCT.apply(userName);
+    if (key == null) {
+      return null;
+    }
+    GbifUser cached = cache.getIfPresent(key);
+    if (cached != null) {
+      return copy(cached);
+    }
+    GbifUser user = loader.apply(userName);
+    if (user != null) {
+      cache.put(key, copy(user));
+    }
+    return user;
+  }
+
+  /** Removes the user from the cache. */
+  public void evict(@Nullable String userName) {
+    String key = NORMALIZE_USERNAME_FCT.apply(userName);
+    if (key != null) {
+      cache.invalidate(key);
+    }
+  }
+
+  /** The underlying cache, exposed to monitor it. */
+  public Cache<String, GbifUser> cache() {
+    return cache;
+  }
+
+  /** Copies the fields read from the database. */
+  private static GbifUser copy(GbifUser user) {
+    GbifUser copy = new GbifUser();
+    copy.setKey(user.getKey());
+    copy.setUserName(user.getUserName());
+    copy.setFirstName(user.getFirstName());
+    copy.setLastName(user.getLastName());
+    copy.setEmail(user.getEmail());
+    copy.setPasswordHash(user.getPasswordHash());
+    if (user.getRoles() != null) {
+      copy.getRoles().addAll(user.getRoles());
+    }
+    if (user.getSettings() != null) {
+      copy.getSettings().putAll(user.getSettings());
+    }
+    if (user.getSystemSettings() != null) {
+      copy.getSystemSettings().putAll(user.getSystemSettings());
+    }
+    copy.setLastLogin(user.getLastLogin() != null ? new Date(user.getLastLogin().getTime()) : null);
+    copy.setDeleted(user.getDeleted() != null ? new Date(user.getDeleted().getTime()) : null);
+    return copy;
+  }
+}
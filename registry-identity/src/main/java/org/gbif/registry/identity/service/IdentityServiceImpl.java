@@ -63,6 +63,7 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
   private final UserMapper userMapper;
   private final UserSuretyDelegate userSuretyDelegate;
   private final Validator validator;
+  private final GbifUserCache userCache;
 
   private static final Range<Integer> PASSWORD_LENGTH_RANGE = Range.between(6, 256);
 
@@ -70,11 +71,15 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
 
   @Autowired
   public IdentityServiceImpl(
-      UserMapper userMapper, UserSuretyDelegate userSuretyDelegate, Validator validator) {
+      UserMapper userMapper,
+      UserSuretyDelegate userSuretyDelegate,
+      Validator validator,
+      GbifUserCache userCache) {
     super(userMapper);
     this.userMapper = userMapper;
     this.userSuretyDelegate = userSuretyDelegate;
     this.validator = validator;
+    this.userCache = userCache;
   }
 
   @Override
@@ -128,6 +133,8 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
               }
 
               userMapper.update(user);
+              userCache.evict(currentUser.getUserName());
+              userCache.evict(user.getUserName());
               return UserModelMutationResult.onSuccess(user.getUserName(), user.getEmail());
             })
         .orElse(null);
@@ -149,7 +156,11 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
 
   @Override
   public void delete(int userKey) {
+    GbifUser user = userMapper.getByKey(userKey);
     userMapper.delete(userKey);
+    if (user != null) {
+      userCache.evict(user.getUserName());
+    }
   }
 
   @Override
@@ -256,6 +267,7 @@ public class IdentityServiceImpl extends BaseIdentityAccessService implements Id
               }
               user.setPasswordHash(PASSWORD_ENCODER.encode(newPassword));
               userMapper.update(user);
+              userCache.evict(user.getUserName());
               return UserModelMutationResult.onSuccess();
             })
         .orElse(withSingleConstraintViolation("user", PropertyConstants.CONSTRAINT_UNKNOWN));
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.identity.service;
+
+import org.gbif.api.model.common.GbifUser;
+import org.gbif.api.vocabulary.UserRole;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GbifUserCacheTest {
+
+  private final GbifUserCache userCache = new GbifUserCache(60, 100);
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @Test
+  public void testCachedWithinExpiry() {
+    GbifUser user = IdentityServiceTest.generateUser();
+
+    assertEquals(user.getUserName(), userCache.get(user.getUserName(), loader(user)).getUserName());
+    assertEquals(user.getUserName(), userCache.get(user.getUserName(), loader(user)).getUserName());
+    // usernames are trimmed
+    assertEquals(
+        user.getUserName(),
+        userCache.get(" " + user.getUserName() + " ", loader(user)).getUserName());
+    assertEquals(1, loads.get());
+  }
+
+  @Test
+  public void testUnknownUserNotCached() {
+    assertNull(userCache.get("unknown", loader(null)));
+    assertNull(userCache.get("unknown", loader(null)));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testReloadedAfterEviction() {
+    GbifUser user = IdentityServiceTest.generateUser();
+    userCache.get(user.getUserName(), loader(user));
+
+    userCache.evict(user.getUserName());
+    userCache.get(user.getUserName(), loader(user));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testReloadedAfterExpiry() {
+    GbifUserCache expiringCache = new GbifUserCache(0, 100);
+    GbifUser user = IdentityServiceTest.generateUser();
+
+    expiringCache.get(user.getUserName(), loader(user));
+    expiringCache.get(user.getUserName(), loader(user));
+    assertEquals(2, loads.get());
+  }
+
+  @Test
+  public void testCopiesHandedOut() {
+    GbifUser user = IdentityServiceTest.generateUser();
+    GbifUser loaded = userCache.get(user.getUserName(), loader(user));
+
+    // modifying the loaded user does not change the cached one
+    loaded.getRoles().add(UserRole.REGISTRY_ADMIN);
+    loaded.setEmail("changed@gbif.org");
+
+    GbifUser cached = userCache.get(user.getUserName(), loader(user));
+    assertNotSame(loaded, cached);
+    assertFalse(cached.getRoles().contains(UserRole.REGISTRY_ADMIN));
+    assertEquals(user.getUserName() + "@gbif.org", cached.getEmail());
+    assertEquals("en", cached.getSettings().get("user.settings.language"));
+    assertEquals("18", cached.getSystemSettings().get("internal.settings"));
+
+    // nor does modifying a cached one
+    cached.getSettings().put("user.settings.language", "da");
+    GbifUser cachedAgain = userCache.get(user.getUserName(), loader(user));
+    assertEquals("en", cachedAgain.getSettings().get("user.settings.language"));
+    assertTrue(cachedAgain.getRoles().contains(UserRole.USER));
+    assertEquals(1, loads.get());
+  }
+
+  private Function<String, GbifUser> loader(GbifUser user) {
+    return userName -> {
+      loads.incrementAndGet();
+      return user;
+    };
+  }
+}
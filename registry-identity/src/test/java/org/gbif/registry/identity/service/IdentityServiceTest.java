@@ -39,6 +39,7 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.atLeastOnce;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -53,6 +54,7 @@ public class IdentityServiceTest {
   @Mock private UserMapper userMapperMock;
   @Mock private UserSuretyDelegate userSuretyDelegateMock;
   @Spy private Validator validator = validatorFactory.getValidator();
+  @Spy private GbifUserCache userCache = new GbifUserCache(60, 100);
 
   @InjectMocks private IdentityServiceImpl identityService;
 
@@ -119,6 +121,55 @@ public class IdentityServiceTest {
     verify(userMapperMock).update(gbifUser);
   }
 
+  @Test
+  public void testUpdateEvictsCachedUser() {
+    // GIVEN
+    GbifUser gbifUser = generateUser();
+    gbifUser.setKey(1);
+    gbifUser.setPasswordHash("hash");
+    when(userMapperMock.getByKey(gbifUser.getKey())).thenReturn(gbifUser);
+    userCache.get(gbifUser.getUserName(), userName -> gbifUser);
+
+    // WHEN
+    identityService.update(gbifUser);
+
+    // THEN
+    assertReloaded(gbifUser);
+  }
+
+  @Test
+  public void testDeleteEvictsCachedUser() {
+    // GIVEN
+    GbifUser gbifUser = generateUser();
+    gbifUser.setKey(1);
+    when(userMapperMock.getByKey(gbifUser.getKey())).thenReturn(gbifUser);
+    userCache.get(gbifUser.getUserName(), userName -> gbifUser);
+
+    // WHEN
+    identityService.delete(gbifUser.getKey());
+
+    // THEN
+    verify(userMapperMock).delete(gbifUser.getKey());
+    assertReloaded(gbifUser);
+  }
+
+  @Test
+  public void testUpdatePasswordEvictsCachedUser() {
+    // GIVEN
+    GbifUser gbifUser = generateUser();
+    gbifUser.setKey(1);
+    when(userMapperMock.getByKey(gbifUser.getKey())).thenReturn(gbifUser);
+    userCache.get(gbifUser.getUserName(), userName -> gbifUser);
+
+    // WHEN
+    UserModelMutationResult result =
+        identityService.updatePassword(gbifUser.getKey(), TEST_PASSWORD2);
+
+    // THEN
+    assertFalse(result.containsError());
+    assertReloaded(gbifUser);
+  }
+
   @Test
   public void testCreateExistingCauseValidationError() {
     // GIVEN
@@ -177,6 +228,19 @@ public class IdentityServiceTest {
     verify(userMapperMock).getBySystemSetting("random.settings", "1");
   }
 
+  /** Asserts the user is not cached, so it is read again on the next authentication. */
+  private void assertReloaded(GbifUser gbifUser) {
+    AtomicInteger loads = new AtomicInteger();
+    userCache.get(
+        gbifUser.getUserName(),
+        userName -> {
+          loads.incrementAndGet();
+          return gbifUser;
+        });
+    assertEquals(1, loads.get());
+    verify(userCache, atLeastOnce()).evict(gbifUser.getUserName());
+  }
+
   /** Generates a different user on each call. Thread-Safe */
   public static GbifUser generateUser() {
     int idx = index.incrementAndGet();
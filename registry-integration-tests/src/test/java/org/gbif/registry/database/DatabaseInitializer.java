@@ -61,6 +61,8 @@ public class DatabaseInitializer implements BeforeEachCallback {
       connection.prepareStatement("DELETE FROM node_tag").execute();
       connection.prepareStatement("DELETE FROM node_comment").execute();
       connection.prepareStatement("DELETE FROM occurrence_download").execute();
+      connection.prepareStatement("DELETE FROM download_statistics").execute();
+      connection.prepareStatement("DELETE FROM download_user_statistics").execute();
       connection.prepareStatement("DELETE FROM organization_contact").execute();
       connection.prepareStatement("DELETE FROM organization_endpoint").execute();
       connection.prepareStatement("DELETE FROM organization_machine_tag").execute();
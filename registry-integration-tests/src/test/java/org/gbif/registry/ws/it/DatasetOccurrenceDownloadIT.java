@@ -15,9 +15,11 @@
  */
 package org.gbif.registry.ws.it;
 
+import org.gbif.api.model.common.GbifUser;
 import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.service.registry.DatasetOccurrenceDownloadUsageService;
@@ -26,23 +28,57 @@ import org.gbif.api.service.registry.InstallationService;
 import org.gbif.api.service.registry.NodeService;
 import org.gbif.api.service.registry.OccurrenceDownloadService;
 import org.gbif.api.service.registry.OrganizationService;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.doi.metadata.datacite.DataCiteMetadata;
+import org.gbif.doi.service.datacite.DataCiteValidator;
+import org.gbif.registry.doi.handler.DataCiteDoiHandlerStrategy;
+import org.gbif.registry.domain.ws.UserCreation;
+import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
 import org.gbif.registry.search.test.EsManageServer;
 import org.gbif.registry.test.TestDataFactory;
 import org.gbif.registry.ws.client.DatasetOccurrenceDownloadUsageClient;
 import org.gbif.registry.ws.client.OccurrenceDownloadClient;
+import org.gbif.registry.ws.it.fixtures.TestConstants;
+import org.gbif.registry.ws.it.fixtures.UserTestFixture;
 import org.gbif.ws.client.filter.SimplePrincipalProvider;
 import org.gbif.ws.security.KeyStore;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
+import org.junit.jupiter.api.Disabled;
+import org.junit.jupiter.api.Test;
 import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.EnumSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import com.google.common.base.Stopwatch;
+
+import static org.gbif.registry.doi.util.DataCiteConstants.DOWNLOAD_MAX_CONSTITUENTS;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  * Runs tests for the {@link OccurrenceDownloadService} implementations. This is parameterized to
@@ -56,6 +92,12 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
  */
 public class DatasetOccurrenceDownloadIT extends BaseItTest {
 
+  private static final Logger LOG = LoggerFactory.getLogger(DatasetOccurrenceDownloadIT.class);
+
+  private static final int BENCHMARK_DATASETS = 100_000;
+
+  private static final String NO_COUNTRY_USER = "no_country_user";
+
   private TestDataFactory testDataFactory;
   private final OccurrenceDownloadClient occurrenceDownloadClient;
   private final OccurrenceDownloadService occurrenceDownloadResource;
@@ -68,6 +110,11 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
   private final NodeService nodeService;
   private final InstallationService installationService;
 
+  private final UserTestFixture userTestFixture;
+  private final DataCiteDoiHandlerStrategy doiHandlerStrategy;
+  private final DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper;
+  private final PlatformTransactionManager transactionManager;
+
   @Autowired
   public DatasetOccurrenceDownloadIT(
       OccurrenceDownloadService occurrenceDownloadResource,
@@ -80,7 +127,11 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
       TestDataFactory testDataFactory,
       EsManageServer esServer,
       @LocalServerPort int localServerPort,
-      KeyStore keyStore) {
+      KeyStore keyStore,
+      UserTestFixture userTestFixture,
+      DataCiteDoiHandlerStrategy doiHandlerStrategy,
+      DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper,
+      PlatformTransactionManager transactionManager) {
     super(simplePrincipalProvider, esServer);
     this.occurrenceDownloadResource = occurrenceDownloadResource;
     this.occurrenceDownloadClient =
@@ -93,6 +144,10 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
     this.datasetOccurrenceDownloadUsageClient =
         prepareClient(localServerPort, keyStore, DatasetOccurrenceDownloadUsageClient.class);
     this.testDataFactory = testDataFactory;
+    this.userTestFixture = userTestFixture;
+    this.doiHandlerStrategy = doiHandlerStrategy;
+    this.datasetOccurrenceDownloadMapper = datasetOccurrenceDownloadMapper;
+    this.transactionManager = transactionManager;
   }
 
   /**
@@ -198,4 +253,238 @@ public class DatasetOccurrenceDownloadIT extends BaseItTest {
     Download occDownload2 = occurrenceDownloadService.get(occurrenceDownload.getKey());
     assertEquals(3, occDownload2.getNumberDatasets());
   }
+
+  /** Usages of datasets that don't exist are dropped, the others are kept. */
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void testAddOccurrenceDatasetUnknown(ServiceType serviceType) {
+    OccurrenceDownloadService occurrenceDownloadService =
+        getService(serviceType, occurrenceDownloadResource, occurrenceDownloadClient);
+    Download occurrenceDownload = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    final Dataset testDataset = createTestDataset();
+
+    occurrenceDownloadService.create(occurrenceDownload);
+
+    Map<UUID, Long> datasetCitation = new HashMap<>();
+    datasetCitation.put(testDataset.getKey(), 1000L);
+    datasetCitation.put(UUID.randomUUID(), 10L);
+    occurrenceDownloadService.createUsages(occurrenceDownload.getKey(), datasetCitation);
+
+    Download occDownload2 = occurrenceDownloadService.get(occurrenceDownload.getKey());
+    assertEquals(1, occDownload2.getNumberDatasets());
+  }
+
+  /**
+   * A download is added to the statistics of its user's country and its usages to those of their
+   * datasets once, when it succeeds, whether the usages are created before or after that. Downloads
+   * of users without a country are left out of the user statistics.
+   */
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void testDownloadedRecordsByDatasetStatistics(ServiceType serviceType) {
+    OccurrenceDownloadService occurrenceDownloadService =
+        getService(serviceType, occurrenceDownloadResource, occurrenceDownloadClient);
+    final Dataset testDataset = createTestDataset();
+    // the creator of the test downloads
+    UserCreation creator = UserTestFixture.generateUser(TestConstants.TEST_ADMIN);
+    creator.getSettings().put("country", Country.DENMARK.getIso2LetterCode());
+    userTestFixture.prepareUser(creator);
+    UserCreation noCountryUser = UserTestFixture.generateUser(NO_COUNTRY_USER);
+    noCountryUser.getSettings().remove("country");
+    userTestFixture.prepareUser(noCountryUser);
+
+    Download usagesFirst = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    occurrenceDownloadService.create(usagesFirst);
+    occurrenceDownloadService.createUsages(
+        usagesFirst.getKey(), Collections.singletonMap(testDataset.getKey(), 1000L));
+    succeed(occurrenceDownloadService, usagesFirst.getKey());
+    assertEquals(
+        thisMonth(1L),
+        occurrenceDownloadService.getDownloadsByUserCountry(null, null, Country.DENMARK));
+
+    Download usagesLast = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    occurrenceDownloadService.create(usagesLast);
+    succeed(occurrenceDownloadService, usagesLast.getKey());
+    occurrenceDownloadService.createUsages(
+        usagesLast.getKey(), Collections.singletonMap(testDataset.getKey(), 10L));
+
+    // updating a download that has already succeeded doesn't count it again
+    succeed(occurrenceDownloadService, usagesFirst.getKey());
+
+    // the download of another user is updated by the admin of the resource
+    Download noCountry = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    noCountry.getRequest().setCreator(NO_COUNTRY_USER);
+    occurrenceDownloadResource.create(noCountry);
+    succeed(occurrenceDownloadResource, noCountry.getKey());
+
+    assertEquals(
+        thisMonth(1010L),
+        occurrenceDownloadService.getDownloadedRecordsByDataset(
+            null, null, null, testDataset.getKey()));
+    assertEquals(
+        thisMonth(1010L),
+        occurrenceDownloadService.getDownloadedRecordsByDataset(null, null, Country.GERMANY, null));
+    assertEquals(
+        thisMonth(2L),
+        occurrenceDownloadService.getDownloadsByUserCountry(null, null, Country.DENMARK));
+    assertEquals(
+        thisMonth(2L), occurrenceDownloadService.getDownloadsByUserCountry(null, null, null));
+  }
+
+  private static Map<Integer, Map<Integer, Long>> thisMonth(long value) {
+    OffsetDateTime now = OffsetDateTime.now(ZoneOffset.UTC);
+    return Collections.singletonMap(
+        now.getYear(), Collections.singletonMap(now.getMonthValue(), value));
+  }
+
+  /**
+   * The constituents of a download read through the cursor are its usages, without the citations,
+   * those with most records first.
+   */
+  @Test
+  public void testListConstituentsByDownload() {
+    Download occurrenceDownload = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    occurrenceDownloadResource.create(occurrenceDownload);
+    Map<UUID, Long> datasetCitation = new HashMap<>();
+    datasetCitation.put(createTestDataset().getKey(), 10L);
+    datasetCitation.put(createTestDataset().getKey(), 1000L);
+    datasetCitation.put(createTestDataset().getKey(), 100L);
+    occurrenceDownloadResource.createUsages(occurrenceDownload.getKey(), datasetCitation);
+
+    List<DatasetOccurrenceDownloadUsage> usages =
+        new ArrayList<>(
+            datasetOccurrenceDownloadMapper.listByDownload(occurrenceDownload.getKey(), null));
+    usages.sort(
+        Comparator.comparingLong(DatasetOccurrenceDownloadUsage::getNumberRecords).reversed());
+    List<DatasetOccurrenceDownloadUsage> constituents = new ArrayList<>();
+    new TransactionTemplate(transactionManager)
+        .execute(
+            status -> {
+              datasetOccurrenceDownloadMapper.listConstituentsByDownload(
+                  occurrenceDownload.getKey(),
+                  context -> constituents.add(context.getResultObject()));
+              return null;
+            });
+
+    assertEquals(3, usages.size());
+    assertEquals(
+        Arrays.asList(1000L, 100L, 10L),
+        constituents.stream()
+            .map(DatasetOccurrenceDownloadUsage::getNumberRecords)
+            .collect(Collectors.toList()));
+    for (int i = 0; i < usages.size(); i++) {
+      DatasetOccurrenceDownloadUsage usage = usages.get(i);
+      DatasetOccurrenceDownloadUsage constituent = constituents.get(i);
+      assertEquals(usage.getDownloadKey(), constituent.getDownloadKey());
+      assertEquals(usage.getDatasetKey(), constituent.getDatasetKey());
+      assertEquals(usage.getDatasetTitle(), constituent.getDatasetTitle());
+      assertEquals(usage.getDatasetDOI(), constituent.getDatasetDOI());
+      assertEquals(usage.getNumberRecords(), constituent.getNumberRecords());
+      assertNull(constituent.getDatasetCitation());
+    }
+  }
+
+  private static void succeed(OccurrenceDownloadService service, String downloadKey) {
+    Download download = service.get(downloadKey);
+    download.setStatus(Download.Status.SUCCEEDED);
+    download.setTotalRecords(1010L);
+    service.update(download);
+  }
+
+  /** Times the creation of the usages of a download of 100k datasets through the client. */
+  @Disabled("Benchmark, use during development.")
+  @Test
+  public void benchmarkCreateUsagesOfManyDatasets() throws Exception {
+    Download occurrenceDownload = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    occurrenceDownloadClient.create(occurrenceDownload);
+    Map<UUID, Long> datasetCitation = createBenchmarkDatasets();
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    occurrenceDownloadClient.createUsages(occurrenceDownload.getKey(), datasetCitation);
+    LOG.info(
+        "Created the usages of {} datasets in {}ms",
+        BENCHMARK_DATASETS,
+        stopwatch.elapsed(TimeUnit.MILLISECONDS));
+
+    Download occDownload2 = occurrenceDownloadClient.get(occurrenceDownload.getKey());
+    assertEquals(BENCHMARK_DATASETS, occDownload2.getNumberDatasets());
+  }
+
+  /**
+   * Measures the heap used to build the DOI metadata of a download of 100k datasets, within a
+   * transaction as when the download succeeds. The peak is the sum of the peaks of the heap pools,
+   * so it is an upper bound.
+   */
+  @Disabled("Benchmark, use during development.")
+  @Test
+  public void benchmarkDownloadMetadataHeapUsage() throws Exception {
+    Download occurrenceDownload = OccurrenceDownloadIT.getTestInstancePredicateDownload();
+    occurrenceDownloadClient.create(occurrenceDownload);
+    occurrenceDownloadClient.createUsages(occurrenceDownload.getKey(), createBenchmarkDatasets());
+    Download download = occurrenceDownloadClient.get(occurrenceDownload.getKey());
+    GbifUser user = new GbifUser();
+    user.setUserName(download.getRequest().getCreator());
+    user.setFirstName("Benchmark");
+    user.setLastName("User");
+
+    List<MemoryPoolMXBean> heapPools =
+        ManagementFactory.getMemoryPoolMXBeans().stream()
+            .filter(pool -> pool.getType() == MemoryType.HEAP)
+            .collect(Collectors.toList());
+    System.gc();
+    long usedBefore = heapPools.stream().mapToLong(pool -> pool.getUsage().getUsed()).sum();
+    heapPools.forEach(MemoryPoolMXBean::resetPeakUsage);
+
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    DataCiteMetadata metadata =
+        new TransactionTemplate(transactionManager)
+            .execute(status -> doiHandlerStrategy.buildMetadata(download, user));
+    long elapsed = stopwatch.elapsed(TimeUnit.MILLISECONDS);
+    long peak = heapPools.stream().mapToLong(pool -> pool.getPeakUsage().getUsed()).sum();
+    String xml = DataCiteValidator.toXml(download.getDoi(), metadata);
+
+    LOG.info(
+        "Built the metadata of a download of {} datasets in {}ms, peaking at {}MB of heap over "
+            + "the {}MB used before, {} characters of XML",
+        BENCHMARK_DATASETS,
+        elapsed,
+        (peak - usedBefore) / (1024 * 1024),
+        usedBefore / (1024 * 1024),
+        xml.length());
+    assertTrue(
+        metadata.getRelatedIdentifiers().getRelatedIdentifier().size()
+            <= DOWNLOAD_MAX_CONSTITUENTS);
+  }
+
+  /**
+   * Creates copies of a test dataset with other keys, creating them one by one would take too
+   * long.
+   *
+   * @return the keys of the {@link #BENCHMARK_DATASETS} datasets, with 1000 records each
+   */
+  private Map<UUID, Long> createBenchmarkDatasets() throws Exception {
+    final Dataset testDataset = createTestDataset();
+
+    Map<UUID, Long> datasetCitation = new HashMap<>();
+    try (Connection c = database.getTestDatabase().getConnection();
+        PreparedStatement insert =
+            c.prepareStatement(
+                "INSERT INTO dataset "
+                    + "SELECT (jsonb_populate_record(NULL::dataset, to_jsonb(d) "
+                    + "  || jsonb_build_object('key', md5(d.key::text || g)::uuid))).* "
+                    + "FROM dataset d, generate_series(2, ?) g WHERE d.key = ?");
+        PreparedStatement select = c.prepareStatement("SELECT key FROM dataset")) {
+      insert.setInt(1, BENCHMARK_DATASETS);
+      insert.setObject(2, testDataset.getKey());
+      insert.execute();
+
+      try (ResultSet rs = select.executeQuery()) {
+        while (rs.next()) {
+          datasetCitation.put((UUID) rs.getObject(1), 1000L);
+        }
+      }
+    }
+    assertEquals(BENCHMARK_DATASETS, datasetCitation.size());
+    return datasetCitation;
+  }
 }
@@ -182,6 +182,10 @@ public abstract class NetworkEntityIT<
 
     titles.remove(titles.keySet().iterator().next());
     assertEquals(titles, service.getTitles(titles.keySet()));
+
+    // keys that don't exist are returned without a title
+    titles.put(UUID.randomUUID(), null);
+    assertEquals(titles, service.getTitles(titles.keySet()));
   }
 
   /**
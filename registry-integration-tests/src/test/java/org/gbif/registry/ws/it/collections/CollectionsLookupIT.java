@@ -0,0 +1,155 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.collections;
+
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.api.service.collections.CollectionService;
+import org.gbif.api.service.collections.InstitutionService;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.domain.collections.CollectionsLookupResult;
+import org.gbif.registry.search.test.EsManageServer;
+import org.gbif.registry.ws.client.collections.CollectionsLookupClient;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.registry.ws.resources.collections.CollectionsLookupResource;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+import org.gbif.ws.security.KeyStore;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.server.LocalServerPort;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/** Tests the {@link CollectionsLookupResource} and its client. */
+public class CollectionsLookupIT extends BaseItTest {
+
+  private static final String TEST_USER = "test";
+  private static final String IDENTIFIER = "http://grscicoll.org/cool/kx98-stkb";
+
+  private final Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>>
+      lookupResource;
+  private final Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookupClient;
+  private final InstitutionService institutionService;
+  private final CollectionService collectionService;
+
+  @Autowired
+  public CollectionsLookupIT(
+      CollectionsLookupResource collectionsLookupResource,
+      InstitutionService institutionService,
+      CollectionService collectionService,
+      SimplePrincipalProvider simplePrincipalProvider,
+      EsManageServer esServer,
+      @LocalServerPort int localServerPort,
+      KeyStore keyStore) {
+    super(simplePrincipalProvider, esServer);
+    this.lookupResource = collectionsLookupResource::lookup;
+    this.lookupClient =
+        prepareClient(localServerPort, keyStore, CollectionsLookupClient.class)::lookup;
+    this.institutionService = institutionService;
+    this.collectionService = collectionService;
+  }
+
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void lookupTest(ServiceType serviceType) {
+    Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookup =
+        getService(serviceType, lookupResource, lookupClient);
+
+    // State
+    UUID institution1 = createInstitution("I1", "Natural History Museum");
+    UUID institution2 = createInstitution("I2", "Botanical Garden");
+    institutionService.addIdentifier(institution2, newIdentifier());
+
+    UUID collection1 = createCollection("C1", institution1);
+    UUID collection2 = createCollection("C1", institution2);
+
+    List<CollectionsLookupResult> results =
+        lookup.apply(
+            Arrays.asList(
+                new CollectionsLookupQuery("i1", null, "C1", null),
+                new CollectionsLookupQuery(null, IDENTIFIER.replace("http://", ""), "C1", null),
+                new CollectionsLookupQuery("natural history  museum", null, null, null),
+                new CollectionsLookupQuery(null, null, "C1", null),
+                new CollectionsLookupQuery("foo", null, "bar", null)));
+
+    // codes are case insensitive, and narrow down the collections of the institution
+    assertEquals(5, results.size());
+    assertEquals(Collections.singletonList(institution1), keys(results.get(0).getInstitutions()));
+    assertEquals(Collections.singletonList(collection1), keys(results.get(0).getCollections()));
+
+    // identifiers are resolved regardless of their http scheme
+    assertEquals(Collections.singletonList(institution2), keys(results.get(1).getInstitutions()));
+    assertEquals(Collections.singletonList(collection2), keys(results.get(1).getCollections()));
+
+    // names are normalized
+    assertEquals(Collections.singletonList(institution1), keys(results.get(2).getInstitutions()));
+
+    // ambiguous codes return all the matches
+    assertEquals(2, results.get(3).getCollections().size());
+
+    assertTrue(results.get(4).getInstitutions().isEmpty());
+    assertTrue(results.get(4).getCollections().isEmpty());
+
+    // deleted entities aren't matched anymore
+    institutionService.delete(institution1);
+    results =
+        lookup.apply(
+            Collections.singletonList(new CollectionsLookupQuery("I1", null, null, null)));
+    assertTrue(results.get(0).getInstitutions().isEmpty());
+  }
+
+  private UUID createInstitution(String code, String name) {
+    Institution institution = new Institution();
+    institution.setCode(code);
+    institution.setName(name);
+    institution.setCreatedBy(TEST_USER);
+    institution.setModifiedBy(TEST_USER);
+    return institutionService.create(institution);
+  }
+
+  private UUID createCollection(String code, UUID institutionKey) {
+    Collection collection = new Collection();
+    collection.setCode(code);
+    collection.setName("Collection " + code);
+    collection.setInstitutionKey(institutionKey);
+    collection.setCreatedBy(TEST_USER);
+    collection.setModifiedBy(TEST_USER);
+    return collectionService.create(collection);
+  }
+
+  private static Identifier newIdentifier() {
+    Identifier identifier = new Identifier(IdentifierType.GRSCICOLL_URI, IDENTIFIER);
+    identifier.setCreatedBy(TEST_USER);
+    return identifier;
+  }
+
+  private static List<UUID> keys(List<KeyCodeNameResult> results) {
+    return results.stream().map(KeyCodeNameResult::getKey).collect(Collectors.toList());
+  }
+}
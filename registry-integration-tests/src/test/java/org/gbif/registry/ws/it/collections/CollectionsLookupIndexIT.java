@@ -0,0 +1,177 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.collections;
+
+import org.gbif.api.model.collections.Collection;
+import org.gbif.api.model.collections.Institution;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.api.service.collections.CollectionService;
+import org.gbif.api.service.collections.InstitutionService;
+import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.domain.collections.CollectionsLookupResult;
+import org.gbif.registry.events.collections.CollectionsLookupIndexListener;
+import org.gbif.registry.search.test.EsManageServer;
+import org.gbif.registry.ws.client.collections.CollectionsLookupClient;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.registry.ws.resources.collections.CollectionsLookupResource;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+import org.gbif.ws.security.KeyStore;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.web.server.LocalServerPort;
+import org.springframework.test.context.TestPropertySource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that the {@link CollectionsLookupIndexListener} keeps the lookup index up to date. The
+ * index isn't rebuilt during the tests, so the changes are only found through the events.
+ */
+@TestPropertySource(properties = "grscicoll.lookup.maxIndexAgeSeconds=3600")
+public class CollectionsLookupIndexIT extends BaseItTest {
+
+  private static final String TEST_USER = "test";
+
+  private final Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>>
+      lookupResource;
+  private final Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookupClient;
+  private final InstitutionService institutionService;
+  private final CollectionService collectionService;
+
+  @Autowired
+  public CollectionsLookupIndexIT(
+      CollectionsLookupResource lookupResource,
+      InstitutionService institutionService,
+      CollectionService collectionService,
+      SimplePrincipalProvider simplePrincipalProvider,
+      EsManageServer esServer,
+      @LocalServerPort int localServerPort,
+      KeyStore keyStore) {
+    super(simplePrincipalProvider, esServer);
+    this.lookupResource = lookupResource::lookup;
+    this.lookupClient =
+        prepareClient(localServerPort, keyStore, CollectionsLookupClient.class)::lookup;
+    this.institutionService = institutionService;
+    this.collectionService = collectionService;
+  }
+
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void institutionEventsTest(ServiceType serviceType) {
+    Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookup =
+        getService(serviceType, lookupResource, lookupClient);
+    // the tables are emptied between the tests but the index isn't, so the codes are unique
+    String code = uniqueCode();
+    String identifier = "http://grscicoll.org/cool/" + code.toLowerCase();
+
+    // created
+    Institution institution = new Institution();
+    institution.setCode(code);
+    institution.setName("Institution " + code);
+    institution.setCreatedBy(TEST_USER);
+    institution.setModifiedBy(TEST_USER);
+    UUID key = institutionService.create(institution);
+    assertEquals(Collections.singletonList(key), institutions(lookup, code, null));
+
+    // updated
+    institution = institutionService.get(key);
+    institution.setCode(code + "U");
+    institutionService.update(institution);
+    assertTrue(institutions(lookup, code, null).isEmpty());
+    assertEquals(Collections.singletonList(key), institutions(lookup, code + "U", null));
+
+    // identifier added
+    Identifier newIdentifier = new Identifier(IdentifierType.GRSCICOLL_URI, identifier);
+    newIdentifier.setCreatedBy(TEST_USER);
+    institutionService.addIdentifier(key, newIdentifier);
+    assertEquals(Collections.singletonList(key), institutions(lookup, null, identifier));
+
+    // deleted
+    institutionService.delete(key);
+    assertTrue(institutions(lookup, code + "U", null).isEmpty());
+    assertTrue(institutions(lookup, null, identifier).isEmpty());
+  }
+
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void collectionEventsTest(ServiceType serviceType) {
+    Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookup =
+        getService(serviceType, lookupResource, lookupClient);
+    String code = uniqueCode();
+
+    // created
+    Collection collection = new Collection();
+    collection.setCode(code);
+    collection.setName("Collection " + code);
+    collection.setCreatedBy(TEST_USER);
+    collection.setModifiedBy(TEST_USER);
+    UUID key = collectionService.create(collection);
+    assertEquals(Collections.singletonList(key), collections(lookup, code));
+
+    // updated
+    collection = collectionService.get(key);
+    collection.setCode(code + "U");
+    collectionService.update(collection);
+    assertTrue(collections(lookup, code).isEmpty());
+    assertEquals(Collections.singletonList(key), collections(lookup, code + "U"));
+
+    // deleted
+    collectionService.delete(key);
+    assertTrue(collections(lookup, code + "U").isEmpty());
+  }
+
+  private static List<UUID> institutions(
+      Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookup,
+      String code,
+      String identifier) {
+    return keys(
+        lookup
+            .apply(
+                Collections.singletonList(
+                    new CollectionsLookupQuery(code, identifier, null, null)))
+            .get(0)
+            .getInstitutions());
+  }
+
+  private static List<UUID> collections(
+      Function<List<CollectionsLookupQuery>, List<CollectionsLookupResult>> lookup,
+      String code) {
+    return keys(
+        lookup
+            .apply(Collections.singletonList(new CollectionsLookupQuery(null, null, code, null)))
+            .get(0)
+            .getCollections());
+  }
+
+  private static String uniqueCode() {
+    return "C" + UUID.randomUUID().toString().replace("-", "").substring(0, 12).toUpperCase();
+  }
+
+  private static List<UUID> keys(List<KeyCodeNameResult> results) {
+    return results.stream().map(KeyCodeNameResult::getKey).collect(Collectors.toList());
+  }
+}
@@ -15,6 +15,7 @@
  */
 package org.gbif.registry.ws.it.oaipmh;
 
+import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.Organization;
@@ -146,6 +147,14 @@ public abstract class AbstractOaipmhEndpointIT extends BaseItTest {
     datasetService.update(dataset);
   }
 
+  /** Adds a contact with a unique last name to the provided Dataset. */
+  protected Contact addContact(UUID datasetKey) {
+    Contact contact = testDataFactory.newContact();
+    contact.setLastName("Contact-" + UUID.randomUUID());
+    datasetService.addContact(datasetKey, contact);
+    return contact;
+  }
+
   /** Insert metadata associated to the provided Dataset. */
   protected void insertMetadata(UUID key, InputStream document) {
     datasetService.insertMetadata(key, document);
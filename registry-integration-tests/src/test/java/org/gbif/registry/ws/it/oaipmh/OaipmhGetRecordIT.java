@@ -15,6 +15,7 @@
  */
 package org.gbif.registry.ws.it.oaipmh;
 
+import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.Organization;
@@ -163,6 +164,28 @@ public class OaipmhGetRecordIT extends AbstractOaipmhEndpointIT {
         "GetRecord verb returns augmented metadata");
   }
 
+  @Test
+  public void getRecordRenderedAgainAfterComponentChange() throws Exception {
+    Organization org1 = createOrganization(Country.ZAMBIA);
+    Installation org1Installation1 = createInstallation(org1.getKey());
+    Dataset dataset =
+        createDataset(org1.getKey(), org1Installation1.getKey(), DatasetType.CHECKLIST, new Date());
+    String url =
+        baseUrl
+            + "?verb=GetRecord&metadataPrefix="
+            + EML_FORMAT.getMetadataPrefix()
+            + "&identifier="
+            + dataset.getKey();
+
+    // the rendered record is cached
+    IOUtils.toString(new URI(url).toURL(), StandardCharsets.UTF_8);
+
+    // changing a component of the dataset evicts it
+    Contact contact = addContact(dataset.getKey());
+    String result = IOUtils.toString(new URI(url).toURL(), StandardCharsets.UTF_8);
+    assertTrue(result.contains(contact.getLastName()), "GetRecord verb returns the new contact");
+  }
+
   @Test
   public void testGetDeletedRestoredRecord() throws Exception {
     Organization org1 = createOrganization(Country.ZAMBIA);
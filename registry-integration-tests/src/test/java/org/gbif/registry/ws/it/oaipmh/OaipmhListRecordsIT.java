@@ -32,11 +32,18 @@ import org.gbif.utils.file.FileUtils;
 import org.gbif.ws.client.filter.SimplePrincipalProvider;
 
 import java.net.URI;
+import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.io.IOUtils;
 import org.dspace.xoai.model.oaipmh.Record;
@@ -56,6 +63,11 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 /** Test the ListRecords verb of the OAI-PMH endpoint. */
 public class OaipmhListRecordsIT extends AbstractOaipmhEndpointIT {
 
+  // the record headers, the identifiers of the DC documents are prefixed
+  private static final Pattern IDENTIFIER = Pattern.compile("<identifier>([^<]+)</identifier>");
+  private static final Pattern RESUMPTION_TOKEN =
+      Pattern.compile("<resumptionToken[^>]*>([^<]+)</resumptionToken>");
+
   @Autowired
   public OaipmhListRecordsIT(
       SimplePrincipalProvider principalProvider,
@@ -190,6 +202,53 @@ public class OaipmhListRecordsIT extends AbstractOaipmhEndpointIT {
         "ListRecords verb return all records when the number of records is higher than 'MaxListRecords'");
   }
 
+  /**
+   * Test that the resumption token carries the position of the last record served, so the next page
+   * continues after it even if records of the previous pages are deleted in between.
+   */
+  @Test
+  public void testListRecordsPagingContinuesAfterLastRecord() throws Exception {
+    Organization org = createOrganization(Country.ICELAND);
+    Installation installation = createInstallation(org.getKey());
+    // all on the same day, ordered by key
+    Set<String> keys = new HashSet<>();
+    for (int i = 0; i < 4; i++) {
+      keys.add(
+          createDataset(org.getKey(), installation.getKey(), DatasetType.CHECKLIST, new Date())
+              .getKey()
+              .toString());
+    }
+
+    String firstPage =
+        IOUtils.toString(
+            new URI(
+                    baseUrl
+                        + "?verb=ListRecords&metadataPrefix="
+                        + OAIDC_FORMAT.getMetadataPrefix())
+                .toURL(),
+            StandardCharsets.UTF_8);
+    List<String> served = identifiers(firstPage);
+    assertEquals(OaipmhTestConfiguration.MAX_LIST_RECORDS, served.size());
+    String token = resumptionToken(firstPage);
+    assertTrue(token.contains("."), "The resumption token carries the position of the last record");
+
+    // paging by offset would now skip a record
+    deleteDataset(UUID.fromString(served.get(0)));
+
+    String secondPage =
+        IOUtils.toString(
+            new URI(
+                    baseUrl
+                        + "?verb=ListRecords&resumptionToken="
+                        + URLEncoder.encode(token, StandardCharsets.UTF_8.name()))
+                .toURL(),
+            StandardCharsets.UTF_8);
+    served.addAll(identifiers(secondPage));
+
+    assertEquals(4, served.size());
+    assertEquals(keys, new HashSet<>(served));
+  }
+
   @Test
   public void getListRecordsWithAugmentedMetadata() throws Exception {
     Organization org1 = createOrganization(Country.ZAMBIA);
@@ -224,4 +283,19 @@ public class OaipmhListRecordsIT extends AbstractOaipmhEndpointIT {
             "<citation identifier=\"doi:tims-ident.2136.ex43.33.d\">title 1</citation>"),
         "ListRecords verb returns augmented metadata");
   }
+
+  private static List<String> identifiers(String response) {
+    List<String> identifiers = new ArrayList<>();
+    Matcher matcher = IDENTIFIER.matcher(response);
+    while (matcher.find()) {
+      identifiers.add(matcher.group(1));
+    }
+    return identifiers;
+  }
+
+  private static String resumptionToken(String response) {
+    Matcher matcher = RESUMPTION_TOKEN.matcher(response);
+    assertTrue(matcher.find(), "The response has a resumption token");
+    return matcher.group(1);
+  }
 }
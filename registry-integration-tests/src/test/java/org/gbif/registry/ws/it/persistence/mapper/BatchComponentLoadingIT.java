@@ -0,0 +1,145 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.it.persistence.mapper;
+
+import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.service.registry.DatasetService;
+import org.gbif.api.service.registry.OrganizationService;
+import org.gbif.registry.persistence.WithMyBatis;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.search.test.EsManageServer;
+import org.gbif.registry.test.TestDataFactory;
+import org.gbif.registry.ws.it.BaseItTest;
+import org.gbif.ws.client.filter.SimplePrincipalProvider;
+
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import static org.gbif.registry.ws.it.fixtures.TestConstants.PAGE;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+/**
+ * Checks that loading the components of a page of entities in batches builds the same entities as
+ * the nested selects of the default result maps.
+ */
+public class BatchComponentLoadingIT extends BaseItTest {
+
+  private static final Pageable DEFAULT_PAGE = PAGE.apply(10, 0L);
+
+  private final DatasetMapper datasetMapper;
+  private final OrganizationMapper organizationMapper;
+  private final DatasetService datasetService;
+  private final OrganizationService organizationService;
+  private final WithMyBatis withMyBatis;
+  private final TestDataFactory testDataFactory;
+
+  @Autowired
+  public BatchComponentLoadingIT(
+      DatasetMapper datasetMapper,
+      OrganizationMapper organizationMapper,
+      DatasetService datasetService,
+      OrganizationService organizationService,
+      WithMyBatis withMyBatis,
+      TestDataFactory testDataFactory,
+      SimplePrincipalProvider principalProvider,
+      EsManageServer esServer) {
+    super(principalProvider, esServer);
+    this.datasetMapper = datasetMapper;
+    this.organizationMapper = organizationMapper;
+    this.datasetService = datasetService;
+    this.organizationService = organizationService;
+    this.withMyBatis = withMyBatis;
+    this.testDataFactory = testDataFactory;
+  }
+
+  @Test
+  public void testDatasetComponents() {
+    Installation installation = testDataFactory.newPersistedInstallation();
+    UUID organizationKey = installation.getOrganizationKey();
+
+    // one dataset with two of each component, one with a single endpoint and one without any
+    Dataset dataset = testDataFactory.newPersistedDataset(organizationKey, installation.getKey());
+    addComponents(dataset.getKey());
+    addComponents(dataset.getKey());
+    Dataset another = testDataFactory.newPersistedDataset(organizationKey, installation.getKey());
+    datasetService.addEndpoint(another.getKey(), testDataFactory.newEndpoint());
+    testDataFactory.newPersistedDataset(organizationKey, installation.getKey());
+
+    List<Dataset> nested = datasetMapper.list(DEFAULT_PAGE);
+    List<Dataset> batched =
+        withMyBatis.loadComponents(
+            datasetMapper, datasetMapper.listWithoutComponents(DEFAULT_PAGE));
+
+    assertEquals(3, nested.size());
+    assertEquals(nested, batched);
+
+    Dataset withComponents =
+        batched.stream().filter(d -> d.getKey().equals(dataset.getKey())).findFirst().get();
+    assertEquals(2, withComponents.getContacts().size());
+    assertEquals(2, withComponents.getEndpoints().size());
+    assertFalse(withComponents.getEndpoints().get(0).getMachineTags().isEmpty());
+    assertEquals(2, withComponents.getIdentifiers().size());
+    assertEquals(2, withComponents.getTags().size());
+    assertEquals(2, withComponents.getMachineTags().size());
+    assertEquals(2, withComponents.getComments().size());
+
+    assertEquals(
+        datasetMapper.search("title", DEFAULT_PAGE),
+        withMyBatis.loadComponents(
+            datasetMapper, datasetMapper.searchWithoutComponents("title", DEFAULT_PAGE)));
+  }
+
+  @Test
+  public void testOrganizationComponents() {
+    Organization organization = testDataFactory.newPersistedOrganization();
+    organizationService.addContact(organization.getKey(), testDataFactory.newContact());
+    organizationService.addEndpoint(organization.getKey(), testDataFactory.newEndpoint());
+    organizationService.addIdentifier(organization.getKey(), testDataFactory.newIdentifier());
+    organizationService.addTag(organization.getKey(), "tag");
+    organizationService.addMachineTag(organization.getKey(), testDataFactory.newMachineTag());
+    organizationService.addComment(organization.getKey(), testDataFactory.newComment());
+    testDataFactory.newPersistedOrganization(organization.getEndorsingNodeKey());
+
+    List<Organization> nested = organizationMapper.list(DEFAULT_PAGE);
+    List<Organization> batched =
+        withMyBatis.loadComponents(
+            organizationMapper, organizationMapper.listWithoutComponents(DEFAULT_PAGE));
+
+    assertEquals(2, nested.size());
+    assertEquals(nested, batched);
+  }
+
+  private void addComponents(UUID datasetKey) {
+    datasetService.addContact(datasetKey, testDataFactory.newContact());
+    datasetService.addEndpoint(datasetKey, testDataFactory.newEndpoint());
+    datasetService.addIdentifier(datasetKey, testDataFactory.newIdentifier());
+    datasetService.addTag(datasetKey, "tag-" + UUID.randomUUID());
+    // distinct namespaces, as machine tags are only ordered by their namespace
+    MachineTag machineTag = testDataFactory.newMachineTag();
+    machineTag.setNamespace("ns-" + UUID.randomUUID());
+    datasetService.addMachineTag(datasetKey, machineTag);
+    datasetService.addComment(datasetKey, testDataFactory.newComment());
+  }
+}
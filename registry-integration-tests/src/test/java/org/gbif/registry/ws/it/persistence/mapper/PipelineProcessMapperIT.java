@@ -42,6 +42,9 @@ import org.gbif.ws.client.filter.SimplePrincipalProvider;
 
 import java.time.LocalDateTime;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.junit.jupiter.api.Test;
@@ -53,6 +56,7 @@ import static org.gbif.registry.ws.it.fixtures.TestConstants.PAGE;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class PipelineProcessMapperIT extends BaseItTest {
@@ -358,6 +362,49 @@ public class PipelineProcessMapperIT extends BaseItTest {
     assertEquals(3, pipelineProcessMapper.getLastAttempt(uuid1).get().intValue());
   }
 
+  @Test
+  public void listLastAttemptsTest() {
+    // datasets with 1 to 5 attempts
+    Map<UUID, Integer> expected = new HashMap<>();
+    for (int i = 1; i <= 5; i++) {
+      UUID datasetKey = insertDataset();
+      for (int attempt = 1; attempt <= i; attempt++) {
+        pipelineProcessMapper.createIfNotExists(
+            new PipelineProcess()
+                .setDatasetKey(datasetKey)
+                .setAttempt(attempt)
+                .setCreatedBy(TEST_USER));
+      }
+      expected.put(datasetKey, i);
+    }
+
+    // deleted datasets are not listed
+    UUID deletedKey = expected.keySet().iterator().next();
+    datasetMapper.delete(deletedKey);
+    expected.remove(deletedKey);
+
+    // page through them, continuing after the last dataset of each page
+    Map<UUID, Integer> listed = new HashMap<>();
+    UUID lastDatasetKey = null;
+    int pages = 0;
+    List<PipelineProcess> page;
+    do {
+      page = pipelineProcessMapper.listLastAttempts(lastDatasetKey, 2);
+      for (PipelineProcess process : page) {
+        assertTrue(process.getKey() > 0);
+        // each dataset is listed once
+        assertNull(listed.put(process.getDatasetKey(), process.getAttempt()));
+      }
+      if (!page.isEmpty()) {
+        lastDatasetKey = page.get(page.size() - 1).getDatasetKey();
+      }
+      pages++;
+    } while (page.size() == 2);
+
+    assertEquals(expected, listed);
+    assertEquals(3, pages);
+  }
+
   @Test
   public void getPipelineProcessesByDatasetAndAttemptsTest() {
     // insert processes
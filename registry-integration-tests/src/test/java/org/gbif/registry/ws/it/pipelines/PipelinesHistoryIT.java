@@ -40,6 +40,7 @@ import org.gbif.api.vocabulary.License;
 import org.gbif.api.vocabulary.NodeType;
 import org.gbif.api.vocabulary.ParticipationStatus;
 import org.gbif.api.vocabulary.UserRole;
+import org.gbif.registry.domain.pipelines.PipelineStepStatusUpdate;
 import org.gbif.registry.search.test.EsManageServer;
 import org.gbif.registry.ws.client.pipelines.PipelinesHistoryClient;
 import org.gbif.registry.ws.it.BaseItTest;
@@ -50,7 +51,9 @@ import org.gbif.ws.client.filter.SimplePrincipalProvider;
 import org.gbif.ws.security.KeyStore;
 
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.params.ParameterizedTest;
@@ -59,6 +62,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.web.server.LocalServerPort;
 import org.springframework.security.access.AccessDeniedException;
 
+import com.google.common.collect.Lists;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
@@ -170,6 +175,27 @@ public class PipelinesHistoryIT extends BaseItTest {
     assertEquals(2, processes.getCount());
   }
 
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void historyDatasetTitleUpdatedTest(ServiceType serviceType) {
+    PipelinesHistoryService service =
+        getService(serviceType, pipelinesHistoryResource, pipelinesHistoryClient);
+    final UUID datasetKey = createDataset();
+    service.createPipelineProcess(new PipelineProcessParameters(datasetKey, 1));
+
+    PagingResponse<PipelineProcess> processes = service.history(datasetKey, new PagingRequest());
+    assertEquals("title", processes.getResults().get(0).getDatasetTitle());
+
+    // the cached title is dropped when the dataset is updated
+    Dataset dataset = datasetService.get(datasetKey);
+    dataset.setTitle("new title");
+    datasetService.update(dataset);
+
+    processes = service.history(datasetKey, new PagingRequest());
+    assertEquals("new title", processes.getResults().get(0).getDatasetTitle());
+    assertEquals("new title", service.getPipelineProcess(datasetKey, 1).getDatasetTitle());
+  }
+
   @ParameterizedTest
   @EnumSource(ServiceType.class)
   public void addPipelineStepTest(ServiceType serviceType) {
@@ -262,6 +288,70 @@ public class PipelinesHistoryIT extends BaseItTest {
     assertEquals("value", stepCreated.getMetrics().iterator().next().getValue());
   }
 
+  @ParameterizedTest
+  @EnumSource(ServiceType.class)
+  public void updatePipelineStepsStatusAndMetricsTest(ServiceType serviceType) {
+    PipelinesHistoryService service =
+        getService(serviceType, pipelinesHistoryResource, pipelinesHistoryClient);
+    Consumer<List<PipelineStepStatusUpdate>> updateSteps =
+        getService(
+            serviceType,
+            ((PipelinesHistoryResource) pipelinesHistoryResource)
+                ::updatePipelineStepsStatusAndMetrics,
+            ((PipelinesHistoryClient) pipelinesHistoryClient)::updatePipelineStepsStatusAndMetrics);
+    final UUID datasetKey1 = createDataset();
+    long processKey = service.createPipelineProcess(new PipelineProcessParameters(datasetKey1, 1));
+
+    PipelineExecution execution =
+        new PipelineExecution().setStepsToRun(Collections.singletonList(StepType.DWCA_TO_VERBATIM));
+    long executionKey = service.addPipelineExecution(processKey, execution);
+
+    long stepKey1 =
+        service.addPipelineStep(
+            processKey,
+            executionKey,
+            new PipelineStep()
+                .setRunner(StepRunner.STANDALONE)
+                .setType(StepType.DWCA_TO_VERBATIM)
+                .setState(PipelineStep.Status.RUNNING));
+    long stepKey2 =
+        service.addPipelineStep(
+            processKey,
+            executionKey,
+            new PipelineStep()
+                .setRunner(StepRunner.STANDALONE)
+                .setType(StepType.VERBATIM_TO_INTERPRETED)
+                .setState(PipelineStep.Status.RUNNING));
+
+    updateSteps.accept(
+        Lists.newArrayList(
+            new PipelineStepStatusUpdate(
+                processKey,
+                executionKey,
+                stepKey1,
+                PipelineStep.Status.COMPLETED,
+                Collections.singletonList(new PipelineStep.MetricInfo("records", "10"))),
+            new PipelineStepStatusUpdate(
+                processKey,
+                executionKey,
+                stepKey2,
+                PipelineStep.Status.FAILED,
+                Lists.newArrayList(
+                    new PipelineStep.MetricInfo("records", "10"),
+                    new PipelineStep.MetricInfo("basicRecordsCountAttempted", "8")))));
+
+    PipelineStep step1 = service.getPipelineStep(processKey, executionKey, stepKey1);
+    assertEquals(PipelineStep.Status.COMPLETED, step1.getState());
+    assertNotNull(step1.getFinished());
+    assertEquals(Long.valueOf(10), step1.getNumberRecords());
+
+    PipelineStep step2 = service.getPipelineStep(processKey, executionKey, stepKey2);
+    assertEquals(PipelineStep.Status.FAILED, step2.getState());
+    assertNotNull(step2.getFinished());
+    assertEquals(Long.valueOf(8), step2.getNumberRecords());
+    assertEquals(2, step2.getMetrics().size());
+  }
+
   @ParameterizedTest
   @EnumSource(ServiceType.class)
   public void getPipelineWorkflowNonExistentProcessTest(ServiceType serviceType) {
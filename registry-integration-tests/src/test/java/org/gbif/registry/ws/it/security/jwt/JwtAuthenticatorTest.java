@@ -16,6 +16,7 @@
 package org.gbif.registry.ws.it.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
+import org.gbif.registry.identity.service.GbifUserCache;
 import org.gbif.registry.identity.service.IdentityService;
 import org.gbif.registry.security.jwt.GbifJwtException;
 import org.gbif.registry.security.jwt.GbifJwtException.JwtErrorCode;
@@ -45,6 +46,7 @@ public class JwtAuthenticatorTest {
   private static final long EXPIRY_TIME = 60 * 1000L;
 
   @Mock IdentityService identityServiceMock;
+  GbifUserCache userCache = new GbifUserCache(0, 0);
   String signingKey;
   GbifUser user;
 
@@ -65,7 +67,7 @@ public class JwtAuthenticatorTest {
     String token = JwtUtils.generateJwt(user.getUserName(), config);
 
     JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+        new JwtAuthenticateService(config, identityServiceMock, userCache);
 
     GbifUser userAuthenticated = jwtAuthenticator.authenticate(token);
     assertEquals(user.getUserName(), userAuthenticated.getUserName());
@@ -81,7 +83,7 @@ public class JwtAuthenticatorTest {
     String token = JwtUtils.generateJwt(user.getUserName(), config);
 
     JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+        new JwtAuthenticateService(config, identityServiceMock, userCache);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -102,7 +104,7 @@ public class JwtAuthenticatorTest {
     config.setIssuer(ISSUER);
 
     JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(configParsing, identityServiceMock);
+        new JwtAuthenticateService(configParsing, identityServiceMock, userCache);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -124,7 +126,7 @@ public class JwtAuthenticatorTest {
     config.setIssuer("fake issuer");
 
     JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(configParsing, identityServiceMock);
+        new JwtAuthenticateService(configParsing, identityServiceMock, userCache);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
@@ -142,7 +144,7 @@ public class JwtAuthenticatorTest {
     String token = JwtUtils.generateJwt("fake user", config);
 
     JwtAuthenticateService jwtAuthenticator =
-        new JwtAuthenticateService(config, identityServiceMock);
+        new JwtAuthenticateService(config, identityServiceMock, userCache);
 
     GbifJwtException exception =
         assertThrows(GbifJwtException.class, () -> jwtAuthenticator.authenticate(token));
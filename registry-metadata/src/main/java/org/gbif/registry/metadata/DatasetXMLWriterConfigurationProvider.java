@@ -68,6 +68,8 @@ public class DatasetXMLWriterConfigurationProvider {
 
     fm.setDefaultEncoding(StandardCharsets.UTF_8.toString());
     fm.setTemplateLoader(tl);
+    // templates are bundled on the classpath and never change, parse them only once
+    fm.setTemplateUpdateDelayMilliseconds(Long.MAX_VALUE);
     try {
       fm.setSharedVariable(FM_UTILS_NAME, new FreemarkerUtils());
     } catch (TemplateModelException e) {
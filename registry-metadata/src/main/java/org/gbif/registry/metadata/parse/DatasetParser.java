@@ -21,7 +21,13 @@ import org.gbif.api.vocabulary.MetadataType;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.EnumMap;
 import java.util.LinkedList;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
 
 import org.apache.commons.beanutils.ConversionException;
 import org.apache.commons.digester3.Digester;
@@ -32,7 +38,6 @@ import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.XMLReader;
 import org.xml.sax.helpers.DefaultHandler;
-import org.xml.sax.helpers.XMLReaderFactory;
 
 import com.google.common.collect.Lists;
 import com.google.common.io.ByteStreams;
@@ -53,15 +58,86 @@ public class DatasetParser {
 
   private static final Logger LOG = LoggerFactory.getLogger(DatasetParser.class);
 
+  // looking up the SAX implementation is costly, so the factory is created once and every thread
+  // keeps and resets its own parser
+  private static final SAXParserFactory SAX_PARSER_FACTORY = SAXParserFactory.newInstance();
+
+  static {
+    SAX_PARSER_FACTORY.setNamespaceAware(true);
+  }
+
+  private static final ThreadLocal<SAXParser> SAX_PARSER =
+      ThreadLocal.withInitial(DatasetParser::newSaxParser);
+
+  // digesters hold per-document state in their rules, so rather than sharing them every thread
+  // keeps the digester of each metadata type it parsed, built with all its rules once
+  private static final ThreadLocal<Map<MetadataType, DigesterRules>> DIGESTERS =
+      ThreadLocal.withInitial(() -> new EnumMap<>(MetadataType.class));
+
   private DatasetParser() {
     // empty constructor
   }
 
+  private static SAXParser newSaxParser() {
+    synchronized (SAX_PARSER_FACTORY) {
+      try {
+        return SAX_PARSER_FACTORY.newSAXParser();
+      } catch (ParserConfigurationException | SAXException e) {
+        throw new IllegalStateException("Cannot create a SAX parser", e);
+      }
+    }
+  }
+
+  /** @return the SAX parser of the current thread, ready for a new document */
+  private static SAXParser saxParser() {
+    SAXParser parser = SAX_PARSER.get();
+    parser.reset();
+    return parser;
+  }
+
+  /** The digester of a metadata type, together with the rules it was built with. */
+  private static class DigesterRules {
+    private final Digester digester;
+    private final Runnable typeConverters;
+
+    private DigesterRules(MetadataType type) {
+      digester = new Digester(SAX_PARSER.get());
+      digester.setNamespaceAware(true);
+      if (type == EML) {
+        EMLRuleSet ruleSet = new EMLRuleSet();
+        digester.addRuleSet(ruleSet);
+        typeConverters = ruleSet::setupTypeConverters;
+      } else if (type == DC) {
+        DublinCoreRuleSet ruleSet = new DublinCoreRuleSet();
+        digester.addRuleSet(ruleSet);
+        typeConverters = ruleSet::setupTypeConverters;
+      } else {
+        typeConverters = () -> {};
+      }
+    }
+  }
+
+  /** Thrown to stop reading a document as soon as its parser type is known. */
+  private static class ParserTypeDetectedException extends SAXException {
+    private ParserTypeDetectedException() {
+      super("Parser type detected");
+    }
+  }
+
   private static class ParserDetectionHandler extends DefaultHandler {
     private static final String DC_NAMESPACE = "http://purl.org/dc/terms/";
+    private final boolean stopWhenDetected;
     private MetadataType parserType;
     private LinkedList<String> path = Lists.newLinkedList();
 
+    /**
+     * @param stopWhenDetected to stop reading once later elements can no longer change the parser
+     *     type, instead of reading (and validating) the whole document
+     */
+    private ParserDetectionHandler(boolean stopWhenDetected) {
+      this.stopWhenDetected = stopWhenDetected;
+    }
+
     @Override
     public void startElement(String uri, String localName, String qName, Attributes attributes)
         throws SAXException {
@@ -76,6 +152,12 @@ public class DatasetParser {
       }
 
       path.add(localName);
+
+      // EML always wins, DC only if an eml/dataset element can't follow anymore
+      if (stopWhenDetected
+          && (parserType == EML || (parserType == DC && !path.getFirst().equals("eml")))) {
+        throw new ParserTypeDetectedException();
+      }
     }
 
     @Override
@@ -92,9 +174,13 @@ public class DatasetParser {
    * @throws java.lang.IllegalArgumentException in case no parser exists for this document
    */
   public static MetadataType detectParserType(InputStream xml) {
+    return detectParserType(xml, false);
+  }
+
+  private static MetadataType detectParserType(InputStream xml, boolean stopWhenDetected) {
+    ParserDetectionHandler handler = new ParserDetectionHandler(stopWhenDetected);
     try {
-      XMLReader xmlReader = XMLReaderFactory.createXMLReader();
-      ParserDetectionHandler handler = new ParserDetectionHandler();
+      XMLReader xmlReader = saxParser().getXMLReader();
       xmlReader.setContentHandler(handler);
       InputSource inputSource = new InputSource(xml);
       xmlReader.parse(inputSource);
@@ -102,6 +188,8 @@ public class DatasetParser {
         return handler.parserType;
       }
 
+    } catch (ParserTypeDetectedException e) {
+      return handler.parserType;
     } catch (SAXException e) {
       LOG.error("Failed to SAX parse a document for parser type detection", e);
     } catch (IOException e) {
@@ -122,9 +210,7 @@ public class DatasetParser {
    */
   public static Dataset build(InputStream xml) throws IOException {
     // buffer entire stream first. We need it several times
-    final byte[] data = ByteStreams.toByteArray(xml);
-    // detect the parser type
-    return parse(detectParserType(new ByteArrayInputStream(data)), new ByteArrayInputStream(data));
+    return build(ByteStreams.toByteArray(xml));
   }
 
   // TODO: 05/04/2020 remove another one
@@ -137,30 +223,30 @@ public class DatasetParser {
    * @throws IllegalArgumentException If the XML is not well formed or is not understood
    */
   public static Dataset build(byte[] data) throws IOException {
-    // detect the parser type
-    return parse(detectParserType(new ByteArrayInputStream(data)), new ByteArrayInputStream(data));
+    // detect the parser type, reading no further than needed as the full parse validates the rest
+    return parse(
+        detectParserType(new ByteArrayInputStream(data), true), new ByteArrayInputStream(data));
   }
 
   public static Dataset parse(MetadataType type, InputStream xml) throws IOException {
-    Digester digester = new Digester();
-    digester.setNamespaceAware(true);
-
-    // add digester rules based on parser type
-    if (type == EML) {
-      LOG.debug("Parsing EML document");
-      digester.addRuleSet(new EMLRuleSet());
-    } else if (type == DC) {
-      LOG.debug("Parsing DC document");
-      digester.addRuleSet(new DublinCoreRuleSet());
-    }
+    LOG.debug("Parsing {} document", type);
+    // the digester of the type parses with the SAX parser of the thread, reset for the document
+    saxParser();
+    Map<MetadataType, DigesterRules> digesters = DIGESTERS.get();
+    DigesterRules rules = digesters.computeIfAbsent(type, DigesterRules::new);
+    rules.typeConverters.run();
+    Digester digester = rules.digester;
+    digester.clear();
 
     // push the Delegating object onto the stack
     DatasetWrapper delegator = new DatasetWrapper();
     digester.push(delegator);
 
     // now parse and return the dataset
+    boolean parsed = false;
     try {
       digester.parse(xml);
+      parsed = true;
     } catch (ConversionException e) {
       // swallow
     } catch (SAXException e) {
@@ -170,6 +256,10 @@ public class DatasetParser {
         throw new IllegalArgumentException("Invalid metadata xml document", e);
       }
     } finally {
+      if (!parsed) {
+        // the rules may have been left in the middle of the document
+        digesters.remove(type);
+      }
       delegator.postProcess();
       Closeables.closeQuietly(xml);
     }
@@ -68,7 +68,11 @@ import org.xml.sax.Attributes;
  */
 public class EMLRuleSet extends RuleSetBase {
 
-  private void setupTypeConverters() {
+  /**
+   * Registers the converters of the values of the rules. They are global, so they are registered
+   * again before each document in case other converters were registered for the same types since.
+   */
+  void setupTypeConverters() {
 
     GreedyUriConverter uriConverter = new GreedyUriConverter();
     ConvertUtils.register(uriConverter, URI.class);
@@ -100,6 +100,19 @@ public class DatasetParserTest {
     assertIllegalArg("dc/dc_broken.xml");
   }
 
+  /** The build stops detecting early, but must still prefer EML over earlier DC elements. */
+  @Test
+  public void testBuildEmlWithDcElements() throws Exception {
+    String eml =
+        "<eml:eml xmlns:eml=\"eml://ecoinformatics.org/eml-2.1.1\""
+            + " xmlns:dc=\"http://purl.org/dc/terms/\">"
+            + "<dc:title>DC title</dc:title>"
+            + "<dataset><title>EML title</title></dataset>"
+            + "</eml:eml>";
+    Dataset d = DatasetParser.build(eml.getBytes(Charset.forName("UTF8")));
+    assertEquals("EML title", d.getTitle());
+  }
+
   private void assertIllegalArg(String classpathFile) throws IOException {
     try {
       MetadataType type = DatasetParser.detectParserType(FileUtils.classpathStream(classpathFile));
@@ -600,6 +613,31 @@ public class DatasetParserTest {
         dataset.getTitle());
   }
 
+  /**
+   * The digesters are reused by the thread, also after documents of the other type and documents
+   * that failed to parse.
+   */
+  @Test
+  public void testDigestersReused() throws IOException {
+    Dataset first = DatasetParser.build(FileUtils.classpathStream("eml/wikipedia.xml"));
+    DatasetParser.parse(MetadataType.EML, FileUtils.classpathStream("eml/sample-breaking.xml"));
+    try {
+      DatasetParser.build(FileUtils.classpathStream("eml/eml-protocol.xml"));
+      fail("The protocol document is expected to be rejected");
+    } catch (IllegalArgumentException e) {
+      // expected
+    }
+    Dataset dc =
+        DatasetParser.parse(MetadataType.DC, FileUtils.classpathStream("dc/worms_dc.xml"));
+    Dataset again = DatasetParser.build(FileUtils.classpathStream("eml/wikipedia.xml"));
+
+    assertEquals("World Register of Marine Species", dc.getTitle());
+    assertEquals(first.getTitle(), again.getTitle());
+    assertEquals(first.getDescription(), again.getDescription());
+    assertEquals(first.getContacts(), again.getContacts());
+    assertEquals(2, again.getContacts().size());
+  }
+
   @Test
   public void testEmlParsingBreakingOnURLConversion() throws IOException {
     // Gracefully handles ConversionException/Throwable during conversion of URLs, and fully
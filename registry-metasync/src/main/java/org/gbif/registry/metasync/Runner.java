@@ -19,6 +19,7 @@ import org.gbif.api.service.registry.DatasetService;
 import org.gbif.api.service.registry.InstallationService;
 import org.gbif.api.service.registry.MetasyncHistoryService;
 import org.gbif.registry.metasync.api.SyncResult;
+import org.gbif.registry.metasync.protocols.BaseProtocolHandler;
 import org.gbif.registry.metasync.protocols.biocase.BiocaseMetadataSynchroniser;
 import org.gbif.registry.metasync.protocols.digir.DigirMetadataSynchroniser;
 import org.gbif.registry.metasync.protocols.tapir.TapirMetadataSynchroniser;
@@ -30,6 +31,7 @@ import org.gbif.registry.ws.client.InstallationClient;
 import org.gbif.ws.client.ClientFactory;
 
 import java.util.List;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
@@ -40,6 +42,9 @@ public final class Runner {
 
   private static final Logger LOG = LoggerFactory.getLogger(Runner.class);
 
+  // the number of requests for single datasets running at the same time
+  private static final int REQUEST_THREADS = 50;
+
   public static void main(String[] args) {
     SLF4JBridgeHandler.removeHandlersForRootLogger();
     SLF4JBridgeHandler.install();
@@ -52,22 +57,28 @@ public final class Runner {
 
     MetadataSynchroniserImpl synchroniser = new MetadataSynchroniserImpl(installationService);
 
-    synchroniser.registerProtocolHandler(
-        new DigirMetadataSynchroniser(clientFactory.provideHttpClient()));
-    synchroniser.registerProtocolHandler(
-        new TapirMetadataSynchroniser(clientFactory.provideHttpClient()));
-    synchroniser.registerProtocolHandler(
-        new BiocaseMetadataSynchroniser(clientFactory.provideHttpClient()));
+    // shared by the handlers for all installations
+    ExecutorService requestExecutor = BaseProtocolHandler.newRequestExecutor(REQUEST_THREADS);
+    try {
+      synchroniser.registerProtocolHandler(
+          new DigirMetadataSynchroniser(clientFactory.provideHttpClient()));
+      synchroniser.registerProtocolHandler(
+          new TapirMetadataSynchroniser(clientFactory.provideHttpClient()));
+      synchroniser.registerProtocolHandler(
+          new BiocaseMetadataSynchroniser(clientFactory.provideHttpClient(), requestExecutor));
 
-    DatasetService datasetService = wsClientFactory.newInstance(DatasetClient.class);
+      DatasetService datasetService = wsClientFactory.newInstance(DatasetClient.class);
 
-    List<SyncResult> syncResults = synchroniser.synchroniseAllInstallations(100);
-    LOG.info("Done syncing. Processing results");
-    DebugHandler.processResults(syncResults);
+      List<SyncResult> syncResults = synchroniser.synchroniseAllInstallations(100);
+      LOG.info("Done syncing. Processing results");
+      DebugHandler.processResults(syncResults);
 
-    RegistryUpdater updater =
-        new RegistryUpdater(datasetService, ((MetasyncHistoryService) installationService));
-    updater.saveSyncResultsToRegistry(syncResults);
+      RegistryUpdater updater =
+          new RegistryUpdater(datasetService, ((MetasyncHistoryService) installationService));
+      updater.saveSyncResultsToRegistry(syncResults);
+    } finally {
+      requestExecutor.shutdownNow();
+    }
   }
 
   private Runner() {
@@ -29,7 +29,14 @@ import org.gbif.ws.client.ClientFactory;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.beanutils.ConvertUtils;
 import org.apache.commons.digester3.Digester;
@@ -45,9 +52,14 @@ import org.joda.time.DateTime;
 import org.joda.time.Period;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
 import org.xml.sax.SAXException;
 
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Throwables;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 
 import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 
@@ -58,12 +70,93 @@ import static org.apache.commons.digester3.binder.DigesterLoader.newLoader;
 public abstract class BaseProtocolHandler implements MetadataProtocolHandler {
 
   private static final Logger LOG = LoggerFactory.getLogger(BaseProtocolHandler.class);
+
+  // the annotation rules of each model class are only compiled once, by the first digester
+  private static final Map<Class<?>, DigesterLoader> DIGESTER_LOADERS = new ConcurrentHashMap<>();
+
   private final HttpClient httpClient;
   private final LicenseParser licenseParser;
+  private final ExecutorService requestExecutor;
 
+  /** The requests for single datasets are issued one after the other, on the calling thread. */
   protected BaseProtocolHandler(HttpClient httpClient) {
+    this(httpClient, MoreExecutors.newDirectExecutorService());
+  }
+
+  /**
+   * The requests for single datasets run on the given executor. It is not shut down by the handler,
+   * so it can be shared by all handlers, see {@link #newRequestExecutor(int)}.
+   */
+  protected BaseProtocolHandler(HttpClient httpClient, ExecutorService requestExecutor) {
     this.httpClient = httpClient;
     this.licenseParser = LicenseParser.getInstance();
+    this.requestExecutor = requestExecutor;
+  }
+
+  /**
+   * Creates an executor for the requests for single datasets, to be shared by the handlers and shut
+   * down by the caller once the synchronisation is done. The requests to a single host are further
+   * limited by the connections per host of the HTTP client.
+   *
+   * @param threads the number of requests running at the same time
+   */
+  public static ExecutorService newRequestExecutor(int threads) {
+    return Executors.newFixedThreadPool(
+        threads,
+        new ThreadFactoryBuilder().setNameFormat("metasync-request-%d").setDaemon(true).build());
+  }
+
+  /** A request for a single dataset, see {@link #requestConcurrently(List, DatasetRequest)}. */
+  @FunctionalInterface
+  protected interface DatasetRequest<I, T> {
+    T request(I dataset) throws MetadataException;
+  }
+
+  /**
+   * Runs the requests for the datasets of an installation on the request executor. With a shared
+   * pool the synchronisation of the installation takes as long as its slowest dataset rather than
+   * the sum of all of them.
+   *
+   * @param datasets identifying the datasets to request
+   * @param request issuing the requests for a single dataset
+   * @return the results of the requests, in the order of the datasets
+   * @throws MetadataException the exception of the first dataset that failed
+   */
+  protected <I, T> List<T> requestConcurrently(List<I> datasets, DatasetRequest<I, T> request)
+      throws MetadataException {
+    Map<String, String> mdc = MDC.getCopyOfContextMap();
+    List<Future<T>> futures = new ArrayList<>(datasets.size());
+    for (I dataset : datasets) {
+      futures.add(
+          requestExecutor.submit(
+              () -> {
+                if (mdc != null) {
+                  MDC.setContextMap(mdc);
+                }
+                try {
+                  return request.request(dataset);
+                } finally {
+                  MDC.clear();
+                }
+              }));
+    }
+
+    List<T> results = new ArrayList<>(datasets.size());
+    try {
+      for (Future<T> future : futures) {
+        results.add(future.get());
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MetadataException(e, ErrorCode.OTHER_ERROR);
+    } catch (ExecutionException e) {
+      Throwables.propagateIfPossible(e.getCause(), MetadataException.class);
+      throw new MetadataException(e.getCause(), ErrorCode.OTHER_ERROR);
+    } finally {
+      // the remaining requests are useless once one failed
+      futures.forEach(future -> future.cancel(true));
+    }
+    return results;
   }
 
   /**
@@ -152,6 +245,25 @@ public abstract class BaseProtocolHandler implements MetadataProtocolHandler {
    * Returns a new Digester which is configured with the annotation rules from the passed in class.
    */
   protected Digester newDigester(final Class<?> clazz) {
+    DigesterLoader loader = digesterLoader(clazz);
+
+    ConvertUtils.register(new DateTimeConverter(), DateTime.class);
+    ConvertUtils.register(new LanguageConverter(), Language.class);
+    ConvertUtils.register(new PeriodConverter(), Period.class);
+    ConvertUtils.register(new UriConverter(), URI.class);
+    // the loader binds the rules on its first digester and shares its parser factory
+    synchronized (loader) {
+      return loader.newDigester();
+    }
+  }
+
+  /** Returns the loader of the digesters of the passed in class, created on first use. */
+  @VisibleForTesting
+  static DigesterLoader digesterLoader(Class<?> clazz) {
+    return DIGESTER_LOADERS.computeIfAbsent(clazz, BaseProtocolHandler::newDigesterLoader);
+  }
+
+  private static DigesterLoader newDigesterLoader(final Class<?> clazz) {
     DigesterLoader loader =
         newLoader(
             new FromAnnotationsRuleModule() {
@@ -163,11 +275,7 @@ public abstract class BaseProtocolHandler implements MetadataProtocolHandler {
             });
 
     loader.setNamespaceAware(true);
-    ConvertUtils.register(new DateTimeConverter(), DateTime.class);
-    ConvertUtils.register(new LanguageConverter(), Language.class);
-    ConvertUtils.register(new PeriodConverter(), Period.class);
-    ConvertUtils.register(new UriConverter(), URI.class);
-    return loader.newDigester();
+    return loader;
   }
 
   /** @return instance of LicenseParser */
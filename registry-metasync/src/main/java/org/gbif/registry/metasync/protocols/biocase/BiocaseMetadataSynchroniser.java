@@ -43,10 +43,12 @@ import org.gbif.registry.metasync.util.Constants;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
 
 import javax.annotation.Nullable;
 
@@ -88,6 +90,11 @@ public class BiocaseMetadataSynchroniser extends BaseProtocolHandler {
     super(httpClient);
   }
 
+  /** The metadata and count requests of the datasets of an endpoint run on the executor. */
+  public BiocaseMetadataSynchroniser(HttpClient httpClient, ExecutorService requestExecutor) {
+    super(httpClient, requestExecutor);
+  }
+
   @Override
   public boolean canHandle(Installation installation) {
     return installation.getType() == InstallationType.BIOCASE_INSTALLATION;
@@ -117,26 +124,20 @@ public class BiocaseMetadataSynchroniser extends BaseProtocolHandler {
           }
           Map<String, InventoryDataset> datasetInventory =
               getDatasetInventory(capabilities, endpoint);
-          for (String datasetTitle : datasetInventory.keySet()) {
-            Dataset newDataset;
-
-            if (capabilities.getPreferredSchema().equals(Constants.ABCD_12_SCHEMA)) {
-              SimpleAbcd12Metadata metadata = get12Metadata(endpoint, datasetTitle, capabilities);
-              newDataset = convertToDataset(metadata, endpoint, capabilities);
-            } else {
-              SimpleAbcd206Metadata metadata = get206Metadata(endpoint, datasetTitle, capabilities);
-              newDataset =
-                  convertToDataset(
-                      metadata, endpoint, capabilities, datasetInventory.get(datasetTitle));
-            }
-
-            Long count = getDatasetCount(endpoint, datasetTitle, capabilities);
-            if (count != null && count > 0) {
-              newDataset.addMachineTag(
-                  MachineTag.newInstance(TagName.DECLARED_COUNT, String.valueOf(count)));
-            }
-
-            Dataset existingDataset = findDataset(datasetTitle, datasets);
+          List<String> datasetTitles = new ArrayList<>(datasetInventory.keySet());
+          List<Dataset> newDatasets =
+              requestConcurrently(
+                  datasetTitles,
+                  datasetTitle ->
+                      getDataset(
+                          endpoint,
+                          datasetTitle,
+                          capabilities,
+                          datasetInventory.get(datasetTitle)));
+
+          for (int i = 0; i < datasetTitles.size(); i++) {
+            Dataset newDataset = newDatasets.get(i);
+            Dataset existingDataset = findDataset(datasetTitles.get(i), datasets);
             if (existingDataset == null) {
               added.add(newDataset);
             } else {
@@ -196,6 +197,30 @@ public class BiocaseMetadataSynchroniser extends BaseProtocolHandler {
     }
   }
 
+  /** Gets the metadata and the count of a single Dataset of this Endpoint. */
+  private Dataset getDataset(
+      Endpoint endpoint,
+      String datasetTitle,
+      Capabilities capabilities,
+      @Nullable InventoryDataset inventoryDataset)
+      throws MetadataException {
+    Dataset newDataset;
+    if (capabilities.getPreferredSchema().equals(Constants.ABCD_12_SCHEMA)) {
+      SimpleAbcd12Metadata metadata = get12Metadata(endpoint, datasetTitle, capabilities);
+      newDataset = convertToDataset(metadata, endpoint, capabilities);
+    } else {
+      SimpleAbcd206Metadata metadata = get206Metadata(endpoint, datasetTitle, capabilities);
+      newDataset = convertToDataset(metadata, endpoint, capabilities, inventoryDataset);
+    }
+
+    Long count = getDatasetCount(endpoint, datasetTitle, capabilities);
+    if (count != null && count > 0) {
+      newDataset.addMachineTag(
+          MachineTag.newInstance(TagName.DECLARED_COUNT, String.valueOf(count)));
+    }
+    return newDataset;
+  }
+
   /** Does a Capabilities request against the Endpoint. */
   private Capabilities getCapabilities(Endpoint endpoint) throws MetadataException {
     return doHttpRequest(endpoint.getUrl(), newDigester(Capabilities.class));
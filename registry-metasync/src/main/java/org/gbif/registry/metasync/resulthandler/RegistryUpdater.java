@@ -19,6 +19,7 @@ import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Endpoint;
 import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.LenientEquals;
 import org.gbif.api.model.registry.MachineTag;
 import org.gbif.api.service.registry.DatasetService;
 import org.gbif.api.service.registry.MetasyncHistoryService;
@@ -31,8 +32,13 @@ import org.gbif.api.vocabulary.TagName;
 import org.gbif.api.vocabulary.TagNamespace;
 import org.gbif.registry.metasync.api.SyncResult;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -45,6 +51,7 @@ public class RegistryUpdater {
   private static final Logger LOG = LoggerFactory.getLogger(RegistryUpdater.class);
   private final DatasetService datasetService;
   private final MetasyncHistoryService historyService;
+  private Counters counters = new Counters();
 
   public RegistryUpdater(DatasetService datasetService, MetasyncHistoryService historyService) {
     this.datasetService = datasetService;
@@ -56,10 +63,22 @@ public class RegistryUpdater {
     return datasetService;
   }
 
+  @VisibleForTesting
+  Counters getCounters() {
+    return counters;
+  }
+
   public void saveSyncResultsToRegistry(Iterable<SyncResult> syncResults) {
+    counters = new Counters();
     for (SyncResult syncResult : syncResults) {
       saveSyncResults(syncResult);
     }
+    LOG.info(
+        "Saved sync results: {} datasets updated, {} unchanged, {} rows changed, {} unchanged",
+        counters.datasetsUpdated,
+        counters.datasetsUnchanged,
+        counters.rowsChanged,
+        counters.rowsUnchanged);
   }
 
   /**
@@ -69,7 +88,9 @@ public class RegistryUpdater {
    * Contacts: are derived 100% from the metadata response. </br> Machine tags: with
    * metasync.gbif.org namespace are derived 100% from metadata synchronizer </br> Endpoints: only 1
    * endpoint exists per dataset. </br> Identifiers: </br> License: can be overwritten from the
-   * metadata response, but only when a supported license was detected.
+   * metadata response, but only when a supported license was detected. </br> Only the differences
+   * are written: the dataset is only updated if one of its properties changed, and the contacts,
+   * machine tags and endpoints that are found unchanged in the metadata response are kept.
    *
    * @param result SyncResult
    */
@@ -83,90 +104,137 @@ public class RegistryUpdater {
                 + "endpoint, which takes precedence",
             datasetKey);
       } else {
-        LOG.info("Updating dataset [{}]", datasetKey);
-
         // the updated dataset created from the metadata synchronization
         Dataset updated = entry.getValue();
 
-        // safest, preserve existing dataset, copying over only those properties that could have
-        // changed from the sync
-        existingDataset.setHomepage(updated.getHomepage());
-        existingDataset.setLanguage(updated.getLanguage());
-        existingDataset.setCitation(updated.getCitation());
-        existingDataset.setTitle(updated.getTitle());
-        existingDataset.setDescription(updated.getDescription());
-        existingDataset.setLogoUrl(updated.getLogoUrl());
-
-        // rights is deprecated, and should be be overwritten to null
-        existingDataset.setRights(null);
-
-        // only override existing license when a supported license was detected
-        License updatedLicense =
-            (updated.getLicense() == null) ? License.UNSPECIFIED : updated.getLicense();
-
-        // we only allow to update the license if it's a concrete one (not UNSPECIFIED or
-        // UNSUPPORTED)
-        if (updatedLicense.isConcrete()) {
-          existingDataset.setLicense(updatedLicense);
-        } else {
-          LOG.warn(
-              "The license update for dataset {} was ignored : {}", datasetKey, updatedLicense);
-        }
-
-        // perform update
-        try {
-          datasetService.update(existingDataset);
-        } catch (Exception e) {
-          LOG.error("Updating dataset {} failed: {}", existingDataset.getKey(), e);
-        }
+        int changedBefore = counters.rowsChanged;
+        updateDataset(existingDataset, updated);
 
         // Contacts are derived 100% from the metadata
-        // delete existing contacts, and replace with new/updated contacts
-        for (Contact contact : existingDataset.getContacts()) {
-          datasetService.deleteContact(datasetKey, contact.getKey());
-        }
-        for (Contact contact : updated.getContacts()) {
-          datasetService.addContact(datasetKey, contact);
-        }
+        // delete the existing contacts that are gone, and add the new/updated contacts
+        synchronise(
+            existingDataset.getContacts(),
+            updated.getContacts(),
+            contact -> datasetService.deleteContact(datasetKey, contact.getKey()),
+            contact -> datasetService.addContact(datasetKey, contact));
 
         // Machine tags with namepace "metasync.gbif.org" are derived 100% from the metadata sync
-        // delete existing machine tags in this namespace, and replace with new/updated machine tags
-        datasetService.deleteMachineTags(datasetKey, TagNamespace.GBIF_METASYNC);
-        for (MachineTag machineTag : updated.getMachineTags()) {
-          datasetService.addMachineTag(datasetKey, machineTag);
-        }
+        // delete the existing machine tags in this namespace that are gone, and add the new/updated
+        // machine tags
+        List<MachineTag> existingMachineTags =
+            existingDataset.getMachineTags().stream()
+                .filter(t -> TagNamespace.GBIF_METASYNC.getNamespace().equals(t.getNamespace()))
+                .collect(Collectors.toList());
+        synchronise(
+            existingMachineTags,
+            updated.getMachineTags(),
+            machineTag -> datasetService.deleteMachineTag(datasetKey, machineTag.getKey()),
+            machineTag -> datasetService.addMachineTag(datasetKey, machineTag));
 
         // Only 1 endpoint exists per Dataset
-        // delete existing endpoint, and replace with new/updated endpoint
-        for (Endpoint endpoint : existingDataset.getEndpoints()) {
-          datasetService.deleteEndpoint(datasetKey, endpoint.getKey());
-        }
-        for (Endpoint endpoint : updated.getEndpoints()) {
-          datasetService.addEndpoint(datasetKey, endpoint);
-        }
+        // replace the existing endpoint if it changed
+        synchronise(
+            existingDataset.getEndpoints(),
+            updated.getEndpoints(),
+            endpoint -> datasetService.deleteEndpoint(datasetKey, endpoint.getKey()),
+            endpoint -> datasetService.addEndpoint(datasetKey, endpoint));
 
         // Only add identifiers that don't yet exist
         // Identifiers like GBIF Portal ID aren't created during metadata sync, so never delete
         // these
-        if (!updated.getIdentifiers().isEmpty()) {
-          for (Identifier identifier : updated.getIdentifiers()) {
-            // does this identifier exist already?
-            boolean found = false;
-            for (Identifier existingIdentifier : existingDataset.getIdentifiers()) {
-              if (identifier.lenientEquals(existingIdentifier)) {
-                found = true;
-                break;
-              }
-            }
-            if (!found) {
-              datasetService.addIdentifier(datasetKey, identifier);
-            }
-          }
+        List<Identifier> addedIdentifiers =
+            missingFrom(updated.getIdentifiers(), existingDataset.getIdentifiers());
+        for (Identifier identifier : addedIdentifiers) {
+          datasetService.addIdentifier(datasetKey, identifier);
+        }
+        counters.rowsChanged += addedIdentifiers.size();
+        counters.rowsUnchanged += updated.getIdentifiers().size() - addedIdentifiers.size();
+
+        if (counters.rowsChanged == changedBefore) {
+          LOG.debug("Dataset [{}] is unchanged", datasetKey);
+          counters.datasetsUnchanged++;
+        } else {
+          LOG.info("Updated dataset [{}]", datasetKey);
+          counters.datasetsUpdated++;
         }
       }
     }
   }
 
+  /**
+   * Updates the existing dataset, copying over only those properties that could have changed from
+   * the sync. The dataset is not written when none of them changed.
+   */
+  private void updateDataset(Dataset existingDataset, Dataset updated) {
+    UUID datasetKey = existingDataset.getKey();
+
+    // only override existing license when a supported license was detected
+    License updatedLicense =
+        (updated.getLicense() == null) ? License.UNSPECIFIED : updated.getLicense();
+    // we only allow to update the license if it's a concrete one (not UNSPECIFIED or
+    // UNSUPPORTED)
+    License license = existingDataset.getLicense();
+    if (updatedLicense.isConcrete()) {
+      license = updatedLicense;
+    } else {
+      LOG.warn("The license update for dataset {} was ignored : {}", datasetKey, updatedLicense);
+    }
+
+    // rights is deprecated, and should be be overwritten to null
+    boolean changed =
+        !Objects.equals(existingDataset.getHomepage(), updated.getHomepage())
+            || !Objects.equals(existingDataset.getLanguage(), updated.getLanguage())
+            || !Objects.equals(existingDataset.getCitation(), updated.getCitation())
+            || !Objects.equals(existingDataset.getTitle(), updated.getTitle())
+            || !Objects.equals(existingDataset.getDescription(), updated.getDescription())
+            || !Objects.equals(existingDataset.getLogoUrl(), updated.getLogoUrl())
+            || existingDataset.getRights() != null
+            || existingDataset.getLicense() != license;
+    if (!changed) {
+      counters.rowsUnchanged++;
+      return;
+    }
+
+    existingDataset.setHomepage(updated.getHomepage());
+    existingDataset.setLanguage(updated.getLanguage());
+    existingDataset.setCitation(updated.getCitation());
+    existingDataset.setTitle(updated.getTitle());
+    existingDataset.setDescription(updated.getDescription());
+    existingDataset.setLogoUrl(updated.getLogoUrl());
+    existingDataset.setRights(null);
+    existingDataset.setLicense(license);
+
+    // perform update
+    counters.rowsChanged++;
+    try {
+      datasetService.update(existingDataset);
+    } catch (Exception e) {
+      LOG.error("Updating dataset {} failed: {}", datasetKey, e);
+    }
+  }
+
+  /**
+   * Deletes the existing rows without a lenient equal in the updated ones, then adds the updated
+   * rows without a lenient equal in the existing ones. The other rows are left untouched.
+   */
+  private <T extends LenientEquals<T>> void synchronise(
+      Collection<T> existing, Collection<T> updated, Consumer<T> delete, Consumer<T> add) {
+    List<T> deleted = missingFrom(existing, updated);
+    List<T> added = missingFrom(updated, existing);
+    deleted.forEach(delete);
+    added.forEach(add);
+    counters.rowsChanged += deleted.size() + added.size();
+    counters.rowsUnchanged += existing.size() - deleted.size();
+  }
+
+  /** The elements of the first collection that have no lenient equal in the second one. */
+  private static <T extends LenientEquals<T>> List<T> missingFrom(
+      Collection<T> elements, Collection<T> others) {
+    return elements.stream()
+        .filter(e -> others.stream().noneMatch(e::lenientEquals))
+        .collect(Collectors.toList());
+  }
+
   /**
    * Processes the result of a synchronisation by:
    *
@@ -257,4 +325,15 @@ public class RegistryUpdater {
       }
     }
   }
+
+  /**
+   * Counts the updated datasets and the rows (datasets, contacts, machine tags, endpoints and
+   * identifiers) written or left untouched during a run.
+   */
+  static class Counters {
+    int datasetsUpdated;
+    int datasetsUnchanged;
+    int rowsChanged;
+    int rowsUnchanged;
+  }
 }
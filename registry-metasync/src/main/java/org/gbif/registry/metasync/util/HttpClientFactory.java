@@ -62,7 +62,12 @@ public class HttpClientFactory {
 
   public HttpClient provideHttpClient() {
     RequestConfig defaultRequestConfig =
-        RequestConfig.custom().setConnectTimeout(timeout).setSocketTimeout(timeout).build();
+        RequestConfig.custom()
+            .setConnectTimeout(timeout)
+            .setSocketTimeout(timeout)
+            // dataset requests wait for one of the connections per host
+            .setConnectionRequestTimeout(timeout)
+            .build();
 
     CloseableHttpClient httpClient =
         HttpClients.custom()
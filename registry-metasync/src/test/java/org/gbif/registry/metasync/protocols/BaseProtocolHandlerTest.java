@@ -0,0 +1,227 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.metasync.protocols;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.registry.metasync.api.ErrorCode;
+import org.gbif.registry.metasync.api.MetadataException;
+import org.gbif.registry.metasync.api.SyncResult;
+import org.gbif.registry.metasync.protocols.biocase.model.NewDatasetInventory;
+import org.gbif.registry.metasync.protocols.biocase.model.OldDatasetInventory;
+
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.google.common.io.Resources;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/** Tests the concurrent dataset requests and the digesters of {@link BaseProtocolHandler}. */
+public class BaseProtocolHandlerTest {
+
+  private ExecutorService requestExecutor;
+  private TestProtocolHandler handler;
+
+  @Before
+  public void setup() {
+    requestExecutor = BaseProtocolHandler.newRequestExecutor(2);
+    handler = new TestProtocolHandler(requestExecutor);
+  }
+
+  @After
+  public void tearDown() {
+    requestExecutor.shutdownNow();
+  }
+
+  @Test
+  public void testResultsInDatasetOrder() throws Exception {
+    List<Integer> datasets = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      datasets.add(i);
+    }
+
+    // the first datasets take the longest
+    List<String> results =
+        handler.requestConcurrently(
+            datasets,
+            dataset -> {
+              sleep(5 * (10 - dataset));
+              return "dataset " + dataset;
+            });
+
+    assertThat(results).hasSize(10);
+    for (int i = 0; i < 10; i++) {
+      assertThat(results.get(i)).isEqualTo("dataset " + i);
+    }
+  }
+
+  @Test
+  public void testFailurePropagated() {
+    MetadataException failure = new MetadataException("Not found", ErrorCode.HTTP_ERROR);
+
+    try {
+      handler.requestConcurrently(
+          Arrays.asList(1, 2, 3),
+          dataset -> {
+            if (dataset == 2) {
+              throw failure;
+            }
+            return dataset;
+          });
+      fail("The failure of the second dataset is expected");
+    } catch (MetadataException e) {
+      assertSame(failure, e);
+    }
+  }
+
+  @Test
+  public void testRuntimeExceptionPropagated() throws Exception {
+    IllegalStateException failure = new IllegalStateException("Unexpected");
+
+    try {
+      handler.requestConcurrently(
+          Collections.singletonList(1),
+          dataset -> {
+            throw failure;
+          });
+      fail("The failure of the dataset is expected");
+    } catch (IllegalStateException e) {
+      assertSame(failure, e);
+    }
+  }
+
+  @Test
+  public void testRemainingRequestsCancelled() throws Exception {
+    CountDownLatch release = new CountDownLatch(1);
+    AtomicInteger started = new AtomicInteger();
+    AtomicInteger interrupted = new AtomicInteger();
+
+    try {
+      handler.requestConcurrently(
+          Arrays.asList(0, 1, 2, 3, 4),
+          dataset -> {
+            if (dataset == 0) {
+              throw new MetadataException("Timed out", ErrorCode.IO_EXCEPTION);
+            }
+            started.incrementAndGet();
+            try {
+              // never released, only interrupted
+              release.await();
+            } catch (InterruptedException e) {
+              interrupted.incrementAndGet();
+            }
+            return dataset;
+          });
+      fail("The failure of the first dataset is expected");
+    } catch (MetadataException e) {
+      assertThat(e.getErrorCode()).isEqualTo(ErrorCode.IO_EXCEPTION);
+    }
+
+    // the running requests are interrupted and the queued ones never start
+    requestExecutor.shutdown();
+    assertThat(requestExecutor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+    assertThat(started.get()).isLessThanOrEqualTo(2);
+    assertThat(interrupted.get()).isEqualTo(started.get());
+  }
+
+  @Test
+  public void testDigesterLoaderReused() {
+    assertSame(
+        BaseProtocolHandler.digesterLoader(OldDatasetInventory.class),
+        BaseProtocolHandler.digesterLoader(OldDatasetInventory.class));
+    assertThat(BaseProtocolHandler.digesterLoader(NewDatasetInventory.class))
+        .isNotSameAs(BaseProtocolHandler.digesterLoader(OldDatasetInventory.class));
+  }
+
+  @Test
+  public void testDigestersOfReusedLoaderParseConcurrently() throws Exception {
+    List<Integer> requests = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      requests.add(i);
+    }
+
+    // every request parses an inventory of several datasets with a new digester
+    List<OldDatasetInventory> inventories =
+        handler.requestConcurrently(
+            requests,
+            request -> {
+              try (InputStream in =
+                  Resources.getResource("biocase/inventory3.xml").openStream()) {
+                OldDatasetInventory inventory =
+                    handler.newDigester(OldDatasetInventory.class).parse(in);
+                return inventory;
+              } catch (Exception e) {
+                throw new MetadataException(e, ErrorCode.PROTOCOL_ERROR);
+              }
+            });
+
+    for (OldDatasetInventory inventory : inventories) {
+      assertThat(inventory.getDatasets())
+          .containsExactly(
+              "Mammals housed at MHNG, Geneva",
+              "Parasitic Platyhelminthes Collections",
+              "Partial Amphibians Collection",
+              "Swiss Psyllid (Hemiptera) Collections - Geneva");
+    }
+  }
+
+  private static void sleep(long millis) throws MetadataException {
+    try {
+      Thread.sleep(millis);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new MetadataException(e, ErrorCode.OTHER_ERROR);
+    }
+  }
+
+  /** Exposes the requests and digesters of the base class. */
+  private static class TestProtocolHandler extends BaseProtocolHandler {
+
+    TestProtocolHandler(ExecutorService requestExecutor) {
+      super(null, requestExecutor);
+    }
+
+    @Override
+    public boolean canHandle(Installation installation) {
+      return false;
+    }
+
+    @Override
+    public SyncResult syncInstallation(Installation installation, List<Dataset> datasets) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Long getDatasetCount(Dataset dataset, Endpoint endpoint) {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
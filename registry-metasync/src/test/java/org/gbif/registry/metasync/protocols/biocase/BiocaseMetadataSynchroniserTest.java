@@ -19,15 +19,23 @@ import org.gbif.api.model.common.DOI;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Endpoint;
 import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.util.MachineTagUtils;
 import org.gbif.api.vocabulary.EndpointType;
 import org.gbif.api.vocabulary.InstallationType;
 import org.gbif.api.vocabulary.License;
+import org.gbif.api.vocabulary.TagName;
 import org.gbif.registry.metasync.api.SyncResult;
+import org.gbif.registry.metasync.protocols.BaseProtocolHandler;
 
 import java.io.IOException;
 import java.net.URI;
+import java.net.URLDecoder;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
 
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
@@ -235,6 +243,53 @@ public class BiocaseMetadataSynchroniserTest {
     assertThat(dataset.getEndpoints().get(0).getType()).isEqualTo(EndpointType.BIOCASE);
   }
 
+  /**
+   * This tests a BioCASe endpoint that supports the new style inventory and ABCD 2.06 and serves
+   * several datasets, which are requested concurrently with the digesters of the same loaders.
+   */
+  @Test
+  public void testAddedDatasets() throws Exception {
+    ExecutorService requestExecutor = BaseProtocolHandler.newRequestExecutor(3);
+    try {
+      synchroniser = new BiocaseMetadataSynchroniser(client, requestExecutor);
+      when(client.execute(any(HttpGet.class)))
+          .thenAnswer(invocation -> respond((HttpGet) invocation.getArguments()[0]));
+
+      Dataset existing = new Dataset();
+      existing.setTitle("Moss Collection at BGBM");
+      SyncResult syncResult =
+          synchroniser.syncInstallation(installation, Lists.newArrayList(existing));
+      assertThat(syncResult.exception).isNull();
+      assertThat(syncResult.deletedDatasets).isEmpty();
+      assertThat(syncResult.existingDatasets).hasSize(1);
+      assertThat(syncResult.addedDatasets).hasSize(2);
+
+      // each dataset got its own metadata and count
+      Map<String, Dataset> datasets = new HashMap<>();
+      for (Dataset dataset : syncResult.addedDatasets) {
+        datasets.put(dataset.getTitle(), dataset);
+      }
+      datasets.put(existing.getTitle(), syncResult.existingDatasets.get(existing));
+      assertThat(datasets.keySet())
+          .containsOnly(
+              "Herbarium Berolinense", "Algae Collection at BGBM", "Moss Collection at BGBM");
+      for (Map.Entry<String, Dataset> entry : datasets.entrySet()) {
+        Dataset dataset = entry.getValue();
+        assertThat(dataset.getCitation().getText())
+            .isEqualTo(entry.getKey() + ", Botanic Garden and Botanical Museum Berlin");
+        MachineTag count = MachineTagUtils.firstTag(dataset, TagName.DECLARED_COUNT);
+        assertThat(count).isNotNull();
+        assertThat(count.getValue()).isEqualTo("1200");
+      }
+
+      // only the dataset with an archive has an archive endpoint
+      assertThat(datasets.get("Herbarium Berolinense").getEndpoints()).hasSize(2);
+      assertThat(datasets.get("Algae Collection at BGBM").getEndpoints()).hasSize(1);
+    } finally {
+      requestExecutor.shutdownNow();
+    }
+  }
+
   @Test
   public void testDeletedDataset() throws Exception {
     Dataset dataset = new Dataset();
@@ -271,6 +326,29 @@ public class BiocaseMetadataSynchroniserTest {
     assertThat(syncResult.existingDatasets.get(dataset).getTitle()).isEqualTo("Pontaurus");
   }
 
+  /** Answers the requests of the endpoint serving the datasets of inventory4.xml. */
+  private HttpResponse respond(HttpGet request) throws IOException {
+    String query = request.getURI().getRawQuery();
+    if (query == null) {
+      return prepareResponse(200, "biocase/capabilities2.xml");
+    }
+    if (query.equals("inventory=1")) {
+      return prepareResponse(200, "biocase/inventory4.xml");
+    }
+
+    String biocaseRequest = URLDecoder.decode(query, "UTF-8");
+    if (biocaseRequest.contains("<count>true</count>")) {
+      return prepareResponse(200, "biocase/count1.xml");
+    }
+    if (biocaseRequest.contains("Herbarium Berolinense")) {
+      return prepareResponse(200, "biocase/dataset7.xml");
+    }
+    if (biocaseRequest.contains("Algae Collection at BGBM")) {
+      return prepareResponse(200, "biocase/dataset8.xml");
+    }
+    return prepareResponse(200, "biocase/dataset9.xml");
+  }
+
   /** Prepares a {@link HttpResponse} with the given response status and the content of the file. */
   private HttpResponse prepareResponse(int responseStatus, String fileName) throws IOException {
     HttpResponse response =
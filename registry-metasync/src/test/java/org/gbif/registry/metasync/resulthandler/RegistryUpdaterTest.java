@@ -37,7 +37,9 @@ import org.gbif.registry.metasync.protocols.tapir.TapirMetadataSynchroniser;
 
 import java.io.IOException;
 import java.net.URI;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import org.apache.http.HttpResponse;
@@ -134,7 +136,8 @@ public class RegistryUpdaterTest {
     verify(updater.getDatasetService(), times(1)).update(any(Dataset.class));
 
     // delete 1 existing machine tag, add 2 new
-    verify(updater.getDatasetService(), times(1))
+    verify(updater.getDatasetService(), times(1)).deleteMachineTag(any(UUID.class), anyInt());
+    verify(updater.getDatasetService(), times(0))
         .deleteMachineTags(any(UUID.class), any(TagNamespace.class));
     verify(updater.getDatasetService(), times(2))
         .addMachineTag(any(UUID.class), any(MachineTag.class));
@@ -157,6 +160,48 @@ public class RegistryUpdaterTest {
     verify(updater.getDatasetService(), times(0)).addTag(any(UUID.class), any(Tag.class));
   }
 
+  /**
+   * Save a Dataset whose metadata is unchanged at source. The Dataset and its contacts, machine
+   * tags and endpoints are left untouched, and the Dataset is counted as unchanged.
+   */
+  @Test
+  public void testSaveUnchangedDatasetSkipped() {
+    // the same dataset as parsed from the endpoint, without the keys
+    Dataset updated = new Dataset();
+    updated.setTitle(dataset.getTitle());
+    updated.setLicense(dataset.getLicense());
+    Contact contact = new Contact();
+    contact.addEmail("test@gbif.org");
+    updated.setContacts(Lists.newArrayList(contact));
+    updated.addMachineTag(MachineTag.newInstance(TagName.DECLARED_COUNT, "1000"));
+    Endpoint sameEndpoint = new Endpoint();
+    sameEndpoint.setUrl(endpoint.getUrl());
+    updated.addEndpoint(sameEndpoint);
+
+    Map<Dataset, Dataset> existingDatasets = new HashMap<>();
+    existingDatasets.put(dataset, updated);
+    SyncResult syncResult =
+        new SyncResult(
+            existingDatasets, Lists.newArrayList(), Lists.newArrayList(), installation);
+
+    // update Dataset in Registry
+    updater.saveUpdatedDatasets(syncResult);
+
+    // nothing was written
+    verify(updater.getDatasetService(), times(0)).update(any(Dataset.class));
+    verify(updater.getDatasetService(), times(0)).deleteContact(any(UUID.class), anyInt());
+    verify(updater.getDatasetService(), times(0)).addContact(any(UUID.class), any(Contact.class));
+    verify(updater.getDatasetService(), times(0)).deleteMachineTag(any(UUID.class), anyInt());
+    verify(updater.getDatasetService(), times(0))
+        .addMachineTag(any(UUID.class), any(MachineTag.class));
+    verify(updater.getDatasetService(), times(0)).deleteEndpoint(any(UUID.class), anyInt());
+    verify(updater.getDatasetService(), times(0)).addEndpoint(any(UUID.class), any(Endpoint.class));
+
+    assertThat(updater.getCounters().datasetsUnchanged).isEqualTo(1);
+    assertThat(updater.getCounters().datasetsUpdated).isEqualTo(0);
+    assertThat(updater.getCounters().rowsChanged).isEqualTo(0);
+  }
+
   /**
    * Update existing BioCASe dataset with license CC-BY 4.0, from a dataset with UNSPECIFIED
    * license. Check license is not overwritten (stays CC-BY 4.0). Check rights is overwritten to
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+import org.dspace.xoai.model.oaipmh.ResumptionToken;
+import org.dspace.xoai.services.api.ResumptionTokenFormat;
+import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
+
+/**
+ * The XOAI simple resumption token, followed by the position of the last dataset of the page (its
+ * modified date and key), so the next page continues after that dataset on any instance instead of
+ * skipping an offset. Tokens without a position are still accepted and page by offset.
+ *
+ * <p>XOAI only gives the offset of a token to the item repository. The position is handed over
+ * through thread locals instead: parsing a token keeps its position for the repository, and the
+ * repository leaves the position of its last dataset for the next token. The endpoint clears both
+ * after each request.
+ */
+public class KeysetResumptionTokenFormat implements ResumptionTokenFormat {
+
+  // not part of the Base64 alphabet of the simple tokens
+  private static final char SEPARATOR = '.';
+
+  private static final ThreadLocal<Cursor> REQUESTED = new ThreadLocal<>();
+  private static final ThreadLocal<Cursor> NEXT = new ThreadLocal<>();
+
+  private final ResumptionTokenFormat simpleFormat = new SimpleResumptionTokenFormat();
+
+  @Override
+  public ResumptionToken.Value parse(String resumptionToken) throws BadResumptionToken {
+    int separator = resumptionToken != null ? resumptionToken.indexOf(SEPARATOR) : -1;
+    if (separator < 0) {
+      return simpleFormat.parse(resumptionToken);
+    }
+
+    ResumptionToken.Value value = simpleFormat.parse(resumptionToken.substring(0, separator));
+    String[] position = resumptionToken.substring(separator + 1).split("\\" + SEPARATOR);
+    if (position.length != 2) {
+      throw new BadResumptionToken();
+    }
+    try {
+      REQUESTED.set(
+          new Cursor(
+              value.getOffset(),
+              new Date(Long.parseLong(position[0])),
+              UUID.fromString(position[1])));
+    } catch (IllegalArgumentException e) {
+      throw new BadResumptionToken();
+    }
+    return value;
+  }
+
+  @Override
+  public String format(ResumptionToken.Value resumptionToken) {
+    String token = simpleFormat.format(resumptionToken);
+    Cursor next = NEXT.get();
+    if (next != null && next.offset == resumptionToken.getOffset()) {
+      token = token + SEPARATOR + next.modified.getTime() + SEPARATOR + next.key;
+    }
+    return token;
+  }
+
+  /** The position given by the resumption token of the current request, if it is at the offset. */
+  static Cursor requestedCursor(long offset) {
+    Cursor requested = REQUESTED.get();
+    return requested != null && requested.offset == offset ? requested : null;
+  }
+
+  /** Sets the position the next page continues after, written in the next resumption token. */
+  static void setNextCursor(Cursor next) {
+    NEXT.set(next);
+  }
+
+  /** Forgets the positions of the current request. */
+  static void clear() {
+    REQUESTED.remove();
+    NEXT.remove();
+  }
+
+  /** Position in the (modified, key) order of the list requests, at the offset of a page. */
+  static class Cursor {
+    final long offset;
+    final Date modified;
+    final UUID key;
+
+    Cursor(long offset, Date modified, UUID key) {
+      this.offset = offset;
+      this.modified = modified;
+      this.key = key;
+    }
+  }
+}
@@ -84,6 +84,8 @@ public class OaipmhEndpoint {
       return OaipmhUtils.write(oaipmh).getBytes(StandardCharsets.UTF_8);
     } catch (Exception e) {
       throw new ServiceUnavailableException("OAI Failed to serialize dataset", e);
+    } finally {
+      KeysetResumptionTokenFormat.clear();
     }
   }
 }
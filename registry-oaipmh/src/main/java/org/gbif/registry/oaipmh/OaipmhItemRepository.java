@@ -18,16 +18,17 @@ package org.gbif.registry.oaipmh;
 import org.gbif.api.exception.ServiceUnavailableException;
 import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.common.paging.PagingResponse;
-import org.gbif.api.model.metrics.cube.OccurrenceCube;
-import org.gbif.api.model.metrics.cube.ReadBuilder;
 import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.registry.metadata.DublinCoreWriter;
 import org.gbif.registry.metadata.EMLWriter;
+import org.gbif.registry.oaipmh.KeysetResumptionTokenFormat.Cursor;
 import org.gbif.registry.oaipmh.OaipmhSetRepository.SetIdentification;
 import org.gbif.registry.occurrence.client.OccurrenceMetricsClient;
+import org.gbif.registry.persistence.BatchComponentLoader;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.service.RegistryDatasetService;
@@ -35,14 +36,24 @@ import org.gbif.ws.util.ExtraMediaTypes;
 
 import java.io.IOException;
 import java.io.StringWriter;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 
@@ -57,17 +68,24 @@ import org.dspace.xoai.dataprovider.repository.ItemRepository;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
 
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.COUNTRY;
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.DATASET_TYPE;
 import static org.gbif.registry.oaipmh.OaipmhSetRepository.SetType.INSTALLATION;
 
 /** Implementation of a XOAI ItemRepository for {@link Dataset}. */
-public class OaipmhItemRepository implements ItemRepository {
+public class OaipmhItemRepository implements ItemRepository, MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(OaipmhItemRepository.class);
 
@@ -77,11 +95,35 @@ public class OaipmhItemRepository implements ItemRepository {
           .expireAfterAccess(1, TimeUnit.MINUTES)
           .build(buildOrganizationCacheLoader());
 
+  /**
+   * Rendered DC/EML records, reused while the dataset and its preferred metadata document are
+   * unchanged and evicted when the registry changes the dataset. The expiry bounds the staleness of
+   * the occurrence count written in the DC document. Records rendered without their count, because
+   * the metrics service failed or was too slow, are not kept.
+   */
+  private final Cache<UUID, RenderedRecord> recordCache =
+      CacheBuilder.newBuilder()
+          .maximumWeight(64 * 1024 * 1024)
+          .weigher((UUID key, RenderedRecord record) -> record.xml.length())
+          .expireAfterWrite(1, TimeUnit.HOURS)
+          .build();
+
+  /**
+   * Occurrence counts written in the DC documents, shared by all harvest requests. A dataset
+   * without a count is kept as 0, which is not written.
+   */
+  private final Cache<UUID, Long> occurrenceCountCache;
+
   private final RegistryDatasetService datasetService;
   private final OrganizationMapper organizationMapper;
   private final DatasetMapper datasetMapper;
   private final OccurrenceMetricsClient occurrenceMetricsClient;
 
+  private final ExecutorService occurrenceCountExecutor;
+  private final long occurrenceCountTimeoutMillis;
+  // occurrence counts omitted because the metrics service failed or was too slow
+  private final AtomicLong occurrenceCountFallbacks = new AtomicLong();
+
   private final EMLWriter emlWriter;
   private final DublinCoreWriter dublinCoreWriter;
 
@@ -89,17 +131,58 @@ public class OaipmhItemRepository implements ItemRepository {
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      OccurrenceMetricsClient occurrenceMetricsClient) {
+      OccurrenceMetricsClient occurrenceMetricsClient,
+      int occurrenceCountThreads,
+      long occurrenceCountTimeoutMillis,
+      long occurrenceCountExpiryMinutes) {
     this.datasetService = datasetService;
     this.datasetMapper = datasetMapper;
     this.organizationMapper = organizationMapper;
     this.occurrenceMetricsClient = occurrenceMetricsClient;
+    this.occurrenceCountTimeoutMillis = occurrenceCountTimeoutMillis;
+    this.occurrenceCountExecutor =
+        Executors.newFixedThreadPool(
+            occurrenceCountThreads,
+            new ThreadFactoryBuilder()
+                .setNameFormat("oaipmh-occurrence-count-%d")
+                .setDaemon(true)
+                .build());
+    this.occurrenceCountCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(100000)
+            .expireAfterWrite(occurrenceCountExpiryMinutes, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
 
     // should eventually be injected
     emlWriter = EMLWriter.newInstance(false, true);
     dublinCoreWriter = DublinCoreWriter.newInstance();
   }
 
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, occurrenceCountCache, "registry.oaipmh.occurrenceCount");
+    FunctionCounter.builder(
+            "registry.oaipmh.occurrenceCount.fallback",
+            occurrenceCountFallbacks,
+            AtomicLong::get)
+        .description("Occurrence counts omitted from DC documents")
+        .register(registry);
+  }
+
+  /** Drops the rendered record of the dataset, so it is rendered again on the next request. */
+  public void evictRecord(UUID datasetKey) {
+    recordCache.invalidate(datasetKey);
+  }
+
+  /**
+   * Drops all rendered records, for changes reaching many datasets such as the update of a
+   * publishing organization.
+   */
+  public void evictRecords() {
+    recordCache.invalidateAll();
+  }
+
   /** Build a CacheLoader<UUID, Organization> around the organizationMapper instance. */
   private CacheLoader<UUID, Organization> buildOrganizationCacheLoader() {
     return new CacheLoader<UUID, Organization>() {
@@ -124,7 +207,11 @@ public class OaipmhItemRepository implements ItemRepository {
 
     if (dataset != null) {
       try {
-        return toOaipmhItem(dataset);
+        Integer metadataKey = preferredMetadataKey(dataset);
+        if (!isRendered(dataset, metadataKey)) {
+          prefetchOccurrenceCounts(Collections.singletonList(dataset.getKey()));
+        }
+        return toOaipmhItem(dataset, dataset, metadataKey);
       } catch (Exception e) {
         throw new ServiceUnavailableException("Failed to serialize dataset " + s + " to DC/EML", e);
       }
@@ -256,13 +343,23 @@ public class OaipmhItemRepository implements ItemRepository {
       datasetList.remove(datasetList.size() - 1);
     }
 
-    PagingResponse<Dataset> pagingResponse = new PagingResponse<>();
-    pagingResponse.setResults(datasetList);
-    pagingResponse = datasetService.augmentWithMetadata(pagingResponse);
+    // the components and occurrence counts of the records to render are loaded for the whole
+    // page at once
+    Map<UUID, Integer> metadataKeys = new HashMap<>();
+    List<Dataset> toRender = Lists.newArrayList();
+    for (Dataset dataset : datasetList) {
+      Integer metadataKey = preferredMetadataKey(dataset);
+      metadataKeys.put(dataset.getKey(), metadataKey);
+      if (!isRendered(dataset, metadataKey)) {
+        toRender.add(dataset);
+      }
+    }
+    BatchComponentLoader.loadComponents(datasetMapper, toRender);
+    prefetchOccurrenceCounts(toRender.stream().map(Dataset::getKey).collect(Collectors.toList()));
 
     try {
-      for (Dataset dataset : pagingResponse.getResults()) {
-        results.add(toOaipmhItem(dataset));
+      for (Dataset dataset : datasetList) {
+        results.add(toOaipmhItem(dataset, null, metadataKeys.get(dataset.getKey())));
       }
     } catch (IOException e) {
       // caused by https://github.com/DSpace/xoai/issues/31
@@ -273,8 +370,15 @@ public class OaipmhItemRepository implements ItemRepository {
 
   /**
    * Build a {@link OaipmhItem} instance from a {@link Dataset} and the {@link Set} it belongs to.
+   * The DC/EML record is only rendered again if the dataset or its preferred metadata document
+   * changed since it was last rendered.
+   *
+   * @param dataset the dataset as stored, with its components if the record must be rendered
+   * @param augmented the dataset augmented with its metadata, null to augment it only if needed
+   * @param metadataKey key of the preferred metadata document of the dataset, can be null
    */
-  private OaipmhItem toOaipmhItem(Dataset dataset) throws IOException {
+  private OaipmhItem toOaipmhItem(Dataset dataset, Dataset augmented, Integer metadataKey)
+      throws IOException {
     Organization organization = null;
     try {
       organization = ORGANIZATION_CACHE.get(dataset.getPublishingOrganizationKey());
@@ -282,27 +386,106 @@ public class OaipmhItemRepository implements ItemRepository {
       LOG.error("Error while loading Organization from cache fro dataset {}", dataset, e);
     }
     List<Set> sets = getSets(organization, dataset);
-    Map<String, Object> additionalProperties = new HashMap<>();
-    additionalProperties.put(
-        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
 
-    // get the occurrence counts for this dataset, only used in DublinCore
-    // This is designed to fail fast (short http timeout) and on failures which are expected to be
-    // exceptional
-    // events, it is simply omitted.  See the Guice RegistryWsSevletListener for the configuration
-    // of the timeout.
-    ReadBuilder readBuilder = new ReadBuilder();
-    readBuilder.at(OccurrenceCube.DATASET_KEY, dataset.getKey());
+    RenderedRecord rendered = recordCache.getIfPresent(dataset.getKey());
+    if (rendered == null || !rendered.isCurrent(dataset.getModified(), metadataKey)) {
+      if (augmented == null) {
+        PagingResponse<Dataset> pagingResponse = new PagingResponse<>();
+        pagingResponse.setResults(Lists.newArrayList(dataset));
+        augmented = datasetService.augmentWithMetadata(pagingResponse).getResults().get(0);
+      }
+      // the occurrence count for this dataset, only used in DublinCore, prefetched for the page.
+      // Read through the map view so the cache statistics only reflect the prefetch lookups.
+      Long occurrenceCount = occurrenceCountCache.asMap().get(dataset.getKey());
+      rendered =
+          new RenderedRecord(
+              dataset.getModified(),
+              metadataKey,
+              renderRecord(augmented, organization, occurrenceCount));
+      // a record missing its count is rendered again on the next request, when the count may be
+      // back
+      if (occurrenceCount != null) {
+        recordCache.put(dataset.getKey(), rendered);
+      }
+    }
+    return new OaipmhItem(dataset, rendered.xml, sets);
+  }
+
+  /** The key of the preferred metadata document of the dataset, the one merged into it. */
+  private Integer preferredMetadataKey(Dataset dataset) {
+    // the metadata documents are ordered by priority
+    List<Metadata> metadata = datasetService.listMetadata(dataset.getKey(), null);
+    return metadata.isEmpty() ? null : metadata.get(0).getKey();
+  }
+
+  private boolean isRendered(Dataset dataset, Integer metadataKey) {
+    RenderedRecord rendered = recordCache.getIfPresent(dataset.getKey());
+    return rendered != null && rendered.isCurrent(dataset.getModified(), metadataKey);
+  }
+
+  /**
+   * Loads the occurrence counts of the datasets not in the cache yet, concurrently and waiting at
+   * most the configured timeout for all of them. Counts that fail or arrive too late are omitted
+   * from the DC documents, as the count is only informative.
+   */
+  private void prefetchOccurrenceCounts(Collection<UUID> datasetKeys) {
+    List<Callable<Void>> tasks =
+        datasetKeys.stream()
+            .distinct()
+            .filter(key -> occurrenceCountCache.getIfPresent(key) == null)
+            .map(
+                key ->
+                    (Callable<Void>)
+                        () -> {
+                          Long count = occurrenceMetricsClient.getCountForDataset(key);
+                          occurrenceCountCache.put(key, count != null ? count : 0L);
+                          return null;
+                        })
+            .collect(Collectors.toList());
+    if (tasks.isEmpty()) {
+      return;
+    }
+
+    int failed = 0;
     try {
-      Long occurrenceCount = occurrenceMetricsClient.getCountForDataset(dataset.getKey());
-      if (occurrenceCount > 0) {
-        additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
+      List<Future<Void>> futures =
+          occurrenceCountExecutor.invokeAll(
+              tasks, occurrenceCountTimeoutMillis, TimeUnit.MILLISECONDS);
+      for (Future<Void> future : futures) {
+        try {
+          future.get();
+        } catch (CancellationException | ExecutionException e) {
+          LOG.debug("Unable to get occurrence count", e);
+          failed++;
+        }
       }
-    } catch (Exception ex) {
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      failed = tasks.size();
+    }
+
+    if (failed > 0) {
+      occurrenceCountFallbacks.addAndGet(failed);
       LOG.warn(
-          "Unable to get occurrence count from cubeService for dataset {}. Omitting count.",
-          dataset.getKey(),
-          ex);
+          "Unable to get {} of {} occurrence counts from the metrics service. Omitting counts.",
+          failed,
+          tasks.size());
+    }
+  }
+
+  /**
+   * Render the DC and EML documents of a {@link Dataset} augmented with its metadata.
+   *
+   * @param occurrenceCount written in the DC document if positive, can be null
+   */
+  private String renderRecord(Dataset dataset, Organization organization, Long occurrenceCount)
+      throws IOException {
+    Map<String, Object> additionalProperties = new HashMap<>();
+    additionalProperties.put(
+        DublinCoreWriter.ADDITIONAL_PROPERTY_DC_FORMAT, ExtraMediaTypes.APPLICATION_DWCA);
+
+    if (occurrenceCount != null && occurrenceCount > 0) {
+      additionalProperties.put(DublinCoreWriter.ADDITIONAL_PROPERTY_OCC_COUNT, occurrenceCount);
     }
 
     /*
@@ -323,7 +506,7 @@ public class OaipmhItemRepository implements ItemRepository {
     xml.write("</eml>\n");
 
     xml.write("</root>\n");
-    return new OaipmhItem(dataset, xml.toString(), sets);
+    return xml.toString();
   }
 
   private OaipmhItem toOaipmhItemIdentifier(Dataset dataset) {
@@ -366,11 +549,19 @@ public class OaipmhItemRepository implements ItemRepository {
    * @param set set name in the form of set:subset {@see
    *     http://www.openarchives.org/OAI/openarchivesprotocol.html#Set} XOAI library validates the
    *     set before calling the ItemRepository so we do not validate it again here.
+   * @param length number of datasets to return, one more than the page size
    * @return list of matching {@link Dataset}. Never null.
    */
   private List<Dataset> getDatasetListFromFilters(
       int offset, int length, String set, Date from, Date until) {
 
+    // continue after the last dataset of the previous page if the resumption token gives it,
+    // otherwise skip the offset in the same order
+    Cursor cursor = offset > 0 ? KeysetResumptionTokenFormat.requestedCursor(offset) : null;
+    Date afterModified = cursor != null ? cursor.modified : null;
+    UUID afterKey = cursor != null ? cursor.key : null;
+    PagingRequest page = new PagingRequest(cursor != null ? 0 : offset, length);
+
     Optional<SetIdentification> setIdentification = OaipmhSetRepository.parseSetName(set);
 
     List<Dataset> datasetList;
@@ -393,19 +584,41 @@ public class OaipmhItemRepository implements ItemRepository {
       }
 
       datasetList =
-          datasetMapper.listWithFilter(
-              country,
-              datasetType,
-              installationKey,
-              from,
-              until,
-              new PagingRequest(offset, length));
+          datasetMapper.listWithFilterAfter(
+              country, datasetType, installationKey, from, until, afterModified, afterKey, page);
     } else {
       datasetList =
-          datasetMapper.listWithFilter(
-              null, null, null, from, until, new PagingRequest(offset, length));
+          datasetMapper.listWithFilterAfter(
+              null, null, null, from, until, afterModified, afterKey, page);
+    }
+
+    // a full list means there is a next page, which continues after the last dataset of this one
+    if (datasetList.size() == length && length > 1) {
+      Dataset last = datasetList.get(length - 2);
+      if (last.getModified() != null) {
+        KeysetResumptionTokenFormat.setNextCursor(
+            new Cursor(offset + length - 1, last.getModified(), last.getKey()));
+      }
     }
 
     return datasetList;
   }
+
+  /** DC/EML record of a dataset, with the state of the dataset it was rendered from. */
+  private static class RenderedRecord {
+    private final Long modified;
+    private final Integer metadataKey;
+    private final String xml;
+
+    private RenderedRecord(Date modified, Integer metadataKey, String xml) {
+      this.modified = modified != null ? modified.getTime() : null;
+      this.metadataKey = metadataKey;
+      this.xml = xml;
+    }
+
+    private boolean isCurrent(Date modified, Integer metadataKey) {
+      return Objects.equals(this.modified, modified != null ? modified.getTime() : null)
+          && Objects.equals(this.metadataKey, metadataKey);
+    }
+  }
 }
@@ -15,8 +15,12 @@
  */
 package org.gbif.registry.oaipmh;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
 import javax.xml.stream.XMLStreamException;
 
+import org.dspace.xoai.model.oaipmh.Granularity;
 import org.dspace.xoai.xml.XmlWritable;
 import org.dspace.xoai.xml.XmlWriter;
 
@@ -26,10 +30,19 @@ public final class OaipmhUtils {
 
   private OaipmhUtils() {}
 
-  /** Add xml header line. */
+  /**
+   * Add xml header line. Resumption tokens are written in the {@link KeysetResumptionTokenFormat}.
+   */
   protected static String write(final XmlWritable handle)
       throws XMLStreamException, XmlWriteException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    XmlWriter writer =
+        new XmlWriter(
+            output,
+            new XmlWriter.WriterContext(Granularity.Second, new KeysetResumptionTokenFormat()));
+    writer.write(handle);
+    writer.close();
     return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
-        + XmlWriter.toString(writer -> writer.write(handle));
+        + new String(output.toByteArray(), StandardCharsets.UTF_8);
   }
 }
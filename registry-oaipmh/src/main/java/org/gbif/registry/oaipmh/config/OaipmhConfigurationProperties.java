@@ -26,6 +26,14 @@ public class OaipmhConfigurationProperties {
 
   private String adminEmail;
 
+  // concurrent requests to the occurrence metrics service while rendering a page of records
+  private int occurrenceCountThreads = 10;
+
+  // time to wait for the occurrence counts of a page before omitting them
+  private long occurrenceCountTimeoutMillis = 5000;
+
+  private long occurrenceCountExpiryMinutes = 60;
+
   public String getBaseUrl() {
     return baseUrl;
   }
@@ -41,4 +49,28 @@ public class OaipmhConfigurationProperties {
   public void setAdminEmail(String adminEmail) {
     this.adminEmail = adminEmail;
   }
+
+  public int getOccurrenceCountThreads() {
+    return occurrenceCountThreads;
+  }
+
+  public void setOccurrenceCountThreads(int occurrenceCountThreads) {
+    this.occurrenceCountThreads = occurrenceCountThreads;
+  }
+
+  public long getOccurrenceCountTimeoutMillis() {
+    return occurrenceCountTimeoutMillis;
+  }
+
+  public void setOccurrenceCountTimeoutMillis(long occurrenceCountTimeoutMillis) {
+    this.occurrenceCountTimeoutMillis = occurrenceCountTimeoutMillis;
+  }
+
+  public long getOccurrenceCountExpiryMinutes() {
+    return occurrenceCountExpiryMinutes;
+  }
+
+  public void setOccurrenceCountExpiryMinutes(long occurrenceCountExpiryMinutes) {
+    this.occurrenceCountExpiryMinutes = occurrenceCountExpiryMinutes;
+  }
 }
@@ -15,6 +15,7 @@
  */
 package org.gbif.registry.oaipmh.config;
 
+import org.gbif.registry.oaipmh.KeysetResumptionTokenFormat;
 import org.gbif.registry.oaipmh.OaipmhItemRepository;
 import org.gbif.registry.oaipmh.OaipmhSetRepository;
 import org.gbif.registry.occurrence.client.OccurrenceMetricsClient;
@@ -43,7 +44,6 @@ import org.dspace.xoai.dataprovider.repository.SetRepository;
 import org.dspace.xoai.model.oaipmh.DeletedRecord;
 import org.dspace.xoai.model.oaipmh.Granularity;
 import org.dspace.xoai.services.api.DateProvider;
-import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
 import org.dspace.xoai.services.impl.UTCDateProvider;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -71,7 +71,7 @@ public class RegistryOaipmhConfiguration {
     return new Repository()
         .withItemRepository(itemRepository)
         .withSetRepository(setRepository)
-        .withResumptionTokenFormatter(new SimpleResumptionTokenFormat())
+        .withResumptionTokenFormatter(new KeysetResumptionTokenFormat())
         .withConfiguration(repositoryConfiguration);
   }
 
@@ -150,13 +150,20 @@ public class RegistryOaipmhConfiguration {
   }
 
   @Bean
-  public ItemRepository itemRepository(
+  public OaipmhItemRepository itemRepository(
       RegistryDatasetService datasetService,
       DatasetMapper datasetMapper,
       OrganizationMapper organizationMapper,
-      OccurrenceMetricsClient occurrenceMetricsClient) {
+      OccurrenceMetricsClient occurrenceMetricsClient,
+      OaipmhConfigurationProperties oaipmhConfigProperties) {
     return new OaipmhItemRepository(
-        datasetService, datasetMapper, organizationMapper, occurrenceMetricsClient);
+        datasetService,
+        datasetMapper,
+        organizationMapper,
+        occurrenceMetricsClient,
+        oaipmhConfigProperties.getOccurrenceCountThreads(),
+        oaipmhConfigProperties.getOccurrenceCountTimeoutMillis(),
+        oaipmhConfigProperties.getOccurrenceCountExpiryMinutes());
   }
 
   @Bean
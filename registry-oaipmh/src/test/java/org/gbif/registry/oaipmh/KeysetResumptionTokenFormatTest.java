@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.registry.oaipmh.KeysetResumptionTokenFormat.Cursor;
+
+import java.util.Date;
+import java.util.UUID;
+
+import org.dspace.xoai.dataprovider.exceptions.BadResumptionToken;
+import org.dspace.xoai.model.oaipmh.ResumptionToken;
+import org.dspace.xoai.services.impl.SimpleResumptionTokenFormat;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/** Test class for KeysetResumptionTokenFormat. */
+public class KeysetResumptionTokenFormatTest {
+
+  private final KeysetResumptionTokenFormat format = new KeysetResumptionTokenFormat();
+
+  @After
+  public void tearDown() {
+    KeysetResumptionTokenFormat.clear();
+  }
+
+  @Test
+  public void testPositionRoundTrip() throws BadResumptionToken {
+    Date modified = new Date(1_500_000_000_123L);
+    UUID key = UUID.randomUUID();
+    KeysetResumptionTokenFormat.setNextCursor(new Cursor(100, modified, key));
+    String token = format.format(value(100));
+    KeysetResumptionTokenFormat.clear();
+
+    ResumptionToken.Value parsed = format.parse(token);
+    assertEquals(100, parsed.getOffset());
+    assertEquals("eml", parsed.getMetadataPrefix());
+    Cursor cursor = KeysetResumptionTokenFormat.requestedCursor(100);
+    assertNotNull(cursor);
+    assertEquals(modified, cursor.modified);
+    assertEquals(key, cursor.key);
+
+    // only given for the offset of the token
+    assertNull(KeysetResumptionTokenFormat.requestedCursor(200));
+  }
+
+  @Test
+  public void testPositionOfAnotherOffsetNotWritten() {
+    KeysetResumptionTokenFormat.setNextCursor(new Cursor(200, new Date(), UUID.randomUUID()));
+    assertEquals(new SimpleResumptionTokenFormat().format(value(100)), format.format(value(100)));
+  }
+
+  @Test
+  public void testTokenWithoutPosition() throws BadResumptionToken {
+    String token = new SimpleResumptionTokenFormat().format(value(100));
+
+    ResumptionToken.Value parsed = format.parse(token);
+    assertEquals(100, parsed.getOffset());
+    assertNull(KeysetResumptionTokenFormat.requestedCursor(100));
+  }
+
+  @Test
+  public void testClear() throws BadResumptionToken {
+    KeysetResumptionTokenFormat.setNextCursor(new Cursor(100, new Date(), UUID.randomUUID()));
+    format.parse(format.format(value(100)));
+    KeysetResumptionTokenFormat.clear();
+
+    assertNull(KeysetResumptionTokenFormat.requestedCursor(100));
+    assertEquals(new SimpleResumptionTokenFormat().format(value(100)), format.format(value(100)));
+  }
+
+  @Test(expected = BadResumptionToken.class)
+  public void testBadPosition() throws BadResumptionToken {
+    format.parse(new SimpleResumptionTokenFormat().format(value(100)) + ".123.not-a-key");
+  }
+
+  private static ResumptionToken.Value value(long offset) {
+    return new ResumptionToken.Value().withOffset(offset).withMetadataPrefix("eml");
+  }
+}
@@ -24,12 +24,15 @@ import org.gbif.api.model.registry.Identifier;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.MachineTag;
 import org.gbif.api.model.registry.Tag;
+import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.DatasetType;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
@@ -380,6 +383,29 @@ public class MockDatasetMapper implements DatasetMapper {
     return null;
   }
 
+  @Override
+  public List<KeyTitleResult> titles(@Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public Date modified(@Param("key") UUID key) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> listWithFilterAfter(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("afterModified") Date afterModified,
+      @Nullable @Param("afterKey") UUID afterKey,
+      @Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
   @Override
   public void create(Dataset entity) {}
 
@@ -438,4 +464,50 @@ public class MockDatasetMapper implements DatasetMapper {
   public List<Tag> listTags(@Param("targetEntityKey") UUID targetEntityKey) {
     return null;
   }
+
+  @Override
+  public List<Dataset> listWithoutComponents(@Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
+  @Override
+  public List<Dataset> searchWithoutComponents(
+      @Nullable @Param("query") String query, @Nullable @Param("page") Pageable page) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<Contact>> listContactsByKeys(
+      @Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<Endpoint>> listEndpointsByKeys(
+      @Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<MachineTag>> listMachineTagsByKeys(
+      @Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<Tag>> listTagsByKeys(@Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<Identifier>> listIdentifiersByKeys(
+      @Param("keys") Collection<UUID> keys) {
+    return null;
+  }
+
+  @Override
+  public List<EntityComponents<Comment>> listCommentsByKeys(
+      @Param("keys") Collection<UUID> keys) {
+    return null;
+  }
 }
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.oaipmh;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.api.vocabulary.DatasetType;
+import org.gbif.registry.occurrence.client.OccurrenceMetricsClient;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.service.RegistryDatasetService;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Test class for the rendered records kept by OaipmhItemRepository. */
+public class OaipmhItemRepositoryTest {
+
+  private final Dataset dataset = new Dataset();
+
+  private RegistryDatasetService datasetService;
+  private OccurrenceMetricsClient occurrenceMetricsClient;
+  private OaipmhItemRepository itemRepository;
+
+  @Before
+  public void setup() {
+    Organization organization = new Organization();
+    organization.setKey(UUID.randomUUID());
+    organization.setTitle("Organization");
+    organization.setCountry(Country.DENMARK);
+
+    dataset.setKey(UUID.randomUUID());
+    dataset.setTitle("Dataset");
+    dataset.setType(DatasetType.OCCURRENCE);
+    dataset.setInstallationKey(UUID.randomUUID());
+    dataset.setPublishingOrganizationKey(organization.getKey());
+    dataset.setCreated(new Date());
+    dataset.setModified(new Date());
+
+    datasetService = mock(RegistryDatasetService.class);
+    when(datasetService.get(dataset.getKey())).thenReturn(dataset);
+    when(datasetService.listMetadata(any(UUID.class), isNull()))
+        .thenReturn(Collections.emptyList());
+    OrganizationMapper organizationMapper = mock(OrganizationMapper.class);
+    when(organizationMapper.get(organization.getKey())).thenReturn(organization);
+    occurrenceMetricsClient = mock(OccurrenceMetricsClient.class);
+
+    itemRepository =
+        new OaipmhItemRepository(
+            datasetService,
+            mock(DatasetMapper.class),
+            organizationMapper,
+            occurrenceMetricsClient,
+            1,
+            5000,
+            60);
+  }
+
+  @Test
+  public void testRecordWithoutOccurrenceCountNotKept() throws Exception {
+    when(occurrenceMetricsClient.getCountForDataset(dataset.getKey()))
+        .thenThrow(new RuntimeException("Metrics service unavailable"))
+        .thenReturn(1000L);
+
+    // rendered without the count
+    itemRepository.getItem(dataset.getKey().toString());
+    // rendered again, with the count
+    itemRepository.getItem(dataset.getKey().toString());
+    // kept
+    itemRepository.getItem(dataset.getKey().toString());
+
+    verify(occurrenceMetricsClient, times(2)).getCountForDataset(dataset.getKey());
+  }
+
+  @Test
+  public void testRecordOfDatasetWithoutOccurrencesKept() throws Exception {
+    when(occurrenceMetricsClient.getCountForDataset(dataset.getKey())).thenReturn(null);
+
+    itemRepository.getItem(dataset.getKey().toString());
+    itemRepository.getItem(dataset.getKey().toString());
+
+    verify(occurrenceMetricsClient, times(1)).getCountForDataset(dataset.getKey());
+  }
+}
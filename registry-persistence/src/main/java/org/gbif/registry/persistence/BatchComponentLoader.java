@@ -0,0 +1,96 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence;
+
+import org.gbif.api.model.registry.Commentable;
+import org.gbif.api.model.registry.Contactable;
+import org.gbif.api.model.registry.Endpointable;
+import org.gbif.api.model.registry.Identifiable;
+import org.gbif.api.model.registry.MachineTaggable;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Taggable;
+import org.gbif.registry.persistence.mapper.BatchComponentMapper;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Loads the components of network entities selected without them, see {@link
+ * BatchComponentMapper}.
+ */
+public final class BatchComponentLoader {
+
+  private BatchComponentLoader() {}
+
+  /**
+   * Populates the components (contacts, endpoints, machine tags, tags, identifiers and comments) of
+   * the entities with one query per component type, regardless of the number of entities.
+   *
+   * @param mapper To load the components with
+   * @param entities As returned by the mapper without their components
+   * @return the same entities, in the same order
+   */
+  public static <T extends NetworkEntity> List<T> loadComponents(
+      BatchComponentMapper<T> mapper, List<T> entities) {
+    if (entities.isEmpty()) {
+      return entities;
+    }
+
+    Map<UUID, T> byKey = new LinkedHashMap<>();
+    for (T entity : entities) {
+      byKey.put(entity.getKey(), entity);
+    }
+
+    populate(
+        byKey,
+        mapper.listContactsByKeys(byKey.keySet()),
+        (e, contacts) -> ((Contactable) e).setContacts(contacts));
+    populate(
+        byKey,
+        mapper.listEndpointsByKeys(byKey.keySet()),
+        (e, endpoints) -> ((Endpointable) e).setEndpoints(endpoints));
+    populate(
+        byKey,
+        mapper.listMachineTagsByKeys(byKey.keySet()),
+        (e, machineTags) -> ((MachineTaggable) e).setMachineTags(machineTags));
+    populate(
+        byKey, mapper.listTagsByKeys(byKey.keySet()), (e, tags) -> ((Taggable) e).setTags(tags));
+    populate(
+        byKey,
+        mapper.listIdentifiersByKeys(byKey.keySet()),
+        (e, identifiers) -> ((Identifiable) e).setIdentifiers(identifiers));
+    populate(
+        byKey,
+        mapper.listCommentsByKeys(byKey.keySet()),
+        (e, comments) -> ((Commentable) e).setComments(comments));
+
+    return entities;
+  }
+
+  private static <T, C> void populate(
+      Map<UUID, T> byKey, List<EntityComponents<C>> components, BiConsumer<T, List<C>> setter) {
+    for (EntityComponents<C> entityComponents : components) {
+      T entity = byKey.get(entityComponents.getEntityKey());
+      if (entity != null) {
+        setter.accept(entity, entityComponents.getComponents());
+      }
+    }
+  }
+}
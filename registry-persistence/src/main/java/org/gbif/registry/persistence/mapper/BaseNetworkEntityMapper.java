@@ -20,6 +20,7 @@ import org.gbif.api.model.registry.NetworkEntity;
 /** The BaseNetworkEntityMapper defines a common interface for all our Network entities. */
 public interface BaseNetworkEntityMapper<T extends NetworkEntity>
     extends NetworkEntityMapper<T>,
+        BatchComponentMapper<T>,
         ContactableMapper,
         CommentableMapper,
         MachineTaggableMapper,
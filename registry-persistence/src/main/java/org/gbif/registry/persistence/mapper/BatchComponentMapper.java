@@ -0,0 +1,68 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper;
+
+import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.registry.Comment;
+import org.gbif.api.model.registry.Contact;
+import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.Identifier;
+import org.gbif.api.model.registry.MachineTag;
+import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.Tag;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+import org.apache.ibatis.annotations.Param;
+
+/**
+ * Mappers that can load the components (contacts, endpoints, tags etc.) of a page of network
+ * entities with a single query per component type. The default result maps use nested selects
+ * instead, which cost one query per entity and component.
+ */
+public interface BatchComponentMapper<T extends NetworkEntity> {
+
+  /**
+   * Same as {@link NetworkEntityMapper#list(Pageable)} but the components of the entities are not
+   * populated.
+   */
+  List<T> listWithoutComponents(@Nullable @Param("page") Pageable page);
+
+  /**
+   * Same as {@link NetworkEntityMapper#search(String, Pageable)} but the components of the entities
+   * are not populated.
+   */
+  List<T> searchWithoutComponents(
+      @Nullable @Param("query") String query, @Nullable @Param("page") Pageable page);
+
+  List<EntityComponents<Contact>> listContactsByKeys(@Param("keys") Collection<UUID> keys);
+
+  /** The endpoints are returned with their machine tags populated. */
+  List<EntityComponents<Endpoint>> listEndpointsByKeys(@Param("keys") Collection<UUID> keys);
+
+  List<EntityComponents<MachineTag>> listMachineTagsByKeys(@Param("keys") Collection<UUID> keys);
+
+  List<EntityComponents<Tag>> listTagsByKeys(@Param("keys") Collection<UUID> keys);
+
+  List<EntityComponents<Identifier>> listIdentifiersByKeys(@Param("keys") Collection<UUID> keys);
+
+  List<EntityComponents<Comment>> listCommentsByKeys(@Param("keys") Collection<UUID> keys);
+}
@@ -33,6 +33,9 @@ import org.springframework.stereotype.Repository;
 @Repository
 public interface DatasetMapper extends BaseNetworkEntityMapper<Dataset> {
 
+  /** Obtains the last modified date of the dataset, or null if the dataset does not exist. */
+  Date modified(@Param("key") UUID key);
+
   /** Obtains a list of all the constituent datasets that are part of this parent dataset. */
   List<Dataset> listConstituents(
       @Param("parentKey") UUID parentKey, @Nullable @Param("page") Pageable page);
@@ -79,6 +82,27 @@ public interface DatasetMapper extends BaseNetworkEntityMapper<Dataset> {
       @Nullable @Param("dateTo") Date to,
       @Nullable @Param("page") Pageable page);
 
+  /**
+   * Obtains a list of all datasets using the provided filter(s), ordered by modified date and key.
+   * Giving the modified date and key of the last dataset of the previous page continues after it,
+   * without counting an offset through all the previous pages. The components of the datasets are
+   * not populated, see {@link BatchComponentMapper}.
+   *
+   * @param from lower bound dataset modified date (inclusive)
+   * @param to upper bound dataset modified date (exclusive)
+   * @param afterModified modified date of the last dataset seen, used together with afterKey
+   * @param afterKey key of the last dataset seen
+   */
+  List<Dataset> listWithFilterAfter(
+      @Nullable @Param("country") Country country,
+      @Nullable @Param("type") DatasetType type,
+      @Nullable @Param("installationKey") UUID installationKey,
+      @Nullable @Param("dateFrom") Date from,
+      @Nullable @Param("dateTo") Date to,
+      @Nullable @Param("afterModified") Date afterModified,
+      @Nullable @Param("afterKey") UUID afterKey,
+      @Nullable @Param("page") Pageable page);
+
   /** Counts all datasets from a DOI. This counts for dataset.doi and alternate identifiers. */
   long countByDOI(@Param("doi") String doi);
 
@@ -19,12 +19,12 @@ import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
 
 import java.util.List;
-import java.util.Map;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
 
 import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.session.ResultHandler;
 import org.springframework.stereotype.Repository;
 
 /** Mapper that perform operations on dataset usages in occurrence downloads. */
@@ -43,7 +43,40 @@ public interface DatasetOccurrenceDownloadMapper {
   List<DatasetOccurrenceDownloadUsage> listByDownload(
       @Param("downloadKey") String downloadKey, @Nullable @Param("page") Pageable page);
 
-  void createUsages(
+  /**
+   * Hands the dataset usages of a download to the handler one by one, those with most records
+   * first, without the download and the dataset citations. Within a transaction they are read
+   * through a cursor, in batches, so downloads of any number of datasets can be iterated over
+   * without holding the usages in memory.
+   */
+  void listConstituentsByDownload(
       @Param("downloadKey") String downloadKey,
-      @Param("citationMap") Map<UUID, Long> downloadDataset);
+      ResultHandler<DatasetOccurrenceDownloadUsage> handler);
+
+  /**
+   * Locks the download until the end of the transaction. Creating its usages and marking it as
+   * succeeded both lock it, so they run one after the other and the usages are added to the
+   * statistics exactly once.
+   *
+   * @return 1, or null if the download doesn't exist
+   */
+  Integer lockDownload(@Param("downloadKey") String downloadKey);
+
+  /**
+   * Creates, if it doesn't exist yet, the temporary table of the connection that the usages of a
+   * download are copied into before {@link #createUsagesFromStaging(String)}.
+   */
+  void createUsagesStagingTable();
+
+  /**
+   * Moves the usages of the staging table into the download, in a single statement. Usages of
+   * datasets that don't exist are dropped. If the download has already succeeded, the usages are
+   * added to the monthly download statistics of their datasets too.
+   *
+   * <p>The download must have been locked with {@link #lockDownload(String)} in the same
+   * transaction. Otherwise this statement can miss the download succeeding concurrently, while
+   * the update that marks it as succeeded doesn't see these usages yet, and they are never added
+   * to the statistics.
+   */
+  void createUsagesFromStaging(@Param("downloadKey") String downloadKey);
 }
@@ -16,10 +16,14 @@
 package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.common.paging.Pageable;
+import org.gbif.api.model.registry.Identifier;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.vocabulary.InstallationType;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -58,4 +62,10 @@ public interface InstallationMapper extends BaseNetworkEntityMapper<Installation
   /** Obtains a list of all installations filtered optionally by a type. */
   List<Installation> listWithFilter(
       @Nullable @Param("type") InstallationType type, @Nullable @Param("page") Pageable page);
+
+  /** Identifiers are not part of the installation result map, so they are not loaded either. */
+  @Override
+  default List<EntityComponents<Identifier>> listIdentifiersByKeys(Collection<UUID> keys) {
+    return Collections.emptyList();
+  }
 }
@@ -17,8 +17,10 @@ package org.gbif.registry.persistence.mapper;
 
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.registry.NetworkEntity;
+import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.vocabulary.IdentifierType;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -39,6 +41,14 @@ public interface NetworkEntityMapper<T extends NetworkEntity> {
 
   String title(@Param("key") UUID key);
 
+  /**
+   * Gets the titles of many entities in a single query. Keys that don't exist are not returned.
+   *
+   * @param keys of the network entities
+   * @return the key and title of each entity found
+   */
+  List<KeyTitleResult> titles(@Param("keys") Collection<UUID> keys);
+
   void create(T entity);
 
   void delete(@Param("key") UUID key);
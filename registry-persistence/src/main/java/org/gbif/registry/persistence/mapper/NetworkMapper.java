@@ -15,8 +15,12 @@
  */
 package org.gbif.registry.persistence.mapper;
 
+import org.gbif.api.model.registry.Identifier;
 import org.gbif.api.model.registry.Network;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -36,4 +40,10 @@ public interface NetworkMapper extends BaseNetworkEntityMapper<Network> {
 
   /** @return the list of networks a dataset is a constituent of */
   List<Network> listByDataset(@Param("datasetKey") UUID datasetKey);
+
+  /** Identifiers are not part of the network result map, so they are not loaded either. */
+  @Override
+  default List<EntityComponents<Identifier>> listIdentifiersByKeys(Collection<UUID> keys) {
+    return Collections.emptyList();
+  }
 }
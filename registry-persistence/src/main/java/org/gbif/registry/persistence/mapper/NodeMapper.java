@@ -15,11 +15,15 @@
  */
 package org.gbif.registry.persistence.mapper;
 
+import org.gbif.api.model.registry.Contact;
 import org.gbif.api.model.registry.Node;
 import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.vocabulary.ContactType;
 import org.gbif.api.vocabulary.Country;
+import org.gbif.registry.persistence.mapper.dto.EntityComponents;
 
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 
@@ -69,4 +73,10 @@ public interface NodeMapper extends BaseNetworkEntityMapper<Node> {
 
   /** A simple suggest by title service. */
   List<KeyTitleResult> suggest(@Nullable @Param("q") String q);
+
+  /** Node contacts are not kept in the registry, so there is nothing to load. */
+  @Override
+  default List<EntityComponents<Contact>> listContactsByKeys(Collection<UUID> keys) {
+    return Collections.emptyList();
+  }
 }
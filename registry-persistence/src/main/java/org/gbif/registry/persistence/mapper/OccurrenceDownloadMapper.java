@@ -40,6 +40,14 @@ public interface OccurrenceDownloadMapper {
 
   void update(Download entity);
 
+  /**
+   * Updates a download that hasn't succeeded yet, so of concurrent updates to SUCCEEDED only one
+   * updates the download.
+   *
+   * @return the number of downloads updated, 0 if the download had already succeeded
+   */
+  int updateSucceeded(Download entity);
+
   void create(Download entity);
 
   List<Download> list(@Nullable @Param("page") Pageable page);
@@ -68,4 +76,16 @@ public interface OccurrenceDownloadMapper {
       @Nullable @Param("toDate") Date toDate,
       @Nullable @Param("publishingCountry") String publishingCountry,
       @Nullable @Param("datasetKey") UUID datasetKey);
+
+  /**
+   * Adds the download to the monthly statistics of the country of its creator. To be called once,
+   * when the download succeeds.
+   */
+  void addToUserStatistics(@Param("key") String key);
+
+  /**
+   * Adds the dataset usages the download has to the monthly statistics of their datasets. To be
+   * called once, when the download succeeds.
+   */
+  void addToDatasetStatistics(@Param("key") String key);
 }
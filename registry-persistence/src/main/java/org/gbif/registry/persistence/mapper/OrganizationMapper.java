@@ -106,6 +106,17 @@ public interface OrganizationMapper
       @Param("isEndorsed") Boolean isEndorsed,
       @Nullable @Param("page") Pageable page);
 
+  /**
+   * Overloaded search scoped by country, returning the organizations without their components.
+   *
+   * @see BatchComponentMapper#searchWithoutComponents(String, Pageable)
+   */
+  List<Organization> searchWithoutComponents(
+      @Nullable @Param("query") String query,
+      @Param("country") Country country,
+      @Param("isEndorsed") Boolean isEndorsed,
+      @Nullable @Param("page") Pageable page);
+
   /** Overloaded count to allow a search scoped by country. */
   int count(
       @Nullable @Param("query") String query,
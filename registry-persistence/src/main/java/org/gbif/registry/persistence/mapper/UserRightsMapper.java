@@ -15,6 +15,7 @@
  */
 package org.gbif.registry.persistence.mapper;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.apache.ibatis.annotations.Param;
@@ -29,4 +30,19 @@ public interface UserRightsMapper {
 
   boolean allowedToDeleteMachineTag(
       @Param("username") String username, @Param("key") int machineTagKey);
+
+  /**
+   * Lists the keys of the entities whose editors can also edit the dataset: its installation, the
+   * organization hosting the installation, the publishing organization and their endorsing nodes.
+   */
+  List<UUID> listDatasetOwnerKeys(@Param("key") UUID datasetKey);
+
+  /**
+   * Lists the keys of the entities whose editors can also edit the installation: its organization
+   * and the endorsing node of the organization.
+   */
+  List<UUID> listInstallationOwnerKeys(@Param("key") UUID installationKey);
+
+  /** Lists the keys of the entities whose editors can also edit the organization: its node. */
+  List<UUID> listOrganizationOwnerKeys(@Param("key") UUID organizationKey);
 }
@@ -19,6 +19,7 @@ import org.gbif.api.model.collections.Collection;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
 import org.gbif.registry.persistence.ContactableMapper;
+import org.gbif.registry.persistence.mapper.dto.CollectionsLookupEntry;
 
 import java.util.List;
 import java.util.UUID;
@@ -64,4 +65,12 @@ public interface CollectionMapper extends BaseMapper<Collection>, ContactableMap
    * @return the keys of the collections
    */
   List<UUID> findByIdentifier(@Nullable @Param("identifier") String identifier);
+
+  /**
+   * Lists the codes, name and identifiers of the collections that are not deleted, to build the
+   * lookup index.
+   *
+   * @param key to load only a collection, or null to load all of them
+   */
+  List<CollectionsLookupEntry> lookupEntries(@Nullable @Param("key") UUID key);
 }
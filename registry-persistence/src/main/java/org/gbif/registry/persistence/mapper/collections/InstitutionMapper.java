@@ -19,6 +19,7 @@ import org.gbif.api.model.collections.Institution;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
 import org.gbif.registry.persistence.ContactableMapper;
+import org.gbif.registry.persistence.mapper.dto.CollectionsLookupEntry;
 
 import java.util.List;
 import java.util.UUID;
@@ -62,4 +63,12 @@ public interface InstitutionMapper extends BaseMapper<Institution>, ContactableM
    * @return the keys of the institutions
    */
   List<UUID> findByIdentifier(@Nullable @Param("identifier") String identifier);
+
+  /**
+   * Lists the codes, name and identifiers of the institutions that are not deleted, to build the
+   * lookup index.
+   *
+   * @param key to load only an institution, or null to load all of them
+   */
+  List<CollectionsLookupEntry> lookupEntries(@Nullable @Param("key") UUID key);
 }
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.dto;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * The fields of a collection or institution that the GrSciColl lookups match against, as loaded to
+ * build the in-memory lookup index.
+ */
+public class CollectionsLookupEntry {
+
+  private UUID key;
+  private UUID institutionKey;
+  private String code;
+  private String name;
+  private Map<String, String> alternativeCodes = Collections.emptyMap();
+  private List<String> identifiers = Collections.emptyList();
+
+  public UUID getKey() {
+    return key;
+  }
+
+  public void setKey(UUID key) {
+    this.key = key;
+  }
+
+  /** The institution of a collection, null for institutions. */
+  public UUID getInstitutionKey() {
+    return institutionKey;
+  }
+
+  public void setInstitutionKey(UUID institutionKey) {
+    this.institutionKey = institutionKey;
+  }
+
+  public String getCode() {
+    return code;
+  }
+
+  public void setCode(String code) {
+    this.code = code;
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public void setName(String name) {
+    this.name = name;
+  }
+
+  public Map<String, String> getAlternativeCodes() {
+    return alternativeCodes;
+  }
+
+  public void setAlternativeCodes(Map<String, String> alternativeCodes) {
+    this.alternativeCodes = alternativeCodes != null ? alternativeCodes : Collections.emptyMap();
+  }
+
+  public List<String> getIdentifiers() {
+    return identifiers;
+  }
+
+  public void setIdentifiers(List<String> identifiers) {
+    this.identifiers = identifiers != null ? identifiers : Collections.emptyList();
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The components (contacts, endpoints, tags etc.) of a single entity, as returned by the queries
+ * that load the components of many entities at once.
+ *
+ * @param <T> the type of the component
+ */
+public class EntityComponents<T> {
+
+  private UUID entityKey;
+  private List<T> components = new ArrayList<>();
+
+  public UUID getEntityKey() {
+    return entityKey;
+  }
+
+  public void setEntityKey(UUID entityKey) {
+    this.entityKey = entityKey;
+  }
+
+  public List<T> getComponents() {
+    return components;
+  }
+
+  public void setComponents(List<T> components) {
+    this.components = components;
+  }
+}
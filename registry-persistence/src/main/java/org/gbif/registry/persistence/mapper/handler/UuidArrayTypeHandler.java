@@ -0,0 +1,75 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.mapper.handler;
+
+import java.sql.Array;
+import java.sql.CallableStatement;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.ibatis.type.BaseTypeHandler;
+import org.apache.ibatis.type.JdbcType;
+
+/**
+ * {@link org.apache.ibatis.type.TypeHandler} for arrays of {@link UUID}, mostly used to bind a
+ * collection of keys to a single {@code = ANY(?)} parameter.
+ */
+public class UuidArrayTypeHandler extends BaseTypeHandler<Collection<UUID>> {
+
+  @Override
+  public void setNonNullParameter(
+      PreparedStatement ps, int i, Collection<UUID> parameter, JdbcType jdbcType)
+      throws SQLException {
+    Array array = ps.getConnection().createArrayOf("uuid", parameter.toArray());
+    ps.setArray(i, array);
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(ResultSet rs, String columnName) throws SQLException {
+    return toList(rs.getArray(columnName));
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(ResultSet rs, int columnIndex) throws SQLException {
+    return toList(rs.getArray(columnIndex));
+  }
+
+  @Override
+  public Collection<UUID> getNullableResult(CallableStatement cs, int columnIndex)
+      throws SQLException {
+    return toList(cs.getArray(columnIndex));
+  }
+
+  private List<UUID> toList(Array pgArray) throws SQLException {
+    List<UUID> keys = new ArrayList<>();
+    if (pgArray == null) return keys;
+
+    Object[] values = (Object[]) pgArray.getArray();
+    if (values != null) {
+      for (Object value : values) {
+        if (value != null) {
+          keys.add(value instanceof UUID ? (UUID) value : UUID.fromString(value.toString()));
+        }
+      }
+    }
+    return keys;
+  }
+}
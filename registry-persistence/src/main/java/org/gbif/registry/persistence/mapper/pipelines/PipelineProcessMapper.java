@@ -20,8 +20,10 @@ import org.gbif.api.model.pipelines.PipelineExecution;
 import org.gbif.api.model.pipelines.PipelineProcess;
 import org.gbif.api.model.pipelines.PipelineStep;
 
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.annotation.Nullable;
@@ -63,6 +65,17 @@ public interface PipelineProcessMapper {
 
   Optional<Integer> getLastAttempt(@Param("datasetKey") UUID datasetKey);
 
+  /**
+   * Lists the last attempt of each dataset that is not deleted, ordered by dataset key. Only the
+   * key, dataset key and attempt of the processes are loaded, without executions.
+   *
+   * @param afterDatasetKey lists the datasets after this one, null to start from the first one
+   * @param limit maximum number of processes to return
+   * @return list of {@link PipelineProcess}
+   */
+  List<PipelineProcess> listLastAttempts(
+      @Nullable @Param("afterDatasetKey") UUID afterDatasetKey, @Param("limit") int limit);
+
   /**
    * Adds a {@link PipelineExecution} to an existing {@link PipelineProcess}.
    *
@@ -113,6 +126,32 @@ public interface PipelineProcessMapper {
 
   void updatePipelineStep(@Param("step") PipelineStep step);
 
+  /**
+   * Updates the status and metrics of a {@link PipelineStep}, only if the step belongs to the
+   * execution and the execution to the process.
+   *
+   * @param processKey key of the process of the step
+   * @param executionKey key of the execution of the step
+   * @param stepKey key of the step
+   * @param status new status of the step
+   * @param finished finished date to set if the status changes, null to keep the current one
+   * @param metrics metrics of the step
+   * @param numberRecords number of records for all step types but VERBATIM_TO_INTERPRETED
+   * @param interpretedNumberRecords number of records for a VERBATIM_TO_INTERPRETED step
+   * @param user the user who is updating the status
+   * @return the number of steps updated, 0 if the keys don't match
+   */
+  int updatePipelineStepStatusAndMetrics(
+      @Param("processKey") long processKey,
+      @Param("executionKey") long executionKey,
+      @Param("stepKey") long stepKey,
+      @Param("status") PipelineStep.Status status,
+      @Nullable @Param("finished") LocalDateTime finished,
+      @Param("metrics") Set<PipelineStep.MetricInfo> metrics,
+      @Nullable @Param("numberRecords") Long numberRecords,
+      @Nullable @Param("interpretedNumberRecords") Long interpretedNumberRecords,
+      @Param("user") String user);
+
   List<PipelineProcess> getPipelineProcessesByDatasetAndAttempts(
       @Nullable @Param("datasetKey") UUID datasetKey,
       @Nullable @Param("attempts") List<Integer> attempts);
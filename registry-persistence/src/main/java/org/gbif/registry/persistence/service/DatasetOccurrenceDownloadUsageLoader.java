@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.persistence.service;
+
+import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.sql.DataSource;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Loads the dataset usages of a download by streaming them with COPY into a staging table and
+ * moving them from there with a single INSERT, instead of rendering them as SQL literals. That
+ * keeps downloads of hundreds of thousands of datasets from being parsed and planned as huge
+ * statements.
+ */
+@Service
+public class DatasetOccurrenceDownloadUsageLoader {
+
+  private static final Logger LOG =
+      LoggerFactory.getLogger(DatasetOccurrenceDownloadUsageLoader.class);
+
+  private static final String COPY_SQL =
+      "COPY dataset_occurrence_download_staging (dataset_key, number_records) FROM STDIN";
+
+  // rows are sent to the server in chunks of about this size
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final DataSource dataSource;
+  private final DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper;
+
+  public DatasetOccurrenceDownloadUsageLoader(
+      DataSource dataSource, DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper) {
+    this.dataSource = dataSource;
+    this.datasetOccurrenceDownloadMapper = datasetOccurrenceDownloadMapper;
+  }
+
+  /**
+   * Loads the usages, consuming the iterator once. The download is locked first, so an update
+   * marking it as succeeded waits for the usages, or the usages for the update, and they are added
+   * to the statistics either way.
+   *
+   * @param usages the number of records of each dataset in the download
+   * @return the number of usages copied, including those of unknown datasets that are dropped
+   */
+  @Transactional
+  public long load(String downloadKey, Iterator<? extends Map.Entry<UUID, Long>> usages) {
+    datasetOccurrenceDownloadMapper.lockDownload(downloadKey);
+    datasetOccurrenceDownloadMapper.createUsagesStagingTable();
+
+    // the connection of the transaction, that MyBatis uses too
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    long copied;
+    try {
+      CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(COPY_SQL);
+      try {
+        StringBuilder buffer = new StringBuilder(BUFFER_SIZE + 64);
+        while (usages.hasNext()) {
+          Map.Entry<UUID, Long> usage = usages.next();
+          buffer.append(usage.getKey()).append('\t').append(usage.getValue()).append('\n');
+          if (buffer.length() >= BUFFER_SIZE) {
+            write(copyIn, buffer);
+          }
+        }
+        write(copyIn, buffer);
+        copied = copyIn.endCopy();
+      } finally {
+        if (copyIn.isActive()) {
+          copyIn.cancelCopy();
+        }
+      }
+    } catch (SQLException e) {
+      throw new IllegalStateException("Failed to copy the usages of download " + downloadKey, e);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+
+    datasetOccurrenceDownloadMapper.createUsagesFromStaging(downloadKey);
+    LOG.debug("Loaded {} dataset usages of download {}", copied, downloadKey);
+    return copied;
+  }
+
+  private static void write(CopyIn copyIn, StringBuilder buffer) throws SQLException {
+    if (buffer.length() > 0) {
+      byte[] bytes = buffer.toString().getBytes(StandardCharsets.UTF_8);
+      copyIn.writeToCopy(bytes, 0, bytes.length);
+      buffer.setLength(0);
+    }
+  }
+}
@@ -16,7 +16,6 @@
 package org.gbif.registry.pipelines;
 
 import org.gbif.api.model.common.paging.Pageable;
-import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.common.paging.PagingResponse;
 import org.gbif.api.model.pipelines.PipelineExecution;
 import org.gbif.api.model.pipelines.PipelineProcess;
@@ -25,6 +24,7 @@ import org.gbif.api.model.pipelines.RunPipelineResponse;
 import org.gbif.api.model.pipelines.StepType;
 import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Endpoint;
+import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.service.registry.DatasetService;
 import org.gbif.api.util.comparators.EndpointCreatedComparator;
 import org.gbif.api.util.comparators.EndpointPriorityComparator;
@@ -37,8 +37,9 @@ import org.gbif.common.messaging.api.messages.PipelinesDwcaMessage;
 import org.gbif.common.messaging.api.messages.PipelinesInterpretedMessage;
 import org.gbif.common.messaging.api.messages.PipelinesVerbatimMessage;
 import org.gbif.common.messaging.api.messages.PipelinesXmlMessage;
+import org.gbif.registry.domain.pipelines.PipelineStepStatusUpdate;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
-import org.gbif.registry.pipelines.util.PredicateUtils;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
@@ -58,7 +59,10 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.function.Consumer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
@@ -68,12 +72,16 @@ import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.util.concurrent.RateLimiter;
 
 /** Service that allows to re-run pipeline steps on an specific attempt. */
 @Service
@@ -86,6 +94,9 @@ public class DefaultRegistryPipelinesHistoryTrackingService
   // Used to iterate over all datasets
   private static final int PAGE_SIZE = 200;
 
+  // Used to log the progress of the reruns of all datasets
+  private static final int PROGRESS_LOG_INTERVAL = 1000;
+
   private static final Comparator<Endpoint> ENDPOINT_COMPARATOR =
       Ordering.compound(
           Lists.newArrayList(
@@ -98,18 +109,30 @@ public class DefaultRegistryPipelinesHistoryTrackingService
 
   private final PipelineProcessMapper mapper;
   private final DatasetService datasetService;
+  private final DatasetMapper datasetMapper;
   private final ExecutorService executorService;
+  // drives the reruns of all datasets, one at a time
+  private final ExecutorService runAllExecutorService = Executors.newSingleThreadExecutor();
+  private final double runAllMessagesPerSecond;
+
+  // dataset titles shown in the history views, dropped when the dataset is updated
+  private final Cache<UUID, String> datasetTitleCache =
+      CacheBuilder.newBuilder().maximumSize(10000).expireAfterWrite(1, TimeUnit.HOURS).build();
 
   public DefaultRegistryPipelinesHistoryTrackingService(
       @Qualifier("registryObjectMapper") ObjectMapper objectMapper,
       @Autowired(required = false) MessagePublisher publisher,
       PipelineProcessMapper mapper,
       @Lazy DatasetService datasetService,
-      @Value("${pipelines.doAllThreads}") Integer threadPoolSize) {
+      DatasetMapper datasetMapper,
+      @Value("${pipelines.doAllThreads}") Integer threadPoolSize,
+      @Value("${pipelines.runAll.messagesPerSecond:0}") double runAllMessagesPerSecond) {
     this.objectMapper = objectMapper;
     this.publisher = publisher;
     this.mapper = mapper;
     this.datasetService = datasetService;
+    this.datasetMapper = datasetMapper;
+    this.runAllMessagesPerSecond = runAllMessagesPerSecond;
     this.executorService =
         Optional.ofNullable(threadPoolSize)
             .map(Executors::newFixedThreadPool)
@@ -129,34 +152,70 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     return runPipelineAttempt(datasetKey, lastAttempt, steps, reason, user, prefix);
   }
 
-  /** Utility method to run batch jobs on all dataset elements */
-  private void doOnAllDatasets(Consumer<UUID> onDataset, List<UUID> datasetsToExclude) {
-    Consumer<UUID> rerunFn =
-        datasetKey -> {
+  /**
+   * Utility method to run batch jobs on the last attempt of all datasets. The attempts are read in
+   * pages after the last dataset key seen, and each page is finished before reading the next one,
+   * so the memory used doesn't depend on the number of datasets. The jobs are started at the
+   * configured rate, if any.
+   */
+  private void doOnAllDatasets(
+      BiConsumer<UUID, Integer> onDatasetAttempt, List<UUID> datasetsToExclude) {
+    AtomicLong processed = new AtomicLong();
+    AtomicLong failed = new AtomicLong();
+    BiConsumer<UUID, Integer> rerunFn =
+        (datasetKey, attempt) -> {
           try {
             LOG.info("trying to rerun dataset {}", datasetKey);
-            onDataset.accept(datasetKey);
+            onDatasetAttempt.accept(datasetKey, attempt);
           } catch (Exception ex) {
+            failed.incrementAndGet();
             LOG.error(
                 "Error processing dataset {} while rerunning all datasets: {}",
                 datasetKey,
                 ex.getMessage());
           }
+          if (processed.incrementAndGet() % PROGRESS_LOG_INTERVAL == 0) {
+            LOG.info(
+                "Rerunning all datasets: {} datasets processed, {} failed",
+                processed.get(),
+                failed.get());
+          }
         };
 
-    PagingRequest pagingRequest = new PagingRequest(0, PAGE_SIZE);
+    // messages are still sent one per dataset. Each carries the execution created for its dataset,
+    // and the pipelines consumers handle a single dataset per message.
+    RateLimiter rateLimiter =
+        runAllMessagesPerSecond > 0 ? RateLimiter.create(runAllMessagesPerSecond) : null;
 
-    PagingResponse<Dataset> response;
+    UUID lastDatasetKey = null;
+    List<PipelineProcess> page;
     do {
-      response = datasetService.list(pagingRequest);
-      response.getResults().stream()
-          .map(Dataset::getKey)
-          .filter(PredicateUtils.not(datasetsToExclude::contains))
-          .forEach(
-              datasetKey ->
-                  CompletableFuture.runAsync(() -> rerunFn.accept(datasetKey), executorService));
-      pagingRequest.addOffset(response.getResults().size());
-    } while (!response.isEndOfRecords());
+      page = mapper.listLastAttempts(lastDatasetKey, PAGE_SIZE);
+
+      List<CompletableFuture<Void>> futures = new ArrayList<>(page.size());
+      for (PipelineProcess process : page) {
+        if (datasetsToExclude.contains(process.getDatasetKey())) {
+          continue;
+        }
+        if (rateLimiter != null) {
+          rateLimiter.acquire();
+        }
+        futures.add(
+            CompletableFuture.runAsync(
+                () -> rerunFn.accept(process.getDatasetKey(), process.getAttempt()),
+                executorService));
+      }
+      CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+      if (!page.isEmpty()) {
+        lastDatasetKey = page.get(page.size() - 1).getDatasetKey();
+      }
+    } while (page.size() == PAGE_SIZE);
+
+    LOG.info(
+        "Rerun of all datasets finished: {} datasets processed, {} failed",
+        processed.get(),
+        failed.get());
   }
 
   private Set<StepType> prioritizeSteps(Set<StepType> steps, Dataset dataset) {
@@ -204,9 +263,10 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     CompletableFuture.runAsync(
         () ->
             doOnAllDatasets(
-                datasetKey -> runLastAttempt(datasetKey, steps, reason, user, prefix),
+                (datasetKey, attempt) ->
+                    runPipelineAttempt(datasetKey, attempt, steps, reason, user, prefix),
                 datasetsToExclude),
-        executorService);
+        runAllExecutorService);
 
     return RunPipelineResponse.builder()
         .setResponseStatus(RunPipelineResponse.ResponseStatus.OK)
@@ -281,7 +341,7 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     List<PipelineProcess> statuses = mapper.list(null, null, pageable);
 
     // add needed fields for the view
-    statuses.forEach(this::setDatasetTitle);
+    setDatasetTitles(statuses);
 
     return new PagingResponse<>(pageable, count, statuses);
   }
@@ -294,7 +354,7 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     List<PipelineProcess> statuses = mapper.list(datasetKey, null, pageable);
 
     // add needed fields for the view
-    statuses.forEach(this::setDatasetTitle);
+    setDatasetTitles(statuses);
 
     return new PagingResponse<>(pageable, count, statuses);
   }
@@ -446,7 +506,9 @@ public class DefaultRegistryPipelinesHistoryTrackingService
 
     PipelineProcess process = mapper.getByDatasetAndAttempt(datasetKey, attempt);
 
-    setDatasetTitle(process);
+    if (process != null) {
+      setDatasetTitles(Collections.singletonList(process));
+    }
 
     return process;
   }
@@ -509,28 +571,38 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     Objects.requireNonNull(status, "Status can't be null");
     Preconditions.checkArgument(StringUtils.isNotEmpty(user), "user can't be null");
 
-    // fetch entities
-    PipelineProcess process = mapper.get(processKey);
-    PipelineExecution execution = mapper.getPipelineExecution(executionKey);
-    PipelineStep step = mapper.getPipelineStep(pipelineStepKey);
-    Preconditions.checkArgument(
-        process.getExecutions().contains(execution), "The process doesn't contain the execution.");
+    // the step is only updated if it belongs to the execution, and the execution to the process
+    int updated =
+        mapper.updatePipelineStepStatusAndMetrics(
+            processKey,
+            executionKey,
+            pipelineStepKey,
+            status,
+            PipelineStep.Status.FAILED == status || PipelineStep.Status.COMPLETED == status
+                ? LocalDateTime.now()
+                : null,
+            new HashSet<>(metrics),
+            getNumberRecordsFromMetrics(metrics, null),
+            getNumberRecordsFromMetrics(metrics, StepType.VERBATIM_TO_INTERPRETED),
+            user);
     Preconditions.checkArgument(
-        execution.getSteps().contains(step), "The execution doesn't contain the step.");
+        updated > 0, "The process doesn't contain the execution or the execution the step.");
+  }
 
-    if (step.getState() != status
-        && (PipelineStep.Status.FAILED == status || PipelineStep.Status.COMPLETED == status)) {
-      step.setFinished(LocalDateTime.now());
+  @Transactional
+  @Override
+  public void updatePipelineStepsStatusAndMetrics(
+      List<PipelineStepStatusUpdate> updates, String user) {
+    Objects.requireNonNull(updates, "Updates can't be null");
+    for (PipelineStepStatusUpdate update : updates) {
+      updatePipelineStepStatusAndMetrics(
+          update.getProcessKey(),
+          update.getExecutionKey(),
+          update.getStepKey(),
+          update.getStatus(),
+          update.getMetrics() != null ? update.getMetrics() : Collections.emptyList(),
+          user);
     }
-
-    step.setMetrics(new HashSet<>(metrics));
-    step.setNumberRecords(getNumberRecordsFromMetrics(metrics, step.getType()));
-
-    // update status and modifying user
-    step.setState(status);
-    step.setModifiedBy(user);
-
-    mapper.updatePipelineStep(step);
   }
 
   public Long getNumberRecordsFromMetrics(
@@ -598,11 +670,32 @@ public class DefaultRegistryPipelinesHistoryTrackingService
     return result;
   }
 
-  private void setDatasetTitle(PipelineProcess process) {
-    if (process != null && process.getDatasetKey() != null) {
-      Dataset dataset = datasetService.get(process.getDatasetKey());
-      if (dataset != null) {
-        process.setDatasetTitle(dataset.getTitle());
+  @Override
+  public void evictDatasetTitle(UUID datasetKey) {
+    datasetTitleCache.invalidate(datasetKey);
+  }
+
+  /** Sets the dataset titles of the processes, looking up the ones not cached in one query. */
+  private void setDatasetTitles(List<PipelineProcess> processes) {
+    Set<UUID> missing =
+        processes.stream()
+            .map(PipelineProcess::getDatasetKey)
+            .filter(key -> key != null && datasetTitleCache.getIfPresent(key) == null)
+            .collect(Collectors.toSet());
+    if (!missing.isEmpty()) {
+      for (KeyTitleResult result : datasetMapper.titles(missing)) {
+        if (result.getTitle() != null) {
+          datasetTitleCache.put(result.getKey(), result.getTitle());
+        }
+      }
+    }
+
+    for (PipelineProcess process : processes) {
+      if (process.getDatasetKey() != null) {
+        String title = datasetTitleCache.getIfPresent(process.getDatasetKey());
+        if (title != null) {
+          process.setDatasetTitle(title);
+        }
       }
     }
   }
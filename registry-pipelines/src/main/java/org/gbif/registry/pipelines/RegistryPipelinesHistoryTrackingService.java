@@ -22,6 +22,7 @@ import org.gbif.api.model.pipelines.PipelineProcess;
 import org.gbif.api.model.pipelines.PipelineStep;
 import org.gbif.api.model.pipelines.RunPipelineResponse;
 import org.gbif.api.model.pipelines.StepType;
+import org.gbif.registry.domain.pipelines.PipelineStepStatusUpdate;
 
 import java.util.List;
 import java.util.Set;
@@ -156,4 +157,19 @@ public interface RegistryPipelinesHistoryTrackingService {
       PipelineStep.Status status,
       List<PipelineStep.MetricInfo> metrics,
       String user);
+
+  /**
+   * Updates the status and metrics of many pipeline steps in a single transaction.
+   *
+   * @param updates the status and metrics of each step, with the keys of its process and execution
+   * @param user the user who is updating the status
+   */
+  void updatePipelineStepsStatusAndMetrics(List<PipelineStepStatusUpdate> updates, String user);
+
+  /**
+   * Drops the cached title of a dataset, so the history views show its new title.
+   *
+   * @param datasetKey dataset key
+   */
+  void evictDatasetTitle(UUID datasetKey);
 }
@@ -15,22 +15,36 @@
  */
 package org.gbif.registry.pipelines;
 
+import org.gbif.api.model.common.paging.PagingRequest;
 import org.gbif.api.model.pipelines.PipelineExecution;
 import org.gbif.api.model.pipelines.PipelineProcess;
 import org.gbif.api.model.pipelines.PipelineStep;
 import org.gbif.api.model.pipelines.StepType;
+import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.service.registry.DatasetService;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.pipelines.PipelineProcessMapper;
 
 import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
 
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import com.google.common.collect.Sets;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class RegistryPipelinesHistoryTrackingServiceTest {
@@ -39,7 +53,16 @@ public class RegistryPipelinesHistoryTrackingServiceTest {
 
   @Mock private DatasetService datasetServiceMock;
 
-  @InjectMocks private DefaultRegistryPipelinesHistoryTrackingService trackingService;
+  @Mock private DatasetMapper datasetMapperMock;
+
+  private DefaultRegistryPipelinesHistoryTrackingService trackingService;
+
+  @Before
+  public void setup() {
+    trackingService =
+        new DefaultRegistryPipelinesHistoryTrackingService(
+            null, null, pipelineProcessMapperMock, datasetServiceMock, datasetMapperMock, 1, 0);
+  }
 
   @Test
   public void getLatestSuccesfulStepTest() {
@@ -84,4 +107,60 @@ public class RegistryPipelinesHistoryTrackingServiceTest {
     assertEquals(
         s4, trackingService.getLatestSuccessfulStep(process, StepType.ABCD_TO_VERBATIM).get());
   }
+
+  @Test
+  public void datasetTitlesLookedUpOnceForAPageTest() {
+    UUID key1 = UUID.randomUUID();
+    UUID key2 = UUID.randomUUID();
+    UUID unknownKey = UUID.randomUUID();
+    PagingRequest page = new PagingRequest();
+    List<PipelineProcess> processes =
+        Arrays.asList(process(key1), process(key1), process(key2), process(unknownKey));
+    when(pipelineProcessMapperMock.list(null, null, page)).thenReturn(processes);
+    when(datasetMapperMock.titles(any()))
+        .thenReturn(Arrays.asList(title(key1, "one"), title(key2, "two")));
+
+    trackingService.history(page);
+
+    assertEquals("one", processes.get(0).getDatasetTitle());
+    assertEquals("one", processes.get(1).getDatasetTitle());
+    assertEquals("two", processes.get(2).getDatasetTitle());
+    assertNull(processes.get(3).getDatasetTitle());
+    verify(datasetMapperMock).titles(Sets.newHashSet(key1, key2, unknownKey));
+
+    // the titles found are cached
+    trackingService.history(page);
+    verify(datasetMapperMock).titles(Collections.singleton(unknownKey));
+    verify(datasetMapperMock, times(2)).titles(any());
+  }
+
+  @Test
+  public void evictedDatasetTitleLookedUpAgainTest() {
+    UUID key = UUID.randomUUID();
+    when(pipelineProcessMapperMock.getByDatasetAndAttempt(key, 1))
+        .thenReturn(process(key), process(key), process(key));
+    when(datasetMapperMock.titles(Collections.singleton(key)))
+        .thenReturn(Collections.singletonList(title(key, "old")))
+        .thenReturn(Collections.singletonList(title(key, "new")));
+
+    assertEquals("old", trackingService.get(key, 1).getDatasetTitle());
+    assertEquals("old", trackingService.get(key, 1).getDatasetTitle());
+
+    trackingService.evictDatasetTitle(key);
+    assertEquals("new", trackingService.get(key, 1).getDatasetTitle());
+    verify(datasetMapperMock, times(2)).titles(any());
+  }
+
+  private static PipelineProcess process(UUID datasetKey) {
+    PipelineProcess process = new PipelineProcess();
+    process.setDatasetKey(datasetKey);
+    return process;
+  }
+
+  private static KeyTitleResult title(UUID key, String title) {
+    KeyTitleResult result = new KeyTitleResult();
+    result.setKey(key);
+    result.setTitle(title);
+    return result;
+  }
 }
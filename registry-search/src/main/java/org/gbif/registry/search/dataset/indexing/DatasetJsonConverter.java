@@ -42,15 +42,22 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
+import javax.annotation.Nullable;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParser;
 import javax.xml.parsers.SAXParserFactory;
@@ -80,6 +87,8 @@ import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.IntNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.Lists;
 
 import lombok.SneakyThrows;
 import lombok.extern.slf4j.Slf4j;
@@ -91,6 +100,9 @@ public class DatasetJsonConverter {
 
   private static final int MAX_FACET_LIMIT = 1200000;
 
+  // datasets sharing an occurrence coverage query, each brings up to 200 x 120,000 buckets
+  private static final int OCCURRENCE_COVERAGE_BATCH_SIZE = 25;
+
   // Collections
   private static final String PROCESSING_NAMESPACE = "processing.gbif.org";
   private static final String INSTITUTION_TAG_NAME = "institutionCode";
@@ -120,6 +132,11 @@ public class DatasetJsonConverter {
 
   private Long nameUsagesCount;
 
+  // remote calls made while converting, to follow the cost of indexing a dataset
+  private final AtomicLong convertedDatasets = new AtomicLong();
+  private final AtomicLong metadataRequests = new AtomicLong();
+  private final AtomicLong occurrenceQueries = new AtomicLong();
+
   private Long getOccurrenceCount() {
     if (occurrenceCount == null) {
       occurrenceCount = gbifWsClient.getOccurrenceRecordCount();
@@ -146,7 +163,6 @@ public class DatasetJsonConverter {
     this.mapper = mapper;
     this.occurrenceEsClient = occurrenceEsClient;
     this.occurrenceIndex = occurrenceIndex;
-    consumers.add(this::metadataConsumer);
     consumers.add(this::addTitles);
     consumers.add(this::enumTransforms);
     // consumers.add(this::addFacetsData);
@@ -166,39 +182,124 @@ public class DatasetJsonConverter {
   }
 
   public ObjectNode convert(Dataset dataset) {
+    return convert(
+        dataset,
+        getMetadataFullText(dataset.getKey()),
+        getOccurrenceCoverages(Collections.singletonList(dataset.getKey())));
+  }
+
+  /**
+   * Converts a batch of datasets. The occurrence coverage of the datasets is read with one query
+   * per {@value #OCCURRENCE_COVERAGE_BATCH_SIZE} datasets and their metadata documents are fetched
+   * concurrently on the given executor. If the query of a chunk fails its datasets are queried one
+   * by one, and a dataset whose coverage cannot be read is converted without it.
+   */
+  public List<ObjectNode> convert(List<Dataset> datasets, Executor executor) {
+    List<CompletableFuture<String>> metadata = new ArrayList<>(datasets.size());
+    for (Dataset dataset : datasets) {
+      metadata.add(
+          CompletableFuture.supplyAsync(() -> getMetadataFullText(dataset.getKey()), executor));
+    }
+
+    Map<UUID, List<JsonNode>> coverages =
+        readOccurrenceCoverages(
+            datasets.stream().map(Dataset::getKey).collect(Collectors.toList()),
+            this::getOccurrenceCoverages);
+
+    List<ObjectNode> result = new ArrayList<>(datasets.size());
+    for (int i = 0; i < datasets.size(); i++) {
+      result.add(convert(datasets.get(i), metadata.get(i).join(), coverages));
+    }
+    return result;
+  }
+
+  /**
+   * Reads the occurrence coverages of the datasets in chunks of {@value
+   * #OCCURRENCE_COVERAGE_BATCH_SIZE}, falling back to one query per dataset for a chunk whose query
+   * fails. Datasets whose coverage cannot be read are left out of the result.
+   *
+   * @param query reads the coverages of some datasets, returning null on failure
+   */
+  @VisibleForTesting
+  static Map<UUID, List<JsonNode>> readOccurrenceCoverages(
+      List<UUID> keys, Function<List<UUID>, Map<UUID, List<JsonNode>>> query) {
+    Map<UUID, List<JsonNode>> coverages = new HashMap<>();
+    for (List<UUID> chunk : Lists.partition(keys, OCCURRENCE_COVERAGE_BATCH_SIZE)) {
+      Map<UUID, List<JsonNode>> chunkCoverages = query.apply(chunk);
+      if (chunkCoverages != null) {
+        coverages.putAll(chunkCoverages);
+      } else {
+        for (UUID key : chunk) {
+          Optional.ofNullable(query.apply(Collections.singletonList(key)))
+              .ifPresent(coverages::putAll);
+        }
+      }
+    }
+    return coverages;
+  }
+
+  private ObjectNode convert(
+      Dataset dataset,
+      @Nullable String metadataFullText,
+      @Nullable Map<UUID, List<JsonNode>> coverages) {
     ObjectNode datasetAsJson = mapper.valueToTree(dataset);
+    if (metadataFullText != null) {
+      datasetAsJson.put("metadata", metadataFullText);
+    }
     consumers.forEach(c -> c.accept(datasetAsJson));
     addDecades(dataset, datasetAsJson);
     addKeyword(dataset, datasetAsJson);
     addCountryCoverage(dataset, datasetAsJson);
     // addTaxonKeys(dataset, datasetAsJson);
     addMachineTags(dataset, datasetAsJson);
-    addOccurrenceCoverage(dataset, datasetAsJson);
+    // left out when the coverage could not be read, rather than indexed as empty
+    if (coverages != null && coverages.containsKey(dataset.getKey())) {
+      datasetAsJson.putArray("occurrenceCoverage").addAll(coverages.get(dataset.getKey()));
+    }
+    convertedDatasets.incrementAndGet();
     return datasetAsJson;
   }
 
+  /** Number of datasets converted so far. */
+  public long getConvertedDatasets() {
+    return convertedDatasets.get();
+  }
+
+  /** Number of metadata documents requested so far. */
+  public long getMetadataRequests() {
+    return metadataRequests.get();
+  }
+
+  /** Number of occurrence coverage queries issued so far. */
+  public long getOccurrenceQueries() {
+    return occurrenceQueries.get();
+  }
+
   @SneakyThrows
   public String convertAsJsonString(Dataset dataset) {
     return mapper.writeValueAsString(convert(dataset));
   }
 
-  private void metadataConsumer(ObjectNode dataset) {
-    try (InputStream stream =
-        gbifWsClient.getMetadataDocument(UUID.fromString(dataset.get("key").asText()))) {
+  /** Full text of the metadata document of the dataset, null if there is none or unreadable. */
+  @Nullable
+  private String getMetadataFullText(UUID datasetKey) {
+    metadataRequests.incrementAndGet();
+    try (InputStream stream = gbifWsClient.getMetadataDocument(datasetKey)) {
       if (stream != null) {
         FullTextSaxHandler handler = new FullTextSaxHandler();
         SAXParser p = saxFactory.newSAXParser();
         // parse does close the stream
         p.parse(stream, handler);
-        dataset.put("metadata", handler.getFullText());
+        return handler.getFullText();
       }
     } catch (ParserConfigurationException e) {
       throw new IllegalStateException("XML Parser not working on this system", e);
     } catch (SAXException e) {
-      log.warn("Cannot parse original metadata xml for dataset {}", dataset);
+      log.warn("Cannot parse original metadata xml for dataset {}", datasetKey);
     } catch (Exception e) {
-      log.error("Unable to index metadata document for dataset {}", dataset, e);
+      log.error("Unable to index metadata document for dataset {}", datasetKey, e);
     }
+    return null;
   }
 
   private void addTitles(ObjectNode dataset) {
@@ -387,76 +488,105 @@ public class DatasetJsonConverter {
             });
   }
 
-  private void addOccurrenceCoverage(Dataset dataset, ObjectNode datasetObjectNode) {
+  /**
+   * Reads the occurrence coverage of the datasets with a single query, aggregated by dataset first.
+   * Datasets without occurrences get an empty coverage, null is returned if the query fails.
+   */
+  @Nullable
+  private Map<UUID, List<JsonNode>> getOccurrenceCoverages(List<UUID> datasetKeys) {
+    occurrenceQueries.incrementAndGet();
     try {
       SearchSourceBuilder searchSourceBuilder =
           new SearchSourceBuilder()
               .size(0)
               .query(
                   QueryBuilders.boolQuery()
-                      .filter(QueryBuilders.termQuery("datasetKey", dataset.getKey().toString())))
+                      .filter(
+                          QueryBuilders.termsQuery(
+                              "datasetKey",
+                              datasetKeys.stream()
+                                  .map(UUID::toString)
+                                  .collect(Collectors.toList()))))
               .aggregation(
-                  AggregationBuilders.terms("countryCode")
-                      .field("countryCode")
-                      .size(200)
-                      .shardSize(200)
+                  AggregationBuilders.terms("datasetKey")
+                      .field("datasetKey")
+                      .size(datasetKeys.size())
+                      .shardSize(datasetKeys.size())
                       .subAggregation(
-                          AggregationBuilders.terms("taxonKey")
-                              .size(120_000)
-                              .shardSize(120_000)
-                              .field("gbifClassification.taxonKey")
+                          AggregationBuilders.terms("countryCode")
+                              .field("countryCode")
+                              .size(200)
+                              .shardSize(200)
                               .subAggregation(
-                                  AggregationBuilders.dateHistogram("eventDateSingle")
-                                      .field("eventDateSingle")
-                                      .dateHistogramInterval(new DateHistogramInterval("3650d")))));
+                                  AggregationBuilders.terms("taxonKey")
+                                      .size(120_000)
+                                      .shardSize(120_000)
+                                      .field("gbifClassification.taxonKey")
+                                      .subAggregation(
+                                          AggregationBuilders.dateHistogram("eventDateSingle")
+                                              .field("eventDateSingle")
+                                              .dateHistogramInterval(
+                                                  new DateHistogramInterval("3650d"))))));
 
       org.elasticsearch.action.search.SearchResponse searchResponse =
           occurrenceEsClient.search(
               new SearchRequest().source(searchSourceBuilder).indices(occurrenceIndex),
               RequestOptions.DEFAULT);
 
-      List<JsonNode> coverages = new ArrayList<>();
-
-      List<? extends Terms.Bucket> countryBuckets =
-          getTermsBuckets(searchResponse.getAggregations(), "countryCode");
-      if (!countryBuckets.isEmpty()) {
-        countryBuckets.forEach(
-            countryBucket -> {
-              List<? extends Terms.Bucket> taxonBuckets =
-                  getTermsBuckets(countryBucket.getAggregations(), "taxonKey");
-              if (!taxonBuckets.isEmpty()) {
-                taxonBuckets.forEach(
-                    taxonKeyBucket -> {
-                      List<? extends Histogram.Bucket> decadesBuckets =
-                          getHistogramBuckets(taxonKeyBucket.getAggregations(), "eventDateSingle");
-                      if (!decadesBuckets.isEmpty()) {
-                        decadesBuckets.forEach(
-                            decadeBucket -> {
-                              ObjectNode atDecadeCoverage = mapper.createObjectNode();
-                              atDecadeCoverage.set("country", toJson(countryBucket));
-                              atDecadeCoverage.set("taxonKey", toJson(taxonKeyBucket));
-                              atDecadeCoverage.set("decade", toJson(decadeBucket));
-                              coverages.add(atDecadeCoverage);
-                            });
-                      } else {
-                        ObjectNode atTaxonKeyCoverage = mapper.createObjectNode();
-                        atTaxonKeyCoverage.set("country", toJson(countryBucket));
-                        atTaxonKeyCoverage.set("taxonKey", toJson(taxonKeyBucket));
-                        coverages.add(atTaxonKeyCoverage);
-                      }
-                    });
-              } else {
-                ObjectNode atCountryCoverage = mapper.createObjectNode();
-                atCountryCoverage.set("country", toJson(countryBucket));
-                coverages.add(atCountryCoverage);
-              }
-            });
-      }
-      datasetObjectNode.putArray("occurrenceCoverage").addAll(coverages);
+      Map<UUID, List<JsonNode>> coverages = new HashMap<>();
+      getTermsBuckets(searchResponse.getAggregations(), "datasetKey")
+          .forEach(
+              datasetBucket ->
+                  coverages.put(
+                      UUID.fromString(datasetBucket.getKeyAsString()),
+                      toCoverages(datasetBucket.getAggregations())));
+      datasetKeys.forEach(key -> coverages.putIfAbsent(key, Collections.emptyList()));
+      return coverages;
 
     } catch (IOException ex) {
       log.error("Error retrieving occurrence coverage data", ex);
+      return null;
+    }
+  }
+
+  private List<JsonNode> toCoverages(Aggregations aggregations) {
+    List<JsonNode> coverages = new ArrayList<>();
+
+    List<? extends Terms.Bucket> countryBuckets = getTermsBuckets(aggregations, "countryCode");
+    if (!countryBuckets.isEmpty()) {
+      countryBuckets.forEach(
+          countryBucket -> {
+            List<? extends Terms.Bucket> taxonBuckets =
+                getTermsBuckets(countryBucket.getAggregations(), "taxonKey");
+            if (!taxonBuckets.isEmpty()) {
+              taxonBuckets.forEach(
+                  taxonKeyBucket -> {
+                    List<? extends Histogram.Bucket> decadesBuckets =
+                        getHistogramBuckets(taxonKeyBucket.getAggregations(), "eventDateSingle");
+                    if (!decadesBuckets.isEmpty()) {
+                      decadesBuckets.forEach(
+                          decadeBucket -> {
+                            ObjectNode atDecadeCoverage = mapper.createObjectNode();
+                            atDecadeCoverage.set("country", toJson(countryBucket));
+                            atDecadeCoverage.set("taxonKey", toJson(taxonKeyBucket));
+                            atDecadeCoverage.set("decade", toJson(decadeBucket));
+                            coverages.add(atDecadeCoverage);
+                          });
+                    } else {
+                      ObjectNode atTaxonKeyCoverage = mapper.createObjectNode();
+                      atTaxonKeyCoverage.set("country", toJson(countryBucket));
+                      atTaxonKeyCoverage.set("taxonKey", toJson(taxonKeyBucket));
+                      coverages.add(atTaxonKeyCoverage);
+                    }
+                  });
+            } else {
+              ObjectNode atCountryCoverage = mapper.createObjectNode();
+              atCountryCoverage.set("country", toJson(countryBucket));
+              coverages.add(atCountryCoverage);
+            }
+          });
     }
+    return coverages;
   }
 
   private ObjectNode toJson(MultiBucketsAggregation.Bucket bucket) {
@@ -22,126 +22,229 @@ import org.gbif.api.util.iterables.Iterables;
 import org.gbif.registry.search.dataset.indexing.es.IndexingConstants;
 import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
 
 import org.elasticsearch.action.ActionListener;
 import org.elasticsearch.action.DocWriteRequest;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.action.delete.DeleteRequest;
-import org.elasticsearch.action.delete.DeleteResponse;
 import org.elasticsearch.action.index.IndexRequest;
-import org.elasticsearch.action.index.IndexResponse;
 import org.elasticsearch.client.RequestOptions;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import lombok.extern.slf4j.Slf4j;
 
+/**
+ * Indexes datasets through an in-process queue keyed by dataset key. Changes of the same dataset
+ * within the debounce window are coalesced into a single update, the latest one, and queued
+ * updates are sent in bulk requests with a bounded number of requests in flight.
+ *
+ * <p>Organization and installation changes only touch the titles and country copied into the
+ * dataset documents, which are updated in place with an update by query unless partial updates are
+ * disabled.
+ */
 @Slf4j
 @Component
-public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
+public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer, MeterBinder {
 
-  private final RestHighLevelClient restHighLevelClient;
+  // how long the shutdown waits for the queued changes to be indexed
+  private static final long SHUTDOWN_TIMEOUT_MILLIS = 10_000;
 
   private final DatasetJsonConverter datasetJsonConverter;
 
   private final GbifWsClient gbifWsClient;
 
-  private final AtomicInteger pendingUpdates;
+  private final long debounceMillis;
+
+  private final int maxBatchSize;
+
+  // organization and installation changes update only the denormalized fields of their datasets
+  private final boolean partialUpdates;
+
+  // latest pending change by dataset key
+  private final ConcurrentMap<UUID, PendingUpdate> queue = new ConcurrentHashMap<>();
+
+  // datasets taken from the queue and not yet acknowledged by Elasticsearch
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  private final Semaphore bulkPermits;
+
+  private final AtomicLong received = new AtomicLong();
+
+  private final AtomicLong coalesced = new AtomicLong();
+
+  private final ScheduledExecutorService flusher;
+
+  // send bulk and update by query requests asynchronously
+  private final BiConsumer<BulkRequest, ActionListener<BulkResponse>> bulkSender;
+  private final BiConsumer<UpdateByQueryRequest, ActionListener<BulkByScrollResponse>>
+      updateByQuerySender;
+
+  private volatile Timer flushTimer;
 
   @Autowired
   public EsDatasetRealtimeIndexer(
       RestHighLevelClient restHighLevelClient,
       DatasetJsonConverter datasetJsonConverter,
-      GbifWsClient gbifWsClient) {
-    this.restHighLevelClient = restHighLevelClient;
+      GbifWsClient gbifWsClient,
+      @Value("${indexing.realtime.debounceMillis:500}") long debounceMillis,
+      @Value("${indexing.realtime.maxBatchSize:500}") int maxBatchSize,
+      @Value("${indexing.realtime.maxInFlight:2}") int maxInFlight,
+      @Value("${indexing.realtime.partialUpdates:true}") boolean partialUpdates) {
+    this(
+        (request, listener) ->
+            restHighLevelClient.bulkAsync(request, RequestOptions.DEFAULT, listener),
+        (request, listener) ->
+            restHighLevelClient.updateByQueryAsync(request, RequestOptions.DEFAULT, listener),
+        datasetJsonConverter,
+        gbifWsClient,
+        debounceMillis,
+        maxBatchSize,
+        maxInFlight,
+        partialUpdates);
+  }
+
+  @VisibleForTesting
+  EsDatasetRealtimeIndexer(
+      BiConsumer<BulkRequest, ActionListener<BulkResponse>> bulkSender,
+      BiConsumer<UpdateByQueryRequest, ActionListener<BulkByScrollResponse>> updateByQuerySender,
+      DatasetJsonConverter datasetJsonConverter,
+      GbifWsClient gbifWsClient,
+      long debounceMillis,
+      int maxBatchSize,
+      int maxInFlight,
+      boolean partialUpdates) {
+    this.bulkSender = bulkSender;
+    this.updateByQuerySender = updateByQuerySender;
     this.datasetJsonConverter = datasetJsonConverter;
     this.gbifWsClient = gbifWsClient;
-    pendingUpdates = new AtomicInteger();
+    this.debounceMillis = debounceMillis;
+    this.maxBatchSize = maxBatchSize;
+    this.partialUpdates = partialUpdates;
+    this.bulkPermits = new Semaphore(maxInFlight);
+    this.flusher =
+        Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("dataset-realtime-indexer-%d")
+                .setDaemon(true)
+                .build());
+    long interval = Math.max(Math.min(debounceMillis, 100), 10);
+    flusher.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.MILLISECONDS);
   }
 
-  private IndexRequest toIndexRequest(Dataset dataset) {
-    return new IndexRequest()
-        .id(dataset.getKey().toString())
-        .index(IndexingConstants.ALIAS)
-        .type(IndexingConstants.DATASET_RECORD_TYPE)
-        .opType(DocWriteRequest.OpType.INDEX)
-        .source(datasetJsonConverter.convertAsJsonString(dataset), XContentType.JSON);
+  /**
+   * Stops the scheduled flushes and sends the changes still queued, regardless of their age,
+   * waiting up to {@value #SHUTDOWN_TIMEOUT_MILLIS} ms for them to be acknowledged.
+   */
+  @PreDestroy
+  public void close() {
+    flusher.shutdown();
+    try {
+      flusher.awaitTermination(SHUTDOWN_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+      long deadline = System.currentTimeMillis() + SHUTDOWN_TIMEOUT_MILLIS;
+      while (getPendingUpdates() > 0 && System.currentTimeMillis() < deadline) {
+        flush(true);
+        TimeUnit.MILLISECONDS.sleep(10);
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    if (getPendingUpdates() > 0) {
+      log.warn("{} dataset updates not indexed on shutdown", getPendingUpdates());
+    }
   }
 
   @Override
-  public void index(Dataset dataset) {
-    pendingUpdates.incrementAndGet();
-    try {
-      restHighLevelClient.indexAsync(
-          toIndexRequest(dataset),
-          RequestOptions.DEFAULT,
-          new ActionListener<IndexResponse>() {
-            @Override
-            public void onResponse(IndexResponse indexResponse) {
-              log.info("Dataset indexed {}, result {}", dataset.getKey(), indexResponse);
-              pendingUpdates.decrementAndGet();
-            }
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("registry.dataset.realtimeIndex.queue", queue, ConcurrentMap::size)
+        .description("Datasets waiting to be indexed")
+        .register(registry);
+    Gauge.builder(
+            "registry.dataset.realtimeIndex.coalesceRatio",
+            this,
+            EsDatasetRealtimeIndexer::coalesceRatio)
+        .description("Share of the received changes coalesced into a later one")
+        .register(registry);
+    flushTimer =
+        Timer.builder("registry.dataset.realtimeIndex.flush")
+            .description("Time to convert and index a batch of datasets")
+            .register(registry);
+  }
 
-            @Override
-            public void onFailure(Exception ex) {
-              log.error("Error indexing dataset {}", dataset, ex);
-              pendingUpdates.decrementAndGet();
-            }
-          });
-    } catch (Exception ex) {
-      log.error("Error indexing dataset {}", dataset, ex);
-      pendingUpdates.decrementAndGet();
-    }
+  private double coalesceRatio() {
+    long total = received.get();
+    return total == 0 ? 0 : (double) coalesced.get() / total;
   }
 
   @Override
-  public void index(Iterable<Dataset> datasets) {
-    final AtomicInteger updatesCount = new AtomicInteger();
-    BulkRequest bulkRequest = new BulkRequest();
-
-    datasets.forEach(
-        dataset -> {
-          bulkRequest.add(toIndexRequest(dataset));
-          updatesCount.incrementAndGet();
-        });
-    if (updatesCount.get() > 0) {
-      pendingUpdates.getAndAdd(updatesCount.get());
-      try {
-        restHighLevelClient.bulkAsync(
-            bulkRequest,
-            RequestOptions.DEFAULT,
-            new ActionListener<BulkResponse>() {
-              @Override
-              public void onResponse(BulkResponse bulkItemResponses) {
-                if (bulkItemResponses.hasFailures()) {
-                  log.error(
-                      "Eror indexing datasets indexed {}", bulkItemResponses.buildFailureMessage());
-                } else {
-                  log.info("Datasets indexed");
-                }
-                pendingUpdates.addAndGet(-updatesCount.get());
-              }
+  public void index(Dataset dataset) {
+    enqueue(new PendingUpdate(dataset.getKey(), dataset));
+  }
 
-              @Override
-              public void onFailure(Exception e) {
-                log.error("Error indexing datasets", e);
-              }
-            });
-      } catch (Exception ex) {
-        log.error("Error indexing datasets", ex);
-        pendingUpdates.addAndGet(-updatesCount.get());
-      }
-    }
+  @Override
+  public void index(Iterable<Dataset> datasets) {
+    datasets.forEach(this::index);
   }
 
   @Override
   public void index(Organization organization) {
     // first purge cache
     gbifWsClient.purge(organization);
+    if (partialUpdates) {
+      Map<String, Object> params = new HashMap<>();
+      params.put("title", organization.getTitle());
+      if (organization.getCountry() != null) {
+        params.put("country", organization.getCountry().getIso2LetterCode());
+      }
+      updateByQuery(
+          "publishingOrganizationKey",
+          organization.getKey(),
+          setOrRemove("publishingOrganizationTitle", "title")
+              + setOrRemove("publishingCountry", "country"),
+          params);
+      updateByQuery(
+          "hostingOrganizationKey",
+          organization.getKey(),
+          setOrRemove("hostingOrganizationTitle", "title"),
+          params);
+      return;
+    }
+
     // Update published datasets for the organization
     try {
       log.debug("Updating published datasets for organization {}", organization.getKey());
@@ -182,6 +285,26 @@ public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
   public void index(Installation installation) {
     // first purge cache
     gbifWsClient.purge(installation);
+    if (partialUpdates) {
+      Map<String, Object> params = new HashMap<>();
+      params.put("title", installation.getTitle());
+      if (installation.getOrganizationKey() != null) {
+        Organization hostingOrg =
+            gbifWsClient.getOrganization(installation.getOrganizationKey().toString());
+        if (hostingOrg != null) {
+          params.put("organizationKey", hostingOrg.getKey().toString());
+          params.put("organizationTitle", hostingOrg.getTitle());
+        }
+      }
+      updateByQuery(
+          "installationKey",
+          installation.getKey(),
+          setOrRemove("installationTitle", "title")
+              + setOrRemove("hostingOrganizationKey", "organizationKey")
+              + setOrRemove("hostingOrganizationTitle", "organizationTitle"),
+          params);
+      return;
+    }
 
     // Update hosted datasets for the organization
     try {
@@ -200,37 +323,196 @@ public class EsDatasetRealtimeIndexer implements DatasetRealtimeIndexer {
 
   @Override
   public void delete(Dataset dataset) {
-    pendingUpdates.incrementAndGet();
-    DeleteRequest deleteRequest =
-        new DeleteRequest()
-            .id(dataset.getKey().toString())
-            .index(IndexingConstants.ALIAS)
-            .type(IndexingConstants.DATASET_RECORD_TYPE);
+    enqueue(new PendingUpdate(dataset.getKey(), null));
+  }
+
+  @Override
+  public int getPendingUpdates() {
+    return queue.size() + inFlight.get();
+  }
+
+  /**
+   * Runs the script on every dataset document having the key in the given field. Documents changed
+   * meanwhile are skipped, they are reindexed in full anyway.
+   */
+  private void updateByQuery(String keyField, UUID key, String script, Map<String, Object> params) {
+    UpdateByQueryRequest request = new UpdateByQueryRequest(IndexingConstants.ALIAS);
+    request.setDocTypes(IndexingConstants.DATASET_RECORD_TYPE);
+    request.setQuery(QueryBuilders.termQuery(keyField, key.toString()));
+    request.setScript(new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, script, params));
+    request.setConflicts("proceed");
+
+    inFlight.incrementAndGet();
     try {
-      restHighLevelClient.deleteAsync(
-          deleteRequest,
-          RequestOptions.DEFAULT,
-          new ActionListener<DeleteResponse>() {
+      updateByQuerySender.accept(
+          request,
+          new ActionListener<BulkByScrollResponse>() {
             @Override
-            public void onResponse(DeleteResponse deleteResponse) {
-              log.info("Dataset deleted {}, result {}", dataset.getKey(), deleteResponse);
-              pendingUpdates.decrementAndGet();
+            public void onResponse(BulkByScrollResponse response) {
+              if (!response.getBulkFailures().isEmpty()
+                  || !response.getSearchFailures().isEmpty()) {
+                log.error(
+                    "Error updating datasets with {} {}: {} {}",
+                    keyField,
+                    key,
+                    response.getBulkFailures(),
+                    response.getSearchFailures());
+              } else {
+                log.info("{} datasets with {} {} updated", response.getUpdated(), keyField, key);
+              }
+              inFlight.decrementAndGet();
             }
 
             @Override
             public void onFailure(Exception ex) {
-              log.error("Error deleting dataset {}", dataset, ex);
-              pendingUpdates.decrementAndGet();
+              log.error("Error updating datasets with {} {}", keyField, key, ex);
+              inFlight.decrementAndGet();
             }
           });
     } catch (Exception ex) {
-      log.error("Error deleting dataset {}", dataset, ex);
-      pendingUpdates.decrementAndGet();
+      log.error("Error updating datasets with {} {}", keyField, key, ex);
+      inFlight.decrementAndGet();
     }
   }
 
-  @Override
-  public int getPendingUpdates() {
-    return pendingUpdates.get();
+  /** Painless statement setting the document field to the parameter, or removing it if null. */
+  private static String setOrRemove(String field, String param) {
+    return String.format(
+        "if (params.%2$s == null) { ctx._source.remove('%1$s') } "
+            + "else { ctx._source.%1$s = params.%2$s } ",
+        field,
+        param);
+  }
+
+  /** Queues the change, replacing a pending change of the same dataset but keeping its age. */
+  private void enqueue(PendingUpdate update) {
+    received.incrementAndGet();
+    queue.merge(
+        update.key,
+        update,
+        (pending, latest) -> {
+          coalesced.incrementAndGet();
+          return new PendingUpdate(latest.key, latest.dataset, pending.enqueued);
+        });
+  }
+
+  /** Sends the changes older than the debounce window, unless too many requests are in flight. */
+  private void flush() {
+    flush(false);
+  }
+
+  /**
+   * Sends up to maxBatchSize queued changes in a bulk request, unless too many requests are in
+   * flight.
+   *
+   * @param all whether changes still in the debounce window are sent too
+   */
+  private void flush(boolean all) {
+    if (!bulkPermits.tryAcquire()) {
+      // changes keep coalescing in the queue meanwhile
+      return;
+    }
+    List<PendingUpdate> batch = new ArrayList<>();
+    long now = System.currentTimeMillis();
+    for (PendingUpdate update : queue.values()) {
+      if (batch.size() >= maxBatchSize) {
+        break;
+      }
+      if (all || now - update.enqueued >= debounceMillis) {
+        // counted in flight before leaving the queue, so it is never missing from the pending ones
+        inFlight.incrementAndGet();
+        if (queue.remove(update.key, update)) {
+          batch.add(update);
+        } else {
+          inFlight.decrementAndGet();
+        }
+      }
+    }
+    if (batch.isEmpty()) {
+      bulkPermits.release();
+      return;
+    }
+
+    long start = System.nanoTime();
+    try {
+      bulkSender.accept(
+          toBulkRequest(batch),
+          new ActionListener<BulkResponse>() {
+            @Override
+            public void onResponse(BulkResponse bulkItemResponses) {
+              if (bulkItemResponses.hasFailures()) {
+                log.error("Error indexing datasets {}", bulkItemResponses.buildFailureMessage());
+              } else {
+                log.info("{} datasets indexed", batch.size());
+              }
+              completed(batch, start);
+            }
+
+            @Override
+            public void onFailure(Exception ex) {
+              log.error("Error indexing {} datasets", batch.size(), ex);
+              completed(batch, start);
+            }
+          });
+    } catch (Exception ex) {
+      log.error("Error indexing {} datasets", batch.size(), ex);
+      completed(batch, start);
+    }
+  }
+
+  private void completed(List<PendingUpdate> batch, long start) {
+    inFlight.addAndGet(-batch.size());
+    bulkPermits.release();
+    Timer timer = flushTimer;
+    if (timer != null) {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  private BulkRequest toBulkRequest(List<PendingUpdate> batch) {
+    BulkRequest bulkRequest = new BulkRequest();
+    List<Dataset> datasets =
+        batch.stream()
+            .filter(update -> update.dataset != null)
+            .map(update -> update.dataset)
+            .collect(Collectors.toList());
+    List<ObjectNode> documents =
+        datasetJsonConverter.convert(datasets, MoreExecutors.directExecutor());
+    for (int i = 0; i < datasets.size(); i++) {
+      bulkRequest.add(
+          new IndexRequest()
+              .id(datasets.get(i).getKey().toString())
+              .index(IndexingConstants.ALIAS)
+              .type(IndexingConstants.DATASET_RECORD_TYPE)
+              .opType(DocWriteRequest.OpType.INDEX)
+              .source(documents.get(i).toString(), XContentType.JSON));
+    }
+    batch.stream()
+        .filter(update -> update.dataset == null)
+        .forEach(
+            update ->
+                bulkRequest.add(
+                    new DeleteRequest()
+                        .id(update.key.toString())
+                        .index(IndexingConstants.ALIAS)
+                        .type(IndexingConstants.DATASET_RECORD_TYPE)));
+    return bulkRequest;
+  }
+
+  /** The latest change of a dataset: the dataset to index, or null to delete it. */
+  private static class PendingUpdate {
+    private final UUID key;
+    private final Dataset dataset;
+    private final long enqueued;
+
+    private PendingUpdate(UUID key, Dataset dataset) {
+      this(key, dataset, System.currentTimeMillis());
+    }
+
+    private PendingUpdate(UUID key, Dataset dataset, long enqueued) {
+      this.key = key;
+      this.dataset = dataset;
+      this.enqueued = enqueued;
+    }
   }
 }
@@ -32,6 +32,7 @@ import org.elasticsearch.action.admin.indices.alias.get.GetAliasesRequest;
 import org.elasticsearch.action.admin.indices.create.CreateIndexRequest;
 import org.elasticsearch.action.admin.indices.delete.DeleteIndexRequest;
 import org.elasticsearch.action.admin.indices.settings.put.UpdateSettingsRequest;
+import org.elasticsearch.action.bulk.BulkProcessor;
 import org.elasticsearch.action.bulk.BulkRequest;
 import org.elasticsearch.action.bulk.BulkResponse;
 import org.elasticsearch.client.GetAliasesResponse;
@@ -131,6 +132,17 @@ public class EsClient implements Closeable {
     return restHighLevelClient.bulk(bulkRequest, RequestOptions.DEFAULT);
   }
 
+  /**
+   * Creates a {@link BulkProcessor} builder that sends the bulk requests asynchronously through
+   * this client.
+   */
+  public BulkProcessor.Builder bulkProcessorBuilder(BulkProcessor.Listener listener) {
+    return BulkProcessor.builder(
+        (request, bulkListener) ->
+            restHighLevelClient.bulkAsync(request, RequestOptions.DEFAULT, bulkListener),
+        listener);
+  }
+
   /** Creates ElasticSearch client using default connection settings. */
   public static RestHighLevelClient provideEsClient(EsClientConfiguration esClientConfiguration) {
     String[] hostsUrl = esClientConfiguration.hosts.split(",");
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DatasetJsonConverterTest {
+
+  @Test
+  public void testCoveragesReadInChunks() {
+    List<UUID> keys = keys(30);
+    List<List<UUID>> queries = new ArrayList<>();
+
+    Map<UUID, List<JsonNode>> coverages =
+        DatasetJsonConverter.readOccurrenceCoverages(keys, recording(queries, k -> false));
+
+    assertEquals(2, queries.size());
+    assertEquals(25, queries.get(0).size());
+    assertEquals(5, queries.get(1).size());
+    assertEquals(30, coverages.size());
+    keys.forEach(k -> assertEquals(coverage(k), coverages.get(k)));
+  }
+
+  @Test
+  public void testFailedChunkQueriedPerDataset() {
+    List<UUID> keys = keys(30);
+    UUID failing = keys.get(3);
+    List<List<UUID>> queries = new ArrayList<>();
+
+    // the first chunk fails because of one of its datasets
+    Map<UUID, List<JsonNode>> coverages =
+        DatasetJsonConverter.readOccurrenceCoverages(
+            keys, recording(queries, chunk -> chunk.contains(failing)));
+
+    // 2 chunk queries, then one per dataset of the failed chunk
+    assertEquals(2 + 25, queries.size());
+    assertEquals(29, coverages.size());
+    assertFalse(coverages.containsKey(failing));
+    keys.stream()
+        .filter(k -> !k.equals(failing))
+        .forEach(k -> assertEquals(coverage(k), coverages.get(k)));
+  }
+
+  @Test
+  public void testAllFailed() {
+    Map<UUID, List<JsonNode>> coverages =
+        DatasetJsonConverter.readOccurrenceCoverages(
+            keys(3), recording(new ArrayList<>(), k -> true));
+    assertTrue(coverages.isEmpty());
+  }
+
+  /** A query recording its calls, which fails for the chunks matching the predicate. */
+  private static Function<List<UUID>, Map<UUID, List<JsonNode>>> recording(
+      List<List<UUID>> queries, Predicate<List<UUID>> fails) {
+    return chunk -> {
+      queries.add(chunk);
+      if (fails.test(chunk)) {
+        return null;
+      }
+      Map<UUID, List<JsonNode>> result = new HashMap<>();
+      chunk.forEach(k -> result.put(k, coverage(k)));
+      return result;
+    };
+  }
+
+  private static List<JsonNode> coverage(UUID key) {
+    return Collections.singletonList(new TextNode(key.toString()));
+  }
+
+  private static List<UUID> keys(int count) {
+    return IntStream.range(0, count).mapToObj(i -> UUID.randomUUID()).collect(Collectors.toList());
+  }
+}
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.search.dataset.indexing;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Installation;
+import org.gbif.api.model.registry.Organization;
+import org.gbif.api.vocabulary.Country;
+import org.gbif.registry.search.dataset.indexing.ws.GbifWsClient;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.stream.Collectors;
+
+import org.elasticsearch.action.DocWriteRequest;
+import org.elasticsearch.action.bulk.BulkItemResponse;
+import org.elasticsearch.action.bulk.BulkRequest;
+import org.elasticsearch.action.bulk.BulkResponse;
+import org.elasticsearch.common.unit.TimeValue;
+import org.elasticsearch.index.reindex.BulkByScrollResponse;
+import org.elasticsearch.index.reindex.BulkByScrollTask;
+import org.elasticsearch.index.reindex.UpdateByQueryRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+public class EsDatasetRealtimeIndexerTest {
+
+  private static final long TIMEOUT_MILLIS = 5_000;
+
+  private final List<BulkRequest> sent = new CopyOnWriteArrayList<>();
+  private final List<UpdateByQueryRequest> updates = new CopyOnWriteArrayList<>();
+  private DatasetJsonConverter converter;
+  private GbifWsClient gbifWsClient;
+  private EsDatasetRealtimeIndexer indexer;
+
+  @BeforeEach
+  public void setup() {
+    converter = mock(DatasetJsonConverter.class);
+    gbifWsClient = mock(GbifWsClient.class);
+    when(converter.convert(anyList(), any()))
+        .thenAnswer(
+            invocation ->
+                ((List<?>) invocation.getArgument(0))
+                    .stream()
+                        .map(d -> JsonNodeFactory.instance.objectNode().put("title", "t"))
+                        .collect(Collectors.toList()));
+  }
+
+  @AfterEach
+  public void tearDown() {
+    if (indexer != null) {
+      indexer.close();
+    }
+  }
+
+  @Test
+  public void testFlushedAfterDebounce() throws InterruptedException {
+    indexer = newIndexer(300, 100);
+    Dataset dataset = dataset();
+
+    // three changes of the same dataset within the debounce window become one update
+    indexer.index(dataset);
+    indexer.index(dataset);
+    indexer.index(dataset);
+    assertEquals(1, indexer.getPendingUpdates());
+    TimeUnit.MILLISECONDS.sleep(100);
+    assertTrue(sent.isEmpty(), "Flushed before the debounce window");
+
+    awaitUntil(() -> indexer.getPendingUpdates() == 0);
+    assertEquals(1, sent.size());
+    assertEquals(1, sent.get(0).numberOfActions());
+  }
+
+  @Test
+  public void testFlushedInBatchesOfMaxSize() {
+    indexer = newIndexer(10, 2);
+    for (int i = 0; i < 5; i++) {
+      indexer.index(dataset());
+    }
+    indexer.delete(dataset());
+
+    awaitUntil(() -> indexer.getPendingUpdates() == 0);
+    assertTrue(sent.stream().allMatch(r -> r.numberOfActions() <= 2));
+    assertEquals(6, sent.stream().mapToInt(BulkRequest::numberOfActions).sum());
+    assertEquals(
+        1,
+        sent.stream()
+            .flatMap(r -> r.requests().stream())
+            .filter(r -> r.opType() == DocWriteRequest.OpType.DELETE)
+            .count());
+  }
+
+  @Test
+  public void testFlushedOnClose() {
+    // nothing would be flushed for an hour
+    indexer = newIndexer(TimeUnit.HOURS.toMillis(1), 100);
+    indexer.index(dataset());
+    indexer.index(dataset());
+
+    indexer.close();
+    assertEquals(0, indexer.getPendingUpdates());
+    assertEquals(2, sent.stream().mapToInt(BulkRequest::numberOfActions).sum());
+  }
+
+  @Test
+  public void testOrganizationUpdatedInPlace() {
+    indexer = newIndexer(10, 100);
+    Organization organization = new Organization();
+    organization.setKey(UUID.randomUUID());
+    organization.setTitle("New title");
+    organization.setCountry(Country.DENMARK);
+
+    indexer.index(organization);
+
+    verify(gbifWsClient).purge(organization);
+    assertEquals(2, updates.size());
+    UpdateByQueryRequest published = updates.get(0);
+    assertTrue(query(published).contains("publishingOrganizationKey"));
+    assertTrue(published.getScript().getIdOrCode().contains("publishingOrganizationTitle"));
+    assertTrue(published.getScript().getIdOrCode().contains("publishingCountry"));
+    assertEquals("New title", published.getScript().getParams().get("title"));
+    assertEquals("DK", published.getScript().getParams().get("country"));
+    UpdateByQueryRequest hosted = updates.get(1);
+    assertTrue(query(hosted).contains("hostingOrganizationKey"));
+    assertTrue(hosted.getScript().getIdOrCode().contains("hostingOrganizationTitle"));
+
+    // no document is rebuilt
+    assertEquals(0, indexer.getPendingUpdates());
+    assertTrue(sent.isEmpty());
+    verifyNoInteractions(converter);
+  }
+
+  @Test
+  public void testInstallationUpdatedInPlace() {
+    indexer = newIndexer(10, 100);
+    Organization host = new Organization();
+    host.setKey(UUID.randomUUID());
+    host.setTitle("Host");
+    Installation installation = new Installation();
+    installation.setKey(UUID.randomUUID());
+    installation.setTitle("Installation");
+    installation.setOrganizationKey(host.getKey());
+    when(gbifWsClient.getOrganization(host.getKey().toString())).thenReturn(host);
+
+    indexer.index(installation);
+
+    assertEquals(1, updates.size());
+    UpdateByQueryRequest request = updates.get(0);
+    assertTrue(query(request).contains("installationKey"));
+    assertEquals("Installation", request.getScript().getParams().get("title"));
+    assertEquals(host.getKey().toString(), request.getScript().getParams().get("organizationKey"));
+    assertEquals("Host", request.getScript().getParams().get("organizationTitle"));
+    assertEquals(0, indexer.getPendingUpdates());
+  }
+
+  private EsDatasetRealtimeIndexer newIndexer(long debounceMillis, int maxBatchSize) {
+    return new EsDatasetRealtimeIndexer(
+        (request, listener) -> {
+          sent.add(request);
+          listener.onResponse(new BulkResponse(new BulkItemResponse[0], 1));
+        },
+        (request, listener) -> {
+          updates.add(request);
+          listener.onResponse(
+              new BulkByScrollResponse(
+                  TimeValue.ZERO,
+                  new BulkByScrollTask.Status(
+                      null, 1, 1, 0, 0, 0, 0, 0, 0, 0, TimeValue.ZERO, 0, null, TimeValue.ZERO),
+                  Collections.emptyList(),
+                  Collections.emptyList(),
+                  false));
+        },
+        converter,
+        gbifWsClient,
+        debounceMillis,
+        maxBatchSize,
+        2,
+        true);
+  }
+
+  private static String query(UpdateByQueryRequest request) {
+    return request.getSearchRequest().source().query().toString();
+  }
+
+  private static Dataset dataset() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(UUID.randomUUID());
+    return dataset;
+  }
+
+  private static void awaitUntil(BooleanSupplier condition) {
+    long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+    while (!condition.getAsBoolean()) {
+      assertTrue(System.currentTimeMillis() < deadline, "Timed out");
+      try {
+        TimeUnit.MILLISECONDS.sleep(10);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      }
+    }
+  }
+}
@@ -125,4 +125,11 @@ public interface EditorAuthorizationService {
    * @return true if the passed installation is allowed to be modified by the user.
    */
   boolean allowedToModifyInstallation(@Nullable String name, @Nullable Installation installation);
+
+  /**
+   * Drops the cached editor rights of a user, to be called when they change.
+   *
+   * @param name name of the user
+   */
+  void evictEditorRights(String name);
 }
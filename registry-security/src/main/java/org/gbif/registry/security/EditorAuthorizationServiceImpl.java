@@ -19,18 +19,35 @@ import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Installation;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Organization;
-import org.gbif.registry.persistence.mapper.DatasetMapper;
-import org.gbif.registry.persistence.mapper.InstallationMapper;
-import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.UserMapper;
 import org.gbif.registry.persistence.mapper.UserRightsMapper;
 
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Primary;
 import org.springframework.stereotype.Service;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Resolves the editor rights of users. The keys of the entities a user has rights on are cached for
+ * a short time, and the entities a dataset, installation or organization belongs to are looked up
+ * in a single query, only when the user has rights on other entities.
+ *
+ * <p>The cached rights are only trusted to deny. A right found in the cache is confirmed in the
+ * database, so a right revoked on any instance stops working at once.
+ */
 @Service
 @Primary
 public class EditorAuthorizationServiceImpl implements EditorAuthorizationService {
@@ -38,19 +55,23 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
   private static final Logger LOG = LoggerFactory.getLogger(EditorAuthorizationServiceImpl.class);
 
   private final UserRightsMapper userRightsMapper;
-  private final OrganizationMapper organizationMapper;
-  private final DatasetMapper datasetMapper;
-  private final InstallationMapper installationMapper;
+  private final UserMapper userMapper;
+
+  // keys of the entities each user has editor rights on. Rights granted on another instance are
+  // only seen here once they expire.
+  private final Cache<String, Set<UUID>> editorRightsCache;
 
   public EditorAuthorizationServiceImpl(
-      OrganizationMapper organizationMapper,
-      DatasetMapper datasetMapper,
-      InstallationMapper installationMapper,
-      UserRightsMapper userRightsMapper) {
-    this.organizationMapper = organizationMapper;
-    this.datasetMapper = datasetMapper;
-    this.installationMapper = installationMapper;
+      UserRightsMapper userRightsMapper,
+      UserMapper userMapper,
+      @Value("${registry.security.editorRightsCacheSeconds:60}") long editorRightsCacheSeconds) {
     this.userRightsMapper = userRightsMapper;
+    this.userMapper = userMapper;
+    this.editorRightsCache =
+        CacheBuilder.newBuilder()
+            .maximumSize(10000)
+            .expireAfterWrite(editorRightsCacheSeconds, TimeUnit.SECONDS)
+            .build();
   }
 
   @Override
@@ -74,7 +95,7 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (name == null || key == null) {
       return false;
     }
-    boolean allowed = userRightsMapper.keyExistsForUser(name, key);
+    boolean allowed = isEditorOfAny(name, Collections.singleton(key));
     LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
     return allowed;
   }
@@ -85,7 +106,7 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
       return false;
     }
     UUID key = entity.getKey();
-    boolean allowed = key != null && userRightsMapper.keyExistsForUser(name, key);
+    boolean allowed = key != null && isEditorOfAny(name, Collections.singleton(key));
     LOG.debug("User {} {} allowed to edit entity {}", name, allowed ? "is" : "is not", key);
     return allowed;
   }
@@ -98,13 +119,9 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     if (allowedToModifyEntity(name, datasetKey)) {
       return true;
     }
-    Dataset d = datasetMapper.get(datasetKey);
-    // try installation rights
-    if (d != null && allowedToModifyInstallation(name, d.getInstallationKey())) {
-      return true;
-    }
-    // try higher organization or node rights
-    return d != null && allowedToModifyOrganization(name, d.getPublishingOrganizationKey());
+    // try installation, higher organization or node rights
+    return datasetKey != null
+        && anyOwnerAllowed(name, () -> userRightsMapper.listDatasetOwnerKeys(datasetKey));
   }
 
   @Override
@@ -133,8 +150,8 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
       return true;
     }
     // try endorsing node
-    Organization o = organizationMapper.get(orgKey);
-    return o != null && allowedToModifyEntity(name, o.getEndorsingNodeKey());
+    return orgKey != null
+        && anyOwnerAllowed(name, () -> userRightsMapper.listOrganizationOwnerKeys(orgKey));
   }
 
   @Override
@@ -159,8 +176,9 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
       return true;
     }
     // try higher organization or node rights
-    Installation inst = installationMapper.get(installationKey);
-    return inst != null && allowedToModifyOrganization(name, inst.getOrganizationKey());
+    return installationKey != null
+        && anyOwnerAllowed(
+            name, () -> userRightsMapper.listInstallationOwnerKeys(installationKey));
   }
 
   @Override
@@ -175,4 +193,44 @@ public class EditorAuthorizationServiceImpl implements EditorAuthorizationServic
     // try higher organization or node rights
     return allowedToModifyOrganization(name, installation.getOrganizationKey());
   }
+
+  @Override
+  public void evictEditorRights(String name) {
+    if (name != null) {
+      editorRightsCache.invalidate(name);
+    }
+  }
+
+  private Set<UUID> getEditorRights(String name) {
+    try {
+      return editorRightsCache.get(name, () -> loadEditorRights(name));
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Unable to load the editor rights of user " + name, e);
+    }
+  }
+
+  private Set<UUID> loadEditorRights(String name) {
+    return new HashSet<>(userMapper.listEditorRights(name));
+  }
+
+  /**
+   * Checks whether the user has editor rights on any of the keys. The cached rights answer a
+   * denial, a grant is confirmed with the current rights, which replace the cached ones.
+   */
+  private boolean isEditorOfAny(String name, Collection<UUID> keys) {
+    if (keys.stream().noneMatch(getEditorRights(name)::contains)) {
+      return false;
+    }
+    Set<UUID> rights = loadEditorRights(name);
+    editorRightsCache.put(name, rights);
+    return keys.stream().anyMatch(rights::contains);
+  }
+
+  /** Checks the owners of an entity, only looking them up if the user has any editor rights. */
+  private boolean anyOwnerAllowed(String name, Supplier<Collection<UUID>> ownerKeys) {
+    if (getEditorRights(name).isEmpty()) {
+      return false;
+    }
+    return isEditorOfAny(name, ownerKeys.get());
+  }
 }
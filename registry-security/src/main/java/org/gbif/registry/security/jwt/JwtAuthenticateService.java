@@ -16,6 +16,7 @@
 package org.gbif.registry.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
+import org.gbif.registry.identity.service.GbifUserCache;
 import org.gbif.registry.identity.service.IdentityService;
 
 import java.util.Optional;
@@ -33,16 +34,24 @@ public class JwtAuthenticateService {
   private final String issuer;
   private final String signingKey;
   private final IdentityService identityService;
+  private final GbifUserCache userCache;
 
   public JwtAuthenticateService(
-      JwtConfiguration jwtConfiguration, IdentityService identityService) {
+      JwtConfiguration jwtConfiguration,
+      IdentityService identityService,
+      GbifUserCache userCache) {
     this.issuer = jwtConfiguration.getIssuer();
     this.signingKey = jwtConfiguration.getSigningKey();
     this.identityService = identityService;
+    this.userCache = userCache;
   }
 
   public GbifUser authenticate(String token) throws GbifJwtException {
-    // validate and parse the token
+    return authenticate(parseClaims(token));
+  }
+
+  /** Validates and parses the token. */
+  public Claims parseClaims(String token) throws GbifJwtException {
     Claims claims;
     try {
       claims =
@@ -60,13 +69,17 @@ public class JwtAuthenticateService {
     if (claims == null) {
       throw new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_TOKEN);
     }
+    return claims;
+  }
 
+  /** Gets the user of the claims of a token already validated by {@link #parseClaims(String)}. */
+  public GbifUser authenticate(Claims claims) throws GbifJwtException {
     String username =
         Optional.ofNullable(claims.get("userName", String.class))
             .filter(v -> !v.isEmpty())
             .orElseThrow(() -> new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_TOKEN));
 
-    return Optional.ofNullable(identityService.get(username))
+    return Optional.ofNullable(userCache.get(username, identityService::get))
         .orElseThrow(() -> new GbifJwtException(GbifJwtException.JwtErrorCode.INVALID_USERNAME));
   }
 }
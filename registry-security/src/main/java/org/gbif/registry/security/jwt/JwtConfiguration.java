@@ -27,6 +27,8 @@ public class JwtConfiguration {
   @NotNull private long expiryTimeInMs;
   @NotNull private String issuer;
   @NotNull private String signingKey;
+  // fraction of the lifetime of a token after which a new one is issued to replace it
+  private double refreshThreshold = 0.5;
 
   public long getExpiryTimeInMs() {
     return expiryTimeInMs;
@@ -51,4 +53,12 @@ public class JwtConfiguration {
   public void setSigningKey(String signingKey) {
     this.signingKey = signingKey;
   }
+
+  public double getRefreshThreshold() {
+    return refreshThreshold;
+  }
+
+  public void setRefreshThreshold(double refreshThreshold) {
+    this.refreshThreshold = refreshThreshold;
+  }
 }
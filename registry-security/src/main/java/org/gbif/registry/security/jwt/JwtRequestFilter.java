@@ -16,11 +16,15 @@
 package org.gbif.registry.security.jwt;
 
 import org.gbif.api.model.common.GbifUser;
+import org.gbif.registry.identity.service.GbifUserCache;
 import org.gbif.ws.security.GbifAuthentication;
 import org.gbif.ws.security.GbifAuthenticationToken;
+import org.gbif.ws.security.GbifUserPrincipal;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
 import javax.servlet.FilterChain;
@@ -30,41 +34,55 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
+import com.google.common.annotations.VisibleForTesting;
+
+import io.jsonwebtoken.Claims;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
 import static org.gbif.ws.util.SecurityConstants.HEADER_TOKEN;
 
 /**
  * Filter to validate the JWT tokens.
  *
- * <p>If the token is not present this validation is skipped.
+ * <p>If the token is not present this validation is skipped. The users are taken from the {@link
+ * GbifUserCache} and a new token is only issued once the token of the request has been used for
+ * {@link JwtConfiguration#getRefreshThreshold()} of its lifetime.
  */
 @Component
-public class JwtRequestFilter extends OncePerRequestFilter {
+public class JwtRequestFilter extends OncePerRequestFilter implements MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(JwtRequestFilter.class);
 
   // Patterns that catches case insensitive versions of word 'bearer'
   private static final Pattern BEARER_PATTERN = Pattern.compile("(?i)bearer");
 
-  private final UserDetailsService userDetailsService;
   private final JwtAuthenticateService jwtAuthenticateService;
   private final JwtIssuanceService jwtIssuanceService;
+  private final GbifUserCache userCache;
+  private final double refreshThreshold;
+
+  private volatile Timer validLatency;
+  private volatile Timer invalidLatency;
 
   public JwtRequestFilter(
-      @Qualifier("registryUserDetailsService") UserDetailsService userDetailsService,
       JwtAuthenticateService jwtAuthenticateService,
-      JwtIssuanceService jwtIssuanceService) {
-    this.userDetailsService = userDetailsService;
+      JwtIssuanceService jwtIssuanceService,
+      GbifUserCache userCache,
+      JwtConfiguration jwtConfiguration) {
     this.jwtAuthenticateService = jwtAuthenticateService;
     this.jwtIssuanceService = jwtIssuanceService;
+    this.userCache = userCache;
+    this.refreshThreshold = jwtConfiguration.getRefreshThreshold();
   }
 
   @Override
@@ -77,30 +95,78 @@ public class JwtRequestFilter extends OncePerRequestFilter {
       // if there is no token in the request we ignore this authentication
       LOG.debug("No JWT token present.");
     } else {
+      final long start = System.nanoTime();
       try {
-        final GbifUser gbifUser = jwtAuthenticateService.authenticate(token.get());
+        final Claims claims = jwtAuthenticateService.parseClaims(token.get());
+        final GbifUser gbifUser = jwtAuthenticateService.authenticate(claims);
 
         LOG.debug("JWT successfully validated for user {}", gbifUser.getUserName());
 
-        final UserDetails userDetails =
-            userDetailsService.loadUserByUsername(gbifUser.getUserName());
+        final UserDetails userDetails = new GbifUserPrincipal(gbifUser);
 
         final GbifAuthentication gbifAuthentication =
             new GbifAuthenticationToken(userDetails, userDetails.getAuthorities());
         SecurityContextHolder.getContext().setAuthentication(gbifAuthentication);
 
         // refresh the token and add it to the headers
-        final String newToken = jwtIssuanceService.generateJwt(gbifUser.getUserName());
-        response.addHeader(HEADER_TOKEN, newToken);
+        if (isDueForRefresh(
+            claims.getIssuedAt(),
+            claims.getExpiration(),
+            System.currentTimeMillis(),
+            refreshThreshold)) {
+          final String newToken = jwtIssuanceService.generateJwt(gbifUser.getUserName());
+          response.addHeader(HEADER_TOKEN, newToken);
+        }
+        record(validLatency, start);
       } catch (GbifJwtException e) {
         LOG.warn("JWT validation failed: {}", e.getErrorCode());
         response.setStatus(HttpStatus.UNAUTHORIZED.value());
+        record(invalidLatency, start);
       }
     }
 
     filterChain.doFilter(request, response);
   }
 
+  /**
+   * Whether a token has been used for the refresh threshold of its lifetime. Tokens without an
+   * issue or expiration date are always refreshed.
+   *
+   * @param issuedAt issue date of the token, can be null
+   * @param expiration expiration date of the token, can be null
+   * @param now current time in milliseconds
+   * @param refreshThreshold fraction of the lifetime after which the token is refreshed
+   */
+  @VisibleForTesting
+  static boolean isDueForRefresh(
+      Date issuedAt, Date expiration, long now, double refreshThreshold) {
+    if (issuedAt == null || expiration == null) {
+      return true;
+    }
+    long lifetime = expiration.getTime() - issuedAt.getTime();
+    long age = now - issuedAt.getTime();
+    return age >= lifetime * refreshThreshold;
+  }
+
+  private static void record(Timer timer, long start) {
+    if (timer != null) {
+      timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, userCache.cache(), "registry.auth.users");
+    validLatency = authLatency("valid").register(registry);
+    invalidLatency = authLatency("invalid").register(registry);
+  }
+
+  private static Timer.Builder authLatency(String result) {
+    return Timer.builder("registry.auth.jwt")
+        .tag("result", result)
+        .description("Time to validate the JWT of a request and authenticate its user");
+  }
+
   /** Tries to find the token in the {@link HttpHeaders#AUTHORIZATION} header. */
   public Optional<String> findTokenInRequest(HttpServletRequest request) {
     // check header first
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security;
+
+import org.gbif.registry.persistence.mapper.UserMapper;
+import org.gbif.registry.persistence.mapper.UserRightsMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/** Tests the editor rights cached by {@link EditorAuthorizationServiceImpl}. */
+@RunWith(MockitoJUnitRunner.class)
+public class EditorAuthorizationServiceImplTest {
+
+  private static final String USERNAME = "editor";
+  private static final UUID KEY = UUID.randomUUID();
+
+  @Mock private UserRightsMapper mockUserRightsMapper;
+  @Mock private UserMapper mockUserMapper;
+
+  private EditorAuthorizationServiceImpl authorizationService;
+
+  @Before
+  public void setup() {
+    authorizationService =
+        new EditorAuthorizationServiceImpl(mockUserRightsMapper, mockUserMapper, 60);
+  }
+
+  @Test
+  public void testDenialServedFromCache() {
+    when(mockUserMapper.listEditorRights(USERNAME)).thenReturn(Collections.emptyList());
+
+    assertFalse(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+    assertFalse(authorizationService.allowedToModifyDataset(USERNAME, UUID.randomUUID()));
+    assertFalse(authorizationService.allowedToModifyOrganization(USERNAME, UUID.randomUUID()));
+
+    verify(mockUserMapper, times(1)).listEditorRights(USERNAME);
+    // a user without rights is rejected without looking up the owners
+    verify(mockUserRightsMapper, never()).listDatasetOwnerKeys(any());
+    verify(mockUserRightsMapper, never()).listOrganizationOwnerKeys(any());
+  }
+
+  @Test
+  public void testRevokedRightDeniedWhileCached() {
+    when(mockUserMapper.listEditorRights(USERNAME))
+        .thenReturn(Collections.singletonList(KEY))
+        .thenReturn(Collections.singletonList(KEY))
+        .thenReturn(Collections.emptyList());
+
+    // loaded into the cache, then confirmed
+    assertTrue(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+    // revoked on another instance, without evicting the cache here
+    assertFalse(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+    // the current rights replaced the cached ones
+    assertFalse(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+
+    verify(mockUserMapper, times(3)).listEditorRights(USERNAME);
+  }
+
+  @Test
+  public void testRevokedOwnerRightDenied() {
+    UUID organizationKey = UUID.randomUUID();
+    UUID datasetKey = UUID.randomUUID();
+    when(mockUserMapper.listEditorRights(USERNAME))
+        .thenReturn(Collections.singletonList(organizationKey))
+        .thenReturn(Collections.singletonList(organizationKey))
+        .thenReturn(Collections.emptyList());
+    when(mockUserRightsMapper.listDatasetOwnerKeys(datasetKey))
+        .thenReturn(Arrays.asList(UUID.randomUUID(), organizationKey));
+
+    assertTrue(authorizationService.allowedToModifyDataset(USERNAME, datasetKey));
+    assertFalse(authorizationService.allowedToModifyDataset(USERNAME, datasetKey));
+  }
+
+  @Test
+  public void testGrantedRightSeenAfterEviction() {
+    when(mockUserMapper.listEditorRights(USERNAME))
+        .thenReturn(Collections.emptyList())
+        .thenReturn(Collections.singletonList(KEY));
+
+    assertFalse(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+    // granted, still denied from the cache
+    assertFalse(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+
+    authorizationService.evictEditorRights(USERNAME);
+    assertTrue(authorizationService.allowedToModifyEntity(USERNAME, KEY));
+  }
+}
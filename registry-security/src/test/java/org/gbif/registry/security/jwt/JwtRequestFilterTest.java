@@ -0,0 +1,64 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.security.jwt;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import static org.gbif.registry.security.jwt.JwtRequestFilter.isDueForRefresh;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests the refresh threshold of {@link JwtRequestFilter}. */
+public class JwtRequestFilterTest {
+
+  private static final long ISSUED_AT = 1_600_000_000_000L;
+  // a lifetime of 1000 seconds
+  private static final Date ISSUED = new Date(ISSUED_AT);
+  private static final Date EXPIRATION = new Date(ISSUED_AT + 1_000_000L);
+
+  @Test
+  public void testNotYetDue() {
+    assertFalse(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT, 0.5));
+    assertFalse(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 499_999L, 0.5));
+    assertFalse(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 899_999L, 0.9));
+  }
+
+  @Test
+  public void testDue() {
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 500_000L, 0.5));
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 999_999L, 0.5));
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 900_000L, 0.9));
+  }
+
+  @Test
+  public void testExpired() {
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 1_000_000L, 0.5));
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT + 5_000_000L, 0.9));
+  }
+
+  @Test
+  public void testAlwaysDueWithZeroThreshold() {
+    assertTrue(isDueForRefresh(ISSUED, EXPIRATION, ISSUED_AT, 0));
+  }
+
+  @Test
+  public void testDueWithoutDates() {
+    assertTrue(isDueForRefresh(null, EXPIRATION, ISSUED_AT, 0.5));
+    assertTrue(isDueForRefresh(ISSUED, null, ISSUED_AT, 0.5));
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import java.util.Date;
+import java.util.Map;
+import java.util.UUID;
+
+import javax.annotation.Nullable;
+
+/**
+ * Maintains the monthly download statistics as downloads succeed, and serves them as the counts of
+ * each month grouped by year.
+ */
+public interface DownloadStatisticsService {
+
+  /**
+   * Adds a download that has just succeeded, and the dataset usages it has so far, to the monthly
+   * statistics. Must be called once per download, within the transaction that updates its status.
+   */
+  void addSucceededDownload(String downloadKey);
+
+  /** Number of downloads by month, grouped by year. */
+  Map<Integer, Map<Integer, Long>> getDownloadsByUserCountry(
+      @Nullable Date fromDate, @Nullable Date toDate, @Nullable String userCountry);
+
+  /** Number of downloaded records by month, grouped by year. */
+  Map<Integer, Map<Integer, Long>> getDownloadedRecordsByDataset(
+      @Nullable Date fromDate,
+      @Nullable Date toDate,
+      @Nullable String publishingCountry,
+      @Nullable UUID datasetKey);
+}
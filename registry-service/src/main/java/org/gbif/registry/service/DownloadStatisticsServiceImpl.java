@@ -0,0 +1,136 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.common.search.Facet;
+import org.gbif.registry.persistence.mapper.OccurrenceDownloadMapper;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.Nullable;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+
+/**
+ * Keeps the monthly rollups of the download statistics current through the mapper, and caches the
+ * statistics served, already grouped by year, for {@code
+ * registry.downloads.statisticsCacheSeconds}. Past months don't change, so dashboards querying
+ * multi-year ranges only see the current month lag behind by that long at most.
+ */
+@Service
+public class DownloadStatisticsServiceImpl implements DownloadStatisticsService {
+
+  private final OccurrenceDownloadMapper occurrenceDownloadMapper;
+
+  // statistics grouped by year, by the parameters of the query
+  private final Cache<List<Object>, Map<Integer, Map<Integer, Long>>> downloadsByUserCountry;
+  private final Cache<List<Object>, Map<Integer, Map<Integer, Long>>> recordsByDataset;
+
+  public DownloadStatisticsServiceImpl(
+      OccurrenceDownloadMapper occurrenceDownloadMapper,
+      @Value("${registry.downloads.statisticsCacheSeconds:300}") long statisticsCacheSeconds) {
+    this.occurrenceDownloadMapper = occurrenceDownloadMapper;
+    this.downloadsByUserCountry = newCache(statisticsCacheSeconds);
+    this.recordsByDataset = newCache(statisticsCacheSeconds);
+  }
+
+  private static Cache<List<Object>, Map<Integer, Map<Integer, Long>>> newCache(long seconds) {
+    return CacheBuilder.newBuilder()
+        .maximumSize(10000)
+        .expireAfterWrite(seconds, TimeUnit.SECONDS)
+        .build();
+  }
+
+  @Override
+  public void addSucceededDownload(String downloadKey) {
+    occurrenceDownloadMapper.addToUserStatistics(downloadKey);
+    occurrenceDownloadMapper.addToDatasetStatistics(downloadKey);
+  }
+
+  @Override
+  public Map<Integer, Map<Integer, Long>> getDownloadsByUserCountry(
+      @Nullable Date fromDate, @Nullable Date toDate, @Nullable String userCountry) {
+    return get(
+        downloadsByUserCountry,
+        Arrays.asList(fromDate, toDate, userCountry),
+        () ->
+            groupByYear(
+                occurrenceDownloadMapper.getDownloadsByUserCountry(fromDate, toDate, userCountry)));
+  }
+
+  @Override
+  public Map<Integer, Map<Integer, Long>> getDownloadedRecordsByDataset(
+      @Nullable Date fromDate,
+      @Nullable Date toDate,
+      @Nullable String publishingCountry,
+      @Nullable UUID datasetKey) {
+    return get(
+        recordsByDataset,
+        Arrays.asList(fromDate, toDate, publishingCountry, datasetKey),
+        () ->
+            groupByYear(
+                occurrenceDownloadMapper.getDownloadedRecordsByDataset(
+                    fromDate, toDate, publishingCountry, datasetKey)));
+  }
+
+  private static Map<Integer, Map<Integer, Long>> get(
+      Cache<List<Object>, Map<Integer, Map<Integer, Long>>> cache,
+      List<Object> key,
+      Callable<Map<Integer, Map<Integer, Long>>> loader) {
+    try {
+      return cache.get(key, loader);
+    } catch (ExecutionException e) {
+      throw new IllegalStateException("Unable to load the download statistics " + key, e);
+    }
+  }
+
+  /**
+   * Aggregates the download statistics in tree structure of month grouped by year. The result is
+   * shared by the callers, so it is read only.
+   */
+  private static Map<Integer, Map<Integer, Long>> groupByYear(List<Facet.Count> counts) {
+    SortedMap<Integer, Map<Integer, Long>> yearsGrouping = new TreeMap<>();
+    counts.forEach(
+        count ->
+            yearsGrouping
+                .computeIfAbsent(getYearFromFacetCount(count), year -> new TreeMap<>())
+                .put(getMonthFromFacetCount(count), count.getCount()));
+    yearsGrouping.replaceAll((year, months) -> Collections.unmodifiableMap(months));
+    return Collections.unmodifiableSortedMap(yearsGrouping);
+  }
+
+  private static Integer getYearFromFacetCount(Facet.Count count) {
+    return Integer.valueOf(count.getName().substring(0, 4));
+  }
+
+  private static Integer getMonthFromFacetCount(Facet.Count count) {
+    return Integer.valueOf(count.getName().substring(5));
+  }
+}
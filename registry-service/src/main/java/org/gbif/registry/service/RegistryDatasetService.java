@@ -20,6 +20,7 @@ import org.gbif.api.model.registry.Dataset;
 import org.gbif.api.model.registry.Metadata;
 import org.gbif.api.vocabulary.MetadataType;
 
+import java.io.IOException;
 import java.util.List;
 import java.util.UUID;
 
@@ -37,4 +38,16 @@ public interface RegistryDatasetService {
   List<Metadata> listMetadata(UUID datasetKey, @Nullable MetadataType type);
 
   byte[] getMetadataDocument(int metadataKey);
+
+  /** The dataset, augmented with its preferred metadata, serialized as an EML document. */
+  byte[] getEmlDocument(UUID key) throws IOException;
+
+  /** Drops the rendered EML document of the dataset, if cached. */
+  void evictDocument(UUID datasetKey);
+
+  /**
+   * Drops the parsed form of the preferred metadata document of the dataset, and its rendered EML
+   * document, if cached.
+   */
+  void evictMetadataOfDataset(UUID datasetKey);
 }
@@ -24,6 +24,7 @@ import org.gbif.api.model.registry.Metadata;
 import org.gbif.api.model.registry.Organization;
 import org.gbif.api.vocabulary.MetadataType;
 import org.gbif.registry.metadata.CitationGenerator;
+import org.gbif.registry.metadata.EMLWriter;
 import org.gbif.registry.metadata.parse.DatasetParser;
 import org.gbif.registry.persistence.mapper.DatasetMapper;
 import org.gbif.registry.persistence.mapper.MetadataMapper;
@@ -31,7 +32,11 @@ import org.gbif.registry.persistence.mapper.OrganizationMapper;
 import org.gbif.registry.persistence.mapper.handler.ByteArrayWrapper;
 
 import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
 import java.util.List;
+import java.util.Objects;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 
@@ -41,16 +46,25 @@ import org.owasp.html.HtmlPolicyBuilder;
 import org.owasp.html.PolicyFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import io.micrometer.core.instrument.binder.cache.GuavaCacheMetrics;
+
 @Service
-public class RegistryDatasetServiceImpl implements RegistryDatasetService {
+public class RegistryDatasetServiceImpl implements RegistryDatasetService, MeterBinder {
 
   private static final Logger LOG = LoggerFactory.getLogger(RegistryDatasetServiceImpl.class);
 
@@ -65,14 +79,25 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
           .onElements("a")
           .toFactory();
 
+  // copies cached datasets, see copyOf
+  private static final ObjectMapper COPY_MAPPER =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
   private final DatasetMapper datasetMapper;
   private final MetadataMapper metadataMapper;
   private final LoadingCache<UUID, Organization> organizationCache;
+  // parsed preferred metadata documents by dataset key, weighted by the size of the document
+  private final Cache<UUID, ParsedMetadata> metadataCache;
+  // rendered EML documents by dataset key, weighted by their size
+  private final Cache<UUID, RenderedDocument> emlCache;
+  private final EMLWriter emlWriter = EMLWriter.newInstance();
 
   public RegistryDatasetServiceImpl(
       MetadataMapper metadataMapper,
       OrganizationMapper organizationMapper,
-      DatasetMapper datasetMapper) {
+      DatasetMapper datasetMapper,
+      @Value("${registry.metadataCache.maxDocumentBytes:67108864}") long metadataCacheMaxBytes,
+      @Value("${registry.emlCache.maxDocumentBytes:33554432}") long emlCacheMaxBytes) {
     this.metadataMapper = metadataMapper;
     this.organizationCache =
         CacheBuilder.newBuilder()
@@ -84,9 +109,29 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
                     return organizationMapper.get(key);
                   }
                 });
+    this.metadataCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(metadataCacheMaxBytes)
+            .weigher((UUID key, ParsedMetadata value) -> value.documentSize)
+            .recordStats()
+            .build();
+    // organizations, and thus the generated citation, may change on another instance
+    this.emlCache =
+        CacheBuilder.newBuilder()
+            .maximumWeight(emlCacheMaxBytes)
+            .weigher((UUID key, RenderedDocument value) -> value.document.length)
+            .expireAfterWrite(5, TimeUnit.MINUTES)
+            .recordStats()
+            .build();
     this.datasetMapper = datasetMapper;
   }
 
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    GuavaCacheMetrics.monitor(registry, metadataCache, "registry.dataset.metadata");
+    GuavaCacheMetrics.monitor(registry, emlCache, "registry.dataset.eml");
+  }
+
   @NullToNotFound
   @Override
   public Dataset get(UUID key) {
@@ -228,7 +273,11 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     }
   }
 
-  /** Returns the parsed, preferred metadata document as a dataset. */
+  /**
+   * Returns the parsed, preferred metadata document as a dataset. Parsed documents are cached by
+   * dataset key along with the key of the document, so the result is a deep copy which callers are
+   * free to modify.
+   */
   @Nullable
   @Override
   public Dataset getPreferredMetadataDataset(UUID key) {
@@ -237,18 +286,86 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     if (!docs.isEmpty()) {
       // the list is sorted by priority already, just pick the first!
       Integer metadataKey = docs.get(0).getKey();
-      byte[] metadataDocument = getMetadataDocument(metadataKey);
-      try {
-        result = DatasetParser.build(metadataDocument);
-      } catch (IOException | IllegalArgumentException e) {
-        // Not sure if we should not propagate an Exception to return a 500 instead
-        LOG.error("Stored metadata document {} cannot be read", metadataKey, e);
+      ParsedMetadata parsed = metadataCache.getIfPresent(key);
+      if (parsed == null || parsed.metadataKey != metadataKey) {
+        // not cached yet, or cached from a document which is no longer the preferred one
+        byte[] metadataDocument = getMetadataDocument(metadataKey);
+        try {
+          parsed =
+              new ParsedMetadata(
+                  metadataKey, DatasetParser.build(metadataDocument), metadataDocument.length);
+          metadataCache.put(key, parsed);
+        } catch (IOException | IllegalArgumentException e) {
+          // Not sure if we should not propagate an Exception to return a 500 instead
+          LOG.error("Stored metadata document {} cannot be read", metadataKey, e);
+          parsed = null;
+        }
+      }
+      if (parsed != null) {
+        result = copyOf(parsed.dataset);
       }
     }
 
     return result;
   }
 
+  /**
+   * Returns the dataset, fully augmented, as an EML document. Rendered documents are cached and
+   * reused as long as the dataset modified date and its preferred metadata document are unchanged.
+   */
+  @NullToNotFound
+  @Override
+  public byte[] getEmlDocument(UUID key) throws IOException {
+    Date modified = datasetMapper.modified(key);
+    if (modified == null) {
+      return null;
+    }
+    List<Metadata> docs = listMetadata(key, null);
+    Integer metadataKey = docs.isEmpty() ? null : docs.get(0).getKey();
+
+    RenderedDocument rendered = emlCache.getIfPresent(key);
+    if (rendered != null
+        && rendered.modified.equals(modified)
+        && Objects.equals(rendered.metadataKey, metadataKey)) {
+      return rendered.document;
+    }
+
+    Dataset dataset = get(key);
+    if (dataset == null) {
+      return null;
+    }
+    StringWriter eml = new StringWriter();
+    emlWriter.writeTo(dataset, eml);
+    byte[] document = eml.toString().getBytes(StandardCharsets.UTF_8);
+    emlCache.put(key, new RenderedDocument(modified, metadataKey, document));
+    return document;
+  }
+
+  @Override
+  public void evictDocument(UUID datasetKey) {
+    emlCache.invalidate(datasetKey);
+  }
+
+  @Override
+  public void evictMetadataOfDataset(UUID datasetKey) {
+    metadataCache.invalidate(datasetKey);
+    emlCache.invalidate(datasetKey);
+  }
+
+  /**
+   * Deep copy of a dataset, made through its JSON form so that no nested object (contacts,
+   * coverages, citations etc.) is shared with the cached instance.
+   */
+  private static Dataset copyOf(Dataset dataset) {
+    try {
+      TokenBuffer buffer = new TokenBuffer(COPY_MAPPER, false);
+      COPY_MAPPER.writeValue(buffer, dataset);
+      return COPY_MAPPER.readValue(buffer.asParser(), Dataset.class);
+    } catch (IOException e) {
+      throw new IllegalStateException("Unable to copy dataset " + dataset.getKey(), e);
+    }
+  }
+
   @Override
   public List<Metadata> listMetadata(UUID datasetKey, @Nullable MetadataType type) {
     return metadataMapper.list(datasetKey, type);
@@ -263,4 +380,33 @@ public class RegistryDatasetServiceImpl implements RegistryDatasetService {
     }
     return document.getData();
   }
+
+  /** A parsed metadata document, with its key and the size of its source. */
+  private static class ParsedMetadata {
+    private final int metadataKey;
+    private final Dataset dataset;
+    private final int documentSize;
+
+    private ParsedMetadata(int metadataKey, Dataset dataset, int documentSize) {
+      this.metadataKey = metadataKey;
+      this.dataset = dataset;
+      this.documentSize = documentSize;
+    }
+  }
+
+  /**
+   * A rendered document, with the dataset modified date and preferred metadata key it was rendered
+   * from.
+   */
+  private static class RenderedDocument {
+    private final Date modified;
+    private final Integer metadataKey;
+    private final byte[] document;
+
+    private RenderedDocument(Date modified, @Nullable Integer metadataKey, byte[] document) {
+      this.modified = modified;
+      this.metadataKey = metadataKey;
+      this.document = document;
+    }
+  }
 }
@@ -0,0 +1,273 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections;
+
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.registry.persistence.mapper.dto.CollectionsLookupEntry;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * The lookup index of either the institutions or the collections: the entries by key, and the keys
+ * by code, alternative code, identifier, normalized name and by the trigrams of the lower case code
+ * and name, which narrow the candidates of a suggestion down to a handful.
+ *
+ * <p>Entries are replaced one at a time, so a concurrent reader may briefly miss an entry that is
+ * being refreshed, but never sees a half-indexed one.
+ */
+class CollectionsLookupIndex {
+
+  static final int SUGGEST_LIMIT = 20;
+
+  private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+  private static final Pattern NON_ALPHANUMERIC = Pattern.compile("[^\\p{Alnum}]+");
+
+  private static final Comparator<CollectionsLookupEntry> BY_CODE =
+      Comparator.comparing(
+              CollectionsLookupEntry::getCode,
+              Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+          .thenComparing(CollectionsLookupEntry::getKey);
+  private static final Comparator<CollectionsLookupEntry> BY_NAME =
+      Comparator.comparing(
+              CollectionsLookupEntry::getName,
+              Comparator.nullsLast(String.CASE_INSENSITIVE_ORDER))
+          .thenComparing(CollectionsLookupEntry::getKey);
+
+  private final Map<UUID, CollectionsLookupEntry> entries = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byCode = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byAlternativeCode = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byIdentifier = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byName = new ConcurrentHashMap<>();
+  private final Map<String, Set<UUID>> byTrigram = new ConcurrentHashMap<>();
+
+  CollectionsLookupIndex(Collection<CollectionsLookupEntry> entries) {
+    entries.forEach(this::put);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /** Indexes the entry, replacing the previous version of it if any. */
+  void put(CollectionsLookupEntry entry) {
+    remove(entry.getKey());
+    entries.put(entry.getKey(), entry);
+    forEachTerm(entry, (index, term) -> add(index, term, entry.getKey()));
+  }
+
+  void remove(UUID key) {
+    CollectionsLookupEntry old = entries.remove(key);
+    if (old != null) {
+      forEachTerm(old, (index, term) -> remove(index, term, key));
+    }
+  }
+
+  CollectionsLookupEntry get(UUID key) {
+    return entries.get(key);
+  }
+
+  List<CollectionsLookupEntry> findByIdentifier(String identifier) {
+    return find(byIdentifier, normalizeIdentifier(identifier));
+  }
+
+  List<CollectionsLookupEntry> findByCode(String code) {
+    return find(byCode, normalizeCode(code));
+  }
+
+  List<CollectionsLookupEntry> findByAlternativeCode(String code) {
+    return find(byAlternativeCode, normalizeCode(code));
+  }
+
+  List<CollectionsLookupEntry> findByName(String name) {
+    return find(byName, normalizeName(name));
+  }
+
+  /**
+   * Entries whose code or name start with the query first, then those that contain it, in the
+   * order of the former SQL suggest.
+   */
+  List<KeyCodeNameResult> suggest(String q) {
+    String query = q != null ? q.trim().toLowerCase(Locale.ROOT) : "";
+    if (query.isEmpty()) {
+      return Collections.emptyList();
+    }
+
+    List<CollectionsLookupEntry> candidates = new ArrayList<>();
+    for (CollectionsLookupEntry entry : candidates(query)) {
+      if (contains(entry.getCode(), query) || contains(entry.getName(), query)) {
+        candidates.add(entry);
+      }
+    }
+
+    Set<CollectionsLookupEntry> ranked = new LinkedHashSet<>();
+    addSorted(ranked, candidates, e -> startsWith(e.getCode(), query), BY_CODE);
+    addSorted(ranked, candidates, e -> startsWith(e.getName(), query), BY_NAME);
+    addSorted(ranked, candidates, e -> contains(e.getCode(), query), BY_CODE);
+    addSorted(ranked, candidates, e -> contains(e.getName(), query), BY_NAME);
+
+    return ranked.stream()
+        .limit(SUGGEST_LIMIT)
+        .map(CollectionsLookupIndex::toResult)
+        .collect(Collectors.toList());
+  }
+
+  static KeyCodeNameResult toResult(CollectionsLookupEntry entry) {
+    KeyCodeNameResult result = new KeyCodeNameResult();
+    result.setKey(entry.getKey());
+    result.setCode(entry.getCode());
+    result.setName(entry.getName());
+    return result;
+  }
+
+  /** Identifiers match regardless of their http scheme, like the former SQL lookup did. */
+  static String normalizeIdentifier(String identifier) {
+    return identifier != null ? identifier.trim().replace("http://", "") : "";
+  }
+
+  static String normalizeCode(String code) {
+    return code != null ? code.trim().toUpperCase(Locale.ROOT) : "";
+  }
+
+  /** Lower case, without accents or punctuation, and with single spaces between words. */
+  static String normalizeName(String name) {
+    if (name == null) {
+      return "";
+    }
+    String folded =
+        DIACRITICS.matcher(Normalizer.normalize(name, Normalizer.Form.NFD)).replaceAll("");
+    return NON_ALPHANUMERIC.matcher(folded.toLowerCase(Locale.ROOT)).replaceAll(" ").trim();
+  }
+
+  private Collection<CollectionsLookupEntry> candidates(String query) {
+    if (query.length() < 3) {
+      return entries.values();
+    }
+
+    // the entries containing the query have all of its trigrams, start with the rarest one
+    List<Set<UUID>> postings = new ArrayList<>();
+    for (String trigram : trigrams(query)) {
+      Set<UUID> keys = byTrigram.get(trigram);
+      if (keys == null) {
+        return Collections.emptyList();
+      }
+      postings.add(keys);
+    }
+    postings.sort(Comparator.comparingInt(Set::size));
+
+    Set<UUID> keys = new HashSet<>(postings.get(0));
+    for (int i = 1; i < postings.size() && !keys.isEmpty(); i++) {
+      keys.retainAll(postings.get(i));
+    }
+    return keys.stream().map(entries::get).filter(Objects::nonNull).collect(Collectors.toList());
+  }
+
+  private List<CollectionsLookupEntry> find(Map<String, Set<UUID>> index, String term) {
+    if (term.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Set<UUID> keys = index.get(term);
+    if (keys == null) {
+      return Collections.emptyList();
+    }
+    return keys.stream()
+        .map(entries::get)
+        .filter(Objects::nonNull)
+        .sorted(BY_CODE)
+        .collect(Collectors.toList());
+  }
+
+  private void forEachTerm(CollectionsLookupEntry entry, TermConsumer consumer) {
+    consumer.accept(byCode, normalizeCode(entry.getCode()));
+    entry
+        .getAlternativeCodes()
+        .keySet()
+        .forEach(c -> consumer.accept(byAlternativeCode, normalizeCode(c)));
+    entry.getIdentifiers().forEach(i -> consumer.accept(byIdentifier, normalizeIdentifier(i)));
+    consumer.accept(byName, normalizeName(entry.getName()));
+
+    Set<String> trigrams = new HashSet<>();
+    if (entry.getCode() != null) {
+      trigrams.addAll(trigrams(entry.getCode().toLowerCase(Locale.ROOT)));
+    }
+    if (entry.getName() != null) {
+      trigrams.addAll(trigrams(entry.getName().toLowerCase(Locale.ROOT)));
+    }
+    trigrams.forEach(t -> consumer.accept(byTrigram, t));
+  }
+
+  private static void add(Map<String, Set<UUID>> index, String term, UUID key) {
+    if (!term.isEmpty()) {
+      index.computeIfAbsent(term, t -> ConcurrentHashMap.newKeySet()).add(key);
+    }
+  }
+
+  private static void remove(Map<String, Set<UUID>> index, String term, UUID key) {
+    index.computeIfPresent(
+        term,
+        (t, keys) -> {
+          keys.remove(key);
+          return keys.isEmpty() ? null : keys;
+        });
+  }
+
+  private static Set<String> trigrams(String value) {
+    Set<String> trigrams = new HashSet<>();
+    for (int i = 0; i + 3 <= value.length(); i++) {
+      trigrams.add(value.substring(i, i + 3));
+    }
+    return trigrams;
+  }
+
+  private static void addSorted(
+      Set<CollectionsLookupEntry> ranked,
+      List<CollectionsLookupEntry> candidates,
+      Predicate<CollectionsLookupEntry> filter,
+      Comparator<CollectionsLookupEntry> order) {
+    if (ranked.size() >= SUGGEST_LIMIT) {
+      return;
+    }
+    candidates.stream().filter(filter).sorted(order).forEach(ranked::add);
+  }
+
+  private static boolean startsWith(String value, String query) {
+    return value != null && value.toLowerCase(Locale.ROOT).startsWith(query);
+  }
+
+  private static boolean contains(String value, String query) {
+    return value != null && value.toLowerCase(Locale.ROOT).contains(query);
+  }
+
+  @FunctionalInterface
+  private interface TermConsumer {
+    void accept(Map<String, Set<UUID>> index, String term);
+  }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections;
+
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.domain.collections.CollectionsLookupResult;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Resolves codes, names and identifiers to GrSciColl institutions and collections from an
+ * in-memory index of the entities that are not deleted.
+ */
+public interface CollectionsLookupService {
+
+  /** Resolves each of the queries, returning the results in the same order. */
+  List<CollectionsLookupResult> lookup(List<CollectionsLookupQuery> queries);
+
+  /** @return the keys of the institutions that have the identifier */
+  List<UUID> findInstitutionsByIdentifier(String identifier);
+
+  /** @return the keys of the collections that have the identifier */
+  List<UUID> findCollectionsByIdentifier(String identifier);
+
+  /** Suggests institutions whose code or name contain the query. */
+  List<KeyCodeNameResult> suggestInstitutions(String q);
+
+  /** Suggests collections whose code or name contain the query. */
+  List<KeyCodeNameResult> suggestCollections(String q);
+
+  /** Reloads the institution into the index, dropping it if it no longer exists or is deleted. */
+  void refreshInstitution(UUID key);
+
+  /** Reloads the collection into the index, dropping it if it no longer exists or is deleted. */
+  void refreshCollection(UUID key);
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections;
+
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.domain.collections.CollectionsLookupResult;
+import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
+import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
+import org.gbif.registry.persistence.mapper.dto.CollectionsLookupEntry;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import javax.annotation.PreDestroy;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import com.google.common.base.Stopwatch;
+import com.google.common.base.Strings;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * Keeps the lookup index of the institutions and collections in memory. The index is built on
+ * startup, kept up to date entity by entity through {@link #refreshInstitution(UUID)} and {@link
+ * #refreshCollection(UUID)}, and rebuilt from scratch once it is older than {@code
+ * grscicoll.lookup.maxIndexAgeSeconds} to catch up with changes made outside of this application.
+ * The stale index keeps being served while it is rebuilt in the background. An age of 0 rebuilds it
+ * on every call, before answering, which is only meant for tests.
+ */
+@Service
+public class CollectionsLookupServiceImpl implements CollectionsLookupService, MeterBinder {
+
+  private static final Logger LOG = LoggerFactory.getLogger(CollectionsLookupServiceImpl.class);
+
+  private final InstitutionMapper institutionMapper;
+  private final CollectionMapper collectionMapper;
+  private final long maxIndexAgeMillis;
+
+  private final ExecutorService rebuildExecutor =
+      Executors.newSingleThreadExecutor(
+          new ThreadFactoryBuilder()
+              .setNameFormat("grscicoll-lookup-index")
+              .setDaemon(true)
+              .build());
+  private final AtomicBoolean rebuilding = new AtomicBoolean();
+  // the entities refreshed while the index is rebuilt, guarded by this
+  private final Set<UUID> refreshedInstitutions = new HashSet<>();
+  private final Set<UUID> refreshedCollections = new HashSet<>();
+
+  private volatile Snapshot snapshot;
+
+  public CollectionsLookupServiceImpl(
+      InstitutionMapper institutionMapper,
+      CollectionMapper collectionMapper,
+      @Value("${grscicoll.lookup.maxIndexAgeSeconds:3600}") long maxIndexAgeSeconds) {
+    this.institutionMapper = institutionMapper;
+    this.collectionMapper = collectionMapper;
+    this.maxIndexAgeMillis = TimeUnit.SECONDS.toMillis(maxIndexAgeSeconds);
+  }
+
+  @EventListener(ApplicationReadyEvent.class)
+  public void warmUp() {
+    index();
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    rebuildExecutor.shutdownNow();
+  }
+
+  @Override
+  public List<CollectionsLookupResult> lookup(List<CollectionsLookupQuery> queries) {
+    if (queries == null || queries.isEmpty()) {
+      return Collections.emptyList();
+    }
+    Snapshot index = index();
+    return queries.stream().map(q -> lookup(index, q)).collect(Collectors.toList());
+  }
+
+  @Override
+  public List<UUID> findInstitutionsByIdentifier(String identifier) {
+    return keys(index().institutions.findByIdentifier(identifier));
+  }
+
+  @Override
+  public List<UUID> findCollectionsByIdentifier(String identifier) {
+    return keys(index().collections.findByIdentifier(identifier));
+  }
+
+  @Override
+  public List<KeyCodeNameResult> suggestInstitutions(String q) {
+    return index().institutions.suggest(q);
+  }
+
+  @Override
+  public List<KeyCodeNameResult> suggestCollections(String q) {
+    return index().collections.suggest(q);
+  }
+
+  @Override
+  public synchronized void refreshInstitution(UUID key) {
+    if (snapshot != null) {
+      refresh(snapshot.institutions, key, institutionMapper::lookupEntries);
+    }
+    if (rebuilding.get()) {
+      refreshedInstitutions.add(key);
+    }
+  }
+
+  @Override
+  public synchronized void refreshCollection(UUID key) {
+    if (snapshot != null) {
+      refresh(snapshot.collections, key, collectionMapper::lookupEntries);
+    }
+    if (rebuilding.get()) {
+      refreshedCollections.add(key);
+    }
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    Gauge.builder("registry.grscicoll.lookup.index", this, s -> s.size(true))
+        .tag("entity", "institution")
+        .description("Institutions in the GrSciColl lookup index")
+        .register(registry);
+    Gauge.builder("registry.grscicoll.lookup.index", this, s -> s.size(false))
+        .tag("entity", "collection")
+        .description("Collections in the GrSciColl lookup index")
+        .register(registry);
+  }
+
+  private CollectionsLookupResult lookup(Snapshot index, CollectionsLookupQuery query) {
+    List<CollectionsLookupEntry> institutions =
+        match(index.institutions, query.getInstitutionId(), query.getInstitutionCode());
+    List<CollectionsLookupEntry> collections =
+        match(index.collections, query.getCollectionId(), query.getCollectionCode());
+
+    // codes are often shared by collections of different institutions
+    if (collections.size() > 1 && !institutions.isEmpty()) {
+      Set<UUID> institutionKeys =
+          institutions.stream().map(CollectionsLookupEntry::getKey).collect(Collectors.toSet());
+      List<CollectionsLookupEntry> ofInstitutions =
+          collections.stream()
+              .filter(c -> institutionKeys.contains(c.getInstitutionKey()))
+              .collect(Collectors.toList());
+      if (!ofInstitutions.isEmpty()) {
+        collections = ofInstitutions;
+      }
+    }
+
+    return new CollectionsLookupResult(results(institutions), results(collections));
+  }
+
+  /** Identifiers win over codes, codes over alternative codes, and those over names. */
+  private static List<CollectionsLookupEntry> match(
+      CollectionsLookupIndex index, String identifier, String code) {
+    if (!Strings.isNullOrEmpty(identifier)) {
+      List<CollectionsLookupEntry> matches = index.findByIdentifier(identifier);
+      if (!matches.isEmpty()) {
+        return matches;
+      }
+    }
+
+    if (!Strings.isNullOrEmpty(code)) {
+      List<CollectionsLookupEntry> matches = index.findByCode(code);
+      if (matches.isEmpty()) {
+        matches = index.findByAlternativeCode(code);
+      }
+      if (matches.isEmpty()) {
+        matches = index.findByName(code);
+      }
+      return matches;
+    }
+
+    return Collections.emptyList();
+  }
+
+  private Snapshot index() {
+    Snapshot current = snapshot;
+    if (current == null || maxIndexAgeMillis == 0) {
+      return rebuild(current);
+    }
+    if (current.isOlderThan(maxIndexAgeMillis) && rebuilding.compareAndSet(false, true)) {
+      rebuildExecutor.execute(this::rebuildInBackground);
+    }
+    return current;
+  }
+
+  /** Builds the first index, callers wait for it as there is nothing to serve yet. */
+  private synchronized Snapshot rebuild(Snapshot stale) {
+    if (snapshot != stale) {
+      // rebuilt by another thread in the meantime
+      return snapshot;
+    }
+    snapshot = load();
+    return snapshot;
+  }
+
+  /**
+   * Replaces the stale index, which is served while the new one is loaded. The entities refreshed
+   * in the meantime are reloaded, as the new index might have been loaded before they changed.
+   */
+  private void rebuildInBackground() {
+    try {
+      Snapshot rebuilt = load();
+      synchronized (this) {
+        refreshedInstitutions.forEach(
+            key -> refresh(rebuilt.institutions, key, institutionMapper::lookupEntries));
+        refreshedCollections.forEach(
+            key -> refresh(rebuilt.collections, key, collectionMapper::lookupEntries));
+        snapshot = rebuilt;
+      }
+    } catch (RuntimeException e) {
+      LOG.error("Failed to rebuild the GrSciColl lookup index, serving the stale one", e);
+    } finally {
+      synchronized (this) {
+        refreshedInstitutions.clear();
+        refreshedCollections.clear();
+        rebuilding.set(false);
+      }
+    }
+  }
+
+  private Snapshot load() {
+    Stopwatch stopwatch = Stopwatch.createStarted();
+    Snapshot loaded =
+        new Snapshot(
+            new CollectionsLookupIndex(institutionMapper.lookupEntries(null)),
+            new CollectionsLookupIndex(collectionMapper.lookupEntries(null)));
+    LOG.debug(
+        "Built the GrSciColl lookup index of {} institutions and {} collections in {}ms",
+        loaded.institutions.size(),
+        loaded.collections.size(),
+        stopwatch.elapsed(TimeUnit.MILLISECONDS));
+    return loaded;
+  }
+
+  private static void refresh(
+      CollectionsLookupIndex index, UUID key, Function<UUID, List<CollectionsLookupEntry>> loader) {
+    List<CollectionsLookupEntry> entries = loader.apply(key);
+    if (entries == null || entries.isEmpty()) {
+      index.remove(key);
+    } else {
+      index.put(entries.get(0));
+    }
+  }
+
+  private double size(boolean institutions) {
+    Snapshot current = snapshot;
+    if (current == null) {
+      return 0;
+    }
+    return institutions ? current.institutions.size() : current.collections.size();
+  }
+
+  private static List<UUID> keys(List<CollectionsLookupEntry> entries) {
+    return entries.stream().map(CollectionsLookupEntry::getKey).collect(Collectors.toList());
+  }
+
+  private static List<KeyCodeNameResult> results(List<CollectionsLookupEntry> entries) {
+    return entries.stream().map(CollectionsLookupIndex::toResult).collect(Collectors.toList());
+  }
+
+  private static class Snapshot {
+
+    private final CollectionsLookupIndex institutions;
+    private final CollectionsLookupIndex collections;
+    private final long builtAt = System.currentTimeMillis();
+
+    private Snapshot(CollectionsLookupIndex institutions, CollectionsLookupIndex collections) {
+      this.institutions = institutions;
+      this.collections = collections;
+    }
+
+    private boolean isOlderThan(long millis) {
+      return System.currentTimeMillis() - builtAt >= millis;
+    }
+  }
+}
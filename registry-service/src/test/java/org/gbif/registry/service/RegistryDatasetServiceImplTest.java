@@ -0,0 +1,167 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service;
+
+import org.gbif.api.model.registry.Dataset;
+import org.gbif.api.model.registry.Metadata;
+import org.gbif.registry.persistence.mapper.DatasetMapper;
+import org.gbif.registry.persistence.mapper.MetadataMapper;
+import org.gbif.registry.persistence.mapper.OrganizationMapper;
+import org.gbif.registry.persistence.mapper.handler.ByteArrayWrapper;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import com.google.common.io.ByteStreams;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+public class RegistryDatasetServiceImplTest {
+
+  private static final UUID DATASET_KEY = UUID.randomUUID();
+
+  @Mock private MetadataMapper metadataMapper;
+  @Mock private OrganizationMapper organizationMapper;
+  @Mock private DatasetMapper datasetMapper;
+
+  private RegistryDatasetServiceImpl service;
+  private ByteArrayWrapper document;
+
+  @BeforeEach
+  public void setup() throws IOException {
+    service =
+        new RegistryDatasetServiceImpl(
+            metadataMapper, organizationMapper, datasetMapper, 1024 * 1024, 1024 * 1024);
+    document = new ByteArrayWrapper();
+    try (InputStream in = getClass().getClassLoader().getResourceAsStream("eml/ipt_eml.xml")) {
+      document.setData(ByteStreams.toByteArray(in));
+    }
+  }
+
+  @Test
+  public void testParsedOnceAndCopied() {
+    when(metadataMapper.list(DATASET_KEY, null)).thenReturn(metadata(1));
+    when(metadataMapper.getDocument(1)).thenReturn(document);
+
+    Dataset first = service.getPreferredMetadataDataset(DATASET_KEY);
+    Dataset second = service.getPreferredMetadataDataset(DATASET_KEY);
+    verify(metadataMapper, times(1)).getDocument(1);
+
+    assertEquals("PonTaurus", first.getTitle());
+    assertFalse(first.getContacts().isEmpty());
+    assertNotSame(first, second);
+    assertNotSame(first.getContacts(), second.getContacts());
+    assertNotSame(first.getContacts().get(0), second.getContacts().get(0));
+
+    // modifying a result, deep down, leaves the cached dataset untouched
+    first.getContacts().get(0).setLastName("changed");
+    first.getContacts().clear();
+    first.getGeographicCoverages().clear();
+    Dataset third = service.getPreferredMetadataDataset(DATASET_KEY);
+    assertEquals(second.getContacts(), third.getContacts());
+    assertEquals(second.getGeographicCoverages(), third.getGeographicCoverages());
+  }
+
+  @Test
+  public void testNewPreferredDocumentIsParsed() {
+    when(metadataMapper.list(DATASET_KEY, null)).thenReturn(metadata(1), metadata(2));
+    when(metadataMapper.getDocument(1)).thenReturn(document);
+    when(metadataMapper.getDocument(2)).thenReturn(document);
+
+    service.getPreferredMetadataDataset(DATASET_KEY);
+    service.getPreferredMetadataDataset(DATASET_KEY);
+    verify(metadataMapper, times(1)).getDocument(1);
+    verify(metadataMapper, times(1)).getDocument(2);
+  }
+
+  @Test
+  public void testEviction() {
+    when(metadataMapper.list(DATASET_KEY, null)).thenReturn(metadata(1));
+    when(metadataMapper.getDocument(1)).thenReturn(document);
+
+    service.getPreferredMetadataDataset(DATASET_KEY);
+    service.evictMetadataOfDataset(DATASET_KEY);
+    service.getPreferredMetadataDataset(DATASET_KEY);
+    verify(metadataMapper, times(2)).getDocument(1);
+  }
+
+  @Test
+  public void testEmlDocumentReused() throws IOException {
+    when(datasetMapper.modified(DATASET_KEY)).thenReturn(new Date(1000));
+    when(datasetMapper.get(DATASET_KEY)).thenReturn(dataset());
+
+    byte[] first = service.getEmlDocument(DATASET_KEY);
+    byte[] second = service.getEmlDocument(DATASET_KEY);
+    assertSame(first, second);
+    assertTrue(new String(first, StandardCharsets.UTF_8).contains("Rendered title"));
+    verify(datasetMapper, times(1)).get(DATASET_KEY);
+  }
+
+  @Test
+  public void testEmlDocumentRenderedAgain() throws IOException {
+    when(datasetMapper.modified(DATASET_KEY)).thenReturn(new Date(1000), new Date(2000));
+    when(datasetMapper.get(DATASET_KEY)).thenReturn(dataset());
+
+    // the dataset is modified in between
+    service.getEmlDocument(DATASET_KEY);
+    service.getEmlDocument(DATASET_KEY);
+    verify(datasetMapper, times(2)).get(DATASET_KEY);
+
+    // the rendered document is evicted
+    service.evictDocument(DATASET_KEY);
+    service.getEmlDocument(DATASET_KEY);
+    verify(datasetMapper, times(3)).get(DATASET_KEY);
+  }
+
+  @Test
+  public void testEmlDocumentOfMissingDataset() throws IOException {
+    assertNull(service.getEmlDocument(DATASET_KEY));
+  }
+
+  private static Dataset dataset() {
+    Dataset dataset = new Dataset();
+    dataset.setKey(DATASET_KEY);
+    dataset.setTitle("Rendered title");
+    return dataset;
+  }
+
+  private static List<Metadata> metadata(int key) {
+    Metadata metadata = new Metadata();
+    metadata.setKey(key);
+    metadata.setDatasetKey(DATASET_KEY);
+    return Collections.singletonList(metadata);
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.service.collections;
+
+import org.gbif.api.model.registry.search.collections.KeyCodeNameResult;
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
+import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
+import org.gbif.registry.persistence.mapper.dto.CollectionsLookupEntry;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.when;
+
+/** Tests the rebuilds of the index of {@link CollectionsLookupServiceImpl}. */
+@ExtendWith(MockitoExtension.class)
+public class CollectionsLookupServiceImplTest {
+
+  @Mock private InstitutionMapper institutionMapper;
+  @Mock private CollectionMapper collectionMapper;
+
+  private CollectionsLookupServiceImpl lookupService;
+
+  @AfterEach
+  public void tearDown() {
+    if (lookupService != null) {
+      lookupService.shutdown();
+    }
+  }
+
+  @Test
+  public void testRebuiltOnEveryCallWithoutAge() {
+    CollectionsLookupEntry first = entry("FIRST");
+    CollectionsLookupEntry second = entry("SECOND");
+    when(institutionMapper.lookupEntries(null))
+        .thenReturn(Collections.singletonList(first))
+        .thenReturn(Collections.singletonList(second));
+    when(collectionMapper.lookupEntries(null)).thenReturn(Collections.emptyList());
+    lookupService = new CollectionsLookupServiceImpl(institutionMapper, collectionMapper, 0);
+
+    assertEquals(Collections.singletonList(first.getKey()), institutionsWithCode("FIRST"));
+    assertEquals(Collections.singletonList(second.getKey()), institutionsWithCode("SECOND"));
+  }
+
+  @Test
+  public void testStaleIndexServedWhileRebuilt() throws Exception {
+    CollectionsLookupEntry first = entry("FIRST");
+    CollectionsLookupEntry second = entry("SECOND");
+    CollectionsLookupEntry refreshed = entry("REFRESHED");
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    when(institutionMapper.lookupEntries(null))
+        .thenReturn(Collections.singletonList(first))
+        .thenAnswer(
+            invocation -> {
+              loading.countDown();
+              release.await();
+              return Collections.singletonList(second);
+            });
+    when(institutionMapper.lookupEntries(refreshed.getKey()))
+        .thenReturn(Collections.singletonList(refreshed));
+    when(collectionMapper.lookupEntries(null)).thenReturn(Collections.emptyList());
+    lookupService = new CollectionsLookupServiceImpl(institutionMapper, collectionMapper, 1);
+
+    lookupService.warmUp();
+    // older than the maximum age of 1 second
+    Thread.sleep(1100);
+
+    // the stale index is served without waiting for the rebuild
+    assertEquals(Collections.singletonList(first.getKey()), institutionsWithCode("FIRST"));
+    assertTrue(loading.await(5, TimeUnit.SECONDS));
+    assertEquals(Collections.singletonList(first.getKey()), institutionsWithCode("FIRST"));
+
+    // changed after the new index started loading
+    lookupService.refreshInstitution(refreshed.getKey());
+    release.countDown();
+
+    for (int i = 0; i < 50 && institutionsWithCode("SECOND").isEmpty(); i++) {
+      Thread.sleep(100);
+    }
+    assertEquals(Collections.singletonList(second.getKey()), institutionsWithCode("SECOND"));
+    assertTrue(institutionsWithCode("FIRST").isEmpty());
+    // the refresh is not lost
+    assertEquals(Collections.singletonList(refreshed.getKey()), institutionsWithCode("REFRESHED"));
+  }
+
+  @Test
+  public void testStaleIndexKeptWhenRebuildFails() throws Exception {
+    CollectionsLookupEntry first = entry("FIRST");
+    AtomicInteger loads = new AtomicInteger();
+    when(institutionMapper.lookupEntries(null))
+        .thenAnswer(
+            invocation -> {
+              if (loads.incrementAndGet() > 1) {
+                throw new IllegalStateException("Database unavailable");
+              }
+              return Collections.singletonList(first);
+            });
+    when(collectionMapper.lookupEntries(null)).thenReturn(Collections.emptyList());
+    lookupService = new CollectionsLookupServiceImpl(institutionMapper, collectionMapper, 1);
+
+    lookupService.warmUp();
+    Thread.sleep(1100);
+
+    // served until a rebuild succeeds, which is attempted again after a failure
+    for (int i = 0; i < 50 && loads.get() < 3; i++) {
+      assertEquals(Collections.singletonList(first.getKey()), institutionsWithCode("FIRST"));
+      Thread.sleep(100);
+    }
+    assertTrue(loads.get() >= 3);
+    assertEquals(Collections.singletonList(first.getKey()), institutionsWithCode("FIRST"));
+  }
+
+  private List<UUID> institutionsWithCode(String code) {
+    return lookupService
+        .lookup(Collections.singletonList(new CollectionsLookupQuery(code, null, null, null)))
+        .get(0)
+        .getInstitutions()
+        .stream()
+        .map(KeyCodeNameResult::getKey)
+        .collect(Collectors.toList());
+  }
+
+  private static CollectionsLookupEntry entry(String code) {
+    CollectionsLookupEntry entry = new CollectionsLookupEntry();
+    entry.setKey(UUID.randomUUID());
+    entry.setCode(code);
+    entry.setName("Institution " + code);
+    return entry;
+  }
+}
@@ -25,7 +25,9 @@ import org.gbif.api.model.pipelines.ws.PipelineProcessParameters;
 import org.gbif.api.model.pipelines.ws.PipelineStepParameters;
 import org.gbif.api.model.pipelines.ws.RunAllParams;
 import org.gbif.api.service.pipelines.PipelinesHistoryService;
+import org.gbif.registry.domain.pipelines.PipelineStepStatusUpdate;
 
+import java.util.List;
 import java.util.UUID;
 
 import org.springframework.cloud.openfeign.SpringQueryMap;
@@ -111,6 +113,12 @@ public interface PipelinesHistoryClient extends PipelinesHistoryService {
       @PathVariable("stepKey") long stepKey,
       @RequestBody PipelineStepParameters stepParams);
 
+  @RequestMapping(
+      method = RequestMethod.PUT,
+      value = "process/steps",
+      consumes = MediaType.APPLICATION_JSON_VALUE)
+  void updatePipelineStepsStatusAndMetrics(@RequestBody List<PipelineStepStatusUpdate> updates);
+
   @RequestMapping(method = RequestMethod.POST, value = "run")
   @ResponseBody
   @Override
@@ -25,6 +25,7 @@ import org.gbif.api.model.registry.MachineTag;
 import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.Tag;
 import org.gbif.api.vocabulary.IdentifierType;
+import org.gbif.registry.persistence.mapper.BatchComponentMapper;
 import org.gbif.registry.persistence.mapper.CommentMapper;
 import org.gbif.registry.persistence.mapper.CommentableMapper;
 import org.gbif.registry.persistence.mapper.ContactMapper;
@@ -39,10 +40,14 @@ import org.gbif.registry.persistence.mapper.NetworkEntityMapper;
 import org.gbif.registry.persistence.mapper.TagMapper;
 import org.gbif.registry.persistence.mapper.TaggableMapper;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import javax.annotation.Nullable;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -55,6 +60,17 @@ public class WithMyBatis {
   private static final String CREATE_ERROR_MESSAGE =
       "Unable to create an entity which already has a key";
 
+  private final boolean batchComponentLoading;
+
+  /**
+   * @param batchComponentLoading whether list and search load the components (contacts, endpoints,
+   *     tags etc.) of a page of entities in batches, instead of with a few queries per entity
+   */
+  public WithMyBatis(
+      @Value("${registry.persistence.batchComponentLoading:true}") boolean batchComponentLoading) {
+    this.batchComponentLoading = batchComponentLoading;
+  }
+
   @Transactional
   public <T extends NetworkEntity> UUID create(NetworkEntityMapper<T> mapper, T entity) {
     checkArgument(entity.getKey() == null, CREATE_ERROR_MESSAGE);
@@ -99,15 +115,62 @@ public class WithMyBatis {
     checkNotNull(page, "To search you must supply a page");
     long total = mapper.count(query);
     return new PagingResponse<>(
-        page.getOffset(), page.getLimit(), total, mapper.search(query, page));
+        page.getOffset(),
+        page.getLimit(),
+        total,
+        selectWithComponents(
+            mapper,
+            () -> mapper.search(query, page),
+            m -> m.searchWithoutComponents(query, page)));
   }
 
   public <T extends NetworkEntity> PagingResponse<T> list(
       NetworkEntityMapper<T> mapper, Pageable page) {
     long total = mapper.count();
-    return new PagingResponse<>(page.getOffset(), page.getLimit(), total, mapper.list(page));
+    return new PagingResponse<>(
+        page.getOffset(),
+        page.getLimit(),
+        total,
+        selectWithComponents(
+            mapper, () -> mapper.list(page), m -> m.listWithoutComponents(page)));
+  }
+
+  /**
+   * Selects entities with all their components populated, either by the given select which loads
+   * them per entity, or by the select without components followed by {@link #loadComponents}.
+   *
+   * @param mapper The mapper both selects belong to
+   * @param select Select returning the entities with their components
+   * @param selectWithoutComponents The equivalent select returning the entities only
+   * @return the entities, with their components
+   */
+  @SuppressWarnings("unchecked")
+  public <T extends NetworkEntity> List<T> selectWithComponents(
+      NetworkEntityMapper<T> mapper,
+      Supplier<List<T>> select,
+      Function<BatchComponentMapper<T>, List<T>> selectWithoutComponents) {
+    if (batchComponentLoading && mapper instanceof BatchComponentMapper) {
+      BatchComponentMapper<T> batchMapper = (BatchComponentMapper<T>) mapper;
+      return loadComponents(batchMapper, selectWithoutComponents.apply(batchMapper));
+    }
+    return select.get();
   }
 
+  /**
+   * Populates the components (contacts, endpoints, machine tags, tags, identifiers and comments) of
+   * the entities with one query per component type, regardless of the number of entities.
+   *
+   * @param mapper To load the components with
+   * @param entities As returned by the mapper without their components
+   * @return the same entities, in the same order
+   * @see BatchComponentLoader#loadComponents
+   */
+  public <T extends NetworkEntity> List<T> loadComponents(
+      BatchComponentMapper<T> mapper, List<T> entities) {
+    return BatchComponentLoader.loadComponents(mapper, entities);
+  }
+
+
   public <T extends NetworkEntity> PagingResponse<T> listByIdentifier(
       NetworkEntityMapper<T> mapper,
       @Nullable IdentifierType type,
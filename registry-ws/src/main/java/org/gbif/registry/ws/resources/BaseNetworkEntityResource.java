@@ -28,6 +28,7 @@ import org.gbif.api.model.registry.NetworkEntity;
 import org.gbif.api.model.registry.PostPersist;
 import org.gbif.api.model.registry.PrePersist;
 import org.gbif.api.model.registry.Tag;
+import org.gbif.api.model.registry.search.KeyTitleResult;
 import org.gbif.api.service.registry.NetworkEntityService;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.api.vocabulary.TagName;
@@ -201,8 +202,12 @@ public class BaseNetworkEntityResource<T extends NetworkEntity> implements Netwo
   @Override
   public Map<UUID, String> getTitles(@RequestBody Collection<UUID> keys) {
     Map<UUID, String> titles = Maps.newHashMap();
+    for (KeyTitleResult result : mapper.titles(keys)) {
+      titles.put(result.getKey(), result.getTitle());
+    }
+    // keys that don't exist are still returned, without a title
     for (UUID key : keys) {
-      titles.put(key, mapper.title(key));
+      titles.putIfAbsent(key, null);
     }
     return titles;
   }
@@ -53,7 +53,6 @@ import org.gbif.registry.doi.generator.DoiGenerator;
 import org.gbif.registry.doi.handler.DataCiteDoiHandlerStrategy;
 import org.gbif.registry.domain.ws.DatasetRequestSearchParams;
 import org.gbif.registry.events.EventManager;
-import org.gbif.registry.metadata.EMLWriter;
 import org.gbif.registry.metadata.parse.DatasetParser;
 import org.gbif.registry.persistence.WithMyBatis;
 import org.gbif.registry.persistence.mapper.ContactMapper;
@@ -72,7 +71,6 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.io.StringWriter;
 import java.net.URI;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
@@ -262,19 +260,12 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
 
   @GetMapping(value = "{key}/document", produces = MediaType.APPLICATION_XML_VALUE)
   public byte[] getMetadataDocumentAsBytes(@PathVariable("key") UUID datasetKey) {
-    // the fully augmented dataset
-    Dataset dataset = get(datasetKey);
-    if (dataset != null) {
-      // generate new EML
-      try {
-        StringWriter eml = new StringWriter();
-        EMLWriter.write(dataset, eml);
-        return eml.toString().getBytes(StandardCharsets.UTF_8);
-      } catch (Exception e) {
-        throw new ServiceUnavailableException("Failed to serialize dataset " + datasetKey, e);
-      }
+    // EML of the fully augmented dataset, rendered again only when the dataset has changed
+    try {
+      return registryDatasetService.getEmlDocument(datasetKey);
+    } catch (IOException e) {
+      throw new ServiceUnavailableException("Failed to serialize dataset " + datasetKey, e);
     }
-    return null;
   }
 
   @PostMapping(value = "{key}/document", consumes = MediaType.APPLICATION_XML_VALUE)
@@ -743,7 +734,11 @@ public class DatasetResource extends BaseNetworkEntityResource<Dataset>
   @DeleteMapping("metadata/{key}")
   @Override
   public void deleteMetadata(@PathVariable("key") int metadataKey) {
+    Metadata metadata = metadataMapper.get(metadataKey);
     metadataMapper.delete(metadataKey);
+    if (metadata != null) {
+      registryDatasetService.evictMetadataOfDataset(metadata.getDatasetKey());
+    }
   }
 
   @GetMapping("deleted")
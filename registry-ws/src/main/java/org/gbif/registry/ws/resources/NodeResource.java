@@ -28,6 +28,7 @@ import org.gbif.api.service.registry.NodeService;
 import org.gbif.api.vocabulary.Country;
 import org.gbif.api.vocabulary.IdentifierType;
 import org.gbif.registry.directory.Augmenter;
+import org.gbif.registry.directory.DirectoryCache;
 import org.gbif.registry.domain.ws.NodeRequestSearchParams;
 import org.gbif.registry.events.EventManager;
 import org.gbif.registry.persistence.WithMyBatis;
@@ -45,7 +46,9 @@ import javax.annotation.Nullable;
 import javax.validation.Valid;
 
 import org.springframework.context.annotation.Primary;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.annotation.Secured;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.DeleteMapping;
@@ -72,11 +75,13 @@ public class NodeResource extends BaseNetworkEntityResource<Node> implements Nod
   private final InstallationMapper installationMapper;
   private final DatasetMapper datasetMapper;
   private final Augmenter nodeAugmenter;
+  private final DirectoryCache directoryCache;
 
   public NodeResource(
       MapperServiceLocator mapperServiceLocator,
       EventManager eventManager,
       Augmenter nodeAugmenter,
+      DirectoryCache directoryCache,
       EditorAuthorizationService userAuthService,
       WithMyBatis withMyBatis) {
     super(
@@ -89,6 +94,7 @@ public class NodeResource extends BaseNetworkEntityResource<Node> implements Nod
     this.nodeMapper = mapperServiceLocator.getNodeMapper();
     this.organizationMapper = mapperServiceLocator.getOrganizationMapper();
     this.nodeAugmenter = nodeAugmenter;
+    this.directoryCache = directoryCache;
     this.datasetMapper = mapperServiceLocator.getDatasetMapper();
     this.installationMapper = mapperServiceLocator.getInstallationMapper();
   }
@@ -124,6 +130,20 @@ public class NodeResource extends BaseNetworkEntityResource<Node> implements Nod
     }
   }
 
+  /**
+   * Reloads the Directory data the nodes are augmented with, without waiting for the scheduled
+   * reload.
+   *
+   * @return 204 if the Directory was reloaded, 503 if it couldn't be reached
+   */
+  @PostMapping("directory/refresh")
+  @Secured(ADMIN_ROLE)
+  public ResponseEntity<Void> refreshDirectory() {
+    return directoryCache.refresh()
+        ? ResponseEntity.noContent().build()
+        : ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+  }
+
   /** Decorates the Nodes in the response with the Augmenter. */
   private PagingResponse<Node> decorateResponse(PagingResponse<Node> response) {
     for (Node n : response.getResults()) {
@@ -21,7 +21,6 @@ import org.gbif.api.model.common.DOI;
 import org.gbif.api.model.common.GbifUser;
 import org.gbif.api.model.common.paging.Pageable;
 import org.gbif.api.model.common.paging.PagingResponse;
-import org.gbif.api.model.common.search.Facet;
 import org.gbif.api.model.occurrence.Download;
 import org.gbif.api.model.registry.DatasetOccurrenceDownloadUsage;
 import org.gbif.api.model.registry.PostPersist;
@@ -34,18 +33,22 @@ import org.gbif.registry.doi.generator.DoiGenerator;
 import org.gbif.registry.doi.handler.DataCiteDoiHandlerStrategy;
 import org.gbif.registry.persistence.mapper.DatasetOccurrenceDownloadMapper;
 import org.gbif.registry.persistence.mapper.OccurrenceDownloadMapper;
+import org.gbif.registry.persistence.service.DatasetOccurrenceDownloadUsageLoader;
+import org.gbif.registry.service.DownloadStatisticsService;
 import org.gbif.registry.ws.provider.PartialDate;
 import org.gbif.ws.WebApplicationException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.AbstractMap;
 import java.util.Date;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 import java.util.Optional;
 import java.util.Set;
-import java.util.TreeMap;
 import java.util.UUID;
-import java.util.stream.Collectors;
 
 import javax.validation.constraints.NotNull;
 import javax.validation.groups.Default;
@@ -68,8 +71,10 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.google.common.base.Preconditions;
-import com.google.common.collect.Iterators;
 
 import static org.gbif.registry.security.UserRoles.ADMIN_ROLE;
 import static org.gbif.registry.security.util.DownloadSecurityUtils.checkUserIsInSecurityContext;
@@ -86,21 +91,26 @@ public class OccurrenceDownloadResource implements OccurrenceDownloadService {
   private final IdentityAccessService identityService;
   private final DataCiteDoiHandlerStrategy doiHandlingStrategy;
   private final DoiGenerator doiGenerator;
+  private final DatasetOccurrenceDownloadUsageLoader usageLoader;
+  private final DownloadStatisticsService downloadStatisticsService;
 
-  // Page size to iterate over dataset usages
-  private static final int BATCH_SIZE = 5_000;
+  private static final JsonFactory JSON_FACTORY = new JsonFactory();
 
   public OccurrenceDownloadResource(
       OccurrenceDownloadMapper occurrenceDownloadMapper,
       DatasetOccurrenceDownloadMapper datasetOccurrenceDownloadMapper,
       DoiGenerator doiGenerator,
       @Lazy DataCiteDoiHandlerStrategy doiHandlingStrategy,
-      @Qualifier("ligthweightIdentityAccessService") IdentityAccessService identityService) {
+      @Qualifier("ligthweightIdentityAccessService") IdentityAccessService identityService,
+      DatasetOccurrenceDownloadUsageLoader usageLoader,
+      DownloadStatisticsService downloadStatisticsService) {
     this.occurrenceDownloadMapper = occurrenceDownloadMapper;
     this.datasetOccurrenceDownloadMapper = datasetOccurrenceDownloadMapper;
     this.doiHandlingStrategy = doiHandlingStrategy;
     this.doiGenerator = doiGenerator;
     this.identityService = identityService;
+    this.usageLoader = usageLoader;
+    this.downloadStatisticsService = downloadStatisticsService;
   }
 
   @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
@@ -193,7 +203,14 @@ public class OccurrenceDownloadResource implements OccurrenceDownloadService {
     checkUserIsInSecurityContext(currentDownload.getRequest().getCreator(), authentication);
     GbifUser user = identityService.get(authentication.getName());
     doiHandlingStrategy.downloadChanged(download, currentDownload, user);
-    occurrenceDownloadMapper.update(download);
+    if (download.getStatus() != Download.Status.SUCCEEDED) {
+      occurrenceDownloadMapper.update(download);
+    } else if (occurrenceDownloadMapper.updateSucceeded(download) > 0) {
+      // only the update that made the download succeed counts it in the statistics
+      downloadStatisticsService.addSucceededDownload(currentDownload.getKey());
+    } else {
+      occurrenceDownloadMapper.update(download);
+    }
   }
 
   @Override
@@ -229,18 +246,27 @@ public class OccurrenceDownloadResource implements OccurrenceDownloadService {
     throw new WebApplicationException("Download was not found", HttpStatus.NOT_FOUND);
   }
 
-  @PostMapping(value = "{key}/datasets", consumes = MediaType.APPLICATION_JSON_VALUE)
-  @Transactional
   @Secured(ADMIN_ROLE)
   @Override
-  public void createUsages(
-      @PathVariable("key") String downloadKey, @RequestBody Map<UUID, Long> datasetCitations) {
-    Iterators.partition(datasetCitations.entrySet().iterator(), BATCH_SIZE)
-        .forEachRemaining(
-            batch ->
-                datasetOccurrenceDownloadMapper.createUsages(
-                    downloadKey,
-                    batch.stream().collect(Collectors.toMap(Entry::getKey, Entry::getValue))));
+  public void createUsages(String downloadKey, Map<UUID, Long> datasetCitations) {
+    usageLoader.load(downloadKey, datasetCitations.entrySet().iterator());
+  }
+
+  /**
+   * Same as {@link #createUsages(String, Map)}, but the usages are parsed from the body as they
+   * are copied to the DB, without holding them all in a map first.
+   */
+  @PostMapping(value = "{key}/datasets", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Secured(ADMIN_ROLE)
+  public void createUsagesFromJson(
+      @PathVariable("key") String downloadKey, InputStream datasetCitations) throws IOException {
+    try (JsonParser parser = JSON_FACTORY.createParser(datasetCitations)) {
+      if (parser.nextToken() != JsonToken.START_OBJECT) {
+        throw new WebApplicationException(
+            "Dataset citations must be a JSON object", HttpStatus.BAD_REQUEST);
+      }
+      usageLoader.load(downloadKey, new UsagesIterator(parser));
+    }
   }
 
   @Override
@@ -289,11 +315,10 @@ public class OccurrenceDownloadResource implements OccurrenceDownloadService {
   @Override
   public Map<Integer, Map<Integer, Long>> getDownloadsByUserCountry(
       @PartialDate Date fromDate, @PartialDate Date toDate, Country userCountry) {
-    return groupByYear(
-        occurrenceDownloadMapper.getDownloadsByUserCountry(
-            fromDate,
-            toDate,
-            Optional.ofNullable(userCountry).map(Country::getIso2LetterCode).orElse(null)));
+    return downloadStatisticsService.getDownloadsByUserCountry(
+        fromDate,
+        toDate,
+        Optional.ofNullable(userCountry).map(Country::getIso2LetterCode).orElse(null));
   }
 
   @GetMapping("statistics/downloadedRecordsByDataset")
@@ -303,30 +328,58 @@ public class OccurrenceDownloadResource implements OccurrenceDownloadService {
       @PartialDate Date toDate,
       Country publishingCountry,
       @RequestParam(value = "datasetKey", required = false) UUID datasetKey) {
-    return groupByYear(
-        occurrenceDownloadMapper.getDownloadedRecordsByDataset(
-            fromDate,
-            toDate,
-            Optional.ofNullable(publishingCountry).map(Country::getIso2LetterCode).orElse(null),
-            datasetKey));
+    return downloadStatisticsService.getDownloadedRecordsByDataset(
+        fromDate,
+        toDate,
+        Optional.ofNullable(publishingCountry).map(Country::getIso2LetterCode).orElse(null),
+        datasetKey);
   }
 
-  /** Aggregates the download statistics in tree structure of month grouped by year. */
-  private Map<Integer, Map<Integer, Long>> groupByYear(List<Facet.Count> counts) {
-    Map<Integer, Map<Integer, Long>> yearsGrouping = new TreeMap<>();
-    counts.forEach(
-        count ->
-            yearsGrouping
-                .computeIfAbsent(getYearFromFacetCount(count), year -> new TreeMap<>())
-                .put(getMonthFromFacetCount(count), count.getCount()));
-    return yearsGrouping;
-  }
+  /** Reads the dataset keys and record counts of a JSON object one field at a time. */
+  private static class UsagesIterator implements Iterator<Map.Entry<UUID, Long>> {
 
-  private Integer getYearFromFacetCount(Facet.Count count) {
-    return Integer.valueOf(count.getName().substring(0, 4));
-  }
+    private final JsonParser parser;
+    private Map.Entry<UUID, Long> next;
 
-  private Integer getMonthFromFacetCount(Facet.Count count) {
-    return Integer.valueOf(count.getName().substring(5));
+    private UsagesIterator(JsonParser parser) {
+      this.parser = parser;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next == null) {
+        next = read();
+      }
+      return next != null;
+    }
+
+    @Override
+    public Map.Entry<UUID, Long> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      Map.Entry<UUID, Long> current = next;
+      next = null;
+      return current;
+    }
+
+    private Map.Entry<UUID, Long> read() {
+      try {
+        if (parser.nextToken() != JsonToken.FIELD_NAME) {
+          return null;
+        }
+        UUID datasetKey = UUID.fromString(parser.getCurrentName());
+        if (parser.nextToken() != JsonToken.VALUE_NUMBER_INT) {
+          throw new WebApplicationException(
+              "Invalid number of records for dataset " + datasetKey, HttpStatus.BAD_REQUEST);
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(datasetKey, parser.getLongValue());
+      } catch (IllegalArgumentException e) {
+        throw new WebApplicationException("Invalid dataset key", HttpStatus.BAD_REQUEST);
+      } catch (IOException e) {
+        throw new WebApplicationException(
+            "Invalid dataset citations: " + e.getMessage(), HttpStatus.BAD_REQUEST);
+      }
+    }
   }
 }
@@ -100,6 +100,7 @@ public class OrganizationResource extends BaseNetworkEntityResource<Organization
   private final InstallationMapper installationMapper;
   private final OrganizationEndorsementService<UUID> organizationEndorsementService;
   private final EditorAuthorizationService userAuthService;
+  private final WithMyBatis withMyBatis;
 
   public OrganizationResource(
       MapperServiceLocator mapperServiceLocator,
@@ -119,6 +120,7 @@ public class OrganizationResource extends BaseNetworkEntityResource<Organization
     this.installationMapper = mapperServiceLocator.getInstallationMapper();
     this.organizationEndorsementService = organizationEndorsementService;
     this.userAuthService = userAuthService;
+    this.withMyBatis = withMyBatis;
   }
 
   @GetMapping("{key}")
@@ -276,12 +278,17 @@ public class OrganizationResource extends BaseNetworkEntityResource<Organization
             ? Strings.emptyToNull(CharMatcher.WHITESPACE.trimFrom(request.getQ()))
             : request.getQ();
     long total = organizationMapper.count(query, country, request.getIsEndorsed());
-    page = page == null ? new PagingRequest() : page;
+    Pageable searchPage = page == null ? new PagingRequest() : page;
     return new PagingResponse<>(
-        page.getOffset(),
-        page.getLimit(),
+        searchPage.getOffset(),
+        searchPage.getLimit(),
         total,
-        organizationMapper.search(query, country, request.getIsEndorsed(), page));
+        withMyBatis.selectWithComponents(
+            organizationMapper,
+            () -> organizationMapper.search(query, country, request.getIsEndorsed(), searchPage),
+            m ->
+                organizationMapper.searchWithoutComponents(
+                    query, country, request.getIsEndorsed(), searchPage)));
   }
 
   @GetMapping("{key}/hostedDataset")
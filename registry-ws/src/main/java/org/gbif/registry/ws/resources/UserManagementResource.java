@@ -28,6 +28,7 @@ import org.gbif.registry.domain.ws.UserUpdate;
 import org.gbif.registry.identity.model.LoggedUser;
 import org.gbif.registry.identity.model.UserModelMutationResult;
 import org.gbif.registry.identity.service.IdentityService;
+import org.gbif.registry.security.EditorAuthorizationService;
 import org.gbif.registry.security.SecurityContextCheck;
 import org.gbif.registry.security.UserUpdateRulesManager;
 import org.gbif.registry.ws.UpdatePasswordException;
@@ -106,11 +107,15 @@ public class UserManagementResource {
 
   private final IdentityService identityService;
   private final List<String> appKeyWhitelist;
+  private final EditorAuthorizationService editorAuthorizationService;
 
   /** {@link UserManagementResource} main constructor. */
   public UserManagementResource(
-      IdentityService identityService, AppkeysConfigurationProperties appkeysConfiguration) {
+      IdentityService identityService,
+      AppkeysConfigurationProperties appkeysConfiguration,
+      EditorAuthorizationService editorAuthorizationService) {
     this.identityService = identityService;
+    this.editorAuthorizationService = editorAuthorizationService;
     appKeyWhitelist = appkeysConfiguration.getWhitelist();
   }
 
@@ -388,6 +393,7 @@ public class UserManagementResource {
       return ResponseEntity.status(HttpStatus.CONFLICT).build();
     } else {
       identityService.addEditorRight(username, key);
+      editorAuthorizationService.evictEditorRights(username);
       return ResponseEntity.ok(key);
     }
   }
@@ -408,6 +414,7 @@ public class UserManagementResource {
       return ResponseEntity.status(HttpStatus.NOT_FOUND).build();
     } else {
       identityService.deleteEditorRight(username, key);
+      editorAuthorizationService.evictEditorRights(username);
       return ResponseEntity.status(HttpStatus.NO_CONTENT).build();
     }
   }
@@ -30,6 +30,7 @@ import org.gbif.registry.persistence.mapper.TagMapper;
 import org.gbif.registry.persistence.mapper.collections.AddressMapper;
 import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
 import org.gbif.registry.security.EditorAuthorizationService;
+import org.gbif.registry.service.collections.CollectionsLookupService;
 
 import java.util.List;
 import java.util.UUID;
@@ -58,6 +59,7 @@ public class CollectionResource extends ExtendedCollectionEntityResource<Collect
     implements CollectionService {
 
   private final CollectionMapper collectionMapper;
+  private final CollectionsLookupService lookupService;
 
   public CollectionResource(
       CollectionMapper collectionMapper,
@@ -67,7 +69,8 @@ public class CollectionResource extends ExtendedCollectionEntityResource<Collect
       MachineTagMapper machineTagMapper,
       EventManager eventManager,
       EditorAuthorizationService userAuthService,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      CollectionsLookupService lookupService) {
     super(
         collectionMapper,
         addressMapper,
@@ -80,6 +83,7 @@ public class CollectionResource extends ExtendedCollectionEntityResource<Collect
         userAuthService,
         withMyBatis);
     this.collectionMapper = collectionMapper;
+    this.lookupService = lookupService;
   }
 
   @GetMapping("{key}")
@@ -121,6 +125,6 @@ public class CollectionResource extends ExtendedCollectionEntityResource<Collect
   @GetMapping("suggest")
   @Override
   public List<KeyCodeNameResult> suggest(@RequestParam(value = "q", required = false) String q) {
-    return collectionMapper.suggest(q);
+    return lookupService.suggestCollections(q);
   }
 }
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2020 Global Biodiversity Information Facility (GBIF)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gbif.registry.ws.resources.collections;
+
+import org.gbif.registry.domain.collections.CollectionsLookupQuery;
+import org.gbif.registry.domain.collections.CollectionsLookupResult;
+import org.gbif.registry.service.collections.CollectionsLookupService;
+
+import java.util.List;
+
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import static org.gbif.registry.ws.util.GrscicollUtils.GRSCICOLL_PATH;
+
+/**
+ * Resolves many institution and collection codes and identifiers, as found in occurrence records,
+ * to GrSciColl entities in a single call.
+ */
+@Validated
+@RestController
+@RequestMapping(value = GRSCICOLL_PATH + "/lookup", produces = MediaType.APPLICATION_JSON_VALUE)
+public class CollectionsLookupResource {
+
+  private final CollectionsLookupService lookupService;
+
+  public CollectionsLookupResource(CollectionsLookupService lookupService) {
+    this.lookupService = lookupService;
+  }
+
+  /** Resolves each of the queries, returning the results in the same order. */
+  @PostMapping(consumes = MediaType.APPLICATION_JSON_VALUE)
+  public List<CollectionsLookupResult> lookup(@RequestBody List<CollectionsLookupQuery> queries) {
+    return lookupService.lookup(queries);
+  }
+}
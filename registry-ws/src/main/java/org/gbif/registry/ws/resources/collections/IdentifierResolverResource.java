@@ -18,6 +18,7 @@ package org.gbif.registry.ws.resources.collections;
 import org.gbif.api.annotation.Trim;
 import org.gbif.registry.persistence.mapper.collections.CollectionMapper;
 import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
+import org.gbif.registry.service.collections.CollectionsLookupService;
 
 import java.net.URI;
 import java.util.List;
@@ -58,14 +59,17 @@ public class IdentifierResolverResource {
   private final String grscicollPortalUrl;
   private final CollectionMapper collectionMapper;
   private final InstitutionMapper institutionMapper;
+  private final CollectionsLookupService lookupService;
 
   public IdentifierResolverResource(
       @Value("${grscicoll.portal.url}") String grscicollPortalUrl,
       CollectionMapper collectionMapper,
-      InstitutionMapper institutionMapper) {
+      InstitutionMapper institutionMapper,
+      CollectionsLookupService lookupService) {
     this.collectionMapper = collectionMapper;
     this.grscicollPortalUrl = grscicollPortalUrl;
     this.institutionMapper = institutionMapper;
+    this.lookupService = lookupService;
   }
 
   @GetMapping
@@ -94,7 +98,18 @@ public class IdentifierResolverResource {
   }
 
   private Optional<String> findEntityPath(String identifier) {
-    List<UUID> keys = institutionMapper.findByIdentifier(identifier);
+    List<UUID> keys = lookupService.findInstitutionsByIdentifier(identifier);
+    if (!keys.isEmpty()) {
+      return Optional.of("institution/" + keys.get(0));
+    }
+
+    keys = lookupService.findCollectionsByIdentifier(identifier);
+    if (!keys.isEmpty()) {
+      return Optional.of("collection/" + keys.get(0));
+    }
+
+    // the index leaves deleted entities out, their pages can still be resolved from the DB
+    keys = institutionMapper.findByIdentifier(identifier);
     if (keys != null && !keys.isEmpty()) {
       return Optional.of("institution/" + keys.get(0));
     }
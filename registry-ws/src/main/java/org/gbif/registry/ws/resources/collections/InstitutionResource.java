@@ -30,6 +30,7 @@ import org.gbif.registry.persistence.mapper.TagMapper;
 import org.gbif.registry.persistence.mapper.collections.AddressMapper;
 import org.gbif.registry.persistence.mapper.collections.InstitutionMapper;
 import org.gbif.registry.security.EditorAuthorizationService;
+import org.gbif.registry.service.collections.CollectionsLookupService;
 
 import java.util.List;
 import java.util.UUID;
@@ -58,6 +59,7 @@ public class InstitutionResource extends ExtendedCollectionEntityResource<Instit
     implements InstitutionService {
 
   private final InstitutionMapper institutionMapper;
+  private final CollectionsLookupService lookupService;
 
   public InstitutionResource(
       InstitutionMapper institutionMapper,
@@ -67,7 +69,8 @@ public class InstitutionResource extends ExtendedCollectionEntityResource<Instit
       MachineTagMapper machineTagMapper,
       EditorAuthorizationService userAuthService,
       EventManager eventManager,
-      WithMyBatis withMyBatis) {
+      WithMyBatis withMyBatis,
+      CollectionsLookupService lookupService) {
     super(
         institutionMapper,
         addressMapper,
@@ -80,6 +83,7 @@ public class InstitutionResource extends ExtendedCollectionEntityResource<Instit
         userAuthService,
         withMyBatis);
     this.institutionMapper = institutionMapper;
+    this.lookupService = lookupService;
   }
 
   @GetMapping("{key}")
@@ -116,6 +120,6 @@ public class InstitutionResource extends ExtendedCollectionEntityResource<Instit
   @GetMapping("suggest")
   @Override
   public List<KeyCodeNameResult> suggest(@RequestParam(value = "q", required = false) String q) {
-    return institutionMapper.suggest(q);
+    return lookupService.suggestInstitutions(q);
   }
 }
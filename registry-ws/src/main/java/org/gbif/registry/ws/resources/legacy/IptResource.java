@@ -28,6 +28,7 @@ import org.gbif.api.vocabulary.License;
 import org.gbif.registry.domain.ws.IptEntityResponse;
 import org.gbif.registry.domain.ws.LegacyDataset;
 import org.gbif.registry.domain.ws.LegacyInstallation;
+import org.gbif.registry.events.EventManager;
 import org.gbif.registry.ws.util.LegacyResourceUtils;
 
 import java.util.List;
@@ -40,6 +41,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
+import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -62,15 +64,18 @@ public class IptResource {
   private final InstallationService installationService;
   private final OrganizationService organizationService;
   private final DatasetService datasetService;
+  private final EventManager eventManager;
   private static final Long ONE = 1L;
 
   public IptResource(
       InstallationService installationService,
       OrganizationService organizationService,
-      DatasetService datasetService) {
+      DatasetService datasetService,
+      EventManager eventManager) {
     this.installationService = installationService;
     this.organizationService = organizationService;
     this.datasetService = datasetService;
+    this.eventManager = eventManager;
   }
 
   /**
@@ -81,12 +86,15 @@ public class IptResource {
    * @param installation IptInstallation with HTTP form parameters
    * @return ResponseEntity with HttpStatus.CREATED if successful
    */
+  @Transactional
   @PostMapping(
       value = "register",
       consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE,
       produces = MediaType.APPLICATION_XML_VALUE)
   public ResponseEntity registerIpt(
       @RequestParam LegacyInstallation installation, Authentication authentication) {
+    // post the events of the installation, contact and endpoint once committed
+    eventManager.coalesceUntilTransactionEnd();
     if (installation != null) {
       // set required fields
       String user = authentication.getName();
@@ -145,11 +153,14 @@ public class IptResource {
    * @param installation IptInstallation with HTTP form parameters
    * @return ResponseEntity with HttpStatus.NO_CONTENT if successful
    */
+  @Transactional
   @PostMapping(value = "update/{key}", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
   public ResponseEntity updateIpt(
       @PathVariable("key") UUID installationKey,
       @RequestParam LegacyInstallation installation,
       Authentication authentication) {
+    // post one update per entity once the installation, contact and endpoints are committed
+    eventManager.coalesceUntilTransactionEnd();
     if (installation != null && installationKey != null) {
       // set required fields
       String user = authentication.getName();
@@ -228,12 +239,15 @@ public class IptResource {
    * @param dataset LegacyDataset with HTTP form parameters
    * @return ResponseEntity with HttpStatus.CREATED if successful
    */
+  @Transactional
   @PostMapping(
       value = "resource",
       consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE,
       produces = MediaType.APPLICATION_XML_VALUE)
   public ResponseEntity registerDataset(
       @RequestParam LegacyDataset dataset, Authentication authentication) {
+    // post the events of the dataset, contact and endpoints once committed
+    eventManager.coalesceUntilTransactionEnd();
     if (dataset != null) {
       // set required fields
       String user = authentication.getName();
@@ -312,11 +326,14 @@ public class IptResource {
    * @param dataset LegacyDataset with HTTP form parameters
    * @return ResponseEntity with HttpStatus.CREATED (201) if successful
    */
+  @Transactional
   @PostMapping(value = "resource/{key}", consumes = MediaType.APPLICATION_FORM_URLENCODED_VALUE)
   public ResponseEntity updateDataset(
       @PathVariable("key") UUID datasetKey,
       @RequestParam LegacyDataset dataset,
       Authentication authentication) {
+    // post one update per entity once the dataset, contact and endpoints are committed
+    eventManager.coalesceUntilTransactionEnd();
     if (dataset != null) {
       // set required fields
       String user = authentication.getName();
@@ -26,10 +26,12 @@ import org.gbif.api.model.pipelines.ws.PipelineProcessParameters;
 import org.gbif.api.model.pipelines.ws.PipelineStepParameters;
 import org.gbif.api.model.pipelines.ws.RunAllParams;
 import org.gbif.api.service.pipelines.PipelinesHistoryService;
+import org.gbif.registry.domain.pipelines.PipelineStepStatusUpdate;
 import org.gbif.registry.pipelines.RegistryPipelinesHistoryTrackingService;
 
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Set;
 import java.util.UUID;
 import java.util.stream.Collectors;
@@ -158,6 +160,15 @@ public class PipelinesHistoryResource implements PipelinesHistoryService {
         authentication.getName());
   }
 
+  /** Updates the status of many steps in a single transaction. */
+  @PutMapping(value = "process/steps", consumes = MediaType.APPLICATION_JSON_VALUE)
+  @Secured({ADMIN_ROLE, EDITOR_ROLE})
+  public void updatePipelineStepsStatusAndMetrics(
+      @RequestBody List<PipelineStepStatusUpdate> updates) {
+    final Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+    historyTrackingService.updatePipelineStepsStatusAndMetrics(updates, authentication.getName());
+  }
+
   /**
    * Runs the last attempt for all datasets. Parameters 'steps' and 'reason' are required, but they
    * will be validated in PipelinesHistoryResource#checkRunInputParams so here they are specified as